@@ -0,0 +1,352 @@
+package me.soupbringer.hotsoup.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints, for the GameIndex.
+ *
+ * Values are split by their high 16 bits into chunks of 65536. A chunk with only a
+ * few values in it keeps them as a sorted array of chars; once it passes
+ * ARRAY_MAX values it switches to a plain 8KB bitset, which is smaller from then
+ * on. (This is the layout Roaring bitmaps use.) Sparse sets of rare events and
+ * dense sets of common ones both stay small, and and/or/andNot work a chunk at a
+ * time, without expanding anything.
+ *
+ * Not thread-safe.
+ */
+final class CompressedBitmap {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** The most values an array chunk holds; past this a bitset is smaller. */
+  private static final int ARRAY_MAX = 4096;
+
+  /** The number of longs in a bitset chunk. */
+  private static final int BITSET_WORDS = 1024;
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  /** The high 16 bits of each chunk's values, sorted. */
+  private char[] keys;
+  private Chunk[] chunks;
+  private int numChunks;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Make an empty bitmap. */
+  CompressedBitmap() {
+    this.keys = new char[4];
+    this.chunks = new Chunk[4];
+  }
+
+  // ------------------------------------------------------------------------
+  // API
+
+  /** Add a value. Adding values in increasing order is the fast path. */
+  void add(int value) {
+    checkArgument(value >= 0);
+    char key = (char) (value >>> 16);
+    int i = numChunks > 0 && keys[numChunks - 1] == key
+      ? numChunks - 1
+      : Arrays.binarySearch(keys, 0, numChunks, key);
+    if (i < 0) {
+      i = -i - 1;
+      insertChunk(i, key, new Chunk());
+    }
+    chunks[i].add((char) value);
+  }
+
+  /** Returns true if the value is in the set. */
+  boolean contains(int value) {
+    int i = Arrays.binarySearch(keys, 0, numChunks, (char) (value >>> 16));
+    return i >= 0 && chunks[i].contains((char) value);
+  }
+
+  /** Get the number of values in the set. */
+  int cardinality() {
+    int total = 0;
+    for (int i = 0; i < numChunks; i++) {
+      total += chunks[i].cardinality;
+    }
+    return total;
+  }
+
+  /** Call the consumer with every value, in increasing order. */
+  void forEach(IntConsumer consumer) {
+    for (int i = 0; i < numChunks; i++) {
+      chunks[i].forEach(keys[i] << 16, consumer);
+    }
+  }
+
+  /** Get the values that are in both sets. */
+  static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+    CompressedBitmap result = new CompressedBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.numChunks && j < b.numChunks) {
+      if (a.keys[i] < b.keys[j]) {
+        i++;
+      } else if (a.keys[i] > b.keys[j]) {
+        j++;
+      } else {
+        result.append(a.keys[i], Chunk.and(a.chunks[i], b.chunks[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /** Get the values that are in either set. */
+  static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+    CompressedBitmap result = new CompressedBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < a.numChunks || j < b.numChunks) {
+      if (j == b.numChunks || (i < a.numChunks && a.keys[i] < b.keys[j])) {
+        result.append(a.keys[i], a.chunks[i].copy());
+        i++;
+      } else if (i == a.numChunks || a.keys[i] > b.keys[j]) {
+        result.append(b.keys[j], b.chunks[j].copy());
+        j++;
+      } else {
+        result.append(a.keys[i], Chunk.or(a.chunks[i], b.chunks[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /** Get the values that are in the first set, but not the second. */
+  static CompressedBitmap andNot(CompressedBitmap a, CompressedBitmap b) {
+    CompressedBitmap result = new CompressedBitmap();
+    int j = 0;
+    for (int i = 0; i < a.numChunks; i++) {
+      while (j < b.numChunks && b.keys[j] < a.keys[i]) {
+        j++;
+      }
+      boolean overlaps = j < b.numChunks && b.keys[j] == a.keys[i];
+      result.append(
+        a.keys[i],
+        overlaps ? Chunk.andNot(a.chunks[i], b.chunks[j]) : a.chunks[i].copy());
+    }
+    return result;
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Add a chunk after all the others, unless it's empty. */
+  private void append(char key, Chunk chunk) {
+    if (chunk.cardinality > 0) {
+      insertChunk(numChunks, key, chunk);
+    }
+  }
+
+  private void insertChunk(int i, char key, Chunk chunk) {
+    if (numChunks == keys.length) {
+      keys = Arrays.copyOf(keys, numChunks * 2);
+      chunks = Arrays.copyOf(chunks, numChunks * 2);
+    }
+    System.arraycopy(keys, i, keys, i + 1, numChunks - i);
+    System.arraycopy(chunks, i, chunks, i + 1, numChunks - i);
+    keys[i] = key;
+    chunks[i] = chunk;
+    numChunks++;
+  }
+
+  /**
+   * The low 16 bits of the values in one chunk: a sorted array while there are
+   * at most ARRAY_MAX of them, and a bitset after that.
+   */
+  private static final class Chunk {
+
+    private char[] values;
+    private long[] bits;
+    private int cardinality;
+
+    Chunk() {
+      this.values = new char[4];
+    }
+
+    private Chunk(char[] values, long[] bits, int cardinality) {
+      this.values = values;
+      this.bits = bits;
+      this.cardinality = cardinality;
+    }
+
+    void add(char value) {
+      if (bits != null) {
+        long mask = 1L << value;
+        if ((bits[value >>> 6] & mask) == 0) {
+          bits[value >>> 6] |= mask;
+          cardinality++;
+        }
+        return;
+      }
+      int i = cardinality > 0 && values[cardinality - 1] < value
+        ? -cardinality - 1
+        : Arrays.binarySearch(values, 0, cardinality, value);
+      if (i >= 0) {
+        return;
+      }
+      i = -i - 1;
+      if (cardinality == ARRAY_MAX) {
+        bits = toBits();
+        values = null;
+        add(value);
+        return;
+      }
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX));
+      }
+      System.arraycopy(values, i, values, i + 1, cardinality - i);
+      values[i] = value;
+      cardinality++;
+    }
+
+    boolean contains(char value) {
+      return bits != null
+        ? (bits[value >>> 6] & (1L << value)) != 0
+        : Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    void forEach(int high, IntConsumer consumer) {
+      if (bits == null) {
+        for (int i = 0; i < cardinality; i++) {
+          consumer.accept(high | values[i]);
+        }
+        return;
+      }
+      for (int w = 0; w < BITSET_WORDS; w++) {
+        long word = bits[w];
+        while (word != 0) {
+          consumer.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+
+    Chunk copy() {
+      return bits != null
+        ? new Chunk(null, bits.clone(), cardinality)
+        : new Chunk(Arrays.copyOf(values, Math.max(cardinality, 1)), null, cardinality);
+    }
+
+    /** Get this chunk's values as a new bitset. */
+    long[] toBits() {
+      if (bits != null) {
+        return bits.clone();
+      }
+      long[] result = new long[BITSET_WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        result[values[i] >>> 6] |= 1L << values[i];
+      }
+      return result;
+    }
+
+    static Chunk and(Chunk a, Chunk b) {
+      if (a.bits != null && b.bits != null) {
+        long[] result = new long[BITSET_WORDS];
+        for (int w = 0; w < BITSET_WORDS; w++) {
+          result[w] = a.bits[w] & b.bits[w];
+        }
+        return fromBits(result);
+      }
+      // Walk the smaller array, checking each value against the other chunk.
+      Chunk small = a.bits == null && (b.bits != null || a.cardinality <= b.cardinality) ? a : b;
+      Chunk other = small == a ? b : a;
+      char[] result = new char[Math.max(small.cardinality, 1)];
+      int n = 0;
+      for (int i = 0; i < small.cardinality; i++) {
+        if (other.contains(small.values[i])) {
+          result[n++] = small.values[i];
+        }
+      }
+      return new Chunk(result, null, n);
+    }
+
+    static Chunk or(Chunk a, Chunk b) {
+      if (a.bits == null && b.bits == null && a.cardinality + b.cardinality <= ARRAY_MAX) {
+        char[] result = new char[Math.max(a.cardinality + b.cardinality, 1)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.cardinality || j < b.cardinality) {
+          if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+            result[n++] = a.values[i++];
+          } else if (i == a.cardinality || a.values[i] > b.values[j]) {
+            result[n++] = b.values[j++];
+          } else {
+            result[n++] = a.values[i++];
+            j++;
+          }
+        }
+        return new Chunk(result, null, n);
+      }
+      long[] result = a.toBits();
+      if (b.bits != null) {
+        for (int w = 0; w < BITSET_WORDS; w++) {
+          result[w] |= b.bits[w];
+        }
+      } else {
+        for (int i = 0; i < b.cardinality; i++) {
+          result[b.values[i] >>> 6] |= 1L << b.values[i];
+        }
+      }
+      return fromBits(result);
+    }
+
+    static Chunk andNot(Chunk a, Chunk b) {
+      if (a.bits == null) {
+        char[] result = new char[Math.max(a.cardinality, 1)];
+        int n = 0;
+        for (int i = 0; i < a.cardinality; i++) {
+          if (!b.contains(a.values[i])) {
+            result[n++] = a.values[i];
+          }
+        }
+        return new Chunk(result, null, n);
+      }
+      long[] result = a.bits.clone();
+      if (b.bits != null) {
+        for (int w = 0; w < BITSET_WORDS; w++) {
+          result[w] &= ~b.bits[w];
+        }
+      } else {
+        for (int i = 0; i < b.cardinality; i++) {
+          result[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+        }
+      }
+      return fromBits(result);
+    }
+
+    /** Make a chunk from a bitset, going back to an array if it's small enough. */
+    static Chunk fromBits(long[] bits) {
+      int cardinality = 0;
+      for (long word : bits) {
+        cardinality += Long.bitCount(word);
+      }
+      if (cardinality > ARRAY_MAX) {
+        return new Chunk(null, bits, cardinality);
+      }
+      char[] values = new char[Math.max(cardinality, 1)];
+      int n = 0;
+      for (int w = 0; w < BITSET_WORDS; w++) {
+        long word = bits[w];
+        while (word != 0) {
+          values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new Chunk(values, null, cardinality);
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package me.soupbringer.hotsoup.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * An inverted index over archived games, for questions like "every game where
+ * someone played a run of four pairs", "games where north/south scored nothing"
+ * or "games where this player sat south".
+ *
+ * Every game added gets the next document number, and each thing we index (a
+ * kind and length of play, a leader, a player, a player in a seat, a bucket of
+ * scores) keeps a CompressedBitmap of the documents it appears in. A Query is
+ * answered with ands, ors and andNots of those bitmaps, and only then turned
+ * back into game ids, so even common terms over millions of games come back in
+ * milliseconds.
+ *
+ * Games are added one at a time, as they finish, and can be searched at any point.
+ * Adds and searches can come from any thread.
+ */
+public final class GameIndex {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  private static final int WORDS = PackedCards.NUM_WORDS;
+  private static final Play.Kind[] KINDS = Play.Kind.values();
+
+  /** The longest play there can be, which is a whole hand. */
+  private static final int MAX_LENGTH = 64;
+
+  /** How many points wide each score bucket is. */
+  private static final int BUCKET_WIDTH = 25;
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Every game, and each game's id, score and players, by document number. */
+  private final CompressedBitmap all = new CompressedBitmap();
+  private long[] gameIds = new long[1024];
+  private int[] scoresNS = new int[1024];
+  private int[] scoresEW = new int[1024];
+  private int numGames;
+
+  /** Games by the kind and length of each play in them; see playKey(). */
+  private final Map<Integer, CompressedBitmap> plays = Maps.newHashMap();
+
+  /** Games by who led. */
+  private final Map<Position, CompressedBitmap> leaders = new EnumMap<>(Position.class);
+
+  /** Games by player id, wherever they sat, and by player id and seat. */
+  private final Map<String, CompressedBitmap> players = Maps.newHashMap();
+  private final Map<String, Map<Position, CompressedBitmap>> seats = Maps.newHashMap();
+
+  /** Games by each team's score, divided by BUCKET_WIDTH. */
+  private final Map<Integer, CompressedBitmap> bucketsNS = Maps.newHashMap();
+  private final Map<Integer, CompressedBitmap> bucketsEW = Maps.newHashMap();
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Make an empty index. */
+  public GameIndex() {
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Index a finished game that nobody in particular played, like a bot game. */
+  public void add(GameRecord record) {
+    add(record, ImmutableMap.<Position, String>of());
+  }
+
+  /** Index a finished game, with the id of the player in each seat. */
+  public void add(GameRecord record, Map<Position, String> playerIds) {
+    checkNotNull(playerIds);
+    byte[] kinds = record.kinds();
+    long[] cards = record.packedCards();
+
+    lock.writeLock().lock();
+    try {
+      int doc = numGames;
+      if (doc == gameIds.length) {
+        gameIds = Arrays.copyOf(gameIds, doc * 2);
+        scoresNS = Arrays.copyOf(scoresNS, doc * 2);
+        scoresEW = Arrays.copyOf(scoresEW, doc * 2);
+      }
+      gameIds[doc] = record.getId();
+      scoresNS[doc] = record.getScoreNS();
+      scoresEW[doc] = record.getScoreEW();
+      all.add(doc);
+
+      for (int i = 0; i < kinds.length; i++) {
+        int kind = kinds[i];
+        if (kind >= 0 && kind < KINDS.length) {
+          int length = PackedCards.size(cards, i * WORDS);
+          bitmap(plays, playKey(KINDS[kind], length)).add(doc);
+        }
+      }
+      bitmap(leaders, record.getLeader()).add(doc);
+      for (Map.Entry<Position, String> entry : playerIds.entrySet()) {
+        bitmap(players, entry.getValue()).add(doc);
+        Map<Position, CompressedBitmap> bySeat = seats.get(entry.getValue());
+        if (bySeat == null) {
+          bySeat = new EnumMap<>(Position.class);
+          seats.put(entry.getValue(), bySeat);
+        }
+        bitmap(bySeat, entry.getKey()).add(doc);
+      }
+      bitmap(bucketsNS, bucket(record.getScoreNS())).add(doc);
+      bitmap(bucketsEW, bucket(record.getScoreEW())).add(doc);
+      numGames++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Get the ids of every game that matches the query, in the order they were added. */
+  public long[] search(Query query) {
+    lock.readLock().lock();
+    try {
+      CompressedBitmap matches = query.evaluate.apply(this);
+      long[] ids = new long[matches.cardinality()];
+      int[] n = new int[1];
+      matches.forEach(doc -> ids[n[0]++] = gameIds[doc]);
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Count the games that match the query. */
+  public int count(Query query) {
+    lock.readLock().lock();
+    try {
+      return query.evaluate.apply(this).cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Get the number of games in the index. */
+  public int getNumGames() {
+    lock.readLock().lock();
+    try {
+      return numGames;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Queries
+
+  /**
+   * Something to search the index for. Build them with the static methods here,
+   * and combine them with and(), or() and not().
+   */
+  public static final class Query {
+
+    /** Work out the matching documents. Called with the read lock held. */
+    private final Function<GameIndex, CompressedBitmap> evaluate;
+
+    private Query(Function<GameIndex, CompressedBitmap> evaluate) {
+      this.evaluate = evaluate;
+    }
+
+    /** Games where someone made a play of the given kind and number of cards. */
+    public static Query played(Play.Kind kind, int length) {
+      checkNotNull(kind);
+      return new Query(index -> get(index.plays, playKey(kind, length)));
+    }
+
+    /** Games where someone made a play of the given kind, of any length. */
+    public static Query played(Play.Kind kind) {
+      checkNotNull(kind);
+      return new Query(index -> {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int length = 0; length <= MAX_LENGTH; length++) {
+          CompressedBitmap games = index.plays.get(playKey(kind, length));
+          if (games != null) {
+            result = CompressedBitmap.or(result, games);
+          }
+        }
+        return result;
+      });
+    }
+
+    /** Games the given position led. */
+    public static Query leader(Position position) {
+      checkNotNull(position);
+      return new Query(index -> get(index.leaders, position));
+    }
+
+    /** Games the given player played in. */
+    public static Query player(String playerId) {
+      checkNotNull(playerId);
+      return new Query(index -> get(index.players, playerId));
+    }
+
+    /** Games the given player played in, in the given seat. */
+    public static Query seated(String playerId, Position position) {
+      checkNotNull(playerId);
+      checkNotNull(position);
+      return new Query(index -> {
+        Map<Position, CompressedBitmap> bySeat = index.seats.get(playerId);
+        return bySeat == null ? new CompressedBitmap() : get(bySeat, position);
+      });
+    }
+
+    /** Games where north/south scored between min and max points, inclusive. */
+    public static Query scoreNS(int min, int max) {
+      checkArgument(min <= max);
+      return new Query(index -> index.scores(index.bucketsNS, index.scoresNS, min, max));
+    }
+
+    /** Games where east/west scored between min and max points, inclusive. */
+    public static Query scoreEW(int min, int max) {
+      checkArgument(min <= max);
+      return new Query(index -> index.scores(index.bucketsEW, index.scoresEW, min, max));
+    }
+
+    /** Games that match every one of the queries. */
+    public static Query and(Query first, Query... rest) {
+      checkNotNull(first);
+      return new Query(index -> {
+        CompressedBitmap result = first.evaluate.apply(index);
+        for (Query query : rest) {
+          result = CompressedBitmap.and(result, query.evaluate.apply(index));
+        }
+        return result;
+      });
+    }
+
+    /** Games that match any of the queries. */
+    public static Query or(Query first, Query... rest) {
+      checkNotNull(first);
+      return new Query(index -> {
+        CompressedBitmap result = first.evaluate.apply(index);
+        for (Query query : rest) {
+          result = CompressedBitmap.or(result, query.evaluate.apply(index));
+        }
+        return result;
+      });
+    }
+
+    /** Games that don't match the query. */
+    public static Query not(Query query) {
+      checkNotNull(query);
+      return new Query(index -> CompressedBitmap.andNot(index.all, query.evaluate.apply(index)));
+    }
+
+    /** Games that match this query, but not the other one. */
+    public Query andNot(Query other) {
+      checkNotNull(other);
+      return new Query(index -> CompressedBitmap.andNot(
+        evaluate.apply(index), other.evaluate.apply(index)));
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Get the index key for plays of the given kind and length. */
+  private static int playKey(Play.Kind kind, int length) {
+    return kind.ordinal() * (MAX_LENGTH + 1) + Math.min(Math.max(length, 0), MAX_LENGTH);
+  }
+
+  private static int bucket(int score) {
+    return Math.floorDiv(score, BUCKET_WIDTH);
+  }
+
+  /** Get the bitmap for the key, making it if there isn't one. */
+  private static <K> CompressedBitmap bitmap(Map<K, CompressedBitmap> map, K key) {
+    CompressedBitmap bitmap = map.get(key);
+    if (bitmap == null) {
+      bitmap = new CompressedBitmap();
+      map.put(key, bitmap);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Get the bitmap for the key, or an empty one if there isn't one. Results can
+   * be handed out as they are, since the combinators never change their inputs,
+   * and nothing is added while the read lock is held.
+   */
+  private static <K> CompressedBitmap get(Map<K, CompressedBitmap> map, K key) {
+    CompressedBitmap bitmap = map.get(key);
+    return bitmap == null ? new CompressedBitmap() : bitmap;
+  }
+
+  /**
+   * Get the games with a score from min to max. Buckets wholly inside the range
+   * are taken as they are; the ones at the ends are checked game by game.
+   */
+  private CompressedBitmap scores(
+    Map<Integer, CompressedBitmap> buckets,
+    int[] scores,
+    int min,
+    int max)
+  {
+    CompressedBitmap result = new CompressedBitmap();
+    for (Map.Entry<Integer, CompressedBitmap> entry : buckets.entrySet()) {
+      int low = entry.getKey() * BUCKET_WIDTH;
+      int high = low + BUCKET_WIDTH - 1;
+      if (high < min || low > max) {
+        continue;
+      }
+      if (low >= min && high <= max) {
+        result = CompressedBitmap.or(result, entry.getValue());
+      } else {
+        CompressedBitmap edge = new CompressedBitmap();
+        entry.getValue().forEach(doc -> {
+          if (scores[doc] >= min && scores[doc] <= max) {
+            edge.add(doc);
+          }
+        });
+        result = CompressedBitmap.or(result, edge);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,206 @@
+package me.soupbringer.hotsoup.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+
+/**
+ * The on-disk format for a log of GameRecords, one after another.
+ *
+ * A log starts with a magic number and a version. Each record is then a marker
+ * byte, its id, its leader, the four packed hands, the number of events, each
+ * event's kind and packed cards, and the two scores. A zero marker ends the log;
+ * a log which stops without one was cut short, and reading it fails.
+ */
+public final class GameLog {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  private static final int MAGIC = 0x48534c47;
+  private static final int VERSION = 1;
+
+  private static final int RECORD = 1;
+  private static final int END = 0;
+
+  private static final int WORDS = PackedCards.NUM_WORDS;
+  private static final Position[] POSITIONS = Position.values();
+
+  /**
+   * The most events a round can have. Every play takes at least one dealt card,
+   * and at most three passes follow each play, so a count above this is corrupt.
+   */
+  private static final int MAX_EVENTS = 4 * POSITIONS.length * Hand.NEW_HAND_SIZE;
+
+  /** No instantiation. */
+  private GameLog() {
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Start writing a log to the stream. */
+  public static Writer writer(OutputStream out) {
+    return new Writer(out);
+  }
+
+  /** Start reading a log from the stream. */
+  public static Reader reader(InputStream in) {
+    return new Reader(in);
+  }
+
+  // ------------------------------------------------------------------------
+  // Writing
+
+  /**
+   * Writes records to a log. Close it to finish the log.
+   */
+  public static final class Writer implements Closeable {
+
+    private final DataOutputStream out;
+
+    private Writer(OutputStream out) {
+      this.out = new DataOutputStream(new BufferedOutputStream(out));
+      try {
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** Append a record to the log. */
+    public void write(GameRecord record) {
+      try {
+        out.writeByte(RECORD);
+        out.writeLong(record.getId());
+        out.writeByte(record.getLeader().ordinal());
+        for (long word : record.packedHands()) {
+          out.writeLong(word);
+        }
+        byte[] kinds = record.kinds();
+        long[] cards = record.packedCards();
+        out.writeInt(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+          out.writeByte(kinds[i]);
+          for (int w = 0; w < WORDS; w++) {
+            out.writeLong(cards[i * WORDS + w]);
+          }
+        }
+        out.writeInt(record.getScoreNS());
+        out.writeInt(record.getScoreEW());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** End the log, and close the stream. */
+    @Override
+    public void close() throws IOException {
+      out.writeByte(END);
+      out.close();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Reading
+
+  /**
+   * Reads records back out of a log, in order.
+   */
+  public static final class Reader implements Iterator<GameRecord>, Closeable {
+
+    private final DataInputStream in;
+
+    /** The marker for the next record, once we've read it, or -1 if we haven't. */
+    private int marker = -1;
+
+    private Reader(InputStream in) {
+      this.in = new DataInputStream(new BufferedInputStream(in));
+      try {
+        if (this.in.readInt() != MAGIC) {
+          throw new IllegalArgumentException("That isn't a game log.");
+        }
+        int version = this.in.readInt();
+        if (version != VERSION) {
+          throw new IllegalArgumentException("Can't read game log version " + version + ".");
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (marker < 0) {
+        try {
+          marker = in.read();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      if (marker < 0) {
+        throw new UncheckedIOException(
+          new EOFException("Game log was truncated: it has no end marker."));
+      }
+      if (marker != RECORD && marker != END) {
+        throw new IllegalArgumentException("Corrupt game log: marker " + marker + ".");
+      }
+      return marker == RECORD;
+    }
+
+    @Override
+    public GameRecord next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      marker = -1;
+      try {
+        long id = in.readLong();
+        int leader = in.readUnsignedByte();
+        if (leader >= POSITIONS.length) {
+          throw new IllegalArgumentException("Corrupt game log: no position " + leader + ".");
+        }
+        long[] hands = new long[POSITIONS.length * WORDS];
+        for (int i = 0; i < hands.length; i++) {
+          hands[i] = in.readLong();
+        }
+        int numEvents = in.readInt();
+        if (numEvents < 0 || numEvents > MAX_EVENTS) {
+          throw new IllegalArgumentException("Corrupt game log: " + numEvents + " events.");
+        }
+        byte[] kinds = new byte[numEvents];
+        long[] cards = new long[numEvents * WORDS];
+        for (int i = 0; i < numEvents; i++) {
+          kinds[i] = in.readByte();
+          for (int w = 0; w < WORDS; w++) {
+            cards[i * WORDS + w] = in.readLong();
+          }
+        }
+        int scoreNS = in.readInt();
+        int scoreEW = in.readInt();
+        return new GameRecord(id, POSITIONS[leader], hands, kinds, cards, scoreNS, scoreEW);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
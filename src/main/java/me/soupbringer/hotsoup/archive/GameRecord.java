@@ -0,0 +1,215 @@
+package me.soupbringer.hotsoup.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMultiset;
+
+import java.util.Arrays;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Everything needed to replay one round: the deal, who led, every play and pass
+ * in order, and the score it finished with.
+ *
+ * Hands and plays are kept packed (see PackedCards), alongside the Kind of each
+ * play, so a record is a handful of arrays. Nothing is checked on the way in; a
+ * record holds whatever was logged, and the ReplayVerifier decides if it adds up.
+ */
+public final class GameRecord {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  private static final int WORDS = PackedCards.NUM_WORDS;
+  private static final Play.Kind[] KINDS = Play.Kind.values();
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final long id;
+  private final Position leader;
+
+  /** Each position's starting hand, packed, in Position order. */
+  private final long[] hands;
+
+  /** Each event's Kind ordinal, and its cards, packed. */
+  private final byte[] kinds;
+  private final long[] cards;
+
+  private final int scoreNS;
+  private final int scoreEW;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Constructor. The arrays aren't copied. */
+  GameRecord(
+    long id,
+    Position leader,
+    long[] hands,
+    byte[] kinds,
+    long[] cards,
+    int scoreNS,
+    int scoreEW)
+  {
+    checkArgument(hands.length == Position.values().length * WORDS);
+    checkArgument(cards.length == kinds.length * WORDS);
+    this.id = id;
+    this.leader = checkNotNull(leader);
+    this.hands = hands;
+    this.kinds = kinds;
+    this.cards = cards;
+    this.scoreNS = scoreNS;
+    this.scoreEW = scoreEW;
+  }
+
+  /**
+   * Get a Builder for a record of the round, which has to be freshly dealt.
+   * Add each play to it as it's made.
+   */
+  public static Builder builder(long id, Round round) {
+    return new Builder(id, round);
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Get this record's id. */
+  public long getId() {
+    return id;
+  }
+
+  /** Get who led the first trick. */
+  public Position getLeader() {
+    return leader;
+  }
+
+  /** Get the hand the given position was dealt. */
+  public ImmutableMultiset<Card> getHand(Position position) {
+    return PackedCards.unpack(hands, position.ordinal() * WORDS);
+  }
+
+  /** Get the number of plays and passes. */
+  public int getNumEvents() {
+    return kinds.length;
+  }
+
+  /**
+   * Get the i'th play, or null if what was logged isn't a valid play of the
+   * kind it says it is.
+   */
+  public Play getPlay(int i) {
+    int kind = kinds[i];
+    if (kind < 0 || kind >= KINDS.length) {
+      return null;
+    }
+    ImmutableMultiset<Card> played = PackedCards.unpack(cards, i * WORDS);
+    return Play.one(KINDS[kind], played);
+  }
+
+  /** Get the north/south team's final score for the round. */
+  public int getScoreNS() {
+    return scoreNS;
+  }
+
+  /** Get the east/west team's final score for the round. */
+  public int getScoreEW() {
+    return scoreEW;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof GameRecord)) {
+      return false;
+    }
+    GameRecord other = (GameRecord) o;
+    return id == other.id
+      && leader == other.leader
+      && scoreNS == other.scoreNS
+      && scoreEW == other.scoreEW
+      && Arrays.equals(hands, other.hands)
+      && Arrays.equals(kinds, other.kinds)
+      && Arrays.equals(cards, other.cards);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(id) * 31 + Arrays.hashCode(cards);
+  }
+
+  // ------------------------------------------------------------------------
+  // Package-private access, for GameLog
+
+  long[] packedHands() {
+    return hands;
+  }
+
+  byte[] kinds() {
+    return kinds;
+  }
+
+  long[] packedCards() {
+    return cards;
+  }
+
+  // ------------------------------------------------------------------------
+  // Builder
+
+  /**
+   * A Builder for a GameRecord.
+   */
+  public static final class Builder {
+
+    private final long id;
+    private final Position leader;
+    private final long[] hands;
+    private byte[] kinds;
+    private long[] cards;
+    private int numEvents;
+
+    /** Instantiate via the static builder() method. */
+    private Builder(long id, Round round) {
+      checkArgument(round.getNumTurns() == 0, "The round has already started.");
+      this.id = id;
+      this.leader = round.getTurn();
+      this.hands = new long[Position.values().length * WORDS];
+      for (Position position : Position.values()) {
+        long[] packed = PackedCards.pack(round.getHand(position).getCards());
+        System.arraycopy(packed, 0, hands, position.ordinal() * WORDS, WORDS);
+      }
+      this.kinds = new byte[64];
+      this.cards = new long[64 * WORDS];
+    }
+
+    /** Record the next play or pass. */
+    public Builder add(Play play) {
+      if (numEvents == kinds.length) {
+        kinds = Arrays.copyOf(kinds, numEvents * 2);
+        cards = Arrays.copyOf(cards, numEvents * 2 * WORDS);
+      }
+      kinds[numEvents] = (byte) play.getKind().ordinal();
+      long[] packed = PackedCards.pack(play.getCards());
+      System.arraycopy(packed, 0, cards, numEvents * WORDS, WORDS);
+      numEvents++;
+      return this;
+    }
+
+    /** Build the record, with the score the round finished with. */
+    public GameRecord build(int scoreNS, int scoreEW) {
+      return new GameRecord(
+        id,
+        leader,
+        hands,
+        Arrays.copyOf(kinds, numEvents),
+        Arrays.copyOf(cards, numEvents * WORDS),
+        scoreNS,
+        scoreEW);
+    }
+  }
+}
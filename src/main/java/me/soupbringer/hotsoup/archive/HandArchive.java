@@ -0,0 +1,586 @@
+package me.soupbringer.hotsoup.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * A columnar, compressed archive of completed hands, for analytics.
+ *
+ * Hands are stored in blocks of up to BLOCK_SIZE. Within a block, each Column is
+ * stored on its own and deflated: per hand, the deal's seed (the record's id),
+ * the leader, the final scores and the number of plays; per play, its kind,
+ * length, lowest rank, points, seat, and whether it ended a trick. A footer at
+ * the end of the file says where every block's columns are.
+ *
+ * Scans name the columns they need, and only those are read: each one is
+ * memory-mapped straight from the file, inflated, and walked with a Cursor. A
+ * scan over a few columns of millions of hands touches a small fraction of the
+ * file, and never builds a Round or a Play.
+ */
+public final class HandArchive implements Closeable {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  private static final int MAGIC = 0x48534841;
+  private static final int VERSION = 1;
+
+  /** The most hands in one block. */
+  static final int BLOCK_SIZE = 4096;
+
+  /** The lowest rank we store for a pass. */
+  private static final byte NO_RANK = -1;
+
+  private static final Position[] POSITIONS = Position.values();
+  private static final Play.Kind[] KINDS = Play.Kind.values();
+  private static final Rank[] RANKS = Rank.values();
+
+  /**
+   * The columns in the archive. Hand columns have one value per hand, and play
+   * columns have one per play.
+   */
+  public enum Column {
+    SEED(false),
+    LEADER(false),
+    SCORE_NS(false),
+    SCORE_EW(false),
+    NUM_PLAYS(false),
+    KIND(true),
+    LENGTH(true),
+    LOWEST_RANK(true),
+    POINTS(true),
+    SEAT(true),
+    TRICK_END(true);
+
+    private final boolean perPlay;
+
+    private Column(boolean perPlay) {
+      this.perPlay = perPlay;
+    }
+
+    /** Returns true if this column has a value per play, and false if per hand. */
+    public boolean isPerPlay() {
+      return perPlay;
+    }
+  }
+
+  private static final Column[] COLUMNS = Column.values();
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final FileChannel channel;
+  private final List<BlockInfo> blocks;
+  private final long numHands;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through open(). */
+  private HandArchive(FileChannel channel, List<BlockInfo> blocks) {
+    this.channel = channel;
+    this.blocks = blocks;
+    long total = 0;
+    for (BlockInfo block : blocks) {
+      total += block.numHands;
+    }
+    this.numHands = total;
+  }
+
+  /** Open an archive for scanning. */
+  public static HandArchive open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      checkArgument(size >= 20, "That's too small to be a hand archive.");
+      ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - 12, 12);
+      long footerOffset = tail.getLong();
+      checkArgument(tail.getInt() == MAGIC, "That isn't a hand archive.");
+      ByteBuffer footer = channel.map(
+        FileChannel.MapMode.READ_ONLY, footerOffset, size - 12 - footerOffset);
+      checkArgument(footer.getInt() == VERSION, "Can't read that hand archive version.");
+      int numBlocks = footer.getInt();
+      List<BlockInfo> blocks = Lists.newArrayListWithCapacity(numBlocks);
+      for (int i = 0; i < numBlocks; i++) {
+        blocks.add(BlockInfo.readFrom(footer));
+      }
+      return new HandArchive(channel, ImmutableList.copyOf(blocks));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Start writing a new archive, replacing anything already at the path. */
+  public static Writer writer(Path path) throws IOException {
+    return new Writer(path, BLOCK_SIZE);
+  }
+
+  /** Start writing a new archive with smaller blocks, for tests. */
+  static Writer writer(Path path, int blockSize) throws IOException {
+    checkArgument(blockSize > 0);
+    return new Writer(path, blockSize);
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Get the number of hands in the archive. */
+  public long getNumHands() {
+    return numHands;
+  }
+
+  /**
+   * Visit every hand in the archive, in the order they were written, reading
+   * only the given columns. The Cursor is reused from hand to hand, so it
+   * shouldn't be held on to.
+   */
+  public void scan(Set<Column> columns, Consumer<? super Cursor> visitor) throws IOException {
+    EnumSet<Column> needed = EnumSet.copyOf(columns);
+    for (Column column : columns) {
+      if (column.isPerPlay()) {
+        needed.add(Column.NUM_PLAYS);
+      }
+    }
+    Cursor cursor = new Cursor();
+    Inflater inflater = new Inflater();
+    try {
+      for (BlockInfo block : blocks) {
+        cursor.reset();
+        for (Column column : needed) {
+          cursor.columns.put(column, read(block, column, inflater, cursor.columns.get(column)));
+        }
+        cursor.load(needed);
+        for (int i = 0; i < block.numHands; i++) {
+          cursor.advance(i);
+          visitor.accept(cursor);
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // ------------------------------------------------------------------------
+  // Cursor
+
+  /**
+   * The hand a scan is on. Only the columns the scan asked for can be read;
+   * the rest throw an IllegalStateException.
+   */
+  public static final class Cursor {
+
+    /** The raw, inflated columns of the current block, reused between blocks. */
+    private final Map<Column, byte[]> columns = new EnumMap<>(Column.class);
+
+    private ByteBuffer seeds;
+    private ByteBuffer scoresNS;
+    private ByteBuffer scoresEW;
+    private ByteBuffer numPlays;
+    private byte[] leaders;
+    private byte[] kinds;
+    private byte[] lengths;
+    private byte[] lowestRanks;
+    private byte[] points;
+    private byte[] seats;
+    private byte[] trickEnds;
+
+    /** Which hand in the block we're on, and where its plays start. */
+    private int hand;
+    private int firstPlay;
+    private int numPlaysHere;
+
+    private Cursor() {
+    }
+
+    /** Get the seed of the deal (the id of the record it came from). */
+    public long getSeed() {
+      checkState(seeds != null, "SEED wasn't scanned.");
+      return seeds.getLong(hand * 8);
+    }
+
+    /** Get who led the first trick. */
+    public Position getLeader() {
+      checkState(leaders != null, "LEADER wasn't scanned.");
+      return POSITIONS[leaders[hand]];
+    }
+
+    /** Get the north/south team's final score. */
+    public int getScoreNS() {
+      checkState(scoresNS != null, "SCORE_NS wasn't scanned.");
+      return scoresNS.getInt(hand * 4);
+    }
+
+    /** Get the east/west team's final score. */
+    public int getScoreEW() {
+      checkState(scoresEW != null, "SCORE_EW wasn't scanned.");
+      return scoresEW.getInt(hand * 4);
+    }
+
+    /** Get the number of plays and passes in the hand. */
+    public int getNumPlays() {
+      checkState(numPlays != null, "NUM_PLAYS wasn't scanned.");
+      return numPlaysHere;
+    }
+
+    /** Get the kind of the i'th play. */
+    public Play.Kind getKind(int i) {
+      return KINDS[play(kinds, Column.KIND, i)];
+    }
+
+    /** Get the number of cards in the i'th play. */
+    public int getLength(int i) {
+      return play(lengths, Column.LENGTH, i);
+    }
+
+    /** Get the lowest rank in the i'th play, or null if it was a pass. */
+    public Rank getLowestRank(int i) {
+      byte rank = play(lowestRanks, Column.LOWEST_RANK, i);
+      return rank == NO_RANK ? null : RANKS[rank];
+    }
+
+    /** Get the number of points in the i'th play. */
+    public int getPoints(int i) {
+      return play(points, Column.POINTS, i) & 0xff;
+    }
+
+    /** Get who made the i'th play. */
+    public Position getSeat(int i) {
+      return POSITIONS[play(seats, Column.SEAT, i)];
+    }
+
+    /** Returns true if the i'th play ended a trick. */
+    public boolean endsTrick(int i) {
+      return play(trickEnds, Column.TRICK_END, i) != 0;
+    }
+
+    /** Get the i'th play's value from a play column. */
+    private byte play(byte[] column, Column name, int i) {
+      checkState(column != null, "%s wasn't scanned.", name);
+      if (i < 0 || i >= numPlaysHere) {
+        throw new IndexOutOfBoundsException("This hand has " + numPlaysHere + " plays.");
+      }
+      return column[firstPlay + i];
+    }
+
+    /** Forget the last block's columns. */
+    private void reset() {
+      seeds = scoresNS = scoresEW = numPlays = null;
+      leaders = kinds = lengths = lowestRanks = points = seats = trickEnds = null;
+    }
+
+    /** Point at the freshly read columns. */
+    private void load(Set<Column> loaded) {
+      for (Column column : loaded) {
+        byte[] raw = columns.get(column);
+        switch (column) {
+          case SEED: seeds = ByteBuffer.wrap(raw); break;
+          case LEADER: leaders = raw; break;
+          case SCORE_NS: scoresNS = ByteBuffer.wrap(raw); break;
+          case SCORE_EW: scoresEW = ByteBuffer.wrap(raw); break;
+          case NUM_PLAYS: numPlays = ByteBuffer.wrap(raw); break;
+          case KIND: kinds = raw; break;
+          case LENGTH: lengths = raw; break;
+          case LOWEST_RANK: lowestRanks = raw; break;
+          case POINTS: points = raw; break;
+          case SEAT: seats = raw; break;
+          case TRICK_END: trickEnds = raw; break;
+          default: throw new AssertionError(column);
+        }
+      }
+      hand = 0;
+      firstPlay = 0;
+      numPlaysHere = 0;
+    }
+
+    /** Move on to the given hand in the block. */
+    private void advance(int next) {
+      if (numPlays != null) {
+        firstPlay = next == 0 ? 0 : firstPlay + numPlaysHere;
+        numPlaysHere = numPlays.getInt(next * 4);
+      }
+      hand = next;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Writer
+
+  /**
+   * Writes hands to a new archive. Close it to finish the file; an archive that
+   * was never closed can't be opened.
+   */
+  public static final class Writer implements Closeable {
+
+    private final FileChannel channel;
+    private final Deflater deflater;
+    private final List<BlockInfo> blocks;
+
+    /** The current block's columns, before they're compressed. */
+    private final Map<Column, ByteArrayOutputStream> columns;
+    private final int blockSize;
+    private int numHands;
+    private int numPlays;
+
+    private Writer(Path path, int blockSize) throws IOException {
+      this.channel = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+      this.deflater = new Deflater();
+      this.blocks = Lists.newArrayList();
+      this.columns = new EnumMap<>(Column.class);
+      this.blockSize = blockSize;
+      for (Column column : COLUMNS) {
+        columns.put(column, new ByteArrayOutputStream());
+      }
+      ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+      header.flip();
+      writeFully(header);
+    }
+
+    /**
+     * Add a finished hand. It's replayed to work out who made each play and where
+     * the tricks ended, so it has to be a valid record; check it with the
+     * ReplayVerifier first if there's any doubt.
+     *
+     * Throws an IllegalArgumentException if the record doesn't replay to the end,
+     * with the logged score. The whole record is checked before any of it is
+     * added, so a bad one leaves the archive as it was.
+     */
+    public void add(GameRecord record) throws IOException {
+      Map<Position, Hand> hands = new EnumMap<>(Position.class);
+      for (Position position : POSITIONS) {
+        try {
+          hands.put(position, Hand.builder().addAll(record.getHand(position)).build());
+        } catch (RuntimeException e) {
+          throw new IllegalArgumentException("Game " + record.getId() + " has a bad deal.", e);
+        }
+      }
+      Round round = Round.of(hands, record.getLeader());
+      int numEvents = record.getNumEvents();
+      Play[] plays = new Play[numEvents];
+      byte[] seats = new byte[numEvents];
+      byte[] trickEnds = new byte[numEvents];
+      for (int i = 0; i < numEvents; i++) {
+        Play play = record.getPlay(i);
+        checkArgument(play != null && !round.isOver(), "Game %s doesn't replay.", record.getId());
+        Position seat = round.getTurn();
+        checkArgument(round.tryPlay(play).isLegal(), "Game %s doesn't replay.", record.getId());
+        plays[i] = play;
+        seats[i] = (byte) seat.ordinal();
+        trickEnds[i] = (byte) (round.isLead() || round.isOver() ? 1 : 0);
+      }
+      checkArgument(round.isOver(), "Game %s isn't finished.", record.getId());
+      checkArgument(
+        round.scoreNS() == record.getScoreNS() && round.scoreEW() == record.getScoreEW(),
+        "Game %s doesn't end with its logged score.", record.getId());
+
+      for (int i = 0; i < numEvents; i++) {
+        Play play = plays[i];
+        columns.get(Column.KIND).write(play.getKind().ordinal());
+        columns.get(Column.LENGTH).write(play.numCards());
+        columns.get(Column.LOWEST_RANK)
+          .write(play.isPass() ? NO_RANK : play.lowestRank().ordinal());
+        columns.get(Column.POINTS).write(play.countNumPoints());
+        columns.get(Column.SEAT).write(seats[i]);
+        columns.get(Column.TRICK_END).write(trickEnds[i]);
+      }
+
+      writeLong(columns.get(Column.SEED), record.getId());
+      columns.get(Column.LEADER).write(record.getLeader().ordinal());
+      writeInt(columns.get(Column.SCORE_NS), record.getScoreNS());
+      writeInt(columns.get(Column.SCORE_EW), record.getScoreEW());
+      writeInt(columns.get(Column.NUM_PLAYS), numEvents);
+      numHands++;
+      numPlays += numEvents;
+      if (numHands == blockSize) {
+        flushBlock();
+      }
+    }
+
+    /** Finish the archive: write the last block and the footer, and close the file. */
+    @Override
+    public void close() throws IOException {
+      try {
+        if (numHands > 0) {
+          flushBlock();
+        }
+        long footerOffset = channel.position();
+        ByteBuffer footer = ByteBuffer.allocate(8 + blocks.size() * BlockInfo.SIZE + 12);
+        footer.putInt(VERSION);
+        footer.putInt(blocks.size());
+        for (BlockInfo block : blocks) {
+          block.writeTo(footer);
+        }
+        footer.putLong(footerOffset);
+        footer.putInt(MAGIC);
+        footer.flip();
+        writeFully(footer);
+      } finally {
+        deflater.end();
+        channel.close();
+      }
+    }
+
+    /** Compress and write out every column of the current block. */
+    private void flushBlock() throws IOException {
+      long[] offsets = new long[COLUMNS.length];
+      int[] lengths = new int[COLUMNS.length];
+      int[] rawLengths = new int[COLUMNS.length];
+      byte[] chunk = new byte[64 * 1024];
+      for (Column column : COLUMNS) {
+        byte[] raw = columns.get(column).toByteArray();
+        columns.get(column).reset();
+        offsets[column.ordinal()] = channel.position();
+        rawLengths[column.ordinal()] = raw.length;
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished()) {
+          int n = deflater.deflate(chunk);
+          writeFully(ByteBuffer.wrap(chunk, 0, n));
+          lengths[column.ordinal()] += n;
+        }
+      }
+      blocks.add(new BlockInfo(numHands, numPlays, offsets, lengths, rawLengths));
+      numHands = 0;
+      numPlays = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+      writeInt(out, (int) (value >>> 32));
+      writeInt(out, (int) value);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * Where one block's columns are in the file.
+   */
+  private static final class BlockInfo {
+
+    /** Bytes per block in the footer. */
+    static final int SIZE = 8 + COLUMNS.length * 16;
+
+    private final int numHands;
+    private final int numPlays;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+
+    BlockInfo(int numHands, int numPlays, long[] offsets, int[] lengths, int[] rawLengths) {
+      this.numHands = numHands;
+      this.numPlays = numPlays;
+      this.offsets = offsets;
+      this.lengths = lengths;
+      this.rawLengths = rawLengths;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+      buffer.putInt(numHands);
+      buffer.putInt(numPlays);
+      for (int i = 0; i < COLUMNS.length; i++) {
+        buffer.putLong(offsets[i]);
+        buffer.putInt(lengths[i]);
+        buffer.putInt(rawLengths[i]);
+      }
+    }
+
+    static BlockInfo readFrom(ByteBuffer buffer) {
+      int numHands = buffer.getInt();
+      int numPlays = buffer.getInt();
+      long[] offsets = new long[COLUMNS.length];
+      int[] lengths = new int[COLUMNS.length];
+      int[] rawLengths = new int[COLUMNS.length];
+      for (int i = 0; i < COLUMNS.length; i++) {
+        offsets[i] = buffer.getLong();
+        lengths[i] = buffer.getInt();
+        rawLengths[i] = buffer.getInt();
+      }
+      return new BlockInfo(numHands, numPlays, offsets, lengths, rawLengths);
+    }
+  }
+
+  /**
+   * Map one column of one block and inflate it, reusing the given array if it's
+   * big enough.
+   */
+  private byte[] read(BlockInfo block, Column column, Inflater inflater, byte[] reuse)
+    throws IOException
+  {
+    int i = column.ordinal();
+    MappedByteBuffer mapped = channel.map(
+      FileChannel.MapMode.READ_ONLY, block.offsets[i], block.lengths[i]);
+    byte[] compressed = new byte[block.lengths[i]];
+    mapped.get(compressed);
+    byte[] raw = reuse != null && reuse.length == block.rawLengths[i]
+      ? reuse
+      : new byte[block.rawLengths[i]];
+    inflater.reset();
+    inflater.setInput(compressed);
+    try {
+      int n = 0;
+      while (n < raw.length && !inflater.finished()) {
+        int inflated = inflater.inflate(raw, n, raw.length - n);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          // It's run out of input, so no amount of waiting will finish it.
+          throw new IOException("Column " + column + " is truncated.");
+        }
+        n += inflated;
+      }
+      checkState(n == raw.length, "Column %s is shorter than it should be.", column);
+    } catch (DataFormatException e) {
+      throw new IOException("Column " + column + " is corrupt.", e);
+    }
+    return raw;
+  }
+}
@@ -0,0 +1,385 @@
+package me.soupbringer.hotsoup.archive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.PlayResult;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Replays archived games to check that they really happened the way they say.
+ *
+ * Each game is dealt again from its record. Every hand has to be a proper new
+ * hand, and between them they can't hold more copies of any card than the deck
+ * has (the cards left over after the deal aren't logged). Every event is checked
+ * before it's made: the play has to be a real play of the kind logged, its cards
+ * have to be in the player's Hand, and it has to follow the trick (or be a legal
+ * lead). At the end, the round has to be over, with the logged score. The first
+ * thing that doesn't check out is reported, with why.
+ *
+ * Records are read on the calling thread in batches, and each batch is verified
+ * on a fork-join pool, split in half until the pieces are small. Only a few
+ * batches are in flight at a time, so logs of any size can be streamed through.
+ * Each game's Verdict goes to a listener as soon as it's ready.
+ */
+public final class ReplayVerifier {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** Pieces of a batch this small are verified in one go, rather than split. */
+  private static final int LEAF_SIZE = 8;
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final int numThreads;
+  private final int batchSize;
+  private final Consumer<? super Verdict> listener;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through the Builder. */
+  private ReplayVerifier(Builder builder) {
+    this.numThreads = builder.numThreads;
+    this.batchSize = builder.batchSize;
+    this.listener = builder.listener;
+  }
+
+  /** Get a new Builder. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /**
+   * Verify every record, and report how it went. This blocks until it's done.
+   * If the listener throws, verification stops and the exception is rethrown here.
+   */
+  public Report verify(Iterator<GameRecord> records) throws InterruptedException {
+    long start = System.nanoTime();
+    LongAdder numGames = new LongAdder();
+    LongAdder numFailed = new LongAdder();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    int maxInFlight = numThreads * 2;
+    Semaphore inFlight = new Semaphore(maxInFlight);
+
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+    try {
+      while (records.hasNext() && failure.get() == null) {
+        GameRecord[] batch = new GameRecord[batchSize];
+        int size = 0;
+        while (size < batchSize && records.hasNext()) {
+          batch[size++] = records.next();
+        }
+        inFlight.acquire();
+        VerifyTask task = new VerifyTask(batch, 0, size, numGames, numFailed);
+        pool.execute(() -> {
+          try {
+            task.invoke();
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+      inFlight.acquire(maxInFlight);
+    } finally {
+      pool.shutdown();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return new Report(numGames.intValue(), numFailed.intValue(), System.nanoTime() - start);
+  }
+
+  /**
+   * Verify a single game.
+   */
+  public static Verdict verify(GameRecord record) {
+    Map<Position, Hand> hands = new EnumMap<>(Position.class);
+    int[] dealt = new int[PackedCards.NUM_KINDS];
+    long[] packedHands = record.packedHands();
+    for (Position position : Position.values()) {
+      try {
+        hands.put(position, Hand.builder().addAll(record.getHand(position)).build());
+      } catch (RuntimeException e) {
+        return new Verdict(record.getId(), Divergence.BAD_DEAL, -1, position, null);
+      }
+      int offset = position.ordinal() * PackedCards.NUM_WORDS;
+      for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+        dealt[kind] += PackedCards.count(packedHands, offset, kind);
+        if (dealt[kind] > PackedCards.MAX_COPIES) {
+          return new Verdict(record.getId(), Divergence.BAD_DEAL, -1, position, null);
+        }
+      }
+    }
+
+    Round round = Round.of(hands, record.getLeader());
+    int numEvents = record.getNumEvents();
+    for (int i = 0; i < numEvents; i++) {
+      if (round.isOver()) {
+        return new Verdict(record.getId(), Divergence.PLAY_AFTER_END, i, null, null);
+      }
+      Position turn = round.getTurn();
+      Play play = record.getPlay(i);
+      if (play == null) {
+        return new Verdict(record.getId(), Divergence.MALFORMED_PLAY, i, turn, null);
+      }
+      PlayResult result = play.isPass() ? round.check(play) : round.tryPlay(play);
+      if (!result.isLegal()) {
+        return new Verdict(record.getId(), Divergence.ILLEGAL_PLAY, i, turn, result);
+      }
+      if (play.isPass()) {
+        round.pass();
+      }
+    }
+
+    if (!round.isOver()) {
+      return new Verdict(record.getId(), Divergence.UNFINISHED, numEvents, round.getTurn(), null);
+    }
+    if (round.scoreNS() != record.getScoreNS() || round.scoreEW() != record.getScoreEW()) {
+      return new Verdict(record.getId(), Divergence.WRONG_SCORE, numEvents, null, null);
+    }
+    return new Verdict(record.getId(), null, -1, null, null);
+  }
+
+  // ------------------------------------------------------------------------
+  // Results
+
+  /**
+   * The ways a game can fail to check out.
+   */
+  public enum Divergence {
+    /**
+     * A dealt hand wasn't a proper new hand, or it held a card the deck had run
+     * out of. The position is the hand where it went wrong.
+     */
+    BAD_DEAL,
+    /** The logged cards don't make a play of the logged kind. */
+    MALFORMED_PLAY,
+    /** The play couldn't be made; the PlayResult says why. */
+    ILLEGAL_PLAY,
+    /** There were more events after the round ended. */
+    PLAY_AFTER_END,
+    /** The events ran out before the round ended. */
+    UNFINISHED,
+    /** The round ended with a different score than the one logged. */
+    WRONG_SCORE
+  }
+
+  /**
+   * Whether one game checked out, and if not, where it first went wrong.
+   */
+  public static final class Verdict {
+
+    private final long gameId;
+    private final Divergence divergence;
+    private final int eventIndex;
+    private final Position position;
+    private final PlayResult result;
+
+    private Verdict(
+      long gameId,
+      Divergence divergence,
+      int eventIndex,
+      Position position,
+      PlayResult result)
+    {
+      this.gameId = gameId;
+      this.divergence = divergence;
+      this.eventIndex = eventIndex;
+      this.position = position;
+      this.result = result;
+    }
+
+    /** Get the id of the game. */
+    public long getGameId() {
+      return gameId;
+    }
+
+    /** Returns true if the game checked out. */
+    public boolean isValid() {
+      return divergence == null;
+    }
+
+    /** Get how the game went wrong, or null if it didn't. */
+    public Divergence getDivergence() {
+      return divergence;
+    }
+
+    /**
+     * Get the index of the first event that didn't check out. This is the number
+     * of events for problems at the end, and -1 for problems with the deal, or if
+     * nothing went wrong.
+     */
+    public int getEventIndex() {
+      return eventIndex;
+    }
+
+    /** Get whose turn (or hand) it was when things went wrong, if that's known. */
+    public Position getPosition() {
+      return position;
+    }
+
+    /** Get why an illegal play was illegal, or null for other problems. */
+    public PlayResult getResult() {
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      if (isValid()) {
+        return "game " + gameId + ": ok";
+      }
+      return "game " + gameId + ": " + divergence + " at event " + eventIndex
+        + (position == null ? "" : " (" + position + ")")
+        + (result == null ? "" : " " + result);
+    }
+  }
+
+  /**
+   * How a whole run went.
+   */
+  public static final class Report {
+
+    private final int numGames;
+    private final int numFailed;
+    private final long elapsedNanos;
+
+    private Report(int numGames, int numFailed, long elapsedNanos) {
+      this.numGames = numGames;
+      this.numFailed = numFailed;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Get the number of games verified. */
+    public int getNumGames() {
+      return numGames;
+    }
+
+    /** Get the number of games which didn't check out. */
+    public int getNumFailed() {
+      return numFailed;
+    }
+
+    /** Get the number of games verified per second. */
+    public double getGamesPerSecond() {
+      return numGames / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "%d games verified, %d failed (%.0f games/sec)",
+        numGames, numFailed, getGamesPerSecond());
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * Verifies part of a batch, splitting it in half while it's big.
+   */
+  private final class VerifyTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final GameRecord[] batch;
+    private final int from;
+    private final int to;
+    private final LongAdder numGames;
+    private final LongAdder numFailed;
+
+    VerifyTask(GameRecord[] batch, int from, int to, LongAdder numGames, LongAdder numFailed) {
+      this.batch = batch;
+      this.from = from;
+      this.to = to;
+      this.numGames = numGames;
+      this.numFailed = numFailed;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= LEAF_SIZE) {
+        for (int i = from; i < to; i++) {
+          Verdict verdict = verify(batch[i]);
+          numGames.increment();
+          if (!verdict.isValid()) {
+            numFailed.increment();
+          }
+          listener.accept(verdict);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(
+        new VerifyTask(batch, from, middle, numGames, numFailed),
+        new VerifyTask(batch, middle, to, numGames, numFailed));
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Builder
+
+  /**
+   * A Builder for a ReplayVerifier.
+   */
+  public static final class Builder {
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 256;
+    private Consumer<? super Verdict> listener = verdict -> { };
+
+    /** Instantiate via the static builder() method. */
+    private Builder() {
+    }
+
+    /** Set the number of threads to verify on. Defaults to one per core. */
+    public Builder threads(int numThreads) {
+      checkArgument(numThreads > 0);
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /** Set how many records are read before they're handed off. Defaults to 256. */
+    public Builder batchSize(int batchSize) {
+      checkArgument(batchSize > 0);
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Set a listener to be told about every game as soon as it's verified. This
+     * gets called from the worker threads, so it has to be thread-safe.
+     */
+    public Builder listener(Consumer<? super Verdict> listener) {
+      this.listener = checkNotNull(listener);
+      return this;
+    }
+
+    /** Build the ReplayVerifier. */
+    public ReplayVerifier build() {
+      return new ReplayVerifier(this);
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * What one player (the observer) believes about everyone else's cards.
+ *
+ * We keep, for each of the 54 kinds of card, how many copies the observer hasn't
+ * seen yet, and for each opponent, how many cards they hold and which kinds they're
+ * believed to lack. Every observed Play or pass updates these in place, touching only
+ * the cards involved, so the beliefs are always current and never need to be rebuilt
+ * from the trick history.
+ *
+ * "Opponent" here means every other seat, partner included. Hidden cards which
+ * nobody holds (the ones left undealt) are accounted for separately.
+ *
+ * This isn't thread-safe. Each observer should own their own CardTracker.
+ */
+public final class CardTracker {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** The number of seats at the table. */
+  private static final int NUM_POSITIONS = Position.values().length;
+
+  /** For each rank, a bitmask of every kind ranked strictly above it. */
+  private static final long[] KINDS_ABOVE = kindsAboveEachRank();
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  /** Who's doing the observing. */
+  private final Position observer;
+
+  /** Whether a pass over a single means that player has nothing higher. */
+  private final boolean inferVoidsFromPasses;
+
+  /** How many copies of each kind the observer hasn't seen yet. */
+  private final int[] hidden;
+
+  /** The total of the hidden array. */
+  private int numHidden;
+
+  /** How many cards each position is holding, indexed by ordinal. */
+  private final int[] handSizes;
+
+  /** The total hand size of every position but the observer. */
+  private int numHeld;
+
+  /** For each position, a bitmask of the kinds they're believed to lack. */
+  private final long[] voids;
+
+  /** The last non-pass play in the current trick, or null if it's someone's lead. */
+  private Play top;
+
+  /** Number of passes since the top play. */
+  private int numConsecutivePasses;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /**
+   * Create a tracker for the observer, as of the start of a trick.
+   *
+   * @param observer Whose point of view this is.
+   * @param ownCards The cards the observer is holding.
+   * @param handSizes How many cards each position holds, as from
+   *                  HotSoup.getRemainingCardsMap().
+   * @param seen Cards which have already been played, and are now face up.
+   * @param inferVoidsFromPasses If true, assume a player who passes on a single
+   *                             holds nothing higher than it.
+   */
+  public CardTracker(
+    Position observer,
+    Iterable<? extends Card> ownCards,
+    Map<Position, Integer> handSizes,
+    Iterable<? extends Card> seen,
+    boolean inferVoidsFromPasses)
+  {
+    this.observer = checkNotNull(observer);
+    this.inferVoidsFromPasses = inferVoidsFromPasses;
+    this.hidden = new int[PackedCards.NUM_KINDS];
+    this.handSizes = new int[NUM_POSITIONS];
+    this.voids = new long[NUM_POSITIONS];
+
+    Arrays.fill(hidden, PackedCards.MAX_COPIES);
+    this.numHidden = PackedCards.NUM_KINDS * PackedCards.MAX_COPIES;
+    for (Card card : ownCards) {
+      see(card);
+    }
+    for (Card card : seen) {
+      see(card);
+    }
+    for (Map.Entry<Position, Integer> entry : handSizes.entrySet()) {
+      this.handSizes[entry.getKey().ordinal()] = entry.getValue();
+      if (entry.getKey() != observer) {
+        numHeld += entry.getValue();
+      }
+    }
+    checkArgument(numHeld <= numHidden, "Opponents hold more cards than are hidden.");
+  }
+
+  // ------------------------------------------------------------------------
+  // Updates
+
+  /**
+   * Record that the player at the given position made the given play (which may
+   * be a pass).
+   */
+  public void observe(Position who, Play play) {
+    checkNotNull(who);
+    if (play.isPass()) {
+      observePass(who);
+      return;
+    }
+
+    int seat = who.ordinal();
+    for (Card card : play.getCards()) {
+      int kind = PackedCards.kindOf(card);
+      if (who != observer) {
+        see(card);
+        numHeld--;
+        // They had it after all, so that void was wrong. The rest may still hold.
+        voids[seat] &= ~(1L << kind);
+      }
+    }
+    handSizes[seat] -= play.getCards().size();
+    top = play;
+    numConsecutivePasses = 0;
+  }
+
+  /** Record that the player at the given position passed. */
+  public void observePass(Position who) {
+    if (inferVoidsFromPasses && who != observer && top != null && top.getCards().size() == 1) {
+      Rank rank = top.getCards().firstEntry().getElement().getRank();
+      voids[who.ordinal()] |= KINDS_ABOVE[rank.ordinal()];
+    }
+    if (++numConsecutivePasses == NUM_POSITIONS - 1) {
+      top = null;
+      numConsecutivePasses = 0;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Queries
+
+  /** Get the position this tracker observes from. */
+  public Position getObserver() {
+    return observer;
+  }
+
+  /** Get the number of copies of the card the observer hasn't seen yet. */
+  public int numHidden(Card card) {
+    return hidden[PackedCards.kindOf(card)];
+  }
+
+  /** Get the number of cards the player at the given position is holding. */
+  public int handSize(Position position) {
+    return handSizes[position.ordinal()];
+  }
+
+  /** Returns true if we believe the opponent can't be holding the card. */
+  public boolean lacks(Position opponent, Card card) {
+    return (voids[opponent.ordinal()] & (1L << PackedCards.kindOf(card))) != 0;
+  }
+
+  /** Get the most copies of the card the opponent could possibly be holding. */
+  public int maxCopies(Position opponent, Card card) {
+    checkArgument(opponent != observer, "The observer knows their own cards.");
+    int kind = PackedCards.kindOf(card);
+    if ((voids[opponent.ordinal()] & (1L << kind)) != 0) {
+      return 0;
+    }
+    return Math.min(hidden[kind], handSizes[opponent.ordinal()]);
+  }
+
+  /**
+   * Get the expected number of copies of the card that the opponent holds.
+   *
+   * Each hidden copy is assumed to be spread over the holders who could have it,
+   * in proportion to how many cards they're holding.
+   */
+  public double expectedCopies(Position opponent, Card card) {
+    int kind = PackedCards.kindOf(card);
+    return hidden[kind] * share(opponent, kind);
+  }
+
+  /**
+   * Get the probability that the opponent holds at least one copy of the card,
+   * on the same assumptions as expectedCopies().
+   */
+  public double probabilityHolds(Position opponent, Card card) {
+    int kind = PackedCards.kindOf(card);
+    double share = share(opponent, kind);
+    return hidden[kind] == 1 ? share : 1 - Math.pow(1 - share, hidden[kind]);
+  }
+
+  /**
+   * Get a DealSampler for the current beliefs, which draws uniformly random
+   * deals of the hidden cards to the observer's opponents.
+   *
+   * Inferred voids are only guesses, so if they leave no consistent deal at all,
+   * we drop them rather than fail.
+   */
+  public DealSampler newSampler() {
+    try {
+      return newSampler(true);
+    } catch (DealSampler.InconsistentConstraintsException e) {
+      return newSampler(false);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Build a DealSampler, with or without the inferred voids. */
+  private DealSampler newSampler(boolean withVoids) {
+    DealSampler.Builder builder = DealSampler.builder().hiddenCopies(hidden);
+    for (Position position : Position.values()) {
+      if (position != observer) {
+        builder.holder(position, handSizes[position.ordinal()]);
+        if (withVoids) {
+          builder.lacksKinds(position, voids[position.ordinal()]);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /** Mark a single copy of the card as seen. */
+  private void see(Card card) {
+    int kind = PackedCards.kindOf(card);
+    checkArgument(hidden[kind] > 0, "Saw more than two copies of " + card);
+    hidden[kind]--;
+    numHidden--;
+  }
+
+  /**
+   * The fraction of the kind's hidden copies we'd expect the opponent to hold:
+   * their hand size over the total size of every hand that could hold the kind.
+   */
+  private double share(Position opponent, int kind) {
+    checkArgument(opponent != observer, "The observer knows their own cards.");
+    long bit = 1L << kind;
+    int seat = opponent.ordinal();
+    if ((voids[seat] & bit) != 0 || hidden[kind] == 0) {
+      return 0;
+    }
+    // Undealt cards could be anything.
+    int eligible = numHidden - numHeld;
+    for (int other = 0; other < NUM_POSITIONS; other++) {
+      if (other != observer.ordinal() && (voids[other] & bit) == 0) {
+        eligible += handSizes[other];
+      }
+    }
+    return eligible == 0 ? 0 : (double) handSizes[seat] / eligible;
+  }
+
+  /** Build the KINDS_ABOVE lookup table. */
+  private static long[] kindsAboveEachRank() {
+    Rank[] ranks = Rank.values();
+    long[] masks = new long[ranks.length];
+    for (Rank rank : ranks) {
+      masks[rank.ordinal()] = PackedCards.kindsAbove(rank);
+    }
+    return masks;
+  }
+}
@@ -0,0 +1,481 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.table.Position;
+
+/**
+ * Samples uniformly random deals of the cards a player can't see, subject to
+ * everything that player knows: how many cards each opponent holds, which cards
+ * have already been seen, and which cards an opponent is known to lack.
+ *
+ * Rather than dealing randomly and throwing away inconsistent deals, we count the
+ * consistent deals up front. Working through the 54 kinds of card, we store how many
+ * ways the remaining kinds can be split between the holders for every combination of
+ * remaining hand sizes. Sampling then walks the kinds once, choosing how to split
+ * each kind's copies with probability proportional to the number of deals that
+ * choice leaves open. The two copies of a card are different physical cards, so
+ * splitting them between two holders counts twice: it's the deals of a real
+ * shuffled deck that come out with the same probability, not the multisets. No
+ * sample is ever rejected.
+ *
+ * Cards which are hidden but not held by any of the holders (the undealt cards)
+ * are treated as one more, unconstrained holder which never shows up in the output.
+ *
+ * Instances are immutable, and safe to share between threads as long as each
+ * thread brings its own random source.
+ */
+public final class DealSampler {
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  /** The positions we're sampling hands for, in output order. */
+  private final ImmutableList<Position> positions;
+
+  /** Number of holders, including the undealt pile if there is one. */
+  private final int numHolders;
+
+  /** For each holder (in DP order), its index into positions, or -1 for the undealt pile. */
+  private final int[] outputSlot;
+
+  /** For each holder (in DP order), a bitmask of the kinds it's allowed to hold. */
+  private final long[] allowed;
+
+  /** For each holder except the last, the multiplier of its digit in a state index. */
+  private final int[] multiplier;
+
+  /** For each state, the remaining capacity of each holder except the last. */
+  private final byte[] digits;
+
+  /** The number of hidden copies of each kind. */
+  private final int[] hiddenCopies;
+
+  /** The state index we start sampling from (every holder at full capacity). */
+  private final int startState;
+
+  /** The number of states per kind. */
+  private final int numStates;
+
+  /**
+   * ways[kind * numStates + state] is the number of ways to deal out kinds
+   * 'kind' and up, given the remaining capacities encoded by 'state'.
+   */
+  private final double[] ways;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through the Builder. */
+  private DealSampler(Builder builder) {
+    this.positions = ImmutableList.copyOf(builder.handSizes.keySet());
+    this.hiddenCopies = builder.hiddenCopies.clone();
+
+    int numHidden = Arrays.stream(hiddenCopies).sum();
+    int numHeld = builder.handSizes.values().stream().mapToInt(Integer::intValue).sum();
+    if (numHeld > numHidden) {
+      throw new InconsistentConstraintsException(
+        numHeld + " cards are held, but only " + numHidden + " are hidden.");
+    }
+
+    // Gather up the holders, adding the undealt pile if there's anything in it.
+    int numUndealt = numHidden - numHeld;
+    int count = positions.size() + (numUndealt > 0 ? 1 : 0);
+    int[] slot = new int[count];
+    int[] capacity = new int[count];
+    long[] masks = new long[count];
+    for (int i = 0; i < count; i++) {
+      boolean undealt = i == positions.size();
+      slot[i] = undealt ? -1 : i;
+      capacity[i] = undealt ? numUndealt : builder.handSizes.get(positions.get(i));
+      masks[i] = undealt ? PackedCards.allKinds()
+        : PackedCards.allKinds() & ~builder.lacks.get(positions.get(i));
+    }
+
+    // The biggest holder goes last, since its capacity is implied and doesn't
+    // need a dimension in the state space.
+    int biggest = 0;
+    for (int i = 1; i < count; i++) {
+      if (capacity[i] > capacity[biggest]) {
+        biggest = i;
+      }
+    }
+    swap(slot, biggest, count - 1);
+    swap(capacity, biggest, count - 1);
+    swap(masks, biggest, count - 1);
+
+    this.numHolders = capacity.length;
+    this.outputSlot = slot;
+    this.allowed = masks;
+
+    // Lay out the state space.
+    this.multiplier = new int[Math.max(0, numHolders - 1)];
+    int states = 1;
+    int start = 0;
+    for (int i = 0; i < numHolders - 1; i++) {
+      multiplier[i] = states;
+      start += capacity[i] * states;
+      states *= capacity[i] + 1;
+    }
+    this.numStates = states;
+    this.startState = start;
+    this.digits = new byte[numStates * Math.max(1, numHolders - 1)];
+    for (int state = 0; state < numStates; state++) {
+      for (int i = 0; i < numHolders - 1; i++) {
+        digits[state * (numHolders - 1) + i] =
+          (byte) ((state / multiplier[i]) % (capacity[i] + 1));
+      }
+    }
+
+    this.ways = countWays(capacity[numHolders - 1]);
+    if (ways[startState] == 0) {
+      throw new InconsistentConstraintsException("No deal is consistent with these constraints.");
+    }
+  }
+
+  /** Get a new Builder for a DealSampler. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Get the positions we sample hands for, in the order they're written out. */
+  public ImmutableList<Position> getPositions() {
+    return positions;
+  }
+
+  /** The number of longs each sample takes up in an output buffer. */
+  public int stride() {
+    return positions.size() * PackedCards.NUM_WORDS;
+  }
+
+  /**
+   * Get the number of deals consistent with our constraints, telling the two
+   * copies of each card apart, as a shuffle does.
+   */
+  public double countDeals() {
+    return ways[startState];
+  }
+
+  /**
+   * Sample a single deal into the buffer, starting at the given offset.
+   *
+   * The hand for getPositions().get(i) is written as a packed multiset (see
+   * PackedCards) at offset + i * PackedCards.NUM_WORDS. Exactly stride() longs
+   * are overwritten.
+   */
+  public void sampleInto(long[] out, int offset, SplittableRandom random) {
+    Arrays.fill(out, offset, offset + stride(), 0L);
+    int state = startState;
+    int last = numHolders - 1;
+    for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+      int copies = hiddenCopies[kind];
+      if (copies == 0) {
+        continue;
+      }
+      int next = (kind + 1) * numStates;
+      double target = random.nextDouble() * ways[kind * numStates + state];
+
+      // Walk through the ways of splitting the copies between two (possibly equal)
+      // holders a <= b, until we've used up the target weight. If floating point
+      // rounding leaves a sliver at the end, the last valid split wins.
+      int chosenA = -1;
+      int chosenB = -1;
+      int chosenState = -1;
+      search:
+      for (int a = 0; a <= last; a++) {
+        int bEnd = copies == 1 ? a : last;
+        for (int b = a; b <= bEnd; b++) {
+          int successor = successor(state, kind, copies, a, b);
+          if (successor < 0 || ways[next + successor] == 0) {
+            continue;
+          }
+          chosenA = a;
+          chosenB = b;
+          chosenState = successor;
+          target -= splitWeight(copies, a, b) * ways[next + successor];
+          if (target < 0) {
+            break search;
+          }
+        }
+      }
+      state = chosenState;
+      emit(out, offset, chosenA, kind);
+      if (copies == 2) {
+        emit(out, offset, chosenB, kind);
+      }
+    }
+  }
+
+  /**
+   * Sample numSamples deals back-to-back into the buffer, starting at index 0.
+   * The buffer must hold at least numSamples * stride() longs.
+   */
+  public void sampleAll(long[] out, int numSamples, SplittableRandom random) {
+    checkArgument(out.length >= numSamples * stride(), "Output buffer is too small.");
+    int stride = stride();
+    for (int i = 0; i < numSamples; i++) {
+      sampleInto(out, i * stride, random);
+    }
+  }
+
+  /** Sample a single deal, and unpack it into a map from position to hand. */
+  public ImmutableMap<Position, ImmutableMultiset<Card>> sample(SplittableRandom random) {
+    long[] buffer = new long[stride()];
+    sampleInto(buffer, 0, random);
+    ImmutableMap.Builder<Position, ImmutableMultiset<Card>> deal = ImmutableMap.builder();
+    for (int i = 0; i < positions.size(); i++) {
+      deal.put(positions.get(i), PackedCards.unpack(buffer, i * PackedCards.NUM_WORDS));
+    }
+    return deal.build();
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * Fill in the ways table, from the last kind back to the first.
+   *
+   * @param lastCapacity The capacity of the last holder, whose remaining capacity
+   *                     is implied by the state and the number of cards left to deal.
+   */
+  private double[] countWays(int lastCapacity) {
+    double[] table = new double[(PackedCards.NUM_KINDS + 1) * numStates];
+    int last = numHolders - 1;
+
+    // Base case: with no kinds left, only the all-empty state works.
+    table[PackedCards.NUM_KINDS * numStates] = 1;
+
+    int cardsAfter = 0;
+    for (int kind = PackedCards.NUM_KINDS - 1; kind >= 0; kind--) {
+      int copies = hiddenCopies[kind];
+      int cardsFrom = cardsAfter + copies;
+      int base = kind * numStates;
+      int next = (kind + 1) * numStates;
+      for (int state = 0; state < numStates; state++) {
+        // The last holder takes whatever the others don't.
+        int lastRemaining = cardsFrom - digitSum(state);
+        if (lastRemaining < 0 || lastRemaining > lastCapacity) {
+          continue;
+        }
+        if (copies == 0) {
+          table[base + state] = table[next + state];
+          continue;
+        }
+        double total = 0;
+        for (int a = 0; a <= last; a++) {
+          int bEnd = copies == 1 ? a : last;
+          for (int b = a; b <= bEnd; b++) {
+            int successor = successor(state, kind, copies, a, b);
+            if (successor >= 0) {
+              total += splitWeight(copies, a, b) * table[next + successor];
+            }
+          }
+        }
+        table[base + state] = total;
+      }
+      cardsAfter = cardsFrom;
+    }
+    return table;
+  }
+
+  /**
+   * Get the number of ways a split of a kind's copies can happen. The two copies
+   * of a card come from different decks, so they're really different cards, and
+   * splitting them between two different holders can happen either way round.
+   */
+  private static int splitWeight(int copies, int a, int b) {
+    return copies == 2 && a != b ? 2 : 1;
+  }
+
+  /**
+   * Get the state after giving 'copies' copies of the kind to holders a and b
+   * (b is ignored when copies == 1), or -1 if that isn't allowed.
+   */
+  private int successor(int state, int kind, int copies, int a, int b) {
+    long bit = 1L << kind;
+    if ((allowed[a] & bit) == 0 || (allowed[b] & bit) == 0) {
+      return -1;
+    }
+    int result = take(state, a);
+    if (result >= 0 && copies == 2) {
+      result = take(result, b);
+    }
+    return result;
+  }
+
+  /** Take one card of capacity away from the holder, or return -1 if it's full. */
+  private int take(int state, int holder) {
+    if (state < 0) {
+      return -1;
+    }
+    // The last holder's capacity is implied, and checked by the table itself.
+    if (holder == numHolders - 1) {
+      return state;
+    }
+    return digits[state * (numHolders - 1) + holder] == 0 ? -1 : state - multiplier[holder];
+  }
+
+  /** Get the total remaining capacity of every holder but the last. */
+  private int digitSum(int state) {
+    int sum = 0;
+    for (int i = 0; i < numHolders - 1; i++) {
+      sum += digits[state * (numHolders - 1) + i];
+    }
+    return sum;
+  }
+
+  /** Write a single card of the given kind into the output for the given holder. */
+  private void emit(long[] out, int offset, int holder, int kind) {
+    int slot = outputSlot[holder];
+    if (slot >= 0) {
+      PackedCards.add(out, offset + slot * PackedCards.NUM_WORDS, kind, 1);
+    }
+  }
+
+  /** Swap two entries of an array. */
+  private static void swap(int[] array, int i, int j) {
+    int temp = array[i];
+    array[i] = array[j];
+    array[j] = temp;
+  }
+
+  /** Swap two entries of an array. */
+  private static void swap(long[] array, int i, int j) {
+    long temp = array[i];
+    array[i] = array[j];
+    array[j] = temp;
+  }
+
+  // ------------------------------------------------------------------------
+  // Builder
+
+  /**
+   * A Builder for a DealSampler. Starts out with every card hidden, and no holders.
+   */
+  public static final class Builder {
+
+    /** How many cards each holder has. */
+    private final Map<Position, Integer> handSizes;
+
+    /** For each holder, a bitmask of the kinds it can't have. */
+    private final Map<Position, Long> lacks;
+
+    /** How many copies of each kind are still hidden. */
+    private final int[] hiddenCopies;
+
+    /** Instantiate via the static builder() method. */
+    private Builder() {
+      this.handSizes = new EnumMap<>(Position.class);
+      this.lacks = new EnumMap<>(Position.class);
+      this.hiddenCopies = new int[PackedCards.NUM_KINDS];
+      Arrays.fill(hiddenCopies, PackedCards.MAX_COPIES);
+    }
+
+    /** Say that the player at the given position holds numCards hidden cards. */
+    public Builder holder(Position position, int numCards) {
+      checkNotNull(position);
+      checkArgument(numCards >= 0, "Hand sizes can't be negative.");
+      handSizes.put(position, numCards);
+      lacks.putIfAbsent(position, 0L);
+      return this;
+    }
+
+    /**
+     * Add every position but the observer's as a holder, using the hand sizes from
+     * HotSoup.getRemainingCardsMap().
+     */
+    public Builder holders(Map<Position, Integer> remainingCards, Position observer) {
+      for (Map.Entry<Position, Integer> entry : remainingCards.entrySet()) {
+        if (entry.getKey() != observer) {
+          holder(entry.getKey(), entry.getValue());
+        }
+      }
+      return this;
+    }
+
+    /** Mark the card as seen (in our own hand, or already played), so it isn't hidden. */
+    public Builder seen(Card card) {
+      int kind = PackedCards.kindOf(checkNotNull(card));
+      checkArgument(hiddenCopies[kind] > 0, "Saw more than two copies of " + card);
+      hiddenCopies[kind]--;
+      return this;
+    }
+
+    /** Mark all the cards as seen. */
+    public Builder seen(Iterable<? extends Card> cards) {
+      for (Card card : cards) {
+        seen(card);
+      }
+      return this;
+    }
+
+    /** Set the number of copies of each kind which are still hidden, wholesale. */
+    public Builder hiddenCopies(int[] copiesByKind) {
+      checkArgument(copiesByKind.length == PackedCards.NUM_KINDS, "Expected one count per kind.");
+      for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+        checkArgument(copiesByKind[kind] >= 0 && copiesByKind[kind] <= PackedCards.MAX_COPIES);
+        hiddenCopies[kind] = copiesByKind[kind];
+      }
+      return this;
+    }
+
+    /** Say that the holder at this position definitely doesn't have any copy of the card. */
+    public Builder lacks(Position position, Card card) {
+      return lacksKinds(position, 1L << PackedCards.kindOf(checkNotNull(card)));
+    }
+
+    /**
+     * Say that the holder at this position has no card ranked above the given one.
+     * This is the kind of thing we infer when someone passes on a low single.
+     */
+    public Builder lacksAbove(Position position, Rank rank) {
+      return lacksKinds(position, PackedCards.kindsAbove(checkNotNull(rank)));
+    }
+
+    /** Say that the holder lacks every kind in the bitmask (bit i for kind i). */
+    public Builder lacksKinds(Position position, long kinds) {
+      checkArgument(handSizes.containsKey(position), position + " isn't a holder yet.");
+      lacks.merge(position, kinds, (a, b) -> a | b);
+      return this;
+    }
+
+    /**
+     * Build the sampler.
+     *
+     * @throws InconsistentConstraintsException If no deal satisfies the constraints.
+     */
+    public DealSampler build() {
+      checkArgument(!handSizes.isEmpty(), "We need at least one holder to sample for.");
+      return new DealSampler(this);
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  // Exceptions
+
+  /** Exception thrown if no deal at all is consistent with the constraints. */
+  public static final class InconsistentConstraintsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private InconsistentConstraintsException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package me.soupbringer.hotsoup.bots;
+
+import java.util.List;
+
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * A fast, simple Strategy, mostly used to play out the rest of a round during search.
+ *
+ * On a lead, it gets rid of its lowest cards, in as big a Play as it can. When
+ * following, it lets its partner's plays stand, and otherwise beats the top play
+ * as cheaply as it can.
+ */
+public final class GreedyStrategy implements Strategy {
+
+  /** Greedy strategies have no state, so one is enough. */
+  public static final GreedyStrategy INSTANCE = new GreedyStrategy();
+
+  /** Constructor. Use the singleton instead. */
+  private GreedyStrategy() { }
+
+  @Override
+  public Play choose(Round round) {
+    Position me = round.getTurn();
+    Play top = round.getTopPlay();
+    if (top != null && round.getTopPosition() == me.partner()) {
+      return Play.pass();
+    }
+
+    List<Play> moves = PlayGenerator.legalPlays(round.getHand(me).getCards(), top);
+    Play best = null;
+    for (Play move : moves) {
+      if (best == null || isBetter(move, best, top == null)) {
+        best = move;
+      }
+    }
+    return best == null ? Play.pass() : best;
+  }
+
+  /**
+   * Returns true if we'd rather make the first play than the second: lower cards
+   * first, and on a lead, more of them.
+   */
+  private static boolean isBetter(Play play, Play other, boolean isLead) {
+    int byRank = play.lowestRank().compareTo(other.lowestRank());
+    if (byRank != 0) {
+      return byRank < 0;
+    }
+    int bySize = play.getCards().size() - other.getCards().size();
+    return isLead ? bySize > 0 : bySize < 0;
+  }
+}
@@ -0,0 +1,255 @@
+package me.soupbringer.hotsoup.bots;
+
+import java.util.Arrays;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.tricks.plays.PlayClassifier;
+
+/**
+ * A quick estimate of how strong a hand is, for bots, hints and balancing
+ * matchmaking.
+ *
+ * Suits never matter here, so a hand is boiled down to a rank histogram: four
+ * bits per Rank, by ordinal, holding how many cards of that rank there are. Each
+ * feature is then one pass over the twelve ordinary ranks to build some masks,
+ * and a lookup in a table built when the class loads:
+ *  - the longest straight, run of pairs and run of triples, from the longest run
+ *    of set bits in a mask of the ranks held at least once, twice or three times;
+ *  - the fewest plays it takes to get rid of the ordinary cards, from a table of
+ *    every way of holding up to three of each of six ranks, for each half of the
+ *    ordinary ranks.
+ * Twos, jokers and point cards are read straight out of the histogram.
+ *
+ * The play count is an estimate: runs that cross from the low half into the high
+ * half count as two plays, full houses aren't used, and a fourth or later copy of
+ * a rank costs one more play per three. It's meant for comparing hands, not for
+ * deciding how to play them.
+ */
+public final class HandEvaluator {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** The ranks that can make runs: THREE up to ACE. */
+  private static final int NUM_ORDINARY = Rank.TWO.ordinal();
+
+  /** The number of ordinary ranks in each half of the play-count table. */
+  private static final int HALF = NUM_ORDINARY / 2;
+
+  /** The longest run of set bits in each 12-bit mask. */
+  private static final byte[] LONGEST_RUN = longestRuns();
+
+  /**
+   * The fewest plays to get rid of each possible holding of six consecutive
+   * ranks, with two bits of count per rank (lowest rank in the lowest bits).
+   */
+  private static final byte[] MIN_PLAYS = minPlays();
+
+  /** Weights for the overall score. */
+  private static final int CONTROL_WEIGHT = 4;
+  private static final int PLAY_WEIGHT = 6;
+
+  /** No instantiation. */
+  private HandEvaluator() {
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Evaluate a hand. */
+  public static Evaluation evaluate(Hand hand) {
+    return evaluate(histogram(hand.getCards()));
+  }
+
+  /** Evaluate a rank histogram. See histogram(). */
+  public static Evaluation evaluate(long histogram) {
+    int atLeastOne = 0;
+    int atLeastTwo = 0;
+    int atLeastThree = 0;
+    int low = 0;
+    int high = 0;
+    int extraPlays = 0;
+    for (int rank = 0; rank < NUM_ORDINARY; rank++) {
+      int count = count(histogram, rank);
+      int bit = 1 << rank;
+      atLeastOne |= count >= 1 ? bit : 0;
+      atLeastTwo |= count >= 2 ? bit : 0;
+      atLeastThree |= count >= 3 ? bit : 0;
+      int capped = Math.min(count, 3);
+      if (rank < HALF) {
+        low |= capped << (rank * 2);
+      } else {
+        high |= capped << ((rank - HALF) * 2);
+      }
+      extraPlays += (Math.max(count - 3, 0) + 2) / 3;
+    }
+
+    int twos = count(histogram, Rank.TWO.ordinal());
+    int littleJokers = count(histogram, Rank.LITTLE_JOKER.ordinal());
+    int bigJokers = count(histogram, Rank.BIG_JOKER.ordinal());
+    int jokers = littleJokers + bigJokers;
+    int numPlays = MIN_PLAYS[low] + MIN_PLAYS[high] + extraPlays
+      + (twos + 2) / 3 + (jokers + 2) / 3;
+    int numPoints = count(histogram, Rank.FIVE.ordinal()) * Rank.FIVE.getNumPoints()
+      + count(histogram, Rank.TEN.ordinal()) * Rank.TEN.getNumPoints()
+      + count(histogram, Rank.KING.ordinal()) * Rank.KING.getNumPoints();
+
+    return new Evaluation(
+      twos + 2 * littleJokers + 3 * bigJokers,
+      LONGEST_RUN[atLeastOne],
+      LONGEST_RUN[atLeastTwo],
+      LONGEST_RUN[atLeastThree],
+      numPoints,
+      numPlays);
+  }
+
+  /**
+   * Get the rank histogram of the cards: four bits per Rank ordinal, counting
+   * the cards of that rank. It's the same histogram PlayClassifier takes.
+   */
+  public static long histogram(Iterable<Card> cards) {
+    return PlayClassifier.histogram(cards);
+  }
+
+  // ------------------------------------------------------------------------
+  // Results
+
+  /**
+   * The features of a hand.
+   */
+  public static final class Evaluation {
+
+    private final int numControls;
+    private final int longestStraight;
+    private final int longestPairRun;
+    private final int longestTripleRun;
+    private final int numPoints;
+    private final int numPlays;
+
+    private Evaluation(
+      int numControls,
+      int longestStraight,
+      int longestPairRun,
+      int longestTripleRun,
+      int numPoints,
+      int numPlays)
+    {
+      this.numControls = numControls;
+      this.longestStraight = longestStraight;
+      this.longestPairRun = longestPairRun;
+      this.longestTripleRun = longestTripleRun;
+      this.numPoints = numPoints;
+      this.numPlays = numPlays;
+    }
+
+    /**
+     * Get how much control the hand has: one for each two, two for each little
+     * joker and three for each big joker.
+     */
+    public int getNumControls() {
+      return numControls;
+    }
+
+    /** Get the number of ranks in the longest straight the hand can make. */
+    public int getLongestStraight() {
+      return longestStraight;
+    }
+
+    /** Get the number of ranks in the longest run of pairs the hand can make. */
+    public int getLongestPairRun() {
+      return longestPairRun;
+    }
+
+    /** Get the number of ranks in the longest run of triples the hand can make. */
+    public int getLongestTripleRun() {
+      return longestTripleRun;
+    }
+
+    /** Get the number of points in the hand. */
+    public int getNumPoints() {
+      return numPoints;
+    }
+
+    /** Get roughly how many plays it would take to go out, leading every time. */
+    public int getNumPlays() {
+      return numPlays;
+    }
+
+    /**
+     * Get an overall score: higher is stronger. Control is worth a lot, each play
+     * needed to go out costs a lot, and long runs help a little.
+     */
+    public int getScore() {
+      return CONTROL_WEIGHT * numControls
+        - PLAY_WEIGHT * numPlays
+        + longestStraight + 2 * longestPairRun + 3 * longestTripleRun;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "score %d (controls %d, plays %d, runs %d/%d/%d, points %d)",
+        getScore(), numControls, numPlays,
+        longestStraight, longestPairRun, longestTripleRun, numPoints);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  private static int count(long histogram, int rank) {
+    return (int) (histogram >>> (rank * 4)) & 0xf;
+  }
+
+  private static byte[] longestRuns() {
+    byte[] table = new byte[1 << NUM_ORDINARY];
+    for (int mask = 0; mask < table.length; mask++) {
+      int longest = 0;
+      int run = 0;
+      for (int bit = 0; bit < NUM_ORDINARY; bit++) {
+        run = (mask & (1 << bit)) != 0 ? run + 1 : 0;
+        longest = Math.max(longest, run);
+      }
+      table[mask] = (byte) longest;
+    }
+    return table;
+  }
+
+  private static byte[] minPlays() {
+    byte[] table = new byte[1 << (HALF * 2)];
+    Arrays.fill(table, (byte) -1);
+    table[0] = 0;
+    for (int holding = 0; holding < table.length; holding++) {
+      minPlays(holding, table);
+    }
+    return table;
+  }
+
+  /**
+   * Work out the fewest plays for a holding. The lowest rank held has to go in
+   * some play that starts there: a straight, or a run of pairs or triples, of
+   * any length the holding allows. Try each, and take the best.
+   */
+  private static int minPlays(int holding, byte[] table) {
+    if (table[holding] >= 0) {
+      return table[holding];
+    }
+    int lowest = Integer.numberOfTrailingZeros(holding) / 2;
+    int best = Integer.MAX_VALUE;
+    for (int width = 1; width <= 3; width++) {
+      int rest = holding;
+      for (int rank = lowest; rank < HALF; rank++) {
+        int count = (holding >>> (rank * 2)) & 3;
+        if (count < width) {
+          break;
+        }
+        rest -= width << (rank * 2);
+        best = Math.min(best, 1 + minPlays(rest, table));
+      }
+    }
+    table[holding] = (byte) best;
+    return best;
+  }
+}
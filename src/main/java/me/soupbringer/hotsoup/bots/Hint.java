@@ -0,0 +1,47 @@
+package me.soupbringer.hotsoup.bots;
+
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * A suggested Play, along with how good we think it is.
+ */
+public final class Hint {
+
+  private final Play play;
+  private final double value;
+  private final int numSamples;
+
+  /**
+   * Constructor.
+   *
+   * @param play The suggested Play (possibly a pass).
+   * @param value The expected number of points our team gains over theirs for
+   *              the rest of the round, if we make this play.
+   * @param numSamples The number of simulated deals the value is averaged over.
+   */
+  Hint(Play play, double value, int numSamples) {
+    this.play = play;
+    this.value = value;
+    this.numSamples = numSamples;
+  }
+
+  /** Get the suggested Play. */
+  public Play getPlay() {
+    return play;
+  }
+
+  /** Get the expected point differential for the rest of the round after this play. */
+  public double getValue() {
+    return value;
+  }
+
+  /** Get the number of simulated deals behind the value. */
+  public int getNumSamples() {
+    return numSamples;
+  }
+
+  @Override
+  public String toString() {
+    return (play.isPass() ? "pass" : play.getCards().toString()) + " (" + value + ")";
+  }
+}
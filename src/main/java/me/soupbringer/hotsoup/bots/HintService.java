@@ -0,0 +1,172 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * Suggests the best plays for a player, given what they can see.
+ *
+ * Each candidate play is scored by sampling deals of the hidden cards that are
+ * consistent with the Situation, making the play, and finishing the round with the
+ * GreedyStrategy. A candidate's value is the average number of points our team
+ * takes over theirs for the rest of the round. Each search stops at a time budget,
+ * and ranks whatever it has by then.
+ *
+ * Results are cached per Situation, least recently used first out. If two requests
+ * for the same Situation come in at once, the second waits for the first one's
+ * search rather than starting its own.
+ */
+@Singleton
+public final class HintService {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** How many Situations we keep results for, by default. */
+  private static final int DEFAULT_CACHE_SIZE = 10000;
+
+  /** How long each search gets, by default. */
+  private static final long DEFAULT_BUDGET_MILLIS = 200;
+
+  /** We stop sampling after this many deals, even if there's time left. */
+  private static final int MAX_SAMPLES = 500;
+
+  /** Best hints first, after any that were never tried. */
+  private static final Comparator<Hint> BEST_FIRST =
+    Comparator.comparing((Hint hint) -> hint.getNumSamples() == 0)
+      .thenComparing(Comparator.comparingDouble(Hint::getValue).reversed());
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  /** Ranked hints for every Situation we've searched recently. */
+  private final LoadingCache<Situation, ImmutableList<Hint>> cache;
+
+  /** How long each search gets. */
+  private final long budgetNanos;
+
+  /** Where searches get the time from. */
+  private final LongSupplier clock;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Constructor, with the default cache size and search budget. */
+  @Inject
+  public HintService() {
+    this(DEFAULT_CACHE_SIZE, DEFAULT_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cacheSize How many Situations to keep results for.
+   * @param budget How long each search gets.
+   * @param unit The unit of budget.
+   */
+  public HintService(int cacheSize, long budget, TimeUnit unit) {
+    this(cacheSize, budget, unit, System::nanoTime);
+  }
+
+  /** Constructor, with a clock to time searches by (in nanoseconds), for tests. */
+  HintService(int cacheSize, long budget, TimeUnit unit, LongSupplier clock) {
+    this.budgetNanos = unit.toNanos(budget);
+    this.clock = clock;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(cacheSize)
+      .recordStats()
+      .build(new CacheLoader<Situation, ImmutableList<Hint>>() {
+        @Override
+        public ImmutableList<Hint> load(Situation situation) {
+          return search(situation);
+        }
+      });
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /**
+   * Get the k best plays for the player in the given Situation, best first.
+   */
+  public List<Hint> hint(Situation situation, int k) {
+    checkArgument(k > 0, "We need to return at least one hint.");
+    ImmutableList<Hint> ranked = cache.getUnchecked(situation);
+    return ranked.subList(0, Math.min(k, ranked.size()));
+  }
+
+  /** Get the number of searches run so far, as opposed to answered from the cache. */
+  long getNumSearches() {
+    return cache.stats().loadCount();
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * Score every candidate play for the situation, and rank them.
+   *
+   * Candidates take turns: each sampled deal is played out once per candidate,
+   * and the clock is checked before every rollout, so a search overruns its
+   * budget by at most one rollout. Whatever we have when time runs out is what
+   * we rank, and candidates that never got a rollout go last.
+   */
+  private ImmutableList<Hint> search(Situation situation) {
+    long deadline = clock.getAsLong() + budgetNanos;
+    Play top = situation.getTopPlay();
+    List<Play> candidates = PlayGenerator.legalPlays(situation.getOwnCards(), top);
+    if (top != null) {
+      candidates.add(Play.pass());
+    }
+
+    DealSampler sampler = situation.newTracker().newSampler();
+    long[] deal = new long[sampler.stride()];
+    SplittableRandom random = new SplittableRandom(situation.hashCode());
+    boolean northSouth = situation.getObserver().isNorthSouth();
+
+    double[] totals = new double[candidates.size()];
+    int[] numSamples = new int[candidates.size()];
+    search:
+    for (int sample = 0; sample < MAX_SAMPLES; sample++) {
+      sampler.sampleInto(deal, 0, random);
+      for (int i = 0; i < candidates.size(); i++) {
+        if (clock.getAsLong() >= deadline) {
+          break search;
+        }
+        Round round = situation.toRound(deal, 0, sampler.getPositions());
+        round.play(candidates.get(i));
+        while (!round.isOver()) {
+          round.play(GreedyStrategy.INSTANCE.choose(round));
+        }
+        int differential = round.scoreNS() - round.scoreEW();
+        totals[i] += northSouth ? differential : -differential;
+        numSamples[i]++;
+      }
+    }
+
+    List<Hint> hints = Lists.newArrayListWithCapacity(candidates.size());
+    for (int i = 0; i < candidates.size(); i++) {
+      double value = numSamples[i] == 0 ? 0 : totals[i] / numSamples[i];
+      hints.add(new Hint(candidates.get(i), value, numSamples[i]));
+    }
+    hints.sort(BEST_FIRST);
+    return ImmutableList.copyOf(hints);
+  }
+}
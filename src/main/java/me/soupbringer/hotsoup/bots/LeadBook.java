@@ -0,0 +1,516 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.Maps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * A book of opening leads, for fresh hands.
+ *
+ * Working out the first lead of a round is the most expensive thing a searching
+ * bot does, and fresh hands look a lot alike once suits are forgotten. So a
+ * Generator plays out many deals offline, trying every shape of lead (each kind
+ * and length of play, taking the lowest ranks available) for whoever leads, and
+ * keeps track of how each one turned out for each hand signature. A signature is
+ * a handful of HandEvaluator features, packed into SIGNATURE_BITS bits.
+ *
+ * The book is a file with one fixed-size slot per signature, holding the best few
+ * shapes of lead and how they did. It's memory-mapped read-only, so opening it
+ * costs nothing, it takes up no heap, and a lookup is computing the signature and
+ * reading one slot.
+ */
+public final class LeadBook implements Closeable {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  private static final int MAGIC = 0x48534c42;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+
+  /** The number of bits in a signature, and so the number of slots. */
+  public static final int SIGNATURE_BITS = 16;
+  private static final int NUM_SLOTS = 1 << SIGNATURE_BITS;
+
+  /** The most leads kept per signature. */
+  public static final int LEADS_PER_SLOT = 3;
+
+  /**
+   * A slot is the number of deals seen, then LEADS_PER_SLOT leads, each a kind
+   * (or -1 for none), a length, two bytes of padding, the number of deals it was
+   * tried in, and the average differential.
+   */
+  private static final int LEAD_SIZE = 12;
+  private static final int SLOT_SIZE = 4 + LEADS_PER_SLOT * LEAD_SIZE;
+
+  private static final Play.Kind[] KINDS = Play.Kind.values();
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final FileChannel channel;
+
+  /** The mapped book, or null once it's been closed. */
+  private volatile MappedByteBuffer slots;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through open(). */
+  private LeadBook(FileChannel channel, MappedByteBuffer slots) {
+    this.channel = channel;
+    this.slots = slots;
+  }
+
+  /** Map a book that a Generator wrote. */
+  public static LeadBook open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      checkArgument(
+        channel.size() == HEADER_SIZE + (long) NUM_SLOTS * SLOT_SIZE,
+        "That isn't a lead book.");
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      checkArgument(mapped.getInt(0) == MAGIC, "That isn't a lead book.");
+      checkArgument(mapped.getInt(4) == VERSION, "Can't read that lead book version.");
+      checkArgument(mapped.getInt(8) == SIGNATURE_BITS && mapped.getInt(12) == LEADS_PER_SLOT);
+      return new LeadBook(channel, mapped);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Get a new Generator, for writing a book. */
+  public static Generator generator() {
+    return new Generator();
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /** Get the signature of a hand, which is what the book is indexed by. */
+  public static int signature(Hand hand) {
+    HandEvaluator.Evaluation evaluation = HandEvaluator.evaluate(hand);
+    return Math.min(evaluation.getNumControls(), 7)
+      | Math.min(evaluation.getNumPlays(), 15) << 3
+      | Math.min(evaluation.getLongestStraight(), 15) << 7
+      | Math.min(evaluation.getLongestPairRun(), 7) << 11
+      | Math.min(evaluation.getLongestTripleRun(), 3) << 14;
+  }
+
+  /**
+   * Get the number of deals the book saw for hands with this signature. Zero
+   * means it has nothing to say about them.
+   */
+  public int getNumDeals(int signature) {
+    return slots().getInt(slotOffset(signature));
+  }
+
+  /**
+   * Get the i'th best lead for hands with this signature, or null if there
+   * aren't that many.
+   */
+  public Lead getLead(int signature, int i) {
+    checkArgument(i >= 0 && i < LEADS_PER_SLOT);
+    MappedByteBuffer slots = slots();
+    int offset = slotOffset(signature) + 4 + i * LEAD_SIZE;
+    int kind = slots.get(offset);
+    if (kind < 0) {
+      return null;
+    }
+    return new Lead(
+      KINDS[kind],
+      slots.get(offset + 1),
+      slots.getInt(offset + 4),
+      slots.getFloat(offset + 8));
+  }
+
+  /**
+   * Choose an opening lead for whoever's turn it is, or null if the book doesn't
+   * know. Only fresh hands on a lead are in the book.
+   */
+  public Play choose(Round round) {
+    Hand hand = round.getHand(round.getTurn());
+    if (!round.isLead() || hand.numCardsLeft() != Hand.NEW_HAND_SIZE) {
+      return null;
+    }
+    int signature = signature(hand);
+    List<Play> leads = PlayGenerator.legalPlays(hand.getCards(), null);
+    for (int i = 0; i < LEADS_PER_SLOT; i++) {
+      Lead lead = getLead(signature, i);
+      if (lead == null) {
+        return null;
+      }
+      Play play = lowest(leads, lead.getKind(), lead.getNumCards());
+      if (play != null) {
+        return play;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get a Strategy that leads from the book when it can, and otherwise leaves
+   * things to the fallback.
+   */
+  public Strategy withFallback(Strategy fallback) {
+    checkNotNull(fallback);
+    return round -> {
+      Play play = choose(round);
+      return play != null ? play : fallback.choose(round);
+    };
+  }
+
+  /**
+   * Close the book. Nothing can be looked up afterwards. The mapping itself
+   * lasts until the garbage collector finds it unreachable.
+   */
+  @Override
+  public void close() throws IOException {
+    slots = null;
+    channel.close();
+  }
+
+  // ------------------------------------------------------------------------
+  // Leads
+
+  /**
+   * One shape of lead, and how it went.
+   */
+  public static final class Lead {
+
+    private final Play.Kind kind;
+    private final int numCards;
+    private final int numDeals;
+    private final float meanDifferential;
+
+    private Lead(Play.Kind kind, int numCards, int numDeals, float meanDifferential) {
+      this.kind = kind;
+      this.numCards = numCards;
+      this.numDeals = numDeals;
+      this.meanDifferential = meanDifferential;
+    }
+
+    /** Get the kind of play to lead. */
+    public Play.Kind getKind() {
+      return kind;
+    }
+
+    /** Get the number of cards to lead. */
+    public int getNumCards() {
+      return numCards;
+    }
+
+    /** Get the number of deals this lead was tried in. */
+    public int getNumDeals() {
+      return numDeals;
+    }
+
+    /** Get the leading team's average points minus the other team's, after this lead. */
+    public float getMeanDifferential() {
+      return meanDifferential;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "%s of %d: %+.1f over %d deals", kind, numCards, meanDifferential, numDeals);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Generator
+
+  /**
+   * Plays out deals to write a LeadBook.
+   */
+  public static final class Generator {
+
+    private Supplier<? extends Strategy> strategy = () -> GreedyStrategy.INSTANCE;
+    private long seed;
+    private int numDeals = 100000;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int minDeals = 5;
+
+    /** Instantiate via the static generator() method. */
+    private Generator() {
+    }
+
+    /**
+     * Set the strategy everyone plays after the lead. The supplier is called once
+     * per game. Defaults to the GreedyStrategy.
+     */
+    public Generator strategy(Supplier<? extends Strategy> strategy) {
+      this.strategy = checkNotNull(strategy);
+      return this;
+    }
+
+    /** Set the seed which all the deals are derived from. */
+    public Generator seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Set how many deals to play. Defaults to 100000. */
+    public Generator deals(int numDeals) {
+      checkArgument(numDeals > 0);
+      this.numDeals = numDeals;
+      return this;
+    }
+
+    /** Set the number of threads to play on. Defaults to one per core. */
+    public Generator threads(int numThreads) {
+      checkArgument(numThreads > 0);
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /**
+     * Set how many deals a lead has to be tried in to make it into the book.
+     * Defaults to 5.
+     */
+    public Generator minDeals(int minDeals) {
+      checkArgument(minDeals > 0);
+      this.minDeals = minDeals;
+      return this;
+    }
+
+    /**
+     * Play every deal, and write the book to the path. This blocks until it's
+     * done. If a strategy throws, it's rethrown here, and nothing is written.
+     */
+    public void generate(Path path) throws IOException, InterruptedException {
+      AtomicInteger nextDeal = new AtomicInteger();
+      AtomicReference<RuntimeException> failure = new AtomicReference<>();
+      List<Map<Integer, Stats>> results = new CopyOnWriteArrayList<>();
+
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+      for (int i = 0; i < numThreads; i++) {
+        executor.execute(() -> {
+          Map<Integer, Stats> stats = Maps.newHashMap();
+          int deal;
+          try {
+            while (failure.get() == null && (deal = nextDeal.getAndIncrement()) < numDeals) {
+              play(deal, stats);
+            }
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          }
+          results.add(stats);
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+
+      Map<Integer, Stats> merged = Maps.newHashMap();
+      for (Map<Integer, Stats> stats : results) {
+        for (Map.Entry<Integer, Stats> entry : stats.entrySet()) {
+          Stats total = merged.get(entry.getKey());
+          if (total == null) {
+            merged.put(entry.getKey(), entry.getValue());
+          } else {
+            total.add(entry.getValue());
+          }
+        }
+      }
+      write(path, merged);
+    }
+
+    /**
+     * Deal, and for every shape of lead the leader could make, play the round out
+     * from there. Stats are keyed by signature and lead shape; see key().
+     */
+    private void play(int deal, Map<Integer, Stats> stats) {
+      Position leader = Position.values()[deal % Position.values().length];
+      long dealSeed = seed * 31 + deal;
+      Round first = Round.deal(new Random(dealSeed), leader);
+      Hand hand = first.getHand(leader);
+      int signature = signature(hand);
+      List<Play> leads = PlayGenerator.legalPlays(hand.getCards(), null);
+
+      boolean[] tried = new boolean[KINDS.length * (Hand.NEW_HAND_SIZE + 1)];
+      // Each shape counts once per deal, toward the slot's deal count.
+      bump(stats, key(signature, -1, 0), 0);
+      for (Play lead : leads) {
+        int shape = lead.getKind().ordinal() * (Hand.NEW_HAND_SIZE + 1) + lead.numCards();
+        if (tried[shape]) {
+          continue;
+        }
+        tried[shape] = true;
+        Play play = lowest(leads, lead.getKind(), lead.numCards());
+
+        Round round = Round.deal(new Random(dealSeed), leader);
+        round.play(play);
+        Strategy player = strategy.get();
+        while (!round.isOver()) {
+          round.play(player.choose(round));
+        }
+        int differential = leader.isNorthSouth()
+          ? round.scoreNS() - round.scoreEW()
+          : round.scoreEW() - round.scoreNS();
+        bump(stats, key(signature, lead.getKind().ordinal(), lead.numCards()), differential);
+      }
+    }
+
+    private static void bump(Map<Integer, Stats> stats, int key, int differential) {
+      Stats entry = stats.get(key);
+      if (entry == null) {
+        entry = new Stats();
+        stats.put(key, entry);
+      }
+      entry.numDeals++;
+      entry.sumDifferential += differential;
+    }
+
+    /**
+     * Get the stats key for a signature and lead shape. Kind -1 is for the
+     * signature's own count of deals.
+     */
+    private static int key(int signature, int kind, int numCards) {
+      return signature << 10 | (kind + 1) << 5 | numCards;
+    }
+
+    /** Write every slot, with its best leads, and the header. */
+    private void write(Path path, Map<Integer, Stats> stats) throws IOException {
+      long size = HEADER_SIZE + (long) NUM_SLOTS * SLOT_SIZE;
+      try (FileChannel channel = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE))
+      {
+        MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(SIGNATURE_BITS).putInt(LEADS_PER_SLOT);
+        for (int signature = 0; signature < NUM_SLOTS; signature++) {
+          int offset = slotOffset(signature);
+          for (int i = 0; i < LEADS_PER_SLOT; i++) {
+            out.put(offset + 4 + i * LEAD_SIZE, (byte) -1);
+          }
+        }
+
+        // Group the leads by signature, keeping the best few of each.
+        Map<Integer, int[]> best = Maps.newHashMap();
+        for (Map.Entry<Integer, Stats> entry : stats.entrySet()) {
+          int key = entry.getKey();
+          int signature = key >>> 10;
+          int kind = (key >>> 5 & 31) - 1;
+          Stats lead = entry.getValue();
+          if (kind < 0) {
+            out.putInt(slotOffset(signature), lead.numDeals);
+            continue;
+          }
+          if (lead.numDeals < minDeals) {
+            continue;
+          }
+          int[] keys = best.get(signature);
+          if (keys == null) {
+            keys = new int[] {-1, -1, -1};
+            best.put(signature, keys);
+          }
+          insert(keys, key, stats);
+        }
+        for (Map.Entry<Integer, int[]> entry : best.entrySet()) {
+          int offset = slotOffset(entry.getKey()) + 4;
+          for (int key : entry.getValue()) {
+            if (key < 0) {
+              break;
+            }
+            Stats lead = stats.get(key);
+            out.put(offset, (byte) ((key >>> 5 & 31) - 1));
+            out.put(offset + 1, (byte) (key & 31));
+            out.putInt(offset + 4, lead.numDeals);
+            out.putFloat(offset + 8, (float) lead.mean());
+            offset += LEAD_SIZE;
+          }
+        }
+        out.force();
+      }
+    }
+
+    /** Put the key into the sorted list of the best keys, if it's good enough. */
+    private static void insert(int[] keys, int key, Map<Integer, Stats> stats) {
+      double mean = stats.get(key).mean();
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] < 0 || mean > stats.get(keys[i]).mean()) {
+          System.arraycopy(keys, i, keys, i + 1, keys.length - i - 1);
+          keys[i] = key;
+          return;
+        }
+      }
+    }
+
+    /** How one shape of lead did, for one signature. */
+    private static final class Stats {
+
+      private int numDeals;
+      private long sumDifferential;
+
+      void add(Stats other) {
+        numDeals += other.numDeals;
+        sumDifferential += other.sumDifferential;
+      }
+
+      double mean() {
+        return numDeals == 0 ? 0 : (double) sumDifferential / numDeals;
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Get the mapped book, if it hasn't been closed. */
+  private MappedByteBuffer slots() {
+    MappedByteBuffer mapped = slots;
+    checkState(mapped != null, "The lead book has been closed.");
+    return mapped;
+  }
+
+  private static int slotOffset(int signature) {
+    checkArgument(signature >= 0 && signature < NUM_SLOTS);
+    return HEADER_SIZE + signature * SLOT_SIZE;
+  }
+
+  /** Get the lowest of the plays with the given kind and length, or null if there isn't one. */
+  private static Play lowest(List<Play> plays, Play.Kind kind, int numCards) {
+    Play lowest = null;
+    for (Play play : plays) {
+      if (play.getKind() == kind
+        && play.numCards() == numCards
+        && (lowest == null || play.lowestRank().compareTo(lowest.lowestRank()) < 0))
+      {
+        lowest = play;
+      }
+    }
+    return lowest;
+  }
+}
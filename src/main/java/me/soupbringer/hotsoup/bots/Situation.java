@@ -0,0 +1,170 @@
+package me.soupbringer.hotsoup.bots;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Everything one player can see when it's their turn: their own cards, the state
+ * of the current trick, everyone's hand sizes, and the cards played so far.
+ *
+ * Two Situations are equal if they look identical to the player, so these make
+ * good cache keys. Everything is stored packed, so comparing them is cheap.
+ */
+public final class Situation {
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final Position observer;
+
+  /** The observer's cards, packed (see PackedCards). */
+  private final long[] ownCards;
+
+  /** Every card played so far this round, packed. */
+  private final long[] seenCards;
+
+  /** Each position's hand size, indexed by ordinal. */
+  private final int[] handSizes;
+
+  /** The top play of the current trick, or null on a lead. */
+  private final Play top;
+
+  private final Position topPosition;
+  private final int numConsecutivePasses;
+  private final int trickPoints;
+
+  /** Cached hash code; computed once, since these get hashed a lot. */
+  private final int hashCode;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through the static factory method. */
+  private Situation(Round round, Position observer) {
+    this.observer = observer;
+    this.ownCards = PackedCards.pack(round.getHand(observer).getCards());
+    this.seenCards = PackedCards.pack(round.getPlayed());
+    this.handSizes = new int[Position.values().length];
+    for (Position position : Position.values()) {
+      handSizes[position.ordinal()] = round.getHand(position).numCardsLeft();
+    }
+    this.top = round.getTopPlay();
+    this.topPosition = round.getTopPosition();
+    this.numConsecutivePasses = top == null ? 0 : round.getNumConsecutivePasses();
+    this.trickPoints = round.getTrickPoints();
+    this.hashCode = computeHashCode();
+  }
+
+  /**
+   * Take a snapshot of the round, as the observer sees it. It should be the
+   * observer's turn.
+   */
+  public static Situation of(Round round, Position observer) {
+    Preconditions.checkArgument(round.getTurn() == observer, "It isn't " + observer + "'s turn.");
+    return new Situation(round, observer);
+  }
+
+  // ------------------------------------------------------------------------
+  // Getters
+
+  /** Get the player this situation is seen by. */
+  public Position getObserver() {
+    return observer;
+  }
+
+  /** Get the observer's cards. */
+  public ImmutableMultiset<Card> getOwnCards() {
+    return PackedCards.unpack(ownCards, 0);
+  }
+
+  /** Get the top play of the current trick, or null on a lead. */
+  public Play getTopPlay() {
+    return top;
+  }
+
+  /** Get a map from position to the number of cards held there. */
+  public Map<Position, Integer> getHandSizes() {
+    Map<Position, Integer> sizes = new EnumMap<>(Position.class);
+    for (Position position : Position.values()) {
+      sizes.put(position, handSizes[position.ordinal()]);
+    }
+    return sizes;
+  }
+
+  /** Get a tracker for what the observer believes about everyone else's cards. */
+  public CardTracker newTracker() {
+    return new CardTracker(
+      observer, getOwnCards(), getHandSizes(), PackedCards.unpack(seenCards, 0), false);
+  }
+
+  /**
+   * Build a Round from this situation, filling in everyone else's hands from a
+   * sampled deal.
+   *
+   * @param deal A buffer filled in by DealSampler.sampleInto.
+   * @param offset Where in the buffer the deal starts.
+   * @param positions The DealSampler's getPositions().
+   */
+  public Round toRound(long[] deal, int offset, ImmutableList<Position> positions) {
+    Map<Position, Hand> hands = new EnumMap<>(Position.class);
+    hands.put(observer, Hand.builder().addAll(getOwnCards()).buildInProgress());
+    for (int i = 0; i < positions.size(); i++) {
+      ImmutableMultiset<Card> cards =
+        PackedCards.unpack(deal, offset + i * PackedCards.NUM_WORDS);
+      hands.put(positions.get(i), Hand.builder().addAll(cards).buildInProgress());
+    }
+    return Round.resume(
+      ImmutableMap.copyOf(hands), observer, top, topPosition, numConsecutivePasses, trickPoints);
+  }
+
+  // ------------------------------------------------------------------------
+  // Implementation
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof Situation) {
+      Situation other = (Situation) o;
+      return hashCode == other.hashCode
+        && observer == other.observer
+        && Arrays.equals(ownCards, other.ownCards)
+        && Arrays.equals(seenCards, other.seenCards)
+        && Arrays.equals(handSizes, other.handSizes)
+        && (top == null ? other.top == null : top.equals(other.top))
+        && topPosition == other.topPosition
+        && numConsecutivePasses == other.numConsecutivePasses
+        && trickPoints == other.trickPoints;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  /** Hash the hand and the trick state together. */
+  private int computeHashCode() {
+    int handHash = Arrays.hashCode(ownCards);
+    int trickHash = Arrays.hashCode(new int[] {
+      top == null ? 0 : top.hashCode(),
+      topPosition == null ? -1 : topPosition.ordinal(),
+      numConsecutivePasses,
+      trickPoints,
+      Arrays.hashCode(seenCards),
+      Arrays.hashCode(handSizes)});
+    return 31 * (31 * observer.ordinal() + handHash) + trickHash;
+  }
+}
@@ -0,0 +1,21 @@
+package me.soupbringer.hotsoup.bots;
+
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Interface for bots which decide what to play.
+ *
+ * Strategies are handed the whole Round, but should only look at what the player
+ * whose turn it is could see: their own hand, the cards played so far, and how
+ * many cards everyone else is holding.
+ */
+@FunctionalInterface
+public interface Strategy {
+
+  /**
+   * Choose a Play (possibly a pass) for whoever's turn it is in the round.
+   * The Play must be legal.
+   */
+  Play choose(Round round);
+}
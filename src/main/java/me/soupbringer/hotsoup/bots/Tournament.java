@@ -0,0 +1,427 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+
+/**
+ * Plays two Strategies against each other over many deals, to see which is better.
+ *
+ * Every deal is played twice: once with strategy A sitting north/south, and once
+ * with the same cards and A sitting east/west. Whatever luck was in the deal
+ * cancels out between the two games, so far fewer deals are needed to tell the
+ * strategies apart. The leading seat rotates from deal to deal.
+ *
+ * Deals are spread over a pool of threads. Each game's result is streamed to a
+ * listener as soon as it's done, and the run stops early once A's average point
+ * differential per deal is significantly different from zero. Since we look after
+ * every deal, that's decided by a mixture sequential probability ratio test, which
+ * keeps its false positive rate under alpha however often it's checked; a plain
+ * confidence interval re-tested every deal would stop on noise far too often.
+ */
+public final class Tournament {
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final Supplier<? extends Strategy> strategyA;
+  private final Supplier<? extends Strategy> strategyB;
+  private final long seed;
+  private final int minDeals;
+  private final int maxDeals;
+  private final int numThreads;
+  private final double alpha;
+  private final double z;
+  private final Consumer<? super GameResult> listener;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through the Builder. */
+  private Tournament(Builder builder) {
+    this.strategyA = builder.strategyA;
+    this.strategyB = builder.strategyB;
+    this.seed = builder.seed;
+    this.minDeals = builder.minDeals;
+    this.maxDeals = builder.maxDeals;
+    this.numThreads = builder.numThreads;
+    this.alpha = builder.alpha;
+    this.z = builder.z;
+    this.listener = builder.listener;
+  }
+
+  /**
+   * Get a new Builder for a Tournament between the two strategies. The suppliers
+   * are called once per game, so strategies with state don't get shared between
+   * threads.
+   */
+  public static Builder builder(
+    Supplier<? extends Strategy> strategyA,
+    Supplier<? extends Strategy> strategyB)
+  {
+    return new Builder(strategyA, strategyB);
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /**
+   * Play the tournament, and report the results. This blocks until it's done.
+   * If a strategy throws, the tournament stops and the exception is rethrown here.
+   */
+  public Report run() throws InterruptedException {
+    long start = System.nanoTime();
+    Stats stats = new Stats(minDeals, alpha);
+    AtomicInteger nextDeal = new AtomicInteger();
+    AtomicBoolean significant = new AtomicBoolean();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      executor.execute(() -> {
+        int deal;
+        while (!significant.get()
+          && failure.get() == null
+          && (deal = nextDeal.getAndIncrement()) < maxDeals)
+        {
+          try {
+            GameResult aNorthSouth = play(deal, true);
+            GameResult aEastWest = play(deal, false);
+            listener.accept(aNorthSouth);
+            listener.accept(aEastWest);
+            if (stats.add(aNorthSouth, aEastWest)) {
+              significant.set(true);
+            }
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return stats.report(significant.get(), z, System.nanoTime() - start);
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Play a single game of the given deal, with A sitting wherever we're told. */
+  private GameResult play(int deal, boolean aIsNorthSouth) {
+    Strategy a = strategyA.get();
+    Strategy b = strategyB.get();
+    Position leader = Position.values()[deal % Position.values().length];
+    Round round = Round.deal(new Random(seed * 31 + deal), leader);
+    while (!round.isOver()) {
+      boolean northSouthTurn = round.getTurn().isNorthSouth();
+      Strategy strategy = northSouthTurn == aIsNorthSouth ? a : b;
+      round.play(strategy.choose(round));
+    }
+    return new GameResult(deal, aIsNorthSouth, round.scoreNS(), round.scoreEW());
+  }
+
+  // ------------------------------------------------------------------------
+  // Results
+
+  /**
+   * The result of a single game.
+   */
+  public static final class GameResult {
+
+    private final int deal;
+    private final boolean aIsNorthSouth;
+    private final int scoreNS;
+    private final int scoreEW;
+
+    private GameResult(int deal, boolean aIsNorthSouth, int scoreNS, int scoreEW) {
+      this.deal = deal;
+      this.aIsNorthSouth = aIsNorthSouth;
+      this.scoreNS = scoreNS;
+      this.scoreEW = scoreEW;
+    }
+
+    /** Get which deal this game was played on. */
+    public int getDeal() {
+      return deal;
+    }
+
+    /** Returns true if strategy A sat north/south, and false if it sat east/west. */
+    public boolean isANorthSouth() {
+      return aIsNorthSouth;
+    }
+
+    /** Get the points A's team took, minus the points B's team took. */
+    public int getDifferential() {
+      return aIsNorthSouth ? scoreNS - scoreEW : scoreEW - scoreNS;
+    }
+
+    @Override
+    public String toString() {
+      return "deal " + deal + (aIsNorthSouth ? " (A NS): " : " (A EW): ") + getDifferential();
+    }
+  }
+
+  /**
+   * The overall results of a tournament, from strategy A's point of view.
+   */
+  public static final class Report {
+
+    private final int numDeals;
+    private final double winRate;
+    private final double winRateError;
+    private final double meanDifferential;
+    private final double differentialError;
+    private final boolean significant;
+    private final long elapsedNanos;
+
+    private Report(
+      int numDeals,
+      double winRate,
+      double winRateError,
+      double meanDifferential,
+      double differentialError,
+      boolean significant,
+      long elapsedNanos)
+    {
+      this.numDeals = numDeals;
+      this.winRate = winRate;
+      this.winRateError = winRateError;
+      this.meanDifferential = meanDifferential;
+      this.differentialError = differentialError;
+      this.significant = significant;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Get the number of deals played (each one twice). */
+    public int getNumDeals() {
+      return numDeals;
+    }
+
+    /** Get the fraction of games A won, counting ties as half a win. */
+    public double getWinRate() {
+      return winRate;
+    }
+
+    /** Get the half-width of the confidence interval around the win rate. */
+    public double getWinRateError() {
+      return winRateError;
+    }
+
+    /** Get A's average point differential per deal (both games together). */
+    public double getMeanDifferential() {
+      return meanDifferential;
+    }
+
+    /** Get the half-width of the confidence interval around the mean differential. */
+    public double getDifferentialError() {
+      return differentialError;
+    }
+
+    /** Returns true if we stopped because the differential was significant. */
+    public boolean isSignificant() {
+      return significant;
+    }
+
+    /** Get the number of deals played per second. */
+    public double getDealsPerSecond() {
+      return numDeals / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "%d deals: A wins %.1f%% +/- %.1f%%, differential %.2f +/- %.2f%s (%.0f deals/sec)",
+        numDeals,
+        100 * winRate, 100 * winRateError,
+        meanDifferential, differentialError,
+        significant ? ", significant" : "",
+        getDealsPerSecond());
+    }
+  }
+
+  /**
+   * Running statistics, shared between all the worker threads. Means and variances
+   * are kept with Welford's method.
+   *
+   * The two games of a deal are paired: their differentials are added up first, so
+   * the variance is that of whole deals, with the luck of the cards taken out.
+   */
+  static final class Stats {
+
+    private final int minDeals;
+    private final double alpha;
+    private int numDeals;
+    private double meanDifferential;
+    private double sumSquaresDifferential;
+    private int numGames;
+    private double meanWins;
+    private double sumSquaresWins;
+
+    Stats(int minDeals, double alpha) {
+      this.minDeals = minDeals;
+      this.alpha = alpha;
+    }
+
+    /**
+     * Add the results of both games of a deal. Returns true if A's differential
+     * is now significantly different from zero.
+     */
+    synchronized boolean add(GameResult first, GameResult second) {
+      for (GameResult result : new GameResult[] {first, second}) {
+        double win = Math.signum(result.getDifferential()) / 2 + 0.5;
+        numGames++;
+        double winDelta = win - meanWins;
+        meanWins += winDelta / numGames;
+        sumSquaresWins += winDelta * (win - meanWins);
+      }
+      return addDifferential(first.getDifferential() + second.getDifferential());
+    }
+
+    /**
+     * Add a deal's total differential. Returns true if the mean is now
+     * significantly different from zero.
+     *
+     * This is the mixture SPRT: the likelihood ratio of "the mean is some theta,
+     * drawn from N(0, tau^2)" against "the mean is zero", for normal differentials
+     * with the variance we've seen so far. Stopping as soon as it reaches 1 / alpha
+     * is wrong at most alpha of the time. Tau is picked so the test is sharpest
+     * around minDeals.
+     */
+    synchronized boolean addDifferential(double differential) {
+      numDeals++;
+      double delta = differential - meanDifferential;
+      meanDifferential += delta / numDeals;
+      sumSquaresDifferential += delta * (differential - meanDifferential);
+      if (numDeals < minDeals || sumSquaresDifferential <= 0) {
+        return false;
+      }
+
+      double variance = sumSquaresDifferential / (numDeals - 1);
+      double tauSquared = variance / minDeals;
+      double spread = variance + numDeals * tauSquared;
+      double sum = numDeals * meanDifferential;
+      double logRatio = 0.5 * Math.log(variance / spread)
+        + tauSquared * sum * sum / (2 * variance * spread);
+      return logRatio >= -Math.log(alpha);
+    }
+
+    /** Summarize everything we've seen. */
+    synchronized Report report(boolean significant, double z, long elapsedNanos) {
+      return new Report(
+        numDeals,
+        meanWins,
+        halfWidth(sumSquaresWins, numGames, z),
+        meanDifferential,
+        halfWidth(sumSquaresDifferential, numDeals, z),
+        significant,
+        elapsedNanos);
+    }
+
+    /** Half the width of a normal confidence interval around a mean. */
+    private static double halfWidth(double sumSquares, int n, double z) {
+      return n < 2 ? Double.POSITIVE_INFINITY : z * Math.sqrt(sumSquares / (n - 1) / n);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Builder
+
+  /**
+   * A Builder for a Tournament.
+   */
+  public static final class Builder {
+
+    private final Supplier<? extends Strategy> strategyA;
+    private final Supplier<? extends Strategy> strategyB;
+    private long seed;
+    private int minDeals = 100;
+    private int maxDeals = 10000;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private double alpha = 0.05;
+    private double z = 1.96;
+    private Consumer<? super GameResult> listener = result -> { };
+
+    /** Instantiate via the static builder() method. */
+    private Builder(Supplier<? extends Strategy> strategyA, Supplier<? extends Strategy> strategyB) {
+      this.strategyA = checkNotNull(strategyA);
+      this.strategyB = checkNotNull(strategyB);
+    }
+
+    /** Set the seed which all the deals are derived from. */
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Set the fewest deals to play before we're allowed to stop early. */
+    public Builder minDeals(int minDeals) {
+      checkArgument(minDeals >= 2, "We need at least two deals for any statistics.");
+      this.minDeals = minDeals;
+      return this;
+    }
+
+    /** Set the most deals to play. */
+    public Builder maxDeals(int maxDeals) {
+      checkArgument(maxDeals > 0);
+      this.maxDeals = maxDeals;
+      return this;
+    }
+
+    /** Set the number of threads to play on. Defaults to one per core. */
+    public Builder threads(int numThreads) {
+      checkArgument(numThreads > 0);
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /**
+     * Set the chance of stopping early when the strategies are really just as
+     * good as each other. Defaults to 0.05.
+     */
+    public Builder alpha(double alpha) {
+      checkArgument(alpha > 0 && alpha < 1);
+      this.alpha = alpha;
+      return this;
+    }
+
+    /**
+     * Set how many standard errors wide the reported confidence intervals are.
+     * Defaults to 1.96, for 95% intervals. This doesn't affect when we stop.
+     */
+    public Builder z(double z) {
+      checkArgument(z > 0);
+      this.z = z;
+      return this;
+    }
+
+    /**
+     * Set a listener to be told about every game as soon as it's done. This gets
+     * called from the worker threads, so it has to be thread-safe.
+     */
+    public Builder listener(Consumer<? super GameResult> listener) {
+      this.listener = checkNotNull(listener);
+      return this;
+    }
+
+    /** Build the Tournament. */
+    public Tournament build() {
+      checkArgument(minDeals <= maxDeals, "minDeals can't be more than maxDeals.");
+      return new Tournament(this);
+    }
+  }
+}
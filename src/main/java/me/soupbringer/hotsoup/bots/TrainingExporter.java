@@ -0,0 +1,497 @@
+package me.soupbringer.hotsoup.bots;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayClassifier;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * Plays a Strategy against itself over many deals, and writes out a record of
+ * every decision it made, for training evaluation models offline.
+ *
+ * Output is split into chunk files in one directory, named prefix-00000.bin.gz
+ * and so on. Each one is gzipped, and inside starts with MAGIC and VERSION (two
+ * big-endian ints), followed by records, to the end of the file. A record is:
+ *
+ *   long     deal        the deal number (the seed is derived from it)
+ *   short    turn        how many turns came before this one in the round
+ *   byte     position    the Position ordinal of whoever is deciding
+ *   byte     lead        1 on a lead, 0 when following
+ *   long[2]  hand        the decider's hand, packed (see PackedCards)
+ *   byte     topKind     the top play's Play.Kind ordinal, or -1 on a lead
+ *   byte     topLength   the number of cards in the top play, or 0
+ *   byte     topRank     the top play's lowest Rank ordinal, or -1 on a lead
+ *   long[2]  seen        every card played so far this round, packed
+ *   short    numMoves    the number of legal moves
+ *   long[2]  move        each legal move, packed; a pass is empty, and comes first
+ *   short    chosen      the index of the move that was made (see below)
+ *   int      outcome     the decider's team's final points, minus the other team's
+ *
+ * The generator only offers one set of suits for each set of ranks. If the
+ * strategy picks the same ranks in other suits, chosen points at the generator's
+ * move, so every move in a record is still different. Only a choice no move
+ * matches is added to the end of the moves.
+ *
+ * Games are played on a pool of threads, which encode each finished game into one
+ * buffer and hand it to the writers through a bounded queue. Writers compress as
+ * they go, and never split a game between chunks. If the writers fall behind, the
+ * queue fills and the players wait, so memory stays bounded however fast they are.
+ */
+public final class TrainingExporter {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  public static final int MAGIC = 0x48535444;
+  public static final int VERSION = 1;
+
+  private static final int WORDS = PackedCards.NUM_WORDS;
+
+  /** The bytes in a record besides its moves. */
+  private static final int FIXED_BYTES = 8 + 2 + 1 + 1 + 16 + 3 + 16 + 2 + 2 + 4;
+
+  /** Handed to each writer once the games are all done. */
+  private static final EncodedGame DONE = new EncodedGame(new byte[0], 0);
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final Supplier<? extends Strategy> strategy;
+  private final Path directory;
+  private final String prefix;
+  private final long seed;
+  private final int numDeals;
+  private final int numThreads;
+  private final int numWriters;
+  private final int queueCapacity;
+  private final int recordsPerChunk;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through the Builder. */
+  private TrainingExporter(Builder builder) {
+    this.strategy = builder.strategy;
+    this.directory = builder.directory;
+    this.prefix = builder.prefix;
+    this.seed = builder.seed;
+    this.numDeals = builder.numDeals;
+    this.numThreads = builder.numThreads;
+    this.numWriters = builder.numWriters;
+    this.queueCapacity = builder.queueCapacity;
+    this.recordsPerChunk = builder.recordsPerChunk;
+  }
+
+  /**
+   * Get a new Builder for an exporter which writes chunk files into the directory.
+   * The supplier is called once per game, so strategies with state don't get
+   * shared between threads.
+   */
+  public static Builder builder(Supplier<? extends Strategy> strategy, Path directory) {
+    return new Builder(strategy, directory);
+  }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /**
+   * Play every deal, and write out the records. This blocks until it's done.
+   * If a strategy throws, or a chunk can't be written, the export stops and the
+   * exception is rethrown here.
+   */
+  public Report run() throws InterruptedException {
+    long start = System.nanoTime();
+    BlockingQueue<EncodedGame> queue = new ArrayBlockingQueue<>(queueCapacity);
+    AtomicInteger nextDeal = new AtomicInteger();
+    AtomicInteger nextChunk = new AtomicInteger();
+    AtomicLong numRecords = new AtomicLong();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    ExecutorService writers = Executors.newFixedThreadPool(numWriters);
+    for (int i = 0; i < numWriters; i++) {
+      writers.execute(() -> {
+        try {
+          write(queue, nextChunk, numRecords);
+        } catch (IOException e) {
+          failure.compareAndSet(null, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+
+    ExecutorService players = Executors.newFixedThreadPool(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      players.execute(() -> {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        int deal;
+        try {
+          while (failure.get() == null && (deal = nextDeal.getAndIncrement()) < numDeals) {
+            EncodedGame game = new EncodedGame(null, 0);
+            buffer = play(deal, buffer, game);
+            while (!queue.offer(game, 100, TimeUnit.MILLISECONDS)) {
+              if (failure.get() != null) {
+                return;
+              }
+            }
+          }
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    players.shutdown();
+    players.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+    for (int i = 0; i < numWriters; i++) {
+      while (failure.get() == null && !queue.offer(DONE, 100, TimeUnit.MILLISECONDS)) {
+        // The writers are still catching up.
+      }
+    }
+    if (failure.get() == null) {
+      writers.shutdown();
+    } else {
+      // Nobody's going to tell the writers we're done; interrupt them instead.
+      writers.shutdownNow();
+    }
+    writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return new Report(
+      Math.min(nextDeal.get(), numDeals),
+      numRecords.get(),
+      nextChunk.get(),
+      System.nanoTime() - start);
+  }
+
+  // ------------------------------------------------------------------------
+  // Results
+
+  /**
+   * How an export went.
+   */
+  public static final class Report {
+
+    private final int numDeals;
+    private final long numRecords;
+    private final int numChunks;
+    private final long elapsedNanos;
+
+    private Report(int numDeals, long numRecords, int numChunks, long elapsedNanos) {
+      this.numDeals = numDeals;
+      this.numRecords = numRecords;
+      this.numChunks = numChunks;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Get the number of deals played. */
+    public int getNumDeals() {
+      return numDeals;
+    }
+
+    /** Get the number of decision records written. */
+    public long getNumRecords() {
+      return numRecords;
+    }
+
+    /** Get the number of chunk files written. */
+    public int getNumChunks() {
+      return numChunks;
+    }
+
+    /** Get the number of records written per second. */
+    public double getRecordsPerSecond() {
+      return numRecords / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+        "%d deals, %d records in %d chunks (%.0f records/sec)",
+        numDeals, numRecords, numChunks, getRecordsPerSecond());
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * A finished game's records, ready to be written.
+   */
+  private static final class EncodedGame {
+
+    private byte[] bytes;
+    private int numRecords;
+
+    EncodedGame(byte[] bytes, int numRecords) {
+      this.bytes = bytes;
+      this.numRecords = numRecords;
+    }
+  }
+
+  /**
+   * Play a deal, encoding a record of every decision into the buffer, and then
+   * copying them into the game. Returns the buffer, which is replaced with a
+   * bigger one if it runs out of room, to be reused for the next game.
+   */
+  private ByteBuffer play(int deal, ByteBuffer buffer, EncodedGame game) {
+    Strategy player = strategy.get();
+    Position leader = Position.values()[deal % Position.values().length];
+    Round round = Round.deal(new Random(seed * 31 + deal), leader);
+    buffer.clear();
+    // Where each record's outcome goes, and whose team it's for.
+    int[] outcomes = new int[128];
+    boolean[] northSouth = new boolean[128];
+    int numDecisions = 0;
+
+    while (!round.isOver()) {
+      Position me = round.getTurn();
+      Play top = round.getTopPlay();
+      List<Play> moves = Lists.newArrayList();
+      if (top != null) {
+        moves.add(Play.pass());
+      }
+      moves.addAll(PlayGenerator.legalPlays(round.getHand(me).getCards(), top));
+      Play choice = player.choose(round);
+      int chosen = indexOfMove(moves, choice);
+      if (chosen < 0) {
+        chosen = moves.size();
+        moves.add(choice);
+      }
+
+      int size = FIXED_BYTES + moves.size() * WORDS * 8;
+      if (buffer.remaining() < size) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, size));
+        buffer.flip();
+        buffer = bigger.put(buffer);
+      }
+      if (numDecisions == outcomes.length) {
+        outcomes = Arrays.copyOf(outcomes, numDecisions * 2);
+        northSouth = Arrays.copyOf(northSouth, numDecisions * 2);
+      }
+
+      buffer.putLong(deal);
+      buffer.putShort((short) round.getNumTurns());
+      buffer.put((byte) me.ordinal());
+      buffer.put((byte) (top == null ? 1 : 0));
+      putCards(buffer, PackedCards.pack(round.getHand(me).getCards()));
+      buffer.put((byte) (top == null ? -1 : top.getKind().ordinal()));
+      buffer.put((byte) (top == null ? 0 : top.numCards()));
+      buffer.put((byte) (top == null ? -1 : top.lowestRank().ordinal()));
+      putCards(buffer, PackedCards.pack(round.getPlayed()));
+      buffer.putShort((short) moves.size());
+      for (Play move : moves) {
+        putCards(buffer, PackedCards.pack(move.getCards()));
+      }
+      buffer.putShort((short) chosen);
+      outcomes[numDecisions] = buffer.position();
+      northSouth[numDecisions] = me.isNorthSouth();
+      buffer.putInt(0);
+      numDecisions++;
+
+      round.play(choice);
+    }
+
+    int differential = round.scoreNS() - round.scoreEW();
+    for (int i = 0; i < numDecisions; i++) {
+      buffer.putInt(outcomes[i], northSouth[i] ? differential : -differential);
+    }
+    game.bytes = Arrays.copyOf(buffer.array(), buffer.position());
+    game.numRecords = numDecisions;
+    return buffer;
+  }
+
+  /**
+   * Get the index of the choice among the moves, or of the move with the same
+   * kind, length and ranks, or -1 if there's neither.
+   */
+  private static int indexOfMove(List<Play> moves, Play choice) {
+    int chosen = moves.indexOf(choice);
+    if (chosen >= 0) {
+      return chosen;
+    }
+    long ranks = PlayClassifier.histogram(choice.getCards());
+    for (int i = 0; i < moves.size(); i++) {
+      Play move = moves.get(i);
+      if (move.getKind() == choice.getKind()
+        && move.numCards() == choice.numCards()
+        && PlayClassifier.histogram(move.getCards()) == ranks)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void putCards(ByteBuffer buffer, long[] packed) {
+    for (int w = 0; w < WORDS; w++) {
+      buffer.putLong(packed[w]);
+    }
+  }
+
+  /**
+   * A writer's loop: take encoded games off the queue, and write them into chunk
+   * files, starting a new one whenever the current one has enough records.
+   */
+  private void write(
+    BlockingQueue<EncodedGame> queue,
+    AtomicInteger nextChunk,
+    AtomicLong numRecords)
+    throws IOException, InterruptedException
+  {
+    DataOutputStream out = null;
+    long inChunk = 0;
+    try {
+      while (true) {
+        EncodedGame game = queue.take();
+        if (game == DONE) {
+          return;
+        }
+        if (out == null) {
+          out = openChunk(nextChunk.getAndIncrement());
+        }
+        out.write(game.bytes);
+        numRecords.addAndGet(game.numRecords);
+        inChunk += game.numRecords;
+        if (inChunk >= recordsPerChunk) {
+          out.close();
+          out = null;
+          inChunk = 0;
+        }
+      }
+    } finally {
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /** Start a new chunk file, with its header. */
+  private DataOutputStream openChunk(int chunk) throws IOException {
+    Path path = directory.resolve(String.format("%s-%05d.bin.gz", prefix, chunk));
+    OutputStream file = Files.newOutputStream(path);
+    DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(new GZIPOutputStream(file, 64 * 1024)));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    return out;
+  }
+
+  // ------------------------------------------------------------------------
+  // Builder
+
+  /**
+   * A Builder for a TrainingExporter.
+   */
+  public static final class Builder {
+
+    private final Supplier<? extends Strategy> strategy;
+    private final Path directory;
+    private String prefix = "decisions";
+    private long seed;
+    private int numDeals = 10000;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int numWriters = 1;
+    private int queueCapacity = 256;
+    private int recordsPerChunk = 1000000;
+
+    /** Instantiate via the static builder() method. */
+    private Builder(Supplier<? extends Strategy> strategy, Path directory) {
+      this.strategy = checkNotNull(strategy);
+      this.directory = checkNotNull(directory);
+    }
+
+    /** Set what chunk file names start with. Defaults to "decisions". */
+    public Builder prefix(String prefix) {
+      checkArgument(!prefix.isEmpty());
+      this.prefix = prefix;
+      return this;
+    }
+
+    /** Set the seed which all the deals are derived from. */
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Set how many deals to play. Defaults to 10000. */
+    public Builder deals(int numDeals) {
+      checkArgument(numDeals > 0);
+      this.numDeals = numDeals;
+      return this;
+    }
+
+    /** Set the number of threads to play on. Defaults to one per core. */
+    public Builder threads(int numThreads) {
+      checkArgument(numThreads > 0);
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /**
+     * Set the number of threads compressing and writing chunks. Each writes its
+     * own chunks. Defaults to 1.
+     */
+    public Builder writers(int numWriters) {
+      checkArgument(numWriters > 0);
+      this.numWriters = numWriters;
+      return this;
+    }
+
+    /** Set how many finished games can wait for a writer. Defaults to 256. */
+    public Builder queueCapacity(int queueCapacity) {
+      checkArgument(queueCapacity > 0);
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Set how many records go in a chunk before starting the next. Chunks end
+     * between games, so they can run a little over. Defaults to a million.
+     */
+    public Builder recordsPerChunk(int recordsPerChunk) {
+      checkArgument(recordsPerChunk > 0);
+      this.recordsPerChunk = recordsPerChunk;
+      return this;
+    }
+
+    /** Build the TrainingExporter. */
+    public TrainingExporter build() {
+      return new TrainingExporter(this);
+    }
+  }
+}
@@ -1,15 +1,43 @@
 package me.soupbringer.hotsoup.conf;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import me.soupbringer.hotsoup.table.SessionRegistry;
 
 /**
  * Guice bindings for the HotSoup project.
  */
 public final class HotSoupModule extends AbstractModule {
 
+  /** How long a player can go unseen before their session ends. */
+  private static final long SESSION_TTL_MINUTES = 30;
+
   @Override
   protected void configure() {
     
   }
 
+  /** Runs periodic housekeeping, like sweeping out expired sessions. */
+  @Provides
+  @Singleton
+  ScheduledExecutorService provideScheduler() {
+    return new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+      .setNameFormat("hotsoup-housekeeping-%d")
+      .setDaemon(true)
+      .build());
+  }
+
+  /** Everyone's sessions, shared by every servlet, and swept on the scheduler. */
+  @Provides
+  @Singleton
+  SessionRegistry provideSessionRegistry(ScheduledExecutorService scheduler) {
+    return new SessionRegistry(SESSION_TTL_MINUTES, TimeUnit.MINUTES, scheduler);
+  }
 }
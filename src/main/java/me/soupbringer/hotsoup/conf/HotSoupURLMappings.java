@@ -1,6 +1,9 @@
 package me.soupbringer.hotsoup.conf;
 
+import me.soupbringer.hotsoup.servlets.HintServlet;
+import me.soupbringer.hotsoup.servlets.MetricsServlet;
 import me.soupbringer.hotsoup.servlets.TestServlet;
+import me.soupbringer.hotsoup.servlets.TimingFilter;
 
 import com.google.inject.servlet.ServletModule;
 
@@ -11,6 +14,10 @@ public class HotSoupURLMappings extends ServletModule {
    */
   @Override
   protected void configureServlets() {
+    filter("/*").through(TimingFilter.class);
+
+    serve("/hint").with(HintServlet.class);
+    serve("/metrics").with(MetricsServlet.class);
     serve("/*").with(TestServlet.class);
   }
 
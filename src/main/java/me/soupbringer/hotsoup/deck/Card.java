@@ -130,6 +130,15 @@ public final class Card implements Serializable {
     return getRank().compareTo(other.getRank());
   }
   
+  /**
+   * Compare cards by rank, and then by suit for cards of the same rank. Unlike
+   * compareByRank, this only returns 0 if the two cards are equal.
+   */
+  public int compareByRankThenSuit(Card other) {
+    int byRank = compareByRank(other);
+    return byRank != 0 ? byRank : suit.compareTo(other.suit);
+  }
+  
   // ------------------------------------------------------------------------
   // Implementation
 
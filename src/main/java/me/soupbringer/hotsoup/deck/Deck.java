@@ -0,0 +1,35 @@
+package me.soupbringer.hotsoup.deck;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The deck Hot Soup is played with: two standard decks, jokers included.
+ */
+public final class Deck {
+
+  /** The number of copies of each card in the deck. */
+  private static final int NUM_DECKS = 2;
+
+  /**
+   * No need to instantiate utils classes.
+   */
+  private Deck() { }
+
+  /**
+   * Get every card in the deck, in a random order determined by the argument.
+   */
+  public static List<Card> shuffled(Random random) {
+    List<Card> cards = Lists.newArrayListWithCapacity(NUM_DECKS * PackedCards.NUM_KINDS);
+    for (int copy = 0; copy < NUM_DECKS; copy++) {
+      for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+        cards.add(PackedCards.cardOf(kind));
+      }
+    }
+    Collections.shuffle(cards, random);
+    return cards;
+  }
+}
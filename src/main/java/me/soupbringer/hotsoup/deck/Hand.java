@@ -3,8 +3,13 @@ package me.soupbringer.hotsoup.deck;
 import java.util.Arrays;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
 
 /**
  * A single hand for a single player. When constructed initially, this is essentially
@@ -13,7 +18,11 @@ import com.google.common.collect.Multiset;
 public final class Hand {
   
   /** The size of each new hand. */
-  private static int NEW_HAND_SIZE = 26;
+  public static final int NEW_HAND_SIZE = 26;
+
+  /** How long it takes to play cards from a hand. */
+  private static final LatencyHistogram PLAY_ALL_LATENCY = Metrics.histogram(
+    "hotsoup_hand_play_all_seconds", "Time spent checking and removing played cards from a Hand.");
 
   /**
    * The cards in this hand.
@@ -49,6 +58,13 @@ public final class Hand {
     return cards.size();
   }
   
+  /**
+   * Get a read-only view of the cards left in this hand.
+   */
+  public Multiset<Card> getCards() {
+    return Multisets.unmodifiableMultiset(cards);
+  }
+  
   /**
    * Play the argument card from this hand.
    *
@@ -83,10 +99,68 @@ public final class Hand {
    *                                         exist in this hand.
    */
   public boolean playAll(Iterable<Card> cards) {
-    for (Card card : cards) {
-      removeCard(card);
+    long start = System.nanoTime();
+    try {
+      // Check everything up front, so we never play half of an illegal set of cards.
+      Card missing = findMissing(ImmutableMultiset.copyOf(cards));
+      if (missing != null) {
+        throw CardDoesNotExistInHandException.of(missing);
+      }
+      for (Card card : cards) {
+        removeCard(card);
+      }
+      return isOut();
+    } finally {
+      PLAY_ALL_LATENCY.recordSince(start);
+    }
+  }
+
+  /**
+   * Play all the argument cards from this hand, if they're all in it. If any of
+   * them aren't, nothing is played. Unlike playAll, this never throws.
+   *
+   * @return True if the cards were played, and false if they weren't all here.
+   */
+  public boolean tryPlayAll(Multiset<Card> cards) {
+    long start = System.nanoTime();
+    try {
+      if (findMissing(cards) != null) {
+        return false;
+      }
+      for (Multiset.Entry<Card> entry : cards.entrySet()) {
+        this.cards.remove(entry.getElement(), entry.getCount());
+      }
+      return true;
+    } finally {
+      PLAY_ALL_LATENCY.recordSince(start);
     }
-    return isOut();
+  }
+  
+  /**
+   * Returns true if every one of the argument cards (duplicates included) is
+   * in this hand, and false otherwise.
+   */
+  public boolean containsAll(Multiset<? extends Card> cards) {
+    return findMissing(cards) == null;
+  }
+
+  /**
+   * Returns true if every card in the multiset stored at packed[offset] (see
+   * PackedCards) is in this hand, duplicates included, and false otherwise.
+   */
+  public boolean containsAll(long[] packed, int offset) {
+    for (int word = 0; word < PackedCards.NUM_WORDS; word++) {
+      long bits = packed[offset + word];
+      while (bits != 0) {
+        int shift = Long.numberOfTrailingZeros(bits) & ~1;
+        Card card = PackedCards.cardOf(word * 32 + (shift >>> 1));
+        if (cards.count(card) < ((bits >>> shift) & 3)) {
+          return false;
+        }
+        bits &= ~(3L << shift);
+      }
+    }
+    return true;
   }
   
   /** 
@@ -95,10 +169,23 @@ public final class Hand {
    */
   private void removeCard(Card card) {
     if (!cards.contains(card)) {
-      throw new CardDoesNotExistInHandException(card);
+      throw CardDoesNotExistInHandException.of(card);
     }
     cards.remove(card);
   }
+
+  /**
+   * Get one of the argument cards which this hand doesn't have enough of, or
+   * null if it has them all.
+   */
+  private Card findMissing(Multiset<? extends Card> cards) {
+    for (Multiset.Entry<? extends Card> entry : cards.entrySet()) {
+      if (this.cards.count(entry.getElement()) < entry.getCount()) {
+        return entry.getElement();
+      }
+    }
+    return null;
+  }
   
   // --------------------------------------------------------------------------
   // Builder
@@ -149,6 +236,18 @@ public final class Hand {
       }
       return new Hand(cards);
     }
+    
+    /**
+     * Build the elements of this Builder into a Hand which has already had some
+     * of its cards played. This is for picking up a hand part of the way through,
+     * such as when simulating the rest of a game.
+     */
+    public Hand buildInProgress() {
+      if (cards.size() > NEW_HAND_SIZE) {
+        throw new InvalidNumberOfCardsForHandException(cards.size());
+      }
+      return new Hand(cards);
+    }
   }
   
   // --------------------------------------------------------------------------
@@ -174,13 +273,34 @@ public final class Hand {
     }
   }
   
-  /** Exception thrown whenever someone tries to play a card which isn't in their hand. */
+  /**
+   * Exception thrown whenever someone tries to play a card which isn't in their hand.
+   *
+   * There's one instance per card, made up front and without a stack trace, so
+   * throwing these is cheap.
+   */
   public static final class CardDoesNotExistInHandException extends RuntimeException {
     
     private static final long serialVersionUID = 1L;
+
+    /** The instance for each card, indexed by PackedCards kind. */
+    private static final CardDoesNotExistInHandException[] INSTANCES =
+      new CardDoesNotExistInHandException[PackedCards.NUM_KINDS];
+    static {
+      for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+        INSTANCES[kind] = new CardDoesNotExistInHandException(PackedCards.cardOf(kind));
+      }
+    }
     
     private CardDoesNotExistInHandException(Card card) {
-      super("We were told to play " + card + ", but it doesn't exist in this hand.");
+      super(
+        "We were told to play " + card + ", but it doesn't exist in this hand.",
+        null, false, false);
+    }
+
+    /** Get the exception for the given card. */
+    static CardDoesNotExistInHandException of(Card card) {
+      return INSTANCES[PackedCards.kindOf(card)];
     }
   }
 }
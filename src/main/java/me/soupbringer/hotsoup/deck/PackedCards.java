@@ -0,0 +1,196 @@
+package me.soupbringer.hotsoup.deck;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMultiset;
+
+/**
+ * Helpers for a compact, allocation-free representation of a multiset of cards.
+ *
+ * Each of the 54 kinds of card gets an index (its "kind"), ordered by rank and then
+ * by suit, so that THREE of CLUBS is 0 and the big joker is 53. Since we only play
+ * with two decks, a multiset holds at most 2 copies of each kind, so we store each
+ * count in 2 bits. That fits a whole multiset into NUM_WORDS longs.
+ */
+public final class PackedCards {
+
+  /** The number of distinct kinds of card. */
+  public static final int NUM_KINDS = 54;
+
+  /** The number of longs used to store a single packed multiset. */
+  public static final int NUM_WORDS = 2;
+
+  /** The most copies of a single kind we'll ever see (one per deck). */
+  public static final int MAX_COPIES = 2;
+
+  /** Number of suits that suited ranks come in. */
+  private static final int NUM_SUITS = 4;
+
+  /** Kind of the little joker. The big joker comes right after it. */
+  private static final int LITTLE_JOKER_KIND = 52;
+
+  /** One instance of each Card, indexed by kind. */
+  private static final Card[] CARDS_BY_KIND = allCardsByKind();
+
+  /** The rank of each kind of card. */
+  private static final Rank[] RANKS_BY_KIND = allRanksByKind();
+
+  /**
+   * No need to instantiate utils classes.
+   */
+  private PackedCards() { }
+
+  // --------------------------------------------------------------------------
+  // Kinds
+
+  /** Get the kind index (0 to 53) of the given card. */
+  public static int kindOf(Card card) {
+    Rank rank = card.getRank();
+    return rank.isSuited()
+      ? rank.ordinal() * NUM_SUITS + card.getSuit().ordinal()
+      : LITTLE_JOKER_KIND + rank.ordinal() - Rank.LITTLE_JOKER.ordinal();
+  }
+
+  /** Get the Card for the given kind index. */
+  public static Card cardOf(int kind) {
+    return CARDS_BY_KIND[kind];
+  }
+
+  /** Get the Rank of the given kind index. */
+  public static Rank rankOf(int kind) {
+    return RANKS_BY_KIND[kind];
+  }
+
+  /**
+   * Get a bitmask (bit i set for kind i) of every kind whose rank is strictly
+   * greater than the given one.
+   */
+  public static long kindsAbove(Rank rank) {
+    long mask = 0L;
+    for (int kind = 0; kind < NUM_KINDS; kind++) {
+      if (RANKS_BY_KIND[kind].compareTo(rank) > 0) {
+        mask |= 1L << kind;
+      }
+    }
+    return mask;
+  }
+
+  /** A bitmask with a bit set for every kind. */
+  public static long allKinds() {
+    return (1L << NUM_KINDS) - 1;
+  }
+
+  // --------------------------------------------------------------------------
+  // Packed multisets
+
+  /**
+   * Get the number of copies of the given kind in the multiset stored at
+   * packed[offset], packed[offset + 1].
+   */
+  public static int count(long[] packed, int offset, int kind) {
+    return (int) (packed[offset + (kind >>> 5)] >>> ((kind & 31) << 1)) & 3;
+  }
+
+  /**
+   * Add n copies of the given kind to the multiset stored at packed[offset].
+   * The caller is responsible for never going over MAX_COPIES.
+   */
+  public static void add(long[] packed, int offset, int kind, int n) {
+    packed[offset + (kind >>> 5)] += ((long) n) << ((kind & 31) << 1);
+  }
+
+  /** Remove n copies of the given kind from the multiset stored at packed[offset]. */
+  public static void remove(long[] packed, int offset, int kind, int n) {
+    packed[offset + (kind >>> 5)] -= ((long) n) << ((kind & 31) << 1);
+  }
+
+  /** Get the total number of cards in the multiset stored at packed[offset]. */
+  public static int size(long[] packed, int offset) {
+    int size = 0;
+    for (int word = 0; word < NUM_WORDS; word++) {
+      long bits = packed[offset + word];
+      // Each 2-bit count is (high bit * 2) + low bit.
+      size += Long.bitCount(bits & 0x5555555555555555L)
+        + 2 * Long.bitCount(bits & 0xAAAAAAAAAAAAAAAAL);
+    }
+    return size;
+  }
+
+  /** Get the lowest kind in the multiset stored at packed[offset], or -1 if it's empty. */
+  public static int lowestKind(long[] packed, int offset) {
+    for (int word = 0; word < NUM_WORDS; word++) {
+      long bits = packed[offset + word];
+      if (bits != 0) {
+        return word * 32 + (Long.numberOfTrailingZeros(bits) >>> 1);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the cards can be packed (no more than MAX_COPIES of any kind),
+   * and false otherwise.
+   */
+  public static boolean canPack(Iterable<? extends Card> cards) {
+    long[] packed = new long[NUM_WORDS];
+    for (Card card : cards) {
+      int kind = kindOf(card);
+      if (count(packed, 0, kind) == MAX_COPIES) {
+        return false;
+      }
+      add(packed, 0, kind, 1);
+    }
+    return true;
+  }
+
+  /** Pack the given cards into a new array of NUM_WORDS longs. */
+  public static long[] pack(Iterable<? extends Card> cards) {
+    long[] packed = new long[NUM_WORDS];
+    for (Card card : cards) {
+      int kind = kindOf(card);
+      Preconditions.checkArgument(
+        count(packed, 0, kind) < MAX_COPIES, "More than two copies of " + card);
+      add(packed, 0, kind, 1);
+    }
+    return packed;
+  }
+
+  /** Unpack the multiset stored at packed[offset] back into Cards. */
+  public static ImmutableMultiset<Card> unpack(long[] packed, int offset) {
+    ImmutableMultiset.Builder<Card> builder = ImmutableMultiset.builder();
+    for (int kind = 0; kind < NUM_KINDS; kind++) {
+      int count = count(packed, offset, kind);
+      if (count != 0) {
+        builder.addCopies(CARDS_BY_KIND[kind], count);
+      }
+    }
+    return builder.build();
+  }
+
+  // --------------------------------------------------------------------------
+  // Helper methods
+
+  /** Build the kind -> Card lookup table. */
+  private static Card[] allCardsByKind() {
+    Card[] cards = new Card[NUM_KINDS];
+    for (Rank rank : Rank.values()) {
+      if (rank.isSuited()) {
+        for (int suit = 0; suit < NUM_SUITS; suit++) {
+          cards[rank.ordinal() * NUM_SUITS + suit] = Card.of(rank, Suit.values()[suit]);
+        }
+      } else {
+        cards[LITTLE_JOKER_KIND + rank.ordinal() - Rank.LITTLE_JOKER.ordinal()] =
+          Card.of(rank, Suit.UNNECESSARY);
+      }
+    }
+    return cards;
+  }
+
+  /** Build the kind -> Rank lookup table. */
+  private static Rank[] allRanksByKind() {
+    Rank[] ranks = new Rank[NUM_KINDS];
+    for (int kind = 0; kind < NUM_KINDS; kind++) {
+      ranks[kind] = CARDS_BY_KIND[kind].getRank();
+    }
+    return ranks;
+  }
+}
@@ -0,0 +1,29 @@
+package me.soupbringer.hotsoup.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for shuffling and dealing a round's hands.
+ */
+@Name("hotsoup.Deal")
+@Label("Deal")
+@Category("HotSoup")
+@StackTrace(false)
+public final class DealEvent extends Event {
+
+  @Label("Leader")
+  private String leader;
+
+  /** Fill in the details and commit the event, if it's being recorded. */
+  public void complete(String leader) {
+    end();
+    if (shouldCommit()) {
+      this.leader = leader;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package me.soupbringer.hotsoup.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, for working out percentiles.
+ *
+ * Buckets are log-linear: every power of two is split into 8 equal buckets, so
+ * any recorded value is off by at most 12.5%. That gives a fixed, small number of
+ * buckets (a few hundred longs) no matter how many values are recorded. Recording
+ * a value is a couple of shifts and one atomic increment.
+ */
+public final class LatencyHistogram {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** log2 of the number of buckets per power of two. */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** The number of buckets per power of two. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Values are capped at 2^MAX_EXPONENT nanoseconds (about 18 minutes). */
+  private static final int MAX_EXPONENT = 40;
+
+  /** The total number of buckets. */
+  private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final AtomicLongArray counts;
+  private final LongAdder sumNanos;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Instantiate through Metrics.histogram(), so we get exported. */
+  LatencyHistogram() {
+    this.counts = new AtomicLongArray(NUM_BUCKETS);
+    this.sumNanos = new LongAdder();
+  }
+
+  // ------------------------------------------------------------------------
+  // Recording
+
+  /** Record a duration, in nanoseconds. */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    sumNanos.add(value);
+  }
+
+  /** Record the time since startNanos (a value from System.nanoTime()). */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  // ------------------------------------------------------------------------
+  // Queries
+
+  /**
+   * Take a snapshot of the histogram. Values recorded while we're taking it
+   * may or may not make it in.
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[NUM_BUCKETS];
+    long total = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    return new Snapshot(copy, total, sumNanos.sum());
+  }
+
+  /**
+   * A point-in-time copy of a histogram.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sumNanos;
+
+    private Snapshot(long[] counts, long count, long sumNanos) {
+      this.counts = counts;
+      this.count = count;
+      this.sumNanos = sumNanos;
+    }
+
+    /** Get the number of values recorded. */
+    public long getCount() {
+      return count;
+    }
+
+    /** Get the sum of every value recorded, in nanoseconds. */
+    public long getSumNanos() {
+      return sumNanos;
+    }
+
+    /**
+     * Get the value (in nanoseconds) which the given fraction of recorded values
+     * are at or below. This is the upper edge of the bucket it lands in.
+     */
+    public long percentile(double fraction) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(fraction * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return upperBoundOf(i);
+        }
+      }
+      return upperBoundOf(counts.length - 1);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Get the bucket a value goes in. */
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(value));
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    if (exponent == MAX_EXPONENT) {
+      subBucket = SUB_BUCKETS - 1;
+    }
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Get the largest value which goes in the given bucket. */
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
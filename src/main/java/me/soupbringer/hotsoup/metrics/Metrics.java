@@ -0,0 +1,186 @@
+package me.soupbringer.hotsoup.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The registry of every latency histogram, counter and gauge in the game.
+ *
+ * Metrics are registered once, usually into a static final field of the class
+ * they measure, and then updated without any locking. Each metric can optionally
+ * be split by a single label (e.g. the kind of failure, or the URL path).
+ *
+ * Everything registered here can be written out in the Prometheus text format,
+ * which is what the /metrics servlet serves.
+ */
+public final class Metrics {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** Quantiles we report for every histogram. */
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /** The most distinct label values one metric can have; the rest get lumped together. */
+  private static final int MAX_LABEL_VALUES = 64;
+
+  /** The label value used once a metric has too many. */
+  private static final String OVERFLOW_LABEL_VALUE = "other";
+
+  /** Every metric, by name. Sorted, so the output is stable. */
+  private static final ConcurrentMap<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** No instantiation. */
+  private Metrics() {
+  }
+
+  // ------------------------------------------------------------------------
+  // Registration
+
+  /**
+   * Get the latency histogram with the given name, registering it if it's new.
+   * Names should end in "_seconds", since that's the unit we export in.
+   */
+  public static LatencyHistogram histogram(String name, String help) {
+    return histogram(name, help, null, null);
+  }
+
+  /**
+   * Get the latency histogram with the given name and label value, registering
+   * it if it's new.
+   */
+  public static LatencyHistogram histogram(String name, String help, String label, String value) {
+    return (LatencyHistogram) family(name, help, Type.SUMMARY, label)
+      .child(value, LatencyHistogram::new);
+  }
+
+  /**
+   * Get the counter with the given name and label value, registering it if it's
+   * new. Names should end in "_total".
+   */
+  public static LongAdder counter(String name, String help, String label, String value) {
+    return (LongAdder) family(name, help, Type.COUNTER, label).child(value, LongAdder::new);
+  }
+
+  /**
+   * Get the gauge with the given name, registering it if it's new. A gauge is a
+   * LongAdder which can go down as well as up, e.g. the number of things queued.
+   */
+  public static LongAdder gauge(String name, String help) {
+    return (LongAdder) family(name, help, Type.GAUGE, null).child(null, LongAdder::new);
+  }
+
+  // ------------------------------------------------------------------------
+  // Export
+
+  /**
+   * Write every metric to the writer, in the Prometheus text exposition format.
+   */
+  public static void writeTo(PrintWriter writer) {
+    for (Family family : FAMILIES.values()) {
+      family.writeTo(writer);
+    }
+    writer.flush();
+  }
+
+  // ------------------------------------------------------------------------
+  // Implementation
+
+  /** The kinds of metric we export. */
+  private enum Type {
+    SUMMARY,
+    COUNTER,
+    GAUGE
+  }
+
+  /**
+   * All the metrics with a given name: one per label value, or just one if the
+   * metric isn't labelled.
+   */
+  private static final class Family {
+
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final String label;
+    private final ConcurrentMap<String, Object> children;
+
+    Family(String name, String help, Type type, String label) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+      this.label = label;
+      this.children = new ConcurrentSkipListMap<>();
+    }
+
+    /** Get the metric for the given label value, making it if it's new. */
+    Object child(String value, Supplier<?> factory) {
+      checkArgument((label == null) == (value == null), "%s is labelled by %s.", name, label);
+      String key = value == null ? "" : value;
+      Object child = children.get(key);
+      if (child != null) {
+        return child;
+      }
+      if (children.size() >= MAX_LABEL_VALUES) {
+        key = OVERFLOW_LABEL_VALUE;
+      }
+      return children.computeIfAbsent(key, k -> factory.get());
+    }
+
+    void writeTo(PrintWriter writer) {
+      writer.printf("# HELP %s %s%n", name, help);
+      writer.printf("# TYPE %s %s%n", name, type.name().toLowerCase());
+      for (Map.Entry<String, Object> entry : children.entrySet()) {
+        String labels = label == null ? "" : label + "=\"" + escape(entry.getKey()) + "\"";
+        if (type == Type.COUNTER || type == Type.GAUGE) {
+          writer.printf("%s%s %d%n", name, braces(labels), ((LongAdder) entry.getValue()).sum());
+          continue;
+        }
+
+        LatencyHistogram.Snapshot snapshot = ((LatencyHistogram) entry.getValue()).snapshot();
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+          writer.printf("%s{%squantile=\"%s\"} %s%n",
+            name, separator, quantile, seconds(snapshot.percentile(quantile)));
+        }
+        writer.printf("%s_sum%s %s%n", name, braces(labels), seconds(snapshot.getSumNanos()));
+        writer.printf("%s_count%s %d%n", name, braces(labels), snapshot.getCount());
+      }
+    }
+  }
+
+  /** Get the family with the given name, registering it if it's new. */
+  private static Family family(String name, String help, Type type, String label) {
+    checkNotNull(name);
+    checkNotNull(help);
+    Family family = FAMILIES.computeIfAbsent(name, n -> new Family(n, help, type, label));
+    checkArgument(family.type == type, "%s is already registered as a %s.", name, family.type);
+    return family;
+  }
+
+  /** Wrap the labels in braces, unless there aren't any. */
+  private static String braces(String labels) {
+    return labels.isEmpty() ? "" : "{" + labels + "}";
+  }
+
+  /** Escape a label value for the text format. */
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /** Format a number of nanoseconds as seconds. */
+  private static String seconds(long nanos) {
+    return Double.toString((double) nanos / TimeUnit.SECONDS.toNanos(1));
+  }
+}
@@ -0,0 +1,45 @@
+package me.soupbringer.hotsoup.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for checking whether a Play can go on a Trick.
+ *
+ * Begin it before validating and end() it after. Then, only if shouldCommit()
+ * says it's being recorded, work out the details and complete() it; that way
+ * nothing is computed for events nobody's listening to.
+ *
+ * An event can be begun again after it's completed, so a hot loop can reuse one
+ * rather than allocate an event per check.
+ */
+@Name("hotsoup.PlayValidation")
+@Label("Play Validation")
+@Category("HotSoup")
+@Description("Checking a play against the top of the trick")
+@StackTrace(false)
+public final class PlayValidationEvent extends Event {
+
+  @Label("Kind")
+  @Description("The shape of the play, e.g. PAIRS or STRAIGHT")
+  private String kind;
+
+  @Label("Cards")
+  private int numCards;
+
+  @Label("Outcome")
+  @Description("LEGAL, or why the play was rejected")
+  private String outcome;
+
+  /** Fill in the details and commit the event. Call this after end(). */
+  public void complete(String kind, int numCards, String outcome) {
+    this.kind = kind;
+    this.numCards = numCards;
+    this.outcome = outcome;
+    commit();
+  }
+}
@@ -0,0 +1,46 @@
+package me.soupbringer.hotsoup.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for a command sent to a table, from when it was submitted
+ * until it finished running.
+ *
+ * Play validation events nested inside one of these (on the same thread) happened
+ * at its table, which is how slow plays get traced back to tables.
+ */
+@Name("hotsoup.TableCommand")
+@Label("Table Command")
+@Category("HotSoup")
+@Description("A table command, from submission until it's run")
+@StackTrace(false)
+public final class TableCommandEvent extends Event {
+
+  @Label("Table")
+  private String tableId;
+
+  @Label("Queue Wait")
+  @Description("Time between submitting the command and starting to run it")
+  @Timespan(Timespan.NANOSECONDS)
+  private long queueWait;
+
+  @Label("Failed")
+  private boolean failed;
+
+  /** Fill in the details and commit the event, if it's being recorded. */
+  public void complete(String tableId, long queueWaitNanos, boolean failed) {
+    end();
+    if (shouldCommit()) {
+      this.tableId = tableId;
+      this.queueWait = queueWaitNanos;
+      this.failed = failed;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package me.soupbringer.hotsoup.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a Trick, from its lead until it's ended.
+ */
+@Name("hotsoup.Trick")
+@Label("Trick")
+@Category("HotSoup")
+@Description("A trick, from the lead to the third pass")
+@StackTrace(false)
+public final class TrickEvent extends Event {
+
+  @Label("Plays")
+  @Description("The number of plays, passes included")
+  private int numPlays;
+
+  @Label("Points")
+  private int numPoints;
+
+  /** Fill in the details and commit the event, if it's being recorded. */
+  public void complete(int numPlays, int numPoints) {
+    end();
+    if (shouldCommit()) {
+      this.numPlays = numPlays;
+      this.numPoints = numPoints;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package me.soupbringer.hotsoup.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import me.soupbringer.hotsoup.bots.Hint;
+import me.soupbringer.hotsoup.bots.HintService;
+import me.soupbringer.hotsoup.bots.Situation;
+import me.soupbringer.hotsoup.table.Lobby;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.table.SessionRegistry;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Servlet which suggests plays for a seated player whose turn it is.
+ *
+ * The player is found through their session, and what they can see is copied
+ * on their table's thread. Only the search itself runs on the servlet's thread.
+ *
+ * Takes the player's id in the "player" parameter, and optionally the number of
+ * hints to return in "k". Responds with one hint per line: the estimated value,
+ * a tab, and the cards to play.
+ */
+@Singleton
+public final class HintServlet extends HttpServlet {
+
+  /** How many hints we return if the request doesn't say. */
+  private static final int DEFAULT_NUM_HINTS = 3;
+
+  /** How long we'll wait for the table to get to our snapshot. */
+  private static final long SNAPSHOT_TIMEOUT_MILLIS = 2000;
+
+  private final HintService hintService;
+  private final SessionRegistry sessions;
+
+  @Inject
+  public HintServlet(HintService hintService, SessionRegistry sessions) {
+    this.hintService = hintService;
+    this.sessions = sessions;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+    throws IOException, ServletException
+  {
+    String playerId = request.getParameter("player");
+    SessionRegistry.Session session = playerId == null ? null : sessions.get(playerId);
+    Lobby.Seat seat = session == null ? null : session.getSeat();
+    if (seat == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "That player isn't seated.");
+      return;
+    }
+
+    int k = DEFAULT_NUM_HINTS;
+    if (request.getParameter("k") != null) {
+      try {
+        k = Integer.parseInt(request.getParameter("k"));
+      } catch (NumberFormatException e) {
+        k = 0;
+      }
+      if (k <= 0) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "k should be a positive number.");
+        return;
+      }
+    }
+
+    Situation situation;
+    try {
+      situation = snapshot(seat).get(SNAPSHOT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServletException(e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new ServletException("Couldn't see the table.", e);
+    }
+    if (situation == null) {
+      response.sendError(HttpServletResponse.SC_CONFLICT, "It isn't this player's turn.");
+      return;
+    }
+
+    List<Hint> hints = hintService.hint(situation, k);
+    response.setContentType("text/plain");
+    PrintWriter writer = response.getWriter();
+    for (Hint hint : hints) {
+      writer.printf("%.1f\t%s%n",
+        hint.getValue(),
+        hint.getPlay().isPass() ? "pass" : hint.getPlay().getCards());
+    }
+  }
+
+  /**
+   * Take a snapshot of what the seated player can see, or null if it isn't their
+   * turn. Rounds aren't thread-safe, so this runs as a command on the table's
+   * thread, like every other look at its game.
+   */
+  private static CompletableFuture<Situation> snapshot(Lobby.Seat seat) {
+    CompletableFuture<Situation> situation = new CompletableFuture<>();
+    seat.getTable().submit(game -> {
+      try {
+        Round round = game.getRound();
+        Position position = seat.getPosition();
+        boolean theirTurn = round != null && !round.isOver() && round.getTurn() == position;
+        situation.complete(theirTurn ? Situation.of(round, position) : null);
+      } catch (RuntimeException e) {
+        situation.completeExceptionally(e);
+      }
+    });
+    return situation;
+  }
+}
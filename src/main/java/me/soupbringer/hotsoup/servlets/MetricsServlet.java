@@ -0,0 +1,28 @@
+package me.soupbringer.hotsoup.servlets;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+
+import com.google.inject.Singleton;
+
+/**
+ * Servlet which serves every registered metric, in the Prometheus text format,
+ * so it can be scraped.
+ */
+@Singleton
+public final class MetricsServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+    throws IOException, ServletException
+  {
+    response.setContentType("text/plain; version=0.0.4");
+    Metrics.writeTo(response.getWriter());
+  }
+}
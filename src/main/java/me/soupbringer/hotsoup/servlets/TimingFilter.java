@@ -0,0 +1,58 @@
+package me.soupbringer.hotsoup.servlets;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+
+import com.google.inject.Singleton;
+
+/**
+ * Filter which times every request, by the first segment of its path.
+ */
+@Singleton
+public final class TimingFilter implements Filter {
+
+  @Override
+  public void init(FilterConfig config) {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+    throws IOException, ServletException
+  {
+    long start = System.nanoTime();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      Metrics.histogram(
+        "hotsoup_http_request_seconds",
+        "Time spent serving HTTP requests.",
+        "path",
+        pathOf(request))
+        .recordSince(start);
+    }
+  }
+
+  @Override
+  public void destroy() {
+  }
+
+  /** Get the first segment of the request's path, e.g. "/hint". */
+  private static String pathOf(ServletRequest request) {
+    if (!(request instanceof HttpServletRequest)) {
+      return "/";
+    }
+    HttpServletRequest http = (HttpServletRequest) request;
+    String path = http.getRequestURI().substring(http.getContextPath().length());
+    int end = path.indexOf('/', 1);
+    return end < 0 ? path : path.substring(0, end);
+  }
+}
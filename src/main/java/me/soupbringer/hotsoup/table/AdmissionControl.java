@@ -0,0 +1,251 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.table.exceptions.CommandRejectedException;
+import me.soupbringer.hotsoup.table.exceptions.CommandRejectedException.Reason;
+
+/**
+ * Decides whether a player's command gets into a table's queue, so one player
+ * (or bot) flooding a table can't starve everyone else.
+ *
+ * A command gets in only if
+ *  - the player has fewer than maxPlayerDepth commands queued, across all tables,
+ *  - the player is within their rate limit, and
+ *  - the table has fewer than maxTableDepth commands queued.
+ * Otherwise it's rejected straight away with a CommandRejectedException, which
+ * says how long to wait before trying again.
+ *
+ * The rate limit is a token bucket per player id, kept as the time the bucket
+ * will next be full (the generic cell rate algorithm), so taking a token is a
+ * single compare-and-set and nothing locks.
+ *
+ * Commands which the server submits itself, like turn timeouts, should go straight
+ * to Table.submit; they're never rejected.
+ */
+public final class AdmissionControl {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    private static final Map<Reason, LongAdder> REJECTED = new EnumMap<>(Reason.class);
+    static {
+        for (Reason reason : Reason.values()) {
+            REJECTED.put(reason, Metrics.counter(
+                "hotsoup_admission_rejected_total",
+                "Player commands turned away, by reason.",
+                "reason",
+                reason.name().toLowerCase()));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final int maxTableDepth;
+    private final int maxPlayerDepth;
+
+    /** How often a player earns a token. */
+    private final long intervalNanos;
+
+    /** How far ahead of now a bucket's full time can get: the burst size in time. */
+    private final long burstNanos;
+
+    /** What to tell players to wait when a queue is full. */
+    private final long queueRetryAfterNanos;
+
+    /** Everyone who's sent a command recently, by player id. */
+    private final ConcurrentMap<String, PlayerState> players;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /** Instantiate through the Builder. */
+    private AdmissionControl(Builder builder) {
+        this.maxTableDepth = builder.maxTableDepth;
+        this.maxPlayerDepth = builder.maxPlayerDepth;
+        this.intervalNanos = builder.intervalNanos;
+        this.burstNanos = builder.intervalNanos * builder.burst;
+        this.queueRetryAfterNanos = builder.queueRetryAfterNanos;
+        this.players = new ConcurrentHashMap<>();
+    }
+
+    /** Get a new Builder. */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Queue up the player's command at the table, if it's allowed in.
+     *
+     * Throws a CommandRejectedException if it isn't.
+     */
+    public void submit(Table table, String playerId, TableCommand command) {
+        Preconditions.checkNotNull(table);
+        Preconditions.checkNotNull(command);
+        PlayerState state = players.computeIfAbsent(playerId, id -> new PlayerState());
+
+        if (state.queued.incrementAndGet() > maxPlayerDepth) {
+            state.queued.decrementAndGet();
+            throw reject(Reason.PLAYER_QUEUE_FULL, playerId, queueRetryAfterNanos);
+        }
+        long wait = state.takeToken();
+        if (wait > 0) {
+            state.queued.decrementAndGet();
+            throw reject(Reason.RATE_LIMITED, playerId, wait);
+        }
+        boolean queued = table.offer(game -> {
+            try {
+                command.execute(game);
+            } finally {
+                state.queued.decrementAndGet();
+            }
+        }, maxTableDepth);
+        if (!queued) {
+            state.returnToken();
+            state.queued.decrementAndGet();
+            throw reject(Reason.TABLE_QUEUE_FULL, playerId, queueRetryAfterNanos);
+        }
+    }
+
+    /**
+     * Forget players with nothing queued whose buckets have filled back up; they'd
+     * get a fresh one anyway. Returns the number forgotten.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int numEvicted = 0;
+        for (Map.Entry<String, PlayerState> entry : players.entrySet()) {
+            PlayerState state = entry.getValue();
+            if (state.queued.get() == 0
+                && state.fullAt.get() - now <= 0
+                && players.remove(entry.getKey(), state))
+            {
+                numEvicted++;
+            }
+        }
+        return numEvicted;
+    }
+
+    /** Get the number of players we're keeping track of. */
+    public int getNumPlayers() {
+        return players.size();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /**
+     * One player's queue count and token bucket. The bucket is full whenever
+     * fullAt is in the past; each token taken pushes it an interval further on.
+     */
+    private final class PlayerState {
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+        /**
+         * Take a token. Returns 0 if we got one, or how long until one's free if not.
+         */
+        long takeToken() {
+            long now = System.nanoTime();
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current - now, 0) + now + intervalNanos;
+                long wait = next - now - burstNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /** Give back a token that went unused. */
+        void returnToken() {
+            fullAt.addAndGet(-intervalNanos);
+        }
+    }
+
+    /** Count the rejection, and make the exception for it. */
+    private static CommandRejectedException reject(Reason reason, String playerId, long wait) {
+        REJECTED.get(reason).increment();
+        return new CommandRejectedException(reason, playerId, wait);
+    }
+
+    // ------------------------------------------------------------------------
+    // Builder
+
+    /**
+     * A Builder for AdmissionControl.
+     */
+    public static final class Builder {
+
+        private int maxTableDepth = 256;
+        private int maxPlayerDepth = 4;
+        private long intervalNanos = TimeUnit.MILLISECONDS.toNanos(50);
+        private int burst = 10;
+        private long queueRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+        /** Instantiate via the static builder() method. */
+        private Builder() {
+        }
+
+        /** Set the most commands a table can have queued. Defaults to 256. */
+        public Builder maxTableDepth(int maxTableDepth) {
+            Preconditions.checkArgument(maxTableDepth > 0);
+            this.maxTableDepth = maxTableDepth;
+            return this;
+        }
+
+        /** Set the most commands a player can have queued. Defaults to 4. */
+        public Builder maxPlayerDepth(int maxPlayerDepth) {
+            Preconditions.checkArgument(maxPlayerDepth > 0);
+            this.maxPlayerDepth = maxPlayerDepth;
+            return this;
+        }
+
+        /**
+         * Set how many commands each player can send per second, on average.
+         * Defaults to 20.
+         */
+        public Builder rate(double perSecond) {
+            Preconditions.checkArgument(perSecond > 0);
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+            return this;
+        }
+
+        /** Set how many commands a player can send at once, after a lull. Defaults to 10. */
+        public Builder burst(int burst) {
+            Preconditions.checkArgument(burst > 0);
+            this.burst = burst;
+            return this;
+        }
+
+        /** Set how long to tell players to wait when a queue is full. Defaults to 100ms. */
+        public Builder queueRetryAfter(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0);
+            this.queueRetryAfterNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /** Build the AdmissionControl. */
+        public AdmissionControl build() {
+            return new AdmissionControl(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package me.soupbringer.hotsoup.table;
+
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Hears about everything in a HotSoup game that anyone watching could see, and
+ * about plays the game turned down, which only the player sees. Calls come from
+ * whichever thread changed the game, after the change is made, so the game can be
+ * queried for anything else that's needed.
+ */
+public interface GameListener {
+
+    /**
+     * A new round was dealt.
+     */
+    void dealt(HotSoup game, Position leader);
+
+    /**
+     * The player at the given position made a play.
+     */
+    void played(HotSoup game, Position position, Play play);
+
+    /**
+     * The player at the given position tried a play that wasn't legal, so nothing
+     * changed.
+     */
+    void rejected(HotSoup game, Position position);
+
+    /**
+     * The player at the given position passed.
+     */
+    void passed(HotSoup game, Position position);
+
+    /**
+     * A trick ended, and the winner's team took the given number of points.
+     */
+    void trickEnded(HotSoup game, Position winner, int numPoints);
+
+    /**
+     * The score changed.
+     */
+    void scoreChanged(HotSoup game, int scoreNS, int scoreEW);
+}
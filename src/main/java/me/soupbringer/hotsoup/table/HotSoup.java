@@ -3,12 +3,17 @@ package me.soupbringer.hotsoup.table;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.*;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
 import me.soupbringer.hotsoup.table.exceptions.PlayerAlreadyPresentException;
 import me.soupbringer.hotsoup.table.exceptions.UnexpectedPassException;
+import me.soupbringer.hotsoup.tricks.PlayResult;
 import me.soupbringer.hotsoup.tricks.plays.Play;
 
 /**
@@ -26,11 +31,47 @@ public final class HotSoup {
     private static AtomicReference<HotSoup> REFERENCE =
       new AtomicReference<HotSoup>(new HotSoup());
 
+    /** How long each game action takes. */
+    private static final LatencyHistogram SEAT_PLAYER_LATENCY = Metrics.histogram(
+        "hotsoup_seat_player_seconds", "Time spent seating or unseating a player.");
+    private static final LatencyHistogram MAKE_PLAY_LATENCY = Metrics.histogram(
+        "hotsoup_make_play_seconds", "Time spent validating and making a play.");
+    private static final LatencyHistogram PASS_LATENCY = Metrics.histogram(
+        "hotsoup_pass_seconds", "Time spent passing.");
+
+    /**
+     * Plays turned away by makePlay: by the PlayResult, or as malformed if the
+     * cards don't make a play at all.
+     */
+    private static final Map<PlayResult, LongAdder> ILLEGAL_PLAYS =
+        new EnumMap<>(PlayResult.class);
+    private static final LongAdder MALFORMED_PLAYS = illegalPlays("MALFORMED_PLAY");
+    static {
+        for (PlayResult result : PlayResult.values()) {
+            if (!result.isLegal()) {
+                ILLEGAL_PLAYS.put(result, illegalPlays(result.name()));
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Member variables
 
     private final BiMap<Position, Player> playerPositions;
 
+    /** The round being played, or null if none has been dealt yet. */
+    private Round round;
+
+    /** Points each team took in rounds before the current one. */
+    private int pastScoreNS;
+    private int pastScoreEW;
+
+    /** The number of rounds dealt so far, counting the current one. */
+    private int numRounds;
+
+    /** Hears about everything public that happens, and rejected plays, or null. */
+    private GameListener listener;
+
     // ------------------------------------------------------------------------
     // Construction
 
@@ -48,6 +89,14 @@ public final class HotSoup {
         return REFERENCE.get();
     }
 
+    /**
+     * Create a new HotSoup game for a table of its own. This doesn't change the
+     * active game.
+     */
+    public static HotSoup create() {
+        return new HotSoup();
+    }
+
     /**
      * Start a new HotSoup game, and return it.
      */
@@ -69,22 +118,44 @@ public final class HotSoup {
      */
     public void seatPlayer(Player player, Position position) {
         Preconditions.checkNotNull(position, "This shouldn't be null.");
-
-        // If we're vacating the seat, then vacate it.
-        if (player == null) {
-            playerPositions.put(position, null);
-        }
-        // Otherwise, someone is trying to sit down.
-        else {
-            Player current = playerPositions.get(position);
-            // Make sure that nobody's sitting there yet.
-            if (current != null) {
-                throw new PlayerAlreadyPresentException(current, player, position);
+        long start = System.nanoTime();
+        try {
+            // If we're vacating the seat, then vacate it.
+            if (player == null) {
+                playerPositions.remove(position);
             }
-            // And if it's safe, seat this new person.
+            // Otherwise, someone is trying to sit down.
             else {
-                playerPositions.put(position, player);
+                Player current = playerPositions.get(position);
+                // Make sure that nobody's sitting there yet.
+                if (current != null) {
+                    throw new PlayerAlreadyPresentException(current, player, position);
+                }
+                // And if it's safe, seat this new person.
+                else {
+                    playerPositions.put(position, player);
+                }
             }
+        } finally {
+            SEAT_PLAYER_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Shuffle and deal a new round. Whoever made the last play of the previous
+     * round leads (or NORTH, for the first round).
+     */
+    public void deal(Random random) {
+        Position leader = Position.NORTH;
+        if (round != null) {
+            pastScoreNS += round.scoreNS();
+            pastScoreEW += round.scoreEW();
+            leader = round.getTurn();
+        }
+        round = Round.deal(random, leader);
+        numRounds++;
+        if (listener != null) {
+            listener.dealt(this, leader);
         }
     }
 
@@ -100,14 +171,12 @@ public final class HotSoup {
      * This takes into account the previous plays
      */
     public boolean makePlay(Collection<? extends Card> play) {
-        Collection<Play> validPlays = Play.all(play);
-        if (validPlays.isEmpty()) {
-            return false;
+        long start = System.nanoTime();
+        try {
+            return tryMakePlay(play);
+        } finally {
+            MAKE_PLAY_LATENCY.recordSince(start);
         }
-
-        // TODO: Update our gamestate
-
-        return true;
     }
 
     /**
@@ -120,9 +189,24 @@ public final class HotSoup {
      * someone's lead, but they decided to pass anyway.
      */
     public boolean pass() throws UnexpectedPassException {
-       // TODO: implement
-
-       return true;
+        long start = System.nanoTime();
+        try {
+            if (round == null || round.isOver() || round.isLead()) {
+                Player whoPassed = round == null ? null : playerPositions.get(round.getTurn());
+                throw new UnexpectedPassException(whoPassed);
+            }
+            Position position = round.getTurn();
+            Position top = round.getTopPosition();
+            int before = scoreNS() + scoreEW();
+            round.pass();
+            if (listener != null) {
+                listener.passed(this, position);
+                afterTurn(top, before);
+            }
+            return !round.isLead();
+        } finally {
+            PASS_LATENCY.recordSince(start);
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -140,7 +224,7 @@ public final class HotSoup {
      * Returns true if the given player is in this game, or false otherwise.
      */
     public boolean includesPlayer(Player player) {
-        return playerPositions.values().contains(player);
+        return playerPositions.inverse().containsKey(player);
     }
 
     /**
@@ -148,8 +232,11 @@ public final class HotSoup {
      * in the current game, an empty list is returned.
      */
     public Collection<Card> getCards(Player player) {
-        // TODO: implement
-        return ImmutableList.of();
+        Position position = locationOf(player);
+        if (round == null || position == null) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(round.getHand(position).getCards());
     }
 
     /**
@@ -172,22 +259,26 @@ public final class HotSoup {
      * active hands, all values in the map will be 0.
      */
     public Map<Position, Integer> getRemainingCardsMap() {
-        // TODO: implement
-        return ImmutableMap.of();
+        Map<Position, Integer> remaining = new EnumMap<>(Position.class);
+        for (Position position : Position.values()) {
+            boolean active = round != null && !round.isOver();
+            remaining.put(position, active ? round.getHand(position).numCardsLeft() : 0);
+        }
+        return Collections.unmodifiableMap(remaining);
     }
 
     /**
      * Get the score of the north/south team.
      */
     public int scoreNS() {
-        return 0; // TODO: implement
+        return pastScoreNS + (round == null ? 0 : round.scoreNS());
     }
 
     /**
      * Get the score of the east/west team.
      */
     public int scoreEW() {
-        return 0; // TODO: implement
+        return pastScoreEW + (round == null ? 0 : round.scoreEW());
     }
 
     /**
@@ -202,7 +293,138 @@ public final class HotSoup {
      * we're waiting on the first player to lead.
      */
     public List<Card> trickSoFar() {
-        // TOOD: implement
-        return ImmutableList.of();
+        return round == null ? ImmutableList.<Card>of() : round.getTrickCards();
+    }
+
+    /**
+     * Get the player sitting at the given position, or null if it's vacant.
+     */
+    public Player getPlayer(Position position) {
+        return playerPositions.get(position);
+    }
+
+    /**
+     * Get the round being played, or null if none has been dealt yet.
+     */
+    public Round getRound() {
+        return round;
+    }
+
+    /**
+     * Get the number of rounds dealt so far, counting the current one. Together
+     * with Round.getNumTurns, this identifies a turn.
+     */
+    public int getNumRounds() {
+        return numRounds;
+    }
+
+    /**
+     * Set who hears about everything public that happens in this game, or null
+     * for nobody.
+     */
+    void setListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    // ------------------------------------------------------------------------
+    // Hibernation
+
+    /**
+     * Write everything about this game to the buffer, so readFrom can rebuild it.
+     */
+    void writeTo(ByteBuffer buffer) {
+        for (Position position : Position.values()) {
+            Player player = playerPositions.get(position);
+            buffer.put((byte) (player == null ? 0 : 1));
+            if (player != null) {
+                StateCodec.writeString(buffer, player.getName());
+                StateCodec.writeString(buffer, player.getId());
+            }
+        }
+        buffer.putInt(pastScoreNS);
+        buffer.putInt(pastScoreEW);
+        buffer.putInt(numRounds);
+        buffer.put((byte) (round == null ? 0 : 1));
+        if (round != null) {
+            round.writeTo(buffer);
+        }
+    }
+
+    /**
+     * Rebuild a game written by writeTo.
+     */
+    static HotSoup readFrom(ByteBuffer buffer) {
+        HotSoup game = new HotSoup();
+        for (Position position : Position.values()) {
+            if (buffer.get() != 0) {
+                String name = StateCodec.readString(buffer);
+                String id = StateCodec.readString(buffer);
+                game.playerPositions.put(position, Player.create(name, id));
+            }
+        }
+        game.pastScoreNS = buffer.getInt();
+        game.pastScoreEW = buffer.getInt();
+        game.numRounds = buffer.getInt();
+        if (buffer.get() != 0) {
+            game.round = Round.readFrom(buffer);
+        }
+        return game;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** Make the play, if it's valid. See makePlay. */
+    private boolean tryMakePlay(Collection<? extends Card> play) {
+        if (round == null || round.isOver()) {
+            return false;
+        }
+        Position position = round.getTurn();
+        Collection<Play> validPlays = Play.all(play);
+        int before = scoreNS() + scoreEW();
+        PlayResult result = null;
+        for (Play valid : validPlays) {
+            if (valid.isPass()) {
+                continue;
+            }
+            result = round.tryPlay(valid);
+            if (result.isLegal()) {
+                if (listener != null) {
+                    listener.played(this, position, valid);
+                    afterTurn(position, before);
+                }
+                return true;
+            }
+        }
+        if (result == null) {
+            MALFORMED_PLAYS.increment();
+        } else {
+            ILLEGAL_PLAYS.get(result).increment();
+        }
+        if (listener != null) {
+            listener.rejected(this, position);
+        }
+        return false;
+    }
+
+    /** Get the counter of plays turned away for the given reason. */
+    static LongAdder illegalPlays(String reason) {
+        return Metrics.counter(
+            "hotsoup_illegal_plays_total", "Plays rejected, by kind.", "kind", reason);
+    }
+
+    /**
+     * Tell the listener if the turn just taken ended the trick. Whoever made the
+     * top play wins it, and their team's score goes up by whatever it was worth.
+     */
+    private void afterTurn(Position top, int scoreBefore) {
+        if (!round.isLead()) {
+            return;
+        }
+        int numPoints = scoreNS() + scoreEW() - scoreBefore;
+        listener.trickEnded(this, top, numPoints);
+        if (numPoints != 0) {
+            listener.scoreChanged(this, scoreNS(), scoreEW());
+        }
     }
 }
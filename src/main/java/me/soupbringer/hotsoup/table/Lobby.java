@@ -0,0 +1,453 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.table.exceptions.PlayerAlreadyPresentException;
+
+/**
+ * Finds seats for players across many tables.
+ *
+ * The lobby keeps its own count of open seats at every table it knows about, and
+ * an index of the tables with any open seats, ordered by how few they have. The
+ * index is a skip list, so finding the fullest table with room, and moving a table
+ * when its count changes, are both O(log n) no matter how many tables there are.
+ * Counts are changed with compare-and-set, so nothing ever locks the whole lobby.
+ *
+ * Joins are queued and placed in batches. Each player goes to the fullest table
+ * with room, so partly filled tables get filled before empty ones are started,
+ * and everyone in a batch headed to the same table is seated by one command.
+ *
+ * Games are only ever touched through table commands, so the lobby's counts can
+ * run ahead of what's actually seated. If a seat it reserved turns out to be
+ * taken (someone sat down without going through the lobby), the player is put
+ * back in the queue, and the used-up reservation stands in for the seat that
+ * was taken.
+ */
+public final class Lobby {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    /** The most joins we'll place in one go before giving the thread back. */
+    private static final int MAX_JOINS_PER_DRAIN = 256;
+
+    /** The number of seats at a table. */
+    private static final int NUM_SEATS = Position.values().length;
+
+    private static final LatencyHistogram WAIT_LATENCY = Metrics.histogram(
+        "hotsoup_lobby_wait_seconds", "Time from joining the lobby to being seated.");
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final Executor executor;
+
+    /** Makes a new, empty table when every known table is full. */
+    private final Supplier<Table> tableFactory;
+
+    /** Every table we know about, by id. */
+    private final Map<String, Entry> entries;
+
+    /** Tables with open seats, fewest open seats first. May hold stale slots. */
+    private final NavigableSet<Slot> openTables;
+
+    /** Players waiting to be placed. */
+    private final Queue<Join> joins;
+
+    /** True while a drain of the join queue is scheduled or running. */
+    private final AtomicBoolean draining;
+
+    /** Breaks ties between tables with the same number of open seats. */
+    private final AtomicLong nextSequence;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Constructor.
+     *
+     * @param executor Where joins get placed.
+     * @param tableFactory Makes a new, empty table when every table is full.
+     */
+    public Lobby(Executor executor, Supplier<Table> tableFactory) {
+        this.executor = Preconditions.checkNotNull(executor);
+        this.tableFactory = Preconditions.checkNotNull(tableFactory);
+        this.entries = new ConcurrentHashMap<>();
+        this.openTables = new ConcurrentSkipListSet<>();
+        this.joins = new ConcurrentLinkedQueue<>();
+        this.draining = new AtomicBoolean();
+        this.nextSequence = new AtomicLong();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Start keeping track of a table. Its game should have nobody seated yet.
+     */
+    public void addTable(Table table) {
+        Preconditions.checkNotNull(table);
+        Entry entry = new Entry(table, nextSequence.getAndIncrement());
+        Preconditions.checkArgument(
+            entries.putIfAbsent(table.getId(), entry) == null,
+            "There's already a table with id %s.", table.getId());
+        openTables.add(entry.slot(entry.state.get()));
+    }
+
+    /**
+     * Find the player a seat. The returned future completes once they're sitting down.
+     */
+    public CompletableFuture<Seat> join(Player player) {
+        Join join = new Join(Preconditions.checkNotNull(player));
+        joins.add(join);
+        scheduleDrain();
+        return join.future;
+    }
+
+    /**
+     * Get up from a seat the lobby found. This goes through the table, like
+     * everything else that happens to a game.
+     */
+    public void leave(Table table, Position position) {
+        Entry entry = entries.get(table.getId());
+        Preconditions.checkArgument(entry != null, "The lobby doesn't know that table.");
+        Preconditions.checkNotNull(position);
+        table.submit(game -> {
+            if (!game.isVacant(position)) {
+                game.seatPlayer(null, position);
+                entry.release(1);
+            }
+        });
+    }
+
+    /**
+     * Get the player up from the table, if they're still sitting there.
+     */
+    public void leave(Table table, Player player) {
+        Entry entry = entries.get(table.getId());
+        Preconditions.checkArgument(entry != null, "The lobby doesn't know that table.");
+        Preconditions.checkNotNull(player);
+        table.submit(game -> {
+            Position position = game.locationOf(player);
+            if (position != null) {
+                game.seatPlayer(null, position);
+                entry.release(1);
+            }
+        });
+    }
+
+    /** Get the number of players waiting for a seat. */
+    public int getNumWaiting() {
+        return joins.size();
+    }
+
+    // ------------------------------------------------------------------------
+    // Seats
+
+    /**
+     * Where a player ended up.
+     */
+    public static final class Seat {
+
+        private final Table table;
+        private final Position position;
+
+        private Seat(Table table, Position position) {
+            this.table = table;
+            this.position = position;
+        }
+
+        /** Create a Seat for a player who sat down without going through a Lobby. */
+        public static Seat create(Table table, Position position) {
+            Preconditions.checkNotNull(table);
+            return new Seat(table, Preconditions.checkNotNull(position));
+        }
+
+        /** Get the table the player is sitting at. */
+        public Table getTable() {
+            return table;
+        }
+
+        /** Get where at the table the player is sitting. */
+        public Position getPosition() {
+            return position;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /**
+     * A player waiting for a seat.
+     */
+    private static final class Join {
+
+        private final Player player;
+        private final long submittedNanos;
+        private final CompletableFuture<Seat> future;
+
+        Join(Player player) {
+            this.player = player;
+            this.submittedNanos = System.nanoTime();
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Our view of one table. The state packs a version number, bumped on every
+     * change, above the number of open seats, so a slot in the index can tell
+     * whether it's still current.
+     */
+    private final class Entry {
+
+        private final Table table;
+        private final long sequence;
+        private final AtomicLong state;
+
+        Entry(Table table, long sequence) {
+            this.table = table;
+            this.sequence = sequence;
+            this.state = new AtomicLong(NUM_SEATS);
+        }
+
+        Slot slot(long state) {
+            return new Slot(this, state);
+        }
+
+        /** Reserve an open seat. Returns false if there weren't any. */
+        boolean reserve() {
+            while (true) {
+                long current = state.get();
+                if (openSeats(current) == 0) {
+                    return false;
+                }
+                if (state.compareAndSet(current, next(current, -1))) {
+                    moved(current, next(current, -1));
+                    return true;
+                }
+            }
+        }
+
+        /** Give back seats. */
+        void release(int numSeats) {
+            while (true) {
+                long current = state.get();
+                int delta = Math.min(numSeats, NUM_SEATS - openSeats(current));
+                long updated = next(current, delta);
+                if (state.compareAndSet(current, updated)) {
+                    moved(current, updated);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Move this table in the index. Slots are only ever removed by whoever
+         * replaced them, and versions never repeat, so a slow thread can't take
+         * out a newer slot; at worst it leaves an old one behind for first() to
+         * clean up.
+         */
+        private void moved(long from, long to) {
+            openTables.remove(slot(from));
+            if (openSeats(to) > 0) {
+                openTables.add(slot(to));
+            }
+        }
+    }
+
+    /** Get the number of open seats out of an entry's state. */
+    private static int openSeats(long state) {
+        return (int) (state & 0x7);
+    }
+
+    /** Get the state after a change of delta open seats. */
+    private static long next(long state, int delta) {
+        return ((state >>> 3) + 1) << 3 | (openSeats(state) + delta);
+    }
+
+    /**
+     * An entry in the index: one table, as it was at one version.
+     */
+    private static final class Slot implements Comparable<Slot> {
+
+        private final Entry entry;
+        private final long state;
+
+        Slot(Entry entry, long state) {
+            this.entry = entry;
+            this.state = state;
+        }
+
+        boolean isCurrent() {
+            return entry.state.get() == state;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            int result = Integer.compare(openSeats(state), openSeats(other.state));
+            if (result == 0) {
+                result = Long.compare(entry.sequence, other.entry.sequence);
+            }
+            return result != 0 ? result : Long.compare(state, other.state);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Slot && compareTo((Slot) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(entry.sequence * 31 + state);
+        }
+    }
+
+    /** Make sure a drain is coming. */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                // The joins stay queued, for the next join to drain.
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Place waiting players, then send one command to each table they're going to.
+     * A join which can't be placed, or whose table won't take the command, fails
+     * rather than being lost.
+     */
+    private void drain() {
+        try {
+            Map<Entry, List<Join>> batch = Maps.newLinkedHashMap();
+            for (int i = 0; i < MAX_JOINS_PER_DRAIN; i++) {
+                Join join = joins.poll();
+                if (join == null) {
+                    break;
+                }
+                Entry entry;
+                try {
+                    entry = reserveSeat();
+                } catch (RuntimeException e) {
+                    join.future.completeExceptionally(e);
+                    continue;
+                }
+                List<Join> forTable = batch.get(entry);
+                if (forTable == null) {
+                    forTable = Lists.newArrayList();
+                    batch.put(entry, forTable);
+                }
+                forTable.add(join);
+            }
+            for (Map.Entry<Entry, List<Join>> forTable : batch.entrySet()) {
+                Entry entry = forTable.getKey();
+                List<Join> forEntry = forTable.getValue();
+                try {
+                    entry.table.submit(seatAll(entry, forEntry));
+                } catch (RuntimeException e) {
+                    entry.release(forEntry.size());
+                    for (Join join : forEntry) {
+                        join.future.completeExceptionally(e);
+                    }
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // Someone may have joined after our last poll, but before we cleared the flag.
+        if (!joins.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Reserve a seat at the fullest table with room, starting a new table if
+     * they're all full.
+     */
+    private Entry reserveSeat() {
+        while (true) {
+            Slot slot = first();
+            if (slot == null) {
+                addTable(tableFactory.get());
+            } else if (slot.entry.reserve()) {
+                return slot.entry;
+            }
+        }
+    }
+
+    /** Get the first current slot in the index, dropping stale ones on the way. */
+    private Slot first() {
+        for (Iterator<Slot> it = openTables.iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            if (slot.isCurrent()) {
+                return slot;
+            }
+            it.remove();
+        }
+        return null;
+    }
+
+    /**
+     * Get the command that seats everyone headed to a table. Anyone we can't find
+     * an empty seat for goes back in the queue. If seating someone fails any other
+     * way (e.g. they're already sitting there), their join fails, their
+     * reservation is given back, and everyone else is still seated.
+     */
+    private TableCommand seatAll(Entry entry, List<Join> forTable) {
+        return game -> {
+            Queue<Position> vacant = new ArrayDeque<>(game.getVacantPositions());
+            boolean requeued = false;
+            for (Join join : forTable) {
+                Position position = null;
+                try {
+                    while (position == null && !vacant.isEmpty()) {
+                        try {
+                            game.seatPlayer(join.player, vacant.peek());
+                            position = vacant.poll();
+                        } catch (PlayerAlreadyPresentException e) {
+                            // Taken since we looked; try the next one.
+                            vacant.poll();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // The seat's still free for the next player.
+                    entry.release(1);
+                    join.future.completeExceptionally(e);
+                    continue;
+                }
+                if (position != null) {
+                    WAIT_LATENCY.recordSince(join.submittedNanos);
+                    join.future.complete(new Seat(entry.table, position));
+                } else {
+                    joins.add(join);
+                    requeued = true;
+                }
+            }
+            if (requeued) {
+                scheduleDrain();
+            }
+        };
+    }
+}
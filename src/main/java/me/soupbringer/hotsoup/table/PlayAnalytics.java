@@ -0,0 +1,488 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Sliding-window statistics over what's happening at every table: plays and
+ * passes per second, how often plays are rejected, how long tricks run, which
+ * kinds of play get made, and how many points each team takes.
+ *
+ * Each attached table gets its own single-producer, single-consumer ring of
+ * events. The table's thread writes an event into the next slot and publishes it
+ * with an ordered store; it never locks, allocates or waits, and if the ring is
+ * full the event is dropped and counted rather than holding up the game. One
+ * merger thread sweeps every ring and adds the events into per-second buckets,
+ * which readers sum over whatever window they ask about.
+ *
+ * A table's ring is dropped once it's detached, or the table's closed, and the
+ * merger has counted whatever was left in it.
+ *
+ * Readers see the buckets as the merger left them, so a total can be an event
+ * or two behind, and can straddle an update. That's fine for dashboards, and it
+ * keeps the game's side of things down to a couple of stores per event.
+ */
+public final class PlayAnalytics implements AutoCloseable {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    private static final Play.Kind[] KINDS = Play.Kind.values();
+
+    /** Event types, in the low bits of an event. */
+    private static final int PLAY = 0;
+    private static final int PASS = 1;
+    private static final int REJECT = 2;
+    private static final int TRICK = 3;
+    private static final int ROUND = 4;
+
+    /** Counters in each bucket. Play counts by kind come after these. */
+    private static final int PLAYS = 0;
+    private static final int PASSES = 1;
+    private static final int REJECTS = 2;
+    private static final int TRICKS = 3;
+    private static final int TRICK_TURNS = 4;
+    private static final int ROUNDS = 5;
+    private static final int POINTS_NS = 6;
+    private static final int POINTS_EW = 7;
+    private static final int KIND_COUNTS = 8;
+    private static final int NUM_COUNTERS = KIND_COUNTS + KINDS.length;
+
+    private static final LongAdder DROPPED = Metrics.counter(
+        "hotsoup_analytics_dropped_total", "Game events analytics had no room for.",
+        "reason", "ring_full");
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final int ringCapacity;
+    private final long idleNanos;
+    private final long startNanos;
+
+    /** Every attached table's ring, until its last events have been merged. */
+    private final List<EventRing> rings;
+
+    /** The producer for each attached table. */
+    private final Map<Table, Producer> producers;
+
+    /**
+     * One bucket per second, wrapping around. seconds holds which second each
+     * bucket currently counts, and counters holds NUM_COUNTERS counts per bucket.
+     * Only the merger writes them.
+     */
+    private final int numBuckets;
+    private final AtomicLongArray seconds;
+    private final AtomicLongArray counters;
+
+    private final Thread merger;
+    private volatile boolean running;
+
+    /** Set once close() has been called; nothing more can be attached. */
+    private volatile boolean closed;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /** Instantiate through the Builder. */
+    private PlayAnalytics(Builder builder) {
+        this.ringCapacity = builder.ringCapacity;
+        this.idleNanos = builder.idleNanos;
+        this.numBuckets = builder.windowSeconds;
+        this.startNanos = System.nanoTime();
+        this.rings = new CopyOnWriteArrayList<>();
+        this.producers = new ConcurrentHashMap<>();
+        this.seconds = new AtomicLongArray(numBuckets);
+        for (int i = 0; i < numBuckets; i++) {
+            seconds.set(i, -1);
+        }
+        this.counters = new AtomicLongArray(numBuckets * NUM_COUNTERS);
+        this.merger = new Thread(this::run, "play-analytics");
+        this.merger.setDaemon(true);
+    }
+
+    /** Get a new Builder. */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /** Start the merger thread. */
+    public void start() {
+        Preconditions.checkState(!running && merger.getState() == Thread.State.NEW);
+        running = true;
+        merger.start();
+    }
+
+    /**
+     * Start collecting events from the table, from its next command on, until
+     * it's detached or closed.
+     */
+    public void attach(Table table) {
+        Preconditions.checkState(!closed, "These analytics have been closed.");
+        Producer producer = new Producer(new EventRing(ringCapacity));
+        Preconditions.checkState(producers.putIfAbsent(table, producer) == null);
+        rings.add(producer.ring);
+        table.addListener(producer);
+        table.onClose(() -> detach(table));
+    }
+
+    /**
+     * Stop collecting events from the table, from its next command on. Events it's
+     * already sent are still counted. Does nothing if it isn't attached.
+     */
+    public void detach(Table table) {
+        Producer producer = producers.remove(table);
+        if (producer == null) {
+            return;
+        }
+        table.removeListener(producer);
+        // Commands run in order, so nothing's published to the ring after this.
+        table.submit(game -> producer.ring.detached = true);
+    }
+
+    /**
+     * Get the number of plays made per second, over the last window, or the
+     * longest window we keep if it's longer.
+     */
+    public double getPlaysPerSecond(long window, TimeUnit unit) {
+        return (double) sum(PLAYS, window, unit) / span(window, unit);
+    }
+
+    /**
+     * Get the number of passes made per second, over the last window, or the
+     * longest window we keep if it's longer.
+     */
+    public double getPassesPerSecond(long window, TimeUnit unit) {
+        return (double) sum(PASSES, window, unit) / span(window, unit);
+    }
+
+    /** Get the fraction of attempted plays that were rejected, over the last window. */
+    public double getRejectionRate(long window, TimeUnit unit) {
+        long rejected = sum(REJECTS, window, unit);
+        long attempts = rejected + sum(PLAYS, window, unit);
+        return attempts == 0 ? 0 : (double) rejected / attempts;
+    }
+
+    /** Get the average number of plays and passes per trick, over the last window. */
+    public double getAverageTrickLength(long window, TimeUnit unit) {
+        long tricks = sum(TRICKS, window, unit);
+        return tricks == 0 ? 0 : (double) sum(TRICK_TURNS, window, unit) / tricks;
+    }
+
+    /** Get the number of rounds finished over the last window. */
+    public long getNumRoundsFinished(long window, TimeUnit unit) {
+        return sum(ROUNDS, window, unit);
+    }
+
+    /** Get the number of plays of each kind made over the last window. */
+    public Map<Play.Kind, Long> getKindCounts(long window, TimeUnit unit) {
+        Map<Play.Kind, Long> counts = new EnumMap<>(Play.Kind.class);
+        for (Play.Kind kind : KINDS) {
+            counts.put(kind, sum(KIND_COUNTS + kind.ordinal(), window, unit));
+        }
+        return counts;
+    }
+
+    /** Get the points north/south teams took, everywhere, over the last window. */
+    public long getPointsNS(long window, TimeUnit unit) {
+        return sum(POINTS_NS, window, unit);
+    }
+
+    /** Get the points east/west teams took, everywhere, over the last window. */
+    public long getPointsEW(long window, TimeUnit unit) {
+        return sum(POINTS_EW, window, unit);
+    }
+
+    /**
+     * Stop the merger thread, and detach every table, so none of them keeps
+     * filling a ring nobody drains. Events still in the rings are never counted.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        running = false;
+        LockSupport.unpark(merger);
+        for (Table table : producers.keySet()) {
+            detach(table);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Rings
+
+    /**
+     * A single-producer, single-consumer ring of events, each a timestamp and a
+     * packed payload. tail is only written by the producer and head only by the
+     * consumer; each publishes with an ordered store, which is all the other side
+     * needs to see the slots it's been given.
+     *
+     * The producer is whichever thread is running the table's commands. Tables
+     * only ever run one drain at a time, and hand over between threads through
+     * their draining flag, so that's still one producer at a time, in order.
+     */
+    private static final class EventRing {
+
+        private final long[] slots;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        /** The producer's last look at head, so it rarely has to read it. */
+        private long cachedHead;
+
+        /** Set once the producer's done, so the ring can go once it's drained. */
+        private volatile boolean detached;
+
+        EventRing(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+            this.slots = new long[size * 2];
+            this.mask = size - 1;
+        }
+
+        /** Add an event. Returns false, without waiting, if the ring is full. */
+        boolean offer(long nanos, long payload) {
+            long next = tail.get();
+            if (next - cachedHead > mask) {
+                cachedHead = head.get();
+                if (next - cachedHead > mask) {
+                    return false;
+                }
+            }
+            int slot = (int) (next & mask) * 2;
+            slots[slot] = nanos;
+            slots[slot + 1] = payload;
+            tail.lazySet(next + 1);
+            return true;
+        }
+
+        /** Hand every event in the ring to the analytics, and free their slots. */
+        int drainTo(PlayAnalytics analytics) {
+            long first = head.get();
+            long last = tail.get();
+            for (long i = first; i < last; i++) {
+                int slot = (int) (i & mask) * 2;
+                analytics.add(slots[slot], slots[slot + 1]);
+            }
+            head.lazySet(last);
+            return (int) (last - first);
+        }
+    }
+
+    /**
+     * Turns one table's game events into ring entries. Runs on the table's thread.
+     */
+    private static final class Producer implements GameListener {
+
+        private final EventRing ring;
+
+        /** Plays and passes so far in the current trick. */
+        private int trickTurns;
+
+        Producer(EventRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public void dealt(HotSoup game, Position leader) {
+            trickTurns = 0;
+        }
+
+        @Override
+        public void played(HotSoup game, Position position, Play play) {
+            trickTurns++;
+            publish(PLAY | play.getKind().ordinal() << 4 | (long) play.numCards() << 8);
+            Round round = game.getRound();
+            if (round != null && round.isOver()) {
+                publish(ROUND);
+            }
+        }
+
+        @Override
+        public void rejected(HotSoup game, Position position) {
+            publish(REJECT);
+        }
+
+        @Override
+        public void passed(HotSoup game, Position position) {
+            trickTurns++;
+            publish(PASS);
+        }
+
+        @Override
+        public void trickEnded(HotSoup game, Position winner, int numPoints) {
+            long team = winner.isNorthSouth() ? 0 : 1;
+            publish(TRICK | team << 4 | (long) trickTurns << 8 | (long) numPoints << 32);
+            trickTurns = 0;
+        }
+
+        @Override
+        public void scoreChanged(HotSoup game, int scoreNS, int scoreEW) {
+        }
+
+        private void publish(long payload) {
+            if (!ring.offer(System.nanoTime(), payload)) {
+                DROPPED.increment();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** The merger's loop: sweep the rings, and rest a little when they're empty. */
+    private void run() {
+        while (running) {
+            if (merge() == 0) {
+                LockSupport.parkNanos(idleNanos);
+            }
+        }
+    }
+
+    /**
+     * Sweep every ring once. Returns the number of events merged. Only one thread
+     * may merge at a time: the merger, or a test that never started it.
+     */
+    int merge() {
+        int merged = 0;
+        for (EventRing ring : rings) {
+            // Read before draining, so every event published before it's set is merged.
+            boolean detached = ring.detached;
+            merged += ring.drainTo(this);
+            if (detached) {
+                rings.remove(ring);
+            }
+        }
+        return merged;
+    }
+
+    /** Add one event to the bucket for its second. Only the merger calls this. */
+    private void add(long nanos, long payload) {
+        long second = TimeUnit.NANOSECONDS.toSeconds(nanos - startNanos);
+        int bucket = (int) (second % numBuckets);
+        long bucketSecond = seconds.get(bucket);
+        if (bucketSecond > second) {
+            // Older than the whole window.
+            return;
+        }
+        int base = bucket * NUM_COUNTERS;
+        if (bucketSecond < second) {
+            for (int i = 0; i < NUM_COUNTERS; i++) {
+                counters.lazySet(base + i, 0);
+            }
+            seconds.set(bucket, second);
+        }
+
+        switch ((int) (payload & 0xf)) {
+            case PLAY:
+                increment(base + PLAYS, 1);
+                increment(base + KIND_COUNTS + (int) (payload >>> 4 & 0xf), 1);
+                break;
+            case PASS:
+                increment(base + PASSES, 1);
+                break;
+            case REJECT:
+                increment(base + REJECTS, 1);
+                break;
+            case TRICK:
+                increment(base + TRICKS, 1);
+                increment(base + TRICK_TURNS, payload >>> 8 & 0xffffff);
+                int team = (payload >>> 4 & 1) == 0 ? POINTS_NS : POINTS_EW;
+                increment(base + team, (int) (payload >>> 32));
+                break;
+            case ROUND:
+                increment(base + ROUNDS, 1);
+                break;
+            default:
+                throw new AssertionError(payload);
+        }
+    }
+
+    /** Bump a counter. Only the merger writes counters, so this needn't be atomic. */
+    private void increment(int i, long delta) {
+        counters.lazySet(i, counters.get(i) + delta);
+    }
+
+    /** Sum one counter over the buckets in the last window, up to the current second. */
+    private long sum(int counter, long window, TimeUnit unit) {
+        long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        long span = span(window, unit);
+        long total = 0;
+        for (long second = now - span + 1; second <= now; second++) {
+            if (second < 0) {
+                continue;
+            }
+            int bucket = (int) (second % numBuckets);
+            if (seconds.get(bucket) == second) {
+                total += counters.get(bucket * NUM_COUNTERS + counter);
+            }
+        }
+        return total;
+    }
+
+    /** Get the number of whole seconds we'll sum over for the window. */
+    private long span(long window, TimeUnit unit) {
+        return Math.min(Math.max(1, unit.toSeconds(window)), numBuckets);
+    }
+
+    // ------------------------------------------------------------------------
+    // Builder
+
+    /**
+     * A Builder for PlayAnalytics.
+     */
+    public static final class Builder {
+
+        private int ringCapacity = 1024;
+        private int windowSeconds = 3600;
+        private long idleNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+        /** Instantiate via the static builder() method. */
+        private Builder() {
+        }
+
+        /**
+         * Set how many events each table can have waiting for the merger before
+         * new ones are dropped. Rounded up to a power of two. Defaults to 1024.
+         */
+        public Builder ringCapacity(int ringCapacity) {
+            Preconditions.checkArgument(ringCapacity > 0 && ringCapacity <= (1 << 24));
+            this.ringCapacity = ringCapacity;
+            return this;
+        }
+
+        /** Set the longest window statistics can be asked for over. Defaults to an hour. */
+        public Builder maxWindow(long duration, TimeUnit unit) {
+            long seconds = unit.toSeconds(duration);
+            Preconditions.checkArgument(seconds > 0 && seconds <= Integer.MAX_VALUE);
+            this.windowSeconds = (int) seconds;
+            return this;
+        }
+
+        /** Set how long the merger rests when every ring is empty. Defaults to 1ms. */
+        public Builder idleTime(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0);
+            this.idleNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /** Build the PlayAnalytics. Call start() to start merging. */
+        public PlayAnalytics build() {
+            return new PlayAnalytics(this);
+        }
+    }
+}
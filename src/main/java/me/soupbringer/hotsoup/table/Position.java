@@ -9,4 +9,26 @@ public enum Position {
     EAST,
     SOUTH,
     WEST;
+
+    /**
+     * Get the position whose turn comes after this one.
+     */
+    public Position next() {
+        return values()[(ordinal() + 1) % 4];
+    }
+
+    /**
+     * Get the position across the table, on the same team as this one.
+     */
+    public Position partner() {
+        return values()[(ordinal() + 2) % 4];
+    }
+
+    /**
+     * Returns true if this position is on the north/south team, and false if
+     * it's on the east/west team.
+     */
+    public boolean isNorthSouth() {
+        return this == NORTH || this == SOUTH;
+    }
 }
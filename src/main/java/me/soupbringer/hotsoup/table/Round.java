@@ -0,0 +1,491 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.metrics.DealEvent;
+import me.soupbringer.hotsoup.tricks.IllegalPlayException;
+import me.soupbringer.hotsoup.tricks.PlayResult;
+import me.soupbringer.hotsoup.tricks.Trick;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * A single hand of Hot Soup, from the deal until one team has gone out.
+ *
+ * Players take turns clockwise. Whoever made the last play in a trick takes its
+ * points for their team, and leads the next trick (or, if they're out of cards,
+ * their partner does, or failing that the next player who still has cards). Players
+ * who are out of cards pass automatically. As soon as both players on a team are
+ * out, the round is over, and whoever is on top of the unfinished trick takes
+ * its points.
+ *
+ * This knows nothing about who the players are; HotSoup takes care of that.
+ * It isn't thread-safe.
+ */
+public final class Round {
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    /** Each position's hand. */
+    private final Map<Position, Hand> hands;
+
+    /** The tricks which have been completed so far, in order. */
+    private final List<Trick> tricks;
+
+    /** Every card that's been played so far this round. */
+    private final Multiset<Card> played;
+
+    /** The cards played so far in the current trick, in order. */
+    private final List<Card> trickCards;
+
+    /** The trick in progress, or null if we're waiting on a lead. */
+    private Trick.Builder trick;
+
+    /** The last non-pass play in the current trick, or null on a lead. */
+    private Play top;
+
+    /** Who made the top play. */
+    private Position topPosition;
+
+    /** The number of passes since the top play. */
+    private int numConsecutivePasses;
+
+    /** Extra points riding on the current trick, from before we picked it up. */
+    private int carriedPoints;
+
+    /** Whose turn it is. */
+    private Position turn;
+
+    /** Points taken by each team so far. */
+    private int pointsNS;
+    private int pointsEW;
+
+    /** True once a team has gone out. */
+    private boolean over;
+
+    /** The number of plays and passes made so far (not counting automatic passes). */
+    private int numTurns;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Constructor. Instantiate via the static factory methods.
+     */
+    private Round(Map<Position, Hand> hands, Position turn) {
+        Preconditions.checkArgument(
+            hands.size() == Position.values().length, "Every position needs a hand.");
+        this.hands = new EnumMap<>(hands);
+        this.tricks = Lists.newArrayList();
+        this.played = HashMultiset.create();
+        this.trickCards = Lists.newArrayList();
+        this.turn = Preconditions.checkNotNull(turn);
+    }
+
+    /**
+     * Shuffle and deal a new round, with the given position leading the first trick.
+     * The cards left over after dealing everyone a full hand aren't used.
+     */
+    public static Round deal(Random random, Position leader) {
+        DealEvent event = new DealEvent();
+        event.begin();
+        List<Card> deck = Deck.shuffled(random);
+        Map<Position, Hand> hands = new EnumMap<>(Position.class);
+        for (Position position : Position.values()) {
+            int start = position.ordinal() * Hand.NEW_HAND_SIZE;
+            hands.put(position, Hand.builder()
+                .addAll(deck.subList(start, start + Hand.NEW_HAND_SIZE))
+                .build());
+        }
+        event.complete(leader.name());
+        return new Round(hands, leader);
+    }
+
+    /**
+     * Start a round with the given hands, and the given position leading.
+     */
+    public static Round of(Map<Position, Hand> hands, Position leader) {
+        return new Round(hands, leader);
+    }
+
+    /**
+     * Pick up a round part of the way through a trick.
+     *
+     * @param hands What each position is holding.
+     * @param turn Whose turn it is.
+     * @param top The last non-pass play in the trick, or null if it's turn's lead.
+     * @param topPosition Who made the top play (ignored on a lead).
+     * @param numConsecutivePasses The number of passes since the top play.
+     * @param trickPoints The number of points played into the trick so far.
+     */
+    public static Round resume(
+        Map<Position, Hand> hands,
+        Position turn,
+        Play top,
+        Position topPosition,
+        int numConsecutivePasses,
+        int trickPoints)
+    {
+        Round round = new Round(hands, turn);
+        if (top != null) {
+            round.trick = Trick.builder(top);
+            for (int i = 0; i < numConsecutivePasses; i++) {
+                round.trick.pass();
+            }
+            round.top = top;
+            round.topPosition = Preconditions.checkNotNull(topPosition);
+            round.numConsecutivePasses = numConsecutivePasses;
+            round.carriedPoints = trickPoints - top.countNumPoints();
+        }
+        return round;
+    }
+
+    // ------------------------------------------------------------------------
+    // Game actions
+
+    /**
+     * Make the given play for whoever's turn it is.
+     *
+     * Throws an IllegalPlayException if the play can't follow the top play.
+     * Throws a CardDoesNotExistInHandException if the cards aren't in the hand.
+     * Either way, nothing changes.
+     */
+    public void play(Play play) {
+        Preconditions.checkState(!over, "This round is already over.");
+        if (play.isPass()) {
+            pass();
+            return;
+        }
+
+        Hand hand = hands.get(turn);
+        if (trick == null) {
+            hand.playAll(play.getCards());
+            trick = Trick.builder(play);
+        } else {
+            PlayResult result = trick.check(play);
+            if (!result.isLegal()) {
+                throw IllegalPlayException.forResult(result);
+            }
+            hand.playAll(play.getCards());
+            trick.play(play);
+        }
+        played(play);
+    }
+
+    /**
+     * Check whether whoever's turn it is could make the given play (or pass),
+     * without making it or throwing anything.
+     */
+    public PlayResult check(Play play) {
+        Preconditions.checkState(!over, "This round is already over.");
+        if (trick == null) {
+            if (play.isPass()) {
+                return PlayResult.WRONG_SHAPE;
+            }
+        } else {
+            PlayResult result = trick.check(play);
+            if (!result.isLegal()) {
+                return result;
+            }
+        }
+        return play.isHeldIn(hands.get(turn))
+            ? PlayResult.LEGAL
+            : PlayResult.NOT_IN_HAND;
+    }
+
+    /**
+     * Make the given play (or pass) for whoever's turn it is, if it's legal.
+     * Returns why not if it isn't, in which case nothing changes. Unlike play(),
+     * this never throws for an illegal play.
+     */
+    public PlayResult tryPlay(Play play) {
+        PlayResult result = check(play);
+        if (!result.isLegal()) {
+            return result;
+        }
+        if (play.isPass()) {
+            pass();
+            return result;
+        }
+
+        hands.get(turn).tryPlayAll(play.getCards());
+        if (trick == null) {
+            trick = Trick.builder(play);
+        } else {
+            trick.tryPlay(play);
+        }
+        played(play);
+        return result;
+    }
+
+    /**
+     * Pass for whoever's turn it is.
+     *
+     * Throws an IllegalStateException if it's their lead.
+     */
+    public void pass() {
+        Preconditions.checkState(!over, "This round is already over.");
+        Preconditions.checkState(trick != null, "You can't pass on the lead.");
+        trick.pass();
+        numTurns++;
+        numConsecutivePasses++;
+        advance();
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+
+    /** Get the position whose turn it is. */
+    public Position getTurn() {
+        return turn;
+    }
+
+    /**
+     * Get the number of plays and passes made so far this round, not counting
+     * passes made automatically for players who are out. This changes every time
+     * a turn is taken, so it's handy for telling whether a turn is still current.
+     */
+    public int getNumTurns() {
+        return numTurns;
+    }
+
+    /** Get the hand at the given position. */
+    public Hand getHand(Position position) {
+        return hands.get(position);
+    }
+
+    /** Returns true if the player whose turn it is is leading a new trick. */
+    public boolean isLead() {
+        return trick == null;
+    }
+
+    /** Returns true once one team has gone out, and false until then. */
+    public boolean isOver() {
+        return over;
+    }
+
+    /** Get the last non-pass play in the current trick, or null on a lead. */
+    public Play getTopPlay() {
+        return top;
+    }
+
+    /** Get who made the top play, or null on a lead. */
+    public Position getTopPosition() {
+        return top == null ? null : topPosition;
+    }
+
+    /** Get the number of passes since the top play. */
+    public int getNumConsecutivePasses() {
+        return numConsecutivePasses;
+    }
+
+    /** Get the number of points riding on the current trick. */
+    public int getTrickPoints() {
+        return trick == null ? 0 : trick.getNumPoints() + carriedPoints;
+    }
+
+    /** Get the cards played so far in the current trick. */
+    public List<Card> getTrickCards() {
+        return Collections.unmodifiableList(trickCards);
+    }
+
+    /** Get every card played so far this round. */
+    public Multiset<Card> getPlayed() {
+        return Multisets.unmodifiableMultiset(played);
+    }
+
+    /** Get the completed tricks, in order. */
+    public List<Trick> getTricks() {
+        return ImmutableList.copyOf(tricks);
+    }
+
+    /** Get the points the north/south team has taken this round. */
+    public int scoreNS() {
+        return pointsNS;
+    }
+
+    /** Get the points the east/west team has taken this round. */
+    public int scoreEW() {
+        return pointsEW;
+    }
+
+    // ------------------------------------------------------------------------
+    // Hibernation
+
+    /**
+     * Write everything about this round to the buffer, so readFrom can rebuild it.
+     * Hands come back sorted rather than in the order they were dealt.
+     */
+    void writeTo(ByteBuffer buffer) {
+        for (Position position : Position.values()) {
+            StateCodec.writeCards(buffer, hands.get(position).getCards());
+        }
+        StateCodec.writeCards(buffer, played);
+        StateCodec.writePosition(buffer, turn);
+        StateCodec.writePosition(buffer, topPosition);
+        buffer.putInt(numTurns);
+        buffer.putInt(pointsNS);
+        buffer.putInt(pointsEW);
+        buffer.putInt(carriedPoints);
+        buffer.put((byte) (over ? 1 : 0));
+
+        buffer.putInt(tricks.size());
+        for (Trick finished : tricks) {
+            buffer.putInt(finished.getNumPlays());
+            for (Play play : finished) {
+                StateCodec.writePlay(buffer, play);
+            }
+        }
+        List<Play> current = trick == null ? ImmutableList.<Play>of() : trick.getPlays();
+        buffer.putInt(current.size());
+        for (Play play : current) {
+            StateCodec.writePlay(buffer, play);
+        }
+    }
+
+    /**
+     * Rebuild a round written by writeTo.
+     */
+    static Round readFrom(ByteBuffer buffer) {
+        Map<Position, Hand> hands = new EnumMap<>(Position.class);
+        for (Position position : Position.values()) {
+            Hand hand = Hand.builder().addAll(StateCodec.readCards(buffer)).buildInProgress();
+            hands.put(position, hand);
+        }
+        Multiset<Card> played = StateCodec.readCards(buffer);
+        Round round = new Round(hands, StateCodec.readPosition(buffer));
+        round.played.addAll(played);
+        round.topPosition = StateCodec.readPosition(buffer);
+        round.numTurns = buffer.getInt();
+        round.pointsNS = buffer.getInt();
+        round.pointsEW = buffer.getInt();
+        round.carriedPoints = buffer.getInt();
+        round.over = buffer.get() != 0;
+
+        int numTricks = buffer.getInt();
+        for (int i = 0; i < numTricks; i++) {
+            round.tricks.add(Trick.restore(readPlays(buffer, buffer.getInt())));
+        }
+        int numPlays = buffer.getInt();
+        if (numPlays > 0) {
+            round.trick = Trick.resume(readPlays(buffer, numPlays));
+            for (Play play : round.trick.getPlays()) {
+                if (play.isPass()) {
+                    round.numConsecutivePasses++;
+                } else {
+                    round.top = play;
+                    round.numConsecutivePasses = 0;
+                    round.trickCards.addAll(play.getCards());
+                }
+            }
+        }
+        return round;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /**
+     * Read the given number of plays from the buffer. They were checked when they
+     * were made, so waking doesn't check them again.
+     */
+    private static Play[] readPlays(ByteBuffer buffer, int numPlays) {
+        Play[] plays = new Play[numPlays];
+        for (int i = 0; i < numPlays; i++) {
+            plays[i] = StateCodec.readPlay(buffer);
+        }
+        return plays;
+    }
+
+    /** Bookkeeping once a (non-pass) play has been made. */
+    private void played(Play play) {
+        numTurns++;
+        top = play;
+        topPosition = turn;
+        numConsecutivePasses = 0;
+        trickCards.addAll(play.getCards());
+        played.addAll(play.getCards());
+
+        if (isTeamOut(turn)) {
+            finish();
+        } else {
+            advance();
+        }
+    }
+
+    /**
+     * Move the turn along, passing for anyone who's out, and wrapping up the
+     * trick once everyone else has passed.
+     */
+    private void advance() {
+        turn = turn.next();
+        while (numConsecutivePasses < 3 && hands.get(turn).isOut()) {
+            trick.pass();
+            numConsecutivePasses++;
+            turn = turn.next();
+        }
+        if (numConsecutivePasses == 3) {
+            Trick finished = trick.end();
+            tricks.add(finished);
+            award(finished.countNumPoints());
+            trick = null;
+            top = null;
+            numConsecutivePasses = 0;
+            trickCards.clear();
+            turn = nextLeader(topPosition);
+        }
+    }
+
+    /** End the round, giving the unfinished trick to whoever's on top. */
+    private void finish() {
+        award(trick.getNumPoints());
+        trick = null;
+        over = true;
+    }
+
+    /** Give the trick's points (plus anything carried in) to the top player's team. */
+    private void award(int trickPoints) {
+        int points = trickPoints + carriedPoints;
+        carriedPoints = 0;
+        if (topPosition.isNorthSouth()) {
+            pointsNS += points;
+        } else {
+            pointsEW += points;
+        }
+    }
+
+    /** Figure out who leads after the given position takes a trick. */
+    private Position nextLeader(Position winner) {
+        if (!hands.get(winner).isOut()) {
+            return winner;
+        }
+        if (!hands.get(winner.partner()).isOut()) {
+            return winner.partner();
+        }
+        Position next = winner.next();
+        while (hands.get(next).isOut()) {
+            next = next.next();
+        }
+        return next;
+    }
+
+    /** Returns true if the given position and their partner are both out. */
+    private boolean isTeamOut(Position position) {
+        return hands.get(position).isOut() && hands.get(position.partner()).isOut();
+    }
+}
@@ -0,0 +1,304 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+
+/**
+ * Keeps track of who's connected, and where they're sitting.
+ *
+ * Sessions are indexed by player id in a ConcurrentHashMap, so the lookup every
+ * request makes is O(1) and never blocks. Each lookup also counts as the player
+ * being seen. A player who hasn't been seen for the time-to-live is taken to
+ * have disconnected: a periodic sweep evicts their session, and gets them up from
+ * their seat through the table, like any other change to a game.
+ *
+ * A session's last-seen time doubles as its liveness flag. Eviction swaps it for
+ * a marker with compare-and-set, so a player seen at the same moment they're
+ * being evicted either stays or goes; they never end up half evicted.
+ */
+public final class SessionRegistry implements AutoCloseable {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    private static final Logger LOGGER = Logger.getLogger(SessionRegistry.class.getName());
+
+    /** The last-seen time of a session that's been evicted. */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private static final LongAdder NUM_EVICTED = Metrics.counter(
+        "hotsoup_sessions_ended_total", "Player sessions ended.", "reason", "evicted");
+    private static final LongAdder NUM_REMOVED = Metrics.counter(
+        "hotsoup_sessions_ended_total", "Player sessions ended.", "reason", "removed");
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    /** Every live session, by player id. */
+    private final Map<String, Session> sessions;
+
+    private final long ttlNanos;
+
+    /** Tells the time, in nanoseconds. System::nanoTime, except in tests. */
+    private final LongSupplier clock;
+
+    /** Gets an evicted player up from their seat. */
+    private final BiConsumer<Table, Player> vacate;
+
+    /** The periodic sweep, or null if there isn't one. */
+    private final ScheduledFuture<?> sweep;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Constructor. Evicted players are unseated with a plain table command, and
+     * nothing sweeps automatically; call evictExpired to sweep.
+     *
+     * @param ttl How long a player can go unseen before their session is evicted.
+     * @param unit The unit of ttl.
+     */
+    public SessionRegistry(long ttl, TimeUnit unit) {
+        this(ttl, unit, System::nanoTime);
+    }
+
+    /**
+     * Constructor. Evicted players are unseated with a plain table command, and
+     * expired sessions are swept on the scheduler.
+     *
+     * @param ttl How long a player can go unseen before their session is evicted.
+     * @param unit The unit of ttl.
+     * @param scheduler Where to sweep for expired sessions.
+     */
+    public SessionRegistry(long ttl, TimeUnit unit, ScheduledExecutorService scheduler) {
+        this(ttl, unit, SessionRegistry::unseat, Preconditions.checkNotNull(scheduler));
+    }
+
+    /**
+     * Constructor, for tests, which tells the time with the given clock instead of
+     * System.nanoTime().
+     */
+    SessionRegistry(long ttl, TimeUnit unit, LongSupplier clock) {
+        this(ttl, unit, SessionRegistry::unseat, clock);
+    }
+
+    /** Constructor, for tests, with a clock and a way to unseat players. */
+    SessionRegistry(long ttl, TimeUnit unit, BiConsumer<Table, Player> vacate, LongSupplier clock) {
+        this(ttl, unit, vacate, null, clock);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ttl How long a player can go unseen before their session is evicted.
+     * @param unit The unit of ttl.
+     * @param vacate Gets an evicted player up from their table. Pass Lobby::leave
+     *               if seats came from a Lobby, so it can keep its counts right.
+     * @param scheduler Where to sweep for expired sessions, or null for nowhere.
+     */
+    public SessionRegistry(
+        long ttl,
+        TimeUnit unit,
+        BiConsumer<Table, Player> vacate,
+        ScheduledExecutorService scheduler)
+    {
+        this(ttl, unit, vacate, scheduler, System::nanoTime);
+    }
+
+    /** The constructor the others all call. */
+    private SessionRegistry(
+        long ttl,
+        TimeUnit unit,
+        BiConsumer<Table, Player> vacate,
+        ScheduledExecutorService scheduler,
+        LongSupplier clock)
+    {
+        Preconditions.checkArgument(ttl > 0, "Sessions need to live for some time.");
+        this.sessions = new ConcurrentHashMap<>();
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = Preconditions.checkNotNull(clock);
+        this.vacate = Preconditions.checkNotNull(vacate);
+        long period = Math.max(1, ttlNanos / 8);
+        this.sweep = scheduler == null ? null : scheduler.scheduleAtFixedRate(
+            this::evictExpired, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Get the player's session, starting one if they don't have one.
+     */
+    public Session register(Player player) {
+        Preconditions.checkNotNull(player.getId(), "Players need an id to have a session.");
+        while (true) {
+            long now = clock.getAsLong();
+            Session session =
+                sessions.computeIfAbsent(player.getId(), id -> new Session(player, now));
+            if (session.touch(now)) {
+                return session;
+            }
+            // Evicted since we looked it up; make way for a new one.
+            sessions.remove(player.getId(), session);
+        }
+    }
+
+    /**
+     * Get the live session for the given player id, or null if there isn't one.
+     * This counts as seeing the player.
+     */
+    public Session get(String playerId) {
+        Session session = sessions.get(playerId);
+        return session != null && session.touch(clock.getAsLong()) ? session : null;
+    }
+
+    /**
+     * End the player's session now, getting them up from their seat. If they're
+     * seen at the same moment, we try again, so the session always ends.
+     */
+    public void remove(String playerId) {
+        Session session;
+        while ((session = sessions.get(playerId)) != null) {
+            long lastSeen = session.lastSeenNanos.get();
+            if (lastSeen == EVICTED) {
+                // Someone else is already ending it.
+                return;
+            }
+            if (end(session, lastSeen)) {
+                NUM_REMOVED.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evict every session which has gone unseen for the time-to-live. Returns the
+     * number evicted.
+     */
+    public int evictExpired() {
+        long now = clock.getAsLong();
+        int numEvicted = 0;
+        for (Session session : sessions.values()) {
+            long lastSeen = session.lastSeenNanos.get();
+            if (now - lastSeen >= ttlNanos && end(session, lastSeen)) {
+                numEvicted++;
+            }
+        }
+        NUM_EVICTED.add(numEvicted);
+        return numEvicted;
+    }
+
+    /** Get the number of live sessions. */
+    public int size() {
+        return sessions.size();
+    }
+
+    /** Stop sweeping. */
+    @Override
+    public void close() {
+        if (sweep != null) {
+            sweep.cancel(false);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Sessions
+
+    /**
+     * One player's session: who they are, when we last saw them, and where they're
+     * sitting.
+     */
+    public static final class Session {
+
+        private final Player player;
+        private final AtomicLong lastSeenNanos;
+        private volatile Lobby.Seat seat;
+
+        private Session(Player player, long now) {
+            this.player = player;
+            this.lastSeenNanos = new AtomicLong(now);
+        }
+
+        /** Get the player this session is for. */
+        public Player getPlayer() {
+            return player;
+        }
+
+        /** Get where the player is sitting, or null if they aren't. */
+        public Lobby.Seat getSeat() {
+            return seat;
+        }
+
+        /** Record where the player is sitting, or null if they got up. */
+        public void setSeat(Lobby.Seat seat) {
+            this.seat = seat;
+        }
+
+        /** Returns false if this session has been evicted. */
+        public boolean isLive() {
+            return lastSeenNanos.get() != EVICTED;
+        }
+
+        /** Mark the player as seen at the given time. Returns false if it's too late. */
+        private boolean touch(long now) {
+            while (true) {
+                long lastSeen = lastSeenNanos.get();
+                if (lastSeen == EVICTED) {
+                    return false;
+                }
+                if (lastSeen - now >= 0 || lastSeenNanos.compareAndSet(lastSeen, now)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /**
+     * End the session if it hasn't been seen since lastSeen. Returns true if we
+     * were the ones to end it. If the player can't be unseated, that's logged,
+     * and the session still ends; one bad seat mustn't stop a sweep.
+     */
+    private boolean end(Session session, long lastSeen) {
+        if (lastSeen == EVICTED || !session.lastSeenNanos.compareAndSet(lastSeen, EVICTED)) {
+            return false;
+        }
+        sessions.remove(session.player.getId(), session);
+        Lobby.Seat seat = session.seat;
+        if (seat != null) {
+            try {
+                vacate.accept(seat.getTable(), session.player);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING,
+                    "Couldn't unseat " + session.player.getId() + " from table "
+                        + seat.getTable().getId(), e);
+            }
+        }
+        return true;
+    }
+
+    /** Get the player up from the table with a plain table command. */
+    private static void unseat(Table table, Player player) {
+        table.submit(game -> {
+            Position position = game.locationOf(player);
+            if (position != null) {
+                game.seatPlayer(null, position);
+            }
+        });
+    }
+}
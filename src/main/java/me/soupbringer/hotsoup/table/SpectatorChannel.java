@@ -0,0 +1,328 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Sends everything public that happens at a table to whoever's watching.
+ *
+ * Each event is encoded exactly once, into a Frame that every subscriber shares.
+ * Frames are reference counted: each subscriber queue holds a reference, and
+ * releases it once the frame has been written out. When the last reference goes,
+ * the frame's buffer goes back to a pool for the next event, so a busy table with
+ * hundreds of spectators costs one encoding and no new buffers per event.
+ *
+ * Each subscriber's queue is bounded. If a subscriber falls so far behind that
+ * its queue is full, we throw away everything it has queued and give it a
+ * snapshot of the whole public state instead, so a slow spectator never holds up
+ * the table or makes it buffer without limit. Like events, a snapshot is encoded
+ * at most once per event, however many subscribers need it.
+ *
+ * Every frame starts with a type byte and a sequence number; a snapshot carries
+ * the sequence number of the last event it covers. Plays are written by
+ * StateCodec, so they carry their kind as well as their cards.
+ */
+public final class SpectatorChannel implements GameListener {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    /** Frame types. */
+    public static final byte DEALT = 1;
+    public static final byte PLAYED = 2;
+    public static final byte PASSED = 3;
+    public static final byte TRICK_ENDED = 4;
+    public static final byte SCORE_CHANGED = 5;
+    public static final byte SNAPSHOT = 6;
+
+    /** Big enough for any event frame. */
+    private static final int EVENT_CAPACITY = 64;
+
+    /** Big enough for a snapshot, unless players have very long names. */
+    private static final int SNAPSHOT_CAPACITY = 1024;
+
+    private static final LongAdder EVENTS_ENCODED = Metrics.counter(
+        "hotsoup_spectator_frames_total", "Spectator frames encoded.", "type", "event");
+    private static final LongAdder SNAPSHOTS_ENCODED = Metrics.counter(
+        "hotsoup_spectator_frames_total", "Spectator frames encoded.", "type", "snapshot");
+    private static final LongAdder FRAMES_DROPPED = Metrics.counter(
+        "hotsoup_spectator_dropped_total", "Frames dropped for slow spectators.", "reason", "full");
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final List<Subscription> subscribers;
+
+    /** Spare event buffers. Never more than the most frames ever in flight at once. */
+    private final Queue<Frame> pool;
+
+    /** The sequence number of the last event. Only the table's thread touches this. */
+    private long sequence;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Constructor.
+     */
+    public SpectatorChannel() {
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.pool = new ConcurrentLinkedQueue<>();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Start watching. Frames start arriving with the next event.
+     *
+     * @param capacity The most frames to hold for this subscriber before dropping
+     *                 them all for a snapshot.
+     * @param onReady Called, on the table's thread, whenever a frame is queued. It
+     *                should be quick; typically it schedules a write.
+     */
+    public Subscription subscribe(int capacity, Runnable onReady) {
+        Preconditions.checkArgument(capacity > 0);
+        Preconditions.checkNotNull(onReady);
+        Subscription subscription = new Subscription(capacity, onReady);
+        subscribers.add(subscription);
+        return subscription;
+    }
+
+    /** Get the number of subscribers. */
+    public int getNumSubscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void dealt(HotSoup game, Position leader) {
+        Frame frame = event(DEALT);
+        frame.buffer.put((byte) leader.ordinal());
+        frame.buffer.putInt(game.getNumRounds());
+        publish(game, frame);
+    }
+
+    @Override
+    public void played(HotSoup game, Position position, Play play) {
+        Frame frame = event(PLAYED);
+        frame.buffer.put((byte) position.ordinal());
+        StateCodec.writePlay(frame.buffer, play);
+        publish(game, frame);
+    }
+
+    /** Spectators don't see rejected plays. */
+    @Override
+    public void rejected(HotSoup game, Position position) {
+    }
+
+    @Override
+    public void passed(HotSoup game, Position position) {
+        Frame frame = event(PASSED);
+        frame.buffer.put((byte) position.ordinal());
+        publish(game, frame);
+    }
+
+    @Override
+    public void trickEnded(HotSoup game, Position winner, int numPoints) {
+        Frame frame = event(TRICK_ENDED);
+        frame.buffer.put((byte) winner.ordinal());
+        frame.buffer.putInt(numPoints);
+        publish(game, frame);
+    }
+
+    @Override
+    public void scoreChanged(HotSoup game, int scoreNS, int scoreEW) {
+        Frame frame = event(SCORE_CHANGED);
+        frame.buffer.putInt(scoreNS);
+        frame.buffer.putInt(scoreEW);
+        publish(game, frame);
+    }
+
+    // ------------------------------------------------------------------------
+    // Frames and subscriptions
+
+    /**
+     * An encoded event or snapshot, shared between subscribers. Call release once
+     * it's been written; after that, it mustn't be touched.
+     */
+    public static final class Frame {
+
+        private final ByteBuffer buffer;
+        private final AtomicInteger refs;
+
+        /** Where the buffer goes back to, or null if it isn't pooled. */
+        private final Queue<Frame> pool;
+
+        private Frame(ByteBuffer buffer, Queue<Frame> pool) {
+            this.buffer = buffer;
+            this.refs = new AtomicInteger();
+            this.pool = pool;
+        }
+
+        /** Get the frame's type. */
+        public byte getType() {
+            return buffer.get(0);
+        }
+
+        /** Get the frame's contents, as a read-only view of the shared buffer. */
+        public ByteBuffer getData() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        /** Give up this reference to the frame. */
+        public void release() {
+            int remaining = refs.decrementAndGet();
+            Preconditions.checkState(remaining >= 0, "This frame was released too many times.");
+            if (remaining == 0 && pool != null) {
+                pool.add(this);
+            }
+        }
+
+        private void retain() {
+            refs.incrementAndGet();
+        }
+    }
+
+    /**
+     * One spectator's view of the table.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final BlockingQueue<Frame> queue;
+        private final Runnable onReady;
+
+        private Subscription(int capacity, Runnable onReady) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.onReady = onReady;
+        }
+
+        /**
+         * Get the next frame, or null if there isn't one yet. The caller owns a
+         * reference to it, and has to release it.
+         */
+        public Frame poll() {
+            return queue.poll();
+        }
+
+        /** Stop watching, and let go of anything still queued. */
+        @Override
+        public void close() {
+            subscribers.remove(this);
+            dropAll();
+        }
+
+        /** Let go of everything queued. Returns the number of frames dropped. */
+        private int dropAll() {
+            int numDropped = 0;
+            Frame frame;
+            while ((frame = queue.poll()) != null) {
+                frame.release();
+                numDropped++;
+            }
+            return numDropped;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** Start a new event frame of the given type. */
+    private Frame event(byte type) {
+        Frame frame = pool.poll();
+        if (frame == null) {
+            frame = new Frame(ByteBuffer.allocateDirect(EVENT_CAPACITY), pool);
+        }
+        frame.refs.set(1);
+        frame.buffer.clear();
+        frame.buffer.put(type);
+        frame.buffer.putLong(++sequence);
+        return frame;
+    }
+
+    /**
+     * Hand the finished frame to every subscriber, swapping in a snapshot for any
+     * that are full, then drop our own reference.
+     */
+    private void publish(HotSoup game, Frame frame) {
+        frame.buffer.flip();
+        EVENTS_ENCODED.increment();
+        Frame snapshot = null;
+        for (Subscription subscription : subscribers) {
+            frame.retain();
+            if (!subscription.queue.offer(frame)) {
+                frame.release();
+                FRAMES_DROPPED.add(subscription.dropAll());
+                if (snapshot == null) {
+                    snapshot = snapshot(game);
+                }
+                snapshot.retain();
+                if (!subscription.queue.offer(snapshot)) {
+                    snapshot.release();
+                }
+            }
+            subscription.onReady.run();
+        }
+        frame.release();
+        if (snapshot != null) {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Encode everything public about the game: the score, who's sitting where and
+     * how many cards they have, and where the current trick stands.
+     */
+    private Frame snapshot(HotSoup game) {
+        for (int capacity = SNAPSHOT_CAPACITY; ; capacity *= 2) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                writeSnapshot(game, buffer);
+            } catch (BufferOverflowException e) {
+                continue;
+            }
+            buffer.flip();
+            SNAPSHOTS_ENCODED.increment();
+            Frame snapshot = new Frame(buffer, null);
+            snapshot.refs.set(1);
+            return snapshot;
+        }
+    }
+
+    /** Write a snapshot of the game into the buffer. */
+    private void writeSnapshot(HotSoup game, ByteBuffer buffer) {
+        buffer.put(SNAPSHOT);
+        buffer.putLong(sequence);
+        buffer.putInt(game.getNumRounds());
+        buffer.putInt(game.scoreNS());
+        buffer.putInt(game.scoreEW());
+        Map<Position, String> names = game.getSeatedPlayers();
+        Map<Position, Integer> remaining = game.getRemainingCardsMap();
+        for (Position position : Position.values()) {
+            StateCodec.writeString(buffer, names.get(position));
+            buffer.put(remaining.get(position).byteValue());
+        }
+        Round round = game.getRound();
+        boolean active = round != null && !round.isOver();
+        buffer.put((byte) (active ? 1 : 0));
+        if (active) {
+            buffer.put((byte) round.getTurn().ordinal());
+            StateCodec.writePosition(buffer, round.getTopPosition());
+            StateCodec.writePlay(buffer, round.isLead() ? Play.pass() : round.getTopPlay());
+            buffer.putInt(round.getTrickPoints());
+        }
+    }
+}
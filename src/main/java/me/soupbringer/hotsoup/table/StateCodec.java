@@ -0,0 +1,116 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.collect.ImmutableMultiset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Helpers for writing game state into a ByteBuffer and reading it back, used
+ * when tables hibernate and for spectator frames.
+ *
+ * Cards are written in the PackedCards form, so a multiset of any size takes
+ * 16 bytes. A Play is its Kind's ordinal in a byte, then (unless it's a pass) its
+ * packed cards. The kind has to be written, since some cards make more than one
+ * kind of Play, and we need back the one that was actually played.
+ */
+final class StateCodec {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    /** Every kind of Play, by ordinal. */
+    private static final Play.Kind[] KINDS = Play.Kind.values();
+
+    /** Marks a null String or Position. */
+    private static final int NULL = -1;
+
+    /** No instantiation. */
+    private StateCodec() {
+    }
+
+    // ------------------------------------------------------------------------
+    // Cards and Plays
+
+    /** Write the cards, packed. */
+    static void writeCards(ByteBuffer buffer, Iterable<? extends Card> cards) {
+        long[] packed = PackedCards.pack(cards);
+        for (long word : packed) {
+            buffer.putLong(word);
+        }
+    }
+
+    /** Read cards written by writeCards. */
+    static ImmutableMultiset<Card> readCards(ByteBuffer buffer) {
+        return PackedCards.unpack(readPackedCards(buffer), 0);
+    }
+
+    /** Write a Play. */
+    static void writePlay(ByteBuffer buffer, Play play) {
+        buffer.put((byte) play.getKind().ordinal());
+        if (!play.isPass()) {
+            writeCards(buffer, play.getCards());
+        }
+    }
+
+    /** Read a Play written by writePlay. */
+    static Play readPlay(ByteBuffer buffer) {
+        Play.Kind kind = KINDS[buffer.get()];
+        if (kind == Play.Kind.PASS) {
+            return Play.pass();
+        }
+        return Play.one(kind, readCards(buffer));
+    }
+
+    // ------------------------------------------------------------------------
+    // Everything else
+
+    /** Write a String (which may be null) as UTF-8. */
+    static void writeString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            buffer.putInt(NULL);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /** Read a String written by writeString. */
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Write a Position (which may be null). */
+    static void writePosition(ByteBuffer buffer, Position position) {
+        buffer.put((byte) (position == null ? NULL : position.ordinal()));
+    }
+
+    /** Read a Position written by writePosition. */
+    static Position readPosition(ByteBuffer buffer) {
+        int ordinal = buffer.get();
+        return ordinal == NULL ? null : Position.values()[ordinal];
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** Read the raw packed words of some cards. */
+    private static long[] readPackedCards(ByteBuffer buffer) {
+        long[] packed = new long[PackedCards.NUM_WORDS];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = buffer.getLong();
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,546 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.metrics.TableCommandEvent;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * A single table, with its own HotSoup game.
+ *
+ * Everything that happens to the game goes through the table as a TableCommand.
+ * Commands are queued up and run one at a time on a shared Executor, so a table
+ * never occupies more than one thread, and thousands of tables can share a small
+ * pool.
+ *
+ * Each turn is on a clock. If the player whose turn it is hasn't moved by the
+ * time it runs out, we pass for them, or lead their lowest card if it's their lead.
+ *
+ * A table with an idle timeout hibernates once nothing has happened there for
+ * that long: its game is written to a compact off-heap buffer and dropped from
+ * the heap. The next command to arrive wakes the game back up before it runs, so
+ * hibernation is invisible to commands. That includes a turn timing out, so a
+ * table whose player has wandered off can still hibernate while it waits.
+ *
+ * Spectators watch through the table's SpectatorChannel, which hears about
+ * every public change to the game as it's made.
+ *
+ * Closing a table stops its timers and runs its close hooks, so anything
+ * watching it can let go.
+ */
+public final class Table {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    private static final Logger LOGGER = Logger.getLogger(Table.class.getName());
+
+    /** The most commands we'll run in one go before giving the thread back. */
+    private static final int MAX_COMMANDS_PER_DRAIN = 64;
+
+    /** Room to encode a game in before it's copied off-heap. Far more than one needs. */
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    /** Scratch buffers for encoding games, one per thread. */
+    private static final ThreadLocal<ByteBuffer> SCRATCH =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(SCRATCH_SIZE));
+
+    /** Submitted by the idle timer; handled by drain rather than run on the game. */
+    private static final TableCommand HIBERNATE = game -> { };
+
+    private static final LatencyHistogram RESUME_LATENCY = Metrics.histogram(
+        "hotsoup_table_resume_seconds", "Time spent waking a hibernated table.");
+    /** The number of commands queued across every table. */
+    private static final LongAdder QUEUED = Metrics.gauge(
+        "hotsoup_table_queued_commands", "Commands waiting to run, across all tables.");
+
+    private static final LatencyHistogram HIBERNATE_LATENCY = Metrics.histogram(
+        "hotsoup_table_hibernate_seconds", "Time spent hibernating an idle table.");
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final String id;
+    private final Executor executor;
+    private final TurnClock clock;
+    private final long turnTimeoutNanos;
+
+    /** How long the table has to sit idle before it hibernates, or 0 for never. */
+    private final long idleTimeoutNanos;
+
+    /** The game, or null while it's hibernated. */
+    private HotSoup game;
+
+    /** The encoded game while it's hibernated, or null while it's awake. */
+    private volatile ByteBuffer hibernated;
+
+    /** When the last command ran. */
+    private long lastActiveNanos;
+
+    /** The pending idle timer, or null if there isn't one. */
+    private TurnClock.Timeout idleTimer;
+
+    /** Everyone watching this table. */
+    private final SpectatorChannel spectators;
+
+    /** Who the game tells about events: the spectators, and anyone added since. */
+    private GameListener listener;
+
+    /** Commands waiting to be run, and how many there are. */
+    private final Queue<Queued> commands;
+    private final AtomicInteger queueDepth;
+
+    /** True while a drain of the command queue is scheduled or running. */
+    private final AtomicBoolean draining;
+
+    /** The round and turn number the current turn timer is for. */
+    private int timedRoundNumber;
+    private int timedTurn;
+
+    /** The current turn timer, or null if there isn't one. */
+    private TurnClock.Timeout turnTimer;
+
+    /** True once the table's been closed. Only touched on the table's thread. */
+    private boolean closed;
+
+    /** What to run when the table's closed. */
+    private final List<Runnable> closeHooks;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Constructor.
+     *
+     * @param id A unique id for this table.
+     * @param executor Where this table's commands get run.
+     * @param clock The clock to time turns with.
+     * @param turnTimeout How long each player gets for their turn.
+     * @param unit The unit of turnTimeout.
+     */
+    public Table(String id, Executor executor, TurnClock clock, long turnTimeout, TimeUnit unit) {
+        this(id, executor, clock, turnTimeout, 0, unit);
+    }
+
+    /**
+     * Constructor, for a table that hibernates when it's idle.
+     *
+     * @param id A unique id for this table.
+     * @param executor Where this table's commands get run.
+     * @param clock The clock to time turns and idleness with.
+     * @param turnTimeout How long each player gets for their turn.
+     * @param idleTimeout How long the table sits idle before hibernating, or 0 for never.
+     * @param unit The unit of turnTimeout and idleTimeout.
+     */
+    public Table(
+        String id,
+        Executor executor,
+        TurnClock clock,
+        long turnTimeout,
+        long idleTimeout,
+        TimeUnit unit)
+    {
+        Preconditions.checkArgument(idleTimeout >= 0);
+        this.id = Preconditions.checkNotNull(id);
+        this.spectators = new SpectatorChannel();
+        this.listener = spectators;
+        this.game = HotSoup.create();
+        this.game.setListener(listener);
+        this.executor = Preconditions.checkNotNull(executor);
+        this.clock = Preconditions.checkNotNull(clock);
+        this.turnTimeoutNanos = unit.toNanos(turnTimeout);
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.queueDepth = new AtomicInteger();
+        this.draining = new AtomicBoolean();
+        this.closeHooks = new CopyOnWriteArrayList<>();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /** Get this table's id. */
+    public String getId() {
+        return id;
+    }
+
+    /** Get the channel spectators watch this table through. */
+    public SpectatorChannel getSpectators() {
+        return spectators;
+    }
+
+    /** Returns true if this table's game is currently hibernated off-heap. */
+    public boolean isHibernated() {
+        return hibernated != null;
+    }
+
+    /**
+     * Queue up a command for this table's game. It'll run after every command
+     * submitted before it, and before every command submitted after it.
+     */
+    public void submit(TableCommand command) {
+        Preconditions.checkNotNull(command);
+        queueDepth.incrementAndGet();
+        enqueue(command);
+    }
+
+    /**
+     * Queue up a command, unless there are already maxDepth commands waiting.
+     * Returns true if it was queued.
+     */
+    public boolean offer(TableCommand command, int maxDepth) {
+        Preconditions.checkNotNull(command);
+        while (true) {
+            int depth = queueDepth.get();
+            if (depth >= maxDepth) {
+                return false;
+            }
+            if (queueDepth.compareAndSet(depth, depth + 1)) {
+                enqueue(command);
+                return true;
+            }
+        }
+    }
+
+    /** Get the number of commands waiting to be run. */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Have another listener hear about this table's game, as well as the
+     * spectators. It's added on the table's thread, so it hears about everything
+     * from the next command on, and its calls always come from that thread.
+     */
+    void addListener(GameListener extra) {
+        Preconditions.checkNotNull(extra);
+        submit(game -> {
+            listener = new ListenerPair(listener, extra);
+            game.setListener(listener);
+        });
+    }
+
+    /**
+     * Stop another listener hearing about this table's game. It's removed on the
+     * table's thread, so it hears nothing from the next command on.
+     */
+    void removeListener(GameListener extra) {
+        Preconditions.checkNotNull(extra);
+        submit(game -> {
+            listener = without(listener, extra);
+            game.setListener(listener);
+        });
+    }
+
+    /**
+     * Run the hook on the table's thread when it's closed. Hooks run in the
+     * order they were added.
+     */
+    void onClose(Runnable hook) {
+        closeHooks.add(Preconditions.checkNotNull(hook));
+    }
+
+    /**
+     * Close the table, after every command already submitted: cancel its turn and
+     * idle timers, and run its close hooks. Commands submitted later still run,
+     * but turns are no longer timed.
+     */
+    public void close() {
+        submit(game -> {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (turnTimer != null) {
+                turnTimer.cancel();
+                turnTimer = null;
+            }
+            if (idleTimer != null) {
+                idleTimer.cancel();
+                idleTimer = null;
+            }
+            for (Runnable hook : closeHooks) {
+                hook.run();
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** Add a command to the queue, which has already been counted, and drain it. */
+    private void enqueue(TableCommand command) {
+        commands.add(new Queued(command));
+        QUEUED.increment();
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                // The command stays queued, for the next submit to drain.
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A command waiting in the queue, with when it was submitted.
+     */
+    private static final class Queued {
+
+        private final TableCommand command;
+        private final long submittedNanos;
+        private final TableCommandEvent event;
+
+        Queued(TableCommand command) {
+            this.command = command;
+            this.submittedNanos = System.nanoTime();
+            this.event = new TableCommandEvent();
+            this.event.begin();
+        }
+    }
+
+    /**
+     * Run queued commands. Only one drain runs at a time per table.
+     */
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_COMMANDS_PER_DRAIN; i++) {
+                Queued queued = commands.poll();
+                if (queued == null) {
+                    break;
+                }
+                queueDepth.decrementAndGet();
+                QUEUED.decrement();
+                if (queued.command == HIBERNATE) {
+                    idleTimer = null;
+                    try {
+                        hibernateIfIdle();
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Hibernating failed at table " + id, e);
+                    }
+                    continue;
+                }
+                long waitNanos = System.nanoTime() - queued.submittedNanos;
+                boolean failed = false;
+                try {
+                    wake();
+                    queued.command.execute(game);
+                    if (game != null && !closed) {
+                        restartTurnTimer();
+                        lastActiveNanos = System.nanoTime();
+                        restartIdleTimer(idleTimeoutNanos);
+                    }
+                } catch (Exception e) {
+                    failed = true;
+                    LOGGER.log(Level.WARNING, "Command failed at table " + id, e);
+                }
+                queued.event.complete(id, waitNanos, failed);
+            }
+        } finally {
+            draining.set(false);
+        }
+        // Someone may have submitted after our last poll, but before we cleared the flag.
+        if (!commands.isEmpty() && draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * If the turn has moved on since we last set the timer, start timing the new one.
+     */
+    private void restartTurnTimer() {
+        Round round = game.getRound();
+        int roundNumber = game.getNumRounds();
+        int turn = round == null ? 0 : round.getNumTurns();
+        if (roundNumber == timedRoundNumber && turn == timedTurn) {
+            return;
+        }
+        if (turnTimer != null) {
+            turnTimer.cancel();
+            turnTimer = null;
+        }
+        timedRoundNumber = roundNumber;
+        timedTurn = turn;
+        if (round != null && !round.isOver()) {
+            turnTimer = clock.schedule(
+                this, timeOut(roundNumber, turn), turnTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Get the command to run if the given turn times out. It does nothing if the
+     * turn has already been taken. It only holds on to numbers, so a pending timer
+     * doesn't keep a hibernated game's round on the heap.
+     */
+    private static TableCommand timeOut(int roundNumber, int turn) {
+        return game -> {
+            Round round = game.getRound();
+            if (game.getNumRounds() != roundNumber
+                || round.getNumTurns() != turn
+                || round.isOver())
+            {
+                return;
+            }
+            if (!round.isLead()) {
+                game.pass();
+            } else {
+                Card lowest = lowestCard(round.getHand(round.getTurn()).getCards());
+                game.makePlay(ImmutableList.of(lowest));
+            }
+        };
+    }
+
+    /**
+     * Make sure the idle timer goes off no sooner than the given delay from now.
+     */
+    private void restartIdleTimer(long delayNanos) {
+        if (idleTimeoutNanos > 0 && idleTimer == null) {
+            idleTimer = clock.schedule(this, HIBERNATE, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Hibernate the game if it's been idle long enough. Otherwise, check again once
+     * it could have been. A pending turn timer doesn't stop us: its command wakes
+     * the game like any other.
+     */
+    private void hibernateIfIdle() {
+        if (game == null) {
+            return;
+        }
+        long idleNanos = System.nanoTime() - lastActiveNanos;
+        if (idleNanos < idleTimeoutNanos) {
+            restartIdleTimer(idleTimeoutNanos - idleNanos);
+        } else {
+            hibernate();
+        }
+    }
+
+    /**
+     * Encode the game into an exactly-sized direct buffer, and let go of it.
+     */
+    private void hibernate() {
+        long start = System.nanoTime();
+        ByteBuffer scratch = SCRATCH.get();
+        scratch.clear();
+        try {
+            game.writeTo(scratch);
+        } catch (BufferOverflowException e) {
+            LOGGER.log(Level.WARNING, "Game too big to hibernate at table " + id, e);
+            return;
+        }
+        scratch.flip();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(scratch.remaining());
+        buffer.put(scratch).flip();
+        hibernated = buffer;
+        game = null;
+        HIBERNATE_LATENCY.recordSince(start);
+    }
+
+    /**
+     * Bring a hibernated game back onto the heap. Does nothing if it's awake.
+     */
+    private void wake() {
+        ByteBuffer buffer = hibernated;
+        if (buffer == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        game = HotSoup.readFrom(buffer.duplicate());
+        game.setListener(listener);
+        hibernated = null;
+        RESUME_LATENCY.recordSince(start);
+    }
+
+    /** Get the listener, less the extra one, wherever it was paired in. */
+    private static GameListener without(GameListener listener, GameListener extra) {
+        if (!(listener instanceof ListenerPair)) {
+            return listener;
+        }
+        ListenerPair pair = (ListenerPair) listener;
+        if (pair.second == extra) {
+            return pair.first;
+        }
+        return new ListenerPair(without(pair.first, extra), pair.second);
+    }
+
+    /** Get the lowest-ranked of the cards. */
+    private static Card lowestCard(Iterable<Card> cards) {
+        Card lowest = null;
+        for (Card card : cards) {
+            if (lowest == null || card.compareByRank(lowest) < 0) {
+                lowest = card;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Passes every event on to two listeners, in order.
+     */
+    private static final class ListenerPair implements GameListener {
+
+        private final GameListener first;
+        private final GameListener second;
+
+        ListenerPair(GameListener first, GameListener second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void dealt(HotSoup game, Position leader) {
+            first.dealt(game, leader);
+            second.dealt(game, leader);
+        }
+
+        @Override
+        public void played(HotSoup game, Position position, Play play) {
+            first.played(game, position, play);
+            second.played(game, position, play);
+        }
+
+        @Override
+        public void rejected(HotSoup game, Position position) {
+            first.rejected(game, position);
+            second.rejected(game, position);
+        }
+
+        @Override
+        public void passed(HotSoup game, Position position) {
+            first.passed(game, position);
+            second.passed(game, position);
+        }
+
+        @Override
+        public void trickEnded(HotSoup game, Position winner, int numPoints) {
+            first.trickEnded(game, winner, numPoints);
+            second.trickEnded(game, winner, numPoints);
+        }
+
+        @Override
+        public void scoreChanged(HotSoup game, int scoreNS, int scoreEW) {
+            first.scoreChanged(game, scoreNS, scoreEW);
+            second.scoreChanged(game, scoreNS, scoreEW);
+        }
+    }
+}
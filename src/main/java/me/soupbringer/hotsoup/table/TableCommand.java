@@ -0,0 +1,14 @@
+package me.soupbringer.hotsoup.table;
+
+/**
+ * Something to be done to a table's game. Commands for a table always run one at
+ * a time, in the order they were submitted, so they never need to lock the game.
+ */
+@FunctionalInterface
+public interface TableCommand {
+
+    /**
+     * Carry out the command against the table's game.
+     */
+    void execute(HotSoup game) throws Exception;
+}
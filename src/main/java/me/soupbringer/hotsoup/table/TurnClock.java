@@ -0,0 +1,310 @@
+package me.soupbringer.hotsoup.table;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel, for keeping track of turn deadlines at a lot of tables.
+ *
+ * Time is cut into ticks, and the wheel has one bucket per tick, wrapping around.
+ * A deadline goes into the bucket for the tick it falls in, along with how many
+ * more trips around the wheel to wait. Scheduling and cancelling are both O(1),
+ * no matter how many deadlines are pending, and there's one thread for the whole
+ * wheel instead of a scheduled task per table.
+ *
+ * Only the clock's own thread touches the buckets. Other threads hand it new
+ * deadlines and cancellations through lock-free queues, which it picks up once a
+ * tick. Deadlines fire at most one tick late (plus scheduling noise); how late they
+ * actually were is tracked, so accuracy can be measured.
+ *
+ * When a deadline passes, its command is submitted to the table it belongs to.
+ * If that fails, it's logged, and the other deadlines still fire.
+ */
+public final class TurnClock implements AutoCloseable {
+
+    // ------------------------------------------------------------------------
+    // Class constants
+
+    private static final Logger LOGGER = Logger.getLogger(TurnClock.class.getName());
+
+    /** The most new deadlines we move into the wheel per tick. */
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    // ------------------------------------------------------------------------
+    // Member variables
+
+    private final long tickNanos;
+
+    /** The buckets; each one is the head of a doubly-linked list of Timeouts. */
+    private final Timeout[] wheel;
+
+    /** wheel.length - 1. wheel.length is always a power of two. */
+    private final int mask;
+
+    /** Deadlines which have been scheduled, but haven't made it into the wheel yet. */
+    private final Queue<Timeout> scheduled;
+
+    /** Deadlines which have been cancelled, but not yet taken out of the wheel. */
+    private final Queue<Timeout> cancelled;
+
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running;
+
+    /** The number of ticks the worker has finished. Only the worker touches this. */
+    private long tick;
+
+    /** Accuracy tracking. */
+    private final AtomicLong numPending;
+    private final AtomicLong numExpired;
+    private final AtomicLong totalLatenessNanos;
+    private final LongAccumulator maxLatenessNanos;
+
+    // ------------------------------------------------------------------------
+    // Construction
+
+    /**
+     * Create and start a new TurnClock.
+     *
+     * @param tickDuration How much time each bucket covers. Deadlines can fire up
+     *                     to this late.
+     * @param unit The unit of tickDuration.
+     * @param numBuckets How many buckets the wheel has. Rounded up to a power of two.
+     */
+    public TurnClock(long tickDuration, TimeUnit unit, int numBuckets) {
+        Preconditions.checkArgument(tickDuration > 0, "Ticks need to take some time.");
+        Preconditions.checkArgument(numBuckets > 0 && numBuckets <= (1 << 30));
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(numBuckets - 1) << 1;
+        this.wheel = new Timeout[Math.max(1, size)];
+        this.mask = wheel.length - 1;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.numPending = new AtomicLong();
+        this.numExpired = new AtomicLong();
+        this.totalLatenessNanos = new AtomicLong();
+        this.maxLatenessNanos = new LongAccumulator(Math::max, 0L);
+
+        this.startNanos = System.nanoTime();
+        this.running = true;
+        this.worker = new Thread(this::run, "turn-clock");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // ------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Submit the command to the table once the delay has passed, unless the
+     * returned Timeout is cancelled first.
+     */
+    public Timeout schedule(Table table, TableCommand command, long delay, TimeUnit unit) {
+        Preconditions.checkState(running, "This clock has been stopped.");
+        Timeout timeout = new Timeout(
+            this,
+            Preconditions.checkNotNull(table),
+            Preconditions.checkNotNull(command),
+            System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        numPending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /** Get the number of deadlines which haven't fired or been cancelled yet. */
+    public long getNumPending() {
+        return numPending.get();
+    }
+
+    /** Get the number of deadlines which have fired. */
+    public long getNumExpired() {
+        return numExpired.get();
+    }
+
+    /** Get the average time between a deadline and when it actually fired. */
+    public double getMeanLatenessNanos() {
+        long expired = numExpired.get();
+        return expired == 0 ? 0 : (double) totalLatenessNanos.get() / expired;
+    }
+
+    /** Get the longest time between a deadline and when it actually fired. */
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos.get();
+    }
+
+    /** Stop the clock. Pending deadlines never fire. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    // ------------------------------------------------------------------------
+    // Timeouts
+
+    /**
+     * A pending deadline, which can be cancelled.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TurnClock clock;
+        private final Table table;
+        private final TableCommand command;
+        private final long deadlineNanos;
+        private final AtomicInteger state;
+
+        /** Trips around the wheel left before this fires. Worker thread only. */
+        private long remainingRounds;
+
+        /** Links in the bucket list, and which bucket we're in. Worker thread only. */
+        private Timeout previous;
+        private Timeout next;
+        private int bucket = -1;
+
+        private Timeout(TurnClock clock, Table table, TableCommand command, long deadlineNanos) {
+            this.clock = clock;
+            this.table = table;
+            this.command = command;
+            this.deadlineNanos = deadlineNanos;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * Cancel this deadline. Returns true if it was cancelled, and false if it had
+         * already fired or been cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            clock.numPending.decrementAndGet();
+            clock.cancelled.add(this);
+            return true;
+        }
+
+        /** Returns true if this deadline has fired. */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /** Returns true if this deadline was cancelled before it fired. */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+
+    /** The worker thread's loop. */
+    private void run() {
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while (running && (now = System.nanoTime()) < tickDeadline) {
+                LockSupport.parkNanos(tickDeadline - now);
+            }
+            if (!running) {
+                break;
+            }
+            transferScheduled();
+            removeCancelled();
+            expire(wheel[(int) (tick & mask)], System.nanoTime());
+            tick++;
+        }
+    }
+
+    /** Move newly scheduled deadlines into their buckets. */
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            // Anything already due goes in the current bucket.
+            long dueTick = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            link(timeout, (int) (dueTick & mask));
+        }
+    }
+
+    /** Take cancelled deadlines out of their buckets. */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    /** Fire every deadline in the bucket which is due on this trip around the wheel. */
+    private void expire(Timeout head, long now) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                unlink(timeout);
+                if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                    numPending.decrementAndGet();
+                    long lateness = Math.max(0, now - timeout.deadlineNanos);
+                    numExpired.incrementAndGet();
+                    totalLatenessNanos.addAndGet(lateness);
+                    maxLatenessNanos.accumulate(lateness);
+                    try {
+                        timeout.table.submit(timeout.command);
+                    } catch (RuntimeException e) {
+                        // One table's trouble mustn't stop the clock for the rest.
+                        LOGGER.log(Level.WARNING,
+                            "Couldn't submit a timeout to table " + timeout.table.getId(), e);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /** Add the timeout to the front of the bucket. */
+    private void link(Timeout timeout, int bucket) {
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = wheel[bucket];
+        if (wheel[bucket] != null) {
+            wheel[bucket].previous = timeout;
+        }
+        wheel[bucket] = timeout;
+    }
+
+    /** Take the timeout out of its bucket. */
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+}
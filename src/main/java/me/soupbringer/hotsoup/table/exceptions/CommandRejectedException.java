@@ -0,0 +1,65 @@
+package me.soupbringer.hotsoup.table.exceptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exception thrown when a player's command isn't let into a table's queue, because
+ * they're sending too many or the queue is full. It says how long to wait before
+ * trying again.
+ *
+ * Rejections happen most when the server is busiest, so these don't fill in a
+ * stack trace, and the message is only built if someone asks for it.
+ */
+public class CommandRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why a command was rejected.
+     */
+    public enum Reason {
+        /** The player is sending commands faster than they're allowed to. */
+        RATE_LIMITED,
+        /** The player already has as many commands queued as they're allowed. */
+        PLAYER_QUEUE_FULL,
+        /** The table has as many commands queued as it's allowed. */
+        TABLE_QUEUE_FULL
+    }
+
+    private final Reason reason;
+    private final String playerId;
+    private final long retryAfterNanos;
+
+    /**
+     * Construct a new exception.
+     *
+     * @param reason Why the command was rejected.
+     * @param playerId Whose command it was.
+     * @param retryAfterNanos How long they should wait before trying again.
+     */
+    public CommandRejectedException(Reason reason, String playerId, long retryAfterNanos) {
+        super(null, null, false, false);
+        this.reason = reason;
+        this.playerId = playerId;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /** Get why the command was rejected. */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /** Get how long to wait before trying again, in the given unit, rounded up. */
+    public long getRetryAfter(TimeUnit unit) {
+        long unitNanos = unit.toNanos(1);
+        return (retryAfterNanos + unitNanos - 1) / unitNanos;
+    }
+
+    @Override
+    public String getMessage() {
+        return new StringBuilder()
+          .append("Command from ").append(playerId).append(" rejected (").append(reason)
+          .append("); retry after ").append(getRetryAfter(TimeUnit.MILLISECONDS)).append("ms.")
+          .toString();
+    }
+}
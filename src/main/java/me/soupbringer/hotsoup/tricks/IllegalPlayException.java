@@ -4,6 +4,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
 
 import me.soupbringer.hotsoup.deck.Card;
 import me.soupbringer.hotsoup.tricks.plays.Play;
@@ -11,21 +13,51 @@ import me.soupbringer.hotsoup.tricks.plays.Play;
 /**
  * Exception thrown whenever someone tries to add an illegal 'play'
  * to a trick.
+ *
+ * There's only one instance of each kind, made up front and without a stack
+ * trace, so throwing these is cheap. Callers who'd rather not throw at all can
+ * use Trick.Builder.check() or Round.check() instead.
  */
 public class IllegalPlayException extends RuntimeException {
 
   /** Serial version UID. */
   private static final long serialVersionUID = 1L;
 
+  /** The different ways a play can be illegal. */
+  public enum Kind {
+    PREMATURE_END("The trick terminated, but 3 people haven't passed yet."),
+    EXTRA_PLAY("An fourth Play was made, but 3 people already passed."),
+    TOO_LOW("That play doesn't beat the previous one."),
+    WRONG_SHAPE("That play isn't the same shape as the previous one."),
+    MALFORMED_PLAY("These cards don't form a valid play.");
+
+    private final String message;
+
+    private Kind(String message) {
+      this.message = message;
+    }
+  }
+
+  /** The one instance of each kind. */
+  private static final Map<Kind, IllegalPlayException> INSTANCES = new EnumMap<>(Kind.class);
+
+  static {
+    for (Kind kind : Kind.values()) {
+      INSTANCES.put(kind, new IllegalPlayException(kind));
+    }
+  }
+
+  private final Kind kind;
+
   /** Constructor. Instantiate through the static methods. */
-  private IllegalPlayException(String errorMesasge) {
-    super(errorMesasge);
+  private IllegalPlayException(Kind kind) {
+    super(kind.message, null, false, false);
+    this.kind = kind;
   }
-  
-  private IllegalPlayException(boolean prematureTermination) {
-    super(prematureTermination
-      ? "The trick terminated before 3 people passed"
-      : "An extra Play was made after 3 people passed.");
+
+  /** Get the way in which the play was illegal. */
+  public Kind getKind() {
+    return kind;
   }
   
   /**
@@ -33,8 +65,7 @@ public class IllegalPlayException extends RuntimeException {
    * ended *before* 3 people passed.
    */
   public static IllegalPlayException prematureEnd() {
-    return new IllegalPlayException(
-      "The trick terminated, but 3 people haven't passed yet.");
+    return get(Kind.PREMATURE_END);
   }
   
   /**
@@ -42,8 +73,7 @@ public class IllegalPlayException extends RuntimeException {
    * 3 people passed.
    */
   public static IllegalPlayException extraPlayMade() {
-    return new IllegalPlayException(
-      "An fourth Play was made, but 3 people already passed.");
+    return get(Kind.EXTRA_PLAY);
   }
   
   /**
@@ -52,17 +82,27 @@ public class IllegalPlayException extends RuntimeException {
    */
   public static IllegalPlayException illegalPlay(Play lastPlay, Play thisPlay) {
     checkNotNull(lastPlay, "lastPlay shouldn't be null.");
-    checkNotNull(lastPlay, "thisPlay shouldn't be null.");
+    checkNotNull(thisPlay, "thisPlay shouldn't be null.");
     checkArgument(
       !thisPlay.isLegalGiven(lastPlay),
       "This exception shouldn't be thrown if the play was legal...");
-    
-    String err = new StringBuilder()
-      .append("Attempted to play ").append(thisPlay)
-      .append(" after the previous person played ").append(lastPlay)
-      .append(". This isn't a legal move.")
-      .toString();
-    return new IllegalPlayException(err);
+    return get(thisPlay.isSameShapeAs(lastPlay) ? Kind.TOO_LOW : Kind.WRONG_SHAPE);
+  }
+
+  /**
+   * Get the exception for an illegal PlayResult from Trick.Builder.check().
+   */
+  public static IllegalPlayException forResult(PlayResult result) {
+    switch (result) {
+      case TOO_LOW:
+        return get(Kind.TOO_LOW);
+      case WRONG_SHAPE:
+        return get(Kind.WRONG_SHAPE);
+      case EXTRA_PLAY:
+        return get(Kind.EXTRA_PLAY);
+      default:
+        throw new IllegalArgumentException("There's no IllegalPlayException for " + result);
+    }
   }
   
   /**
@@ -72,6 +112,11 @@ public class IllegalPlayException extends RuntimeException {
    * That is: our front-end screwed up, or someone's getting hacky.
    */
   public static IllegalPlayException malformedPlay(Collection<? extends Card> cards) {
-    return new IllegalPlayException("These cards don't form a valid play: " + cards);
+    return get(Kind.MALFORMED_PLAY);
+  }
+
+  /** Get the instance of the given kind. */
+  private static IllegalPlayException get(Kind kind) {
+    return INSTANCES.get(kind);
   }
 }
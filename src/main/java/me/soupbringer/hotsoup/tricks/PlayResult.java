@@ -0,0 +1,28 @@
+package me.soupbringer.hotsoup.tricks;
+
+/**
+ * The result of checking whether a Play can be made, for callers which would
+ * rather not catch exceptions (e.g. bots trying out lots of candidate plays).
+ */
+public enum PlayResult {
+
+  /** The play can be made. */
+  LEGAL,
+
+  /** The play has the right shape, but doesn't beat the top play. */
+  TOO_LOW,
+
+  /** The play is a different shape from the top play (or a pass on the lead). */
+  WRONG_SHAPE,
+
+  /** Three people have already passed, so the trick is over. */
+  EXTRA_PLAY,
+
+  /** The player doesn't have the cards. */
+  NOT_IN_HAND;
+
+  /** Returns true if the play can be made, and false otherwise. */
+  public boolean isLegal() {
+    return this == LEGAL;
+  }
+}
@@ -1,14 +1,18 @@
 package me.soupbringer.hotsoup.tricks;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Iterators;
 
-import java.util.Collection;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.metrics.PlayValidationEvent;
+import me.soupbringer.hotsoup.metrics.TrickEvent;
 import me.soupbringer.hotsoup.tricks.IllegalPlayException;
 import me.soupbringer.hotsoup.tricks.plays.Play;
 
@@ -19,13 +23,27 @@ import me.soupbringer.hotsoup.tricks.plays.Play;
  */
 public final class Trick implements Iterable<Play> {
 
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** How many plays a Builder has room for before it has to grow. */
+  private static final int INITIAL_CAPACITY = 8;
+
+  /** How long it takes to add a play to a trick. */
+  private static final LatencyHistogram PLAY_LATENCY = Metrics.histogram(
+    "hotsoup_trick_play_seconds", "Time spent validating and adding a Play to a Trick.");
+
   // ------------------------------------------------------------------------
   // Member variables
 
   /**
-   * The plays, in the order in which they occurred.
+   * The plays, in the order in which they occurred. Exactly as long as it needs
+   * to be, and never modified.
    */
-  private final ImmutableList<Play> plays;
+  private final Play[] plays;
+
+  /** The number of points in all the plays. */
+  private final int numPoints;
 
   // ------------------------------------------------------------------------
   // Construction
@@ -33,8 +51,9 @@ public final class Trick implements Iterable<Play> {
   /**
    * Constructor. Instantiate via the builder instead.
    */
-  private Trick(Iterator<Play> plays) {
-    this.plays = ImmutableList.copyOf(plays);
+  private Trick(Play[] plays, int numPoints) {
+    this.plays = plays;
+    this.numPoints = numPoints;
   }
 
   /**
@@ -58,6 +77,33 @@ public final class Trick implements Iterable<Play> {
     return new Builder(Play.one(card));
   }
 
+  /**
+   * Rebuild a finished trick from plays which were already checked when they
+   * were made, e.g. read back from a hibernated game. Nothing is checked again,
+   * and no flight recorder events are emitted.
+   */
+  public static Trick restore(Play[] plays) {
+    Preconditions.checkArgument(plays.length > 0 && !plays[0].isPass());
+    int numPoints = 0;
+    for (Play play : plays) {
+      numPoints += play.countNumPoints();
+    }
+    return new Trick(plays.clone(), numPoints);
+  }
+
+  /**
+   * Rebuild the Builder for a trick in progress from plays which were already
+   * checked when they were made. Like restore(), this checks nothing; the
+   * Builder's trick event only covers the time since it was resumed.
+   */
+  public static Builder resume(Play[] plays) {
+    Builder builder = builder(plays[0]);
+    for (int i = 1; i < plays.length; i++) {
+      builder.add(plays[i]);
+    }
+    return builder;
+  }
+
   // ------------------------------------------------------------------------
   // Getters
 
@@ -65,7 +111,14 @@ public final class Trick implements Iterable<Play> {
    * Get the number of points which were contained within this Trick.
    */
   public int countNumPoints() {
-    return countNumPoints(plays);
+    return numPoints;
+  }
+
+  /**
+   * Get the number of plays in this Trick, passes included.
+   */
+  public int getNumPlays() {
+    return plays.length;
   }
 
   // ------------------------------------------------------------------------
@@ -73,20 +126,21 @@ public final class Trick implements Iterable<Play> {
 
   @Override
   public Iterator<Play> iterator() {
-    return plays.iterator();
+    return Iterators.forArray(plays);
   }
   
   @Override
   public boolean equals(Object o) {
     if (o instanceof Trick) {
-      return plays.equals(((Trick) o).plays);
+      return Arrays.equals(plays, ((Trick) o).plays);
     }
     return false;
   }
   
+  /** The same hash code as a List of the plays would have. */
   @Override
   public int hashCode() {
-    return plays.hashCode();
+    return Arrays.hashCode(plays);
   }
 
   // ------------------------------------------------------------------------
@@ -98,17 +152,39 @@ public final class Trick implements Iterable<Play> {
    */
   public static final class Builder {
 
-    private final Deque<Play> playsSoFar;
+    /** The plays so far, in order, in the first numPlays slots. Doubles when full. */
+    private Play[] playsSoFar;
+    private int numPlays;
+
+    /** The last play which wasn't a pass. This is what the next play has to beat. */
+    private Play top;
 
     private int numConsecutivePasses;
 
+    /** The number of points played so far, kept up to date on every play. */
+    private int numPoints;
+
+    /** Flight recorder event covering the whole trick. */
+    private final TrickEvent trickEvent;
+
+    /**
+     * Flight recorder event for checking plays, reused by every check(), so
+     * checking never allocates. It's only committed when something's recording.
+     */
+    private final PlayValidationEvent validationEvent;
+
     /**
      * Instantiate via the static builder() method.
      */
     private Builder(Play lead) {
-      this.playsSoFar = Lists.newLinkedList();
+      this.trickEvent = new TrickEvent();
+      this.trickEvent.begin();
+      this.validationEvent = new PlayValidationEvent();
+      this.playsSoFar = new Play[INITIAL_CAPACITY];
       this.numConsecutivePasses = 0;
-      this.playsSoFar.push(lead);
+      this.playsSoFar[numPlays++] = lead;
+      this.top = lead;
+      this.numPoints = lead.countNumPoints();
     }
 
     /**
@@ -116,37 +192,79 @@ public final class Trick implements Iterable<Play> {
      * and false otherwise.
      */
     public boolean isLegalNext(Play play) {
+      return check(play).isLegal();
+    }
+
+    /**
+     * Check whether the given play could be added to the trick, without adding
+     * it or throwing anything.
+     */
+    public PlayResult check(Play play) {
       Preconditions.checkNotNull(play, "Not expecting a null Play here.");
-      return play.isLegalGiven(playsSoFar.peek());
+      PlayValidationEvent event = validationEvent;
+      event.begin();
+      PlayResult result;
+      // If 3 people passed before us, the trick should be over...
+      if (numConsecutivePasses == 3) {
+        result = PlayResult.EXTRA_PLAY;
+      } else if (play.isLegalGiven(top)) {
+        result = PlayResult.LEGAL;
+      } else if (play.isSameShapeAs(top)) {
+        result = PlayResult.TOO_LOW;
+      } else {
+        result = PlayResult.WRONG_SHAPE;
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.complete(play.getKind().name(), play.numCards(), result.name());
+      }
+      return result;
+    }
+
+    /**
+     * Add the given Play to the trick if it's legal. Returns why not if it isn't;
+     * unlike play(), this never throws.
+     */
+    public PlayResult tryPlay(Play play) {
+      long start = System.nanoTime();
+      PlayResult result = check(play);
+      if (result.isLegal()) {
+        add(play);
+      }
+      PLAY_LATENCY.recordSince(start);
+      return result;
+    }
+
+    /** Add a play which has already been checked. */
+    private void add(Play play) {
+      if (numPlays == playsSoFar.length) {
+        playsSoFar = Arrays.copyOf(playsSoFar, numPlays * 2);
+      }
+      playsSoFar[numPlays++] = play;
+      numPoints += play.countNumPoints();
+      if (play.isPass()) {
+        numConsecutivePasses++;
+      } else {
+        top = play;
+        numConsecutivePasses = 0;
+      }
     }
 
     /**
      * Add the given Play to the trick. If the player passed, this
-     * should be called with 'null'.
+     * should be called with a pass.
      *
      * If this play isn't legal given the last one, this throws an IllegalPlayException.
-     * If this is called a fourth time after 3 consecutive 'null's, a
-     * TrickTerminatedException will be thrown.
+     * If this is called a fourth time after 3 consecutive passes, it throws an
+     * IllegalPlayException too.
      */
     public Builder play(Play play) {
       Preconditions.checkNotNull(play, "We aren't accepting null plays here.");
-      
-      // If 3 people passed before us, the trick should be over...
-      if (numConsecutivePasses == 3) {
-        throw IllegalPlayException.extraPlayMade();
-      }
-      
-      // If the play is legal, add it
-      if (play.isLegalGiven(playsSoFar.peek())) {
-        playsSoFar.push(play);
-        numConsecutivePasses = play.isPass() ? numConsecutivePasses + 1 : 0;
-        return this;
-      }
-      
-      // Otherwise, throw the exception.
-      else {
-        throw IllegalPlayException.illegalPlay(playsSoFar.peek(), play);
+      PlayResult result = tryPlay(play);
+      if (!result.isLegal()) {
+        throw IllegalPlayException.forResult(result);
       }
+      return this;
     }
     
     /**
@@ -163,11 +281,18 @@ public final class Trick implements Iterable<Play> {
       return play(Play.pass());
     }
 
+    /**
+     * Get the plays made so far, in order, passes included.
+     */
+    public List<Play> getPlays() {
+      return Collections.unmodifiableList(Arrays.asList(playsSoFar).subList(0, numPlays));
+    }
+
     /**
      * Get the number of points which are contained within this TrickBuilder so far.
      */
     public int getNumPoints() {
-      return countNumPoints(playsSoFar);
+      return numPoints;
     }
 
     /**
@@ -179,19 +304,9 @@ public final class Trick implements Iterable<Play> {
       if (numConsecutivePasses != 3) {
         throw IllegalPlayException.prematureEnd();
       }
-      return new Trick(playsSoFar.descendingIterator());
+      Trick trick = new Trick(Arrays.copyOf(playsSoFar, numPlays), numPoints);
+      trickEvent.complete(numPlays, numPoints);
+      return trick;
     }
   }
-
-  // --------------------------------------------------------------------------
-  // Helper methods
-
-  /**
-   * Count the number of points in a bunch of Plays.
-   */
-  private static int countNumPoints(Collection<? extends Play> plays) {
-    return plays.stream()
-      .mapToInt(Play::countNumPoints)
-      .sum();
-  }
 }
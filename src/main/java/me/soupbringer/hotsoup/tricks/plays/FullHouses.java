@@ -9,7 +9,6 @@ import me.soupbringer.hotsoup.deck.Rank;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.Predicates;
-import com.google.common.collect.ImmutableSortedMultiset;
 import com.google.common.collect.Maps;
 
 /**
@@ -20,16 +19,23 @@ public class FullHouses extends Play {
   /**
    * Construct a new play with FullHouses.
    */
-  private FullHouses(Collection<? extends Card> cards) {
-    super(ImmutableSortedMultiset.orderedBy(makeSorter(cards)).addAll(cards).build());
+  private FullHouses(long[] packedCards) {
+    super(packedCards);
   }
   
   /** Parse the given cards into a FullHouses, and return null if we can't. */
   public static FullHouses tryFullHouses(Collection<? extends Card> cards) {
-    return isLegalFullHouses(cards) ? new FullHouses(cards) : null;
+    return isLegalFullHouses(cards)
+      ? PlayInterner.INSTANCE.intern(FullHouses.class, cards, FullHouses::new)
+      : null;
   }
 
 
+  @Override
+  public Kind getKind() {
+    return Kind.FULL_HOUSES;
+  }
+
   @Override
   public boolean isLegalGiven(Play lastPlay) {
     return lastPlay instanceof FullHouses &&
@@ -37,16 +43,15 @@ public class FullHouses extends Play {
             ((FullHouses) lastPlay).lowestRank().compareTo(this.lowestRank()) < 0;
   }
 
-  // ------------------------------------------------------------------------
-  // Queries
-
-  /**
-   * The number of cards in this play.
-   */
-  private int numCards() {
-    return getCards().size();
+  /** Show the triples before the pairs. */
+  @Override
+  Comparator<Card> displayOrder(Collection<Card> cards) {
+    return makeSorter(cards);
   }
 
+  // ------------------------------------------------------------------------
+  // Helper methods
+
   /**
    * Make a new Comparator that sorts the cards so that the triple always occurs before
    * the double, regardless of Rank.
@@ -67,13 +72,13 @@ public class FullHouses extends Play {
         checkArgument(ranks.containsKey(rank2), "Unexpected card: " + card2);
 
         // First Make sure the triples come before the doubles.
-        int quantityDiff = ranks.get(rank1) - ranks.get(rank2);
+        int quantityDiff = ranks.get(rank2) - ranks.get(rank1);
         if (quantityDiff != 0) {
           return quantityDiff;
         }
         
-        // If that didnt' help, then compare the ranks as normal.
-        return rank1.compareTo(rank2);
+        // If that didnt' help, then compare the ranks (and suits) as normal.
+        return card1.compareByRankThenSuit(card2);
       }
     };
   }
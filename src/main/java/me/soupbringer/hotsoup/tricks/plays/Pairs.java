@@ -4,7 +4,6 @@ import java.util.Collection;
 
 import me.soupbringer.hotsoup.deck.Card;
 
-import com.google.common.collect.ImmutableSortedMultiset;
 
 /**
  * Some number of consecutive pairs of cards.
@@ -17,18 +16,25 @@ final class Pairs extends Play {
   /**
    * Make a Pairs from the given cards.
    */
-  private Pairs(Collection<? extends Card> playedCards) {
-    super(ImmutableSortedMultiset.orderedBy(Card::compareByRank).addAll(playedCards).build());
+  private Pairs(long[] packedCards) {
+    super(packedCards);
   }
   
   /** Try to parse the given Collection into a Pairs, and return null if we can't. */
   static Pairs tryPairs(Collection<? extends Card> cards) {
-    return PlayUtils.isLegalSameRankOrdinaryPlay(cards, 2) ? new Pairs(cards) : null;
+    return PlayUtils.isLegalSameRankOrdinaryPlay(cards, 2)
+      ? PlayInterner.INSTANCE.intern(Pairs.class, cards, Pairs::new)
+      : null;
   }
 
   // ------------------------------------------------------------------------
   // Implementation
 
+  @Override
+  public Kind getKind() {
+    return Kind.PAIRS;
+  }
+
   @Override
   public boolean isLegalGiven(Play lastPlay) {
     return lastPlay instanceof Pairs
@@ -36,13 +42,4 @@ final class Pairs extends Play {
         && ((Pairs) lastPlay).lowestRank().compareTo(this.lowestRank()) < 0;
   }
 
-  // ------------------------------------------------------------------------
-  // Queries
-
-  /**
-   * Get the number of cards in this Pairs.
-   */
-  private int numCards() {
-    return getCards().size();
-  }
 }
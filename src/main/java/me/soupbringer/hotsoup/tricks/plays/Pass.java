@@ -3,8 +3,7 @@ package me.soupbringer.hotsoup.tricks.plays;
 import java.util.Collection;
 
 import me.soupbringer.hotsoup.deck.Card;
-
-import com.google.common.collect.ImmutableSortedMultiset;
+import me.soupbringer.hotsoup.deck.PackedCards;
 
 /**
  * Play used whenever someone passes.
@@ -18,7 +17,7 @@ final class Pass extends Play {
   
   /** Constructor. Get an instance through the static factory method. */
   private Pass() {
-    super(ImmutableSortedMultiset.of());
+    super(new long[PackedCards.NUM_WORDS]);
   }
   
   /** Try to parse the given Cards into a Pass, and return null if that's not possible. */
@@ -31,6 +30,11 @@ final class Pass extends Play {
     return true;
   }
 
+  @Override
+  public Kind getKind() {
+    return Kind.PASS;
+  }
+
   @Override
   public boolean isLegalGiven(Play lastPlay) {
     return true;
@@ -3,16 +3,24 @@ package me.soupbringer.hotsoup.tricks.plays;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMultiset;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
 import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
 import me.soupbringer.hotsoup.tricks.IllegalPlayException;
 
 
@@ -42,13 +50,43 @@ public abstract class Play {
       .add(Straight::tryStraight)
       .build();
 
+  /** How long it takes to interpret cards as Plays. */
+  private static final LatencyHistogram ALL_LATENCY = Metrics.histogram(
+    "hotsoup_play_all_seconds", "Time spent finding every valid Play for some cards.");
+  private static final LatencyHistogram ONE_LATENCY = Metrics.histogram(
+    "hotsoup_play_one_seconds", "Time spent finding one valid Play for some cards.");
+
+  /**
+   * The kinds of Play there are. The ordinals are stable, so they can be stored.
+   */
+  public enum Kind {
+    PASS,
+    SINGLE,
+    PAIRS,
+    TRIPLES,
+    STRAIGHT,
+    FULL_HOUSES
+  }
+
   // ------------------------------------------------------------------------
   // Member variables
 
   /**
-   * The cards which were involved in this Play, sorted in a nice display order.
+   * The cards which were involved in this Play, packed (see PackedCards). This
+   * is what equality, hashing and validation work on.
    */
-  private final ImmutableSortedMultiset<Card> playedCards;
+  private final long[] packedCards;
+
+  /** The number of cards, and the number of points in them, worked out up front. */
+  private final int numCards;
+  private final int numPoints;
+
+  /**
+   * The cards sorted in a nice display order, or null until someone asks for them.
+   * Most Plays are only ever validated and compared, so this is built lazily. It's
+   * immutable, so it's safe if two threads happen to build it at once.
+   */
+  private ImmutableSortedMultiset<Card> displayCards;
 
   // ------------------------------------------------------------------------
   // Construction
@@ -56,10 +94,17 @@ public abstract class Play {
   /**
    * Instantiate through the static factory method.
    *
-   * No instantiation outside of this package.
+   * No instantiation outside of this package. Subclasses should hand out
+   * instances through PlayInterner, so equal Plays are usually the same object.
    */
-  Play(ImmutableSortedMultiset<Card> cards) {
-    this.playedCards = cards;
+  Play(long[] packedCards) {
+    this.packedCards = packedCards;
+    this.numCards = PackedCards.size(packedCards, 0);
+    int points = 0;
+    for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+      points += PackedCards.count(packedCards, 0, kind) * PackedCards.rankOf(kind).getNumPoints();
+    }
+    this.numPoints = points;
   }
 
   /**
@@ -70,7 +115,15 @@ public abstract class Play {
    */
   public static Set<Play> all(Collection<? extends Card> cards) throws IllegalPlayException {
     checkNotNull(cards, "We aren't expecting nulls here.");
-    return newValidPlayStream(cards).collect(Collectors.toSet());
+    long start = System.nanoTime();
+    try {
+      if (!PackedCards.canPack(cards)) {
+        return ImmutableSet.of();
+      }
+      return newValidPlayStream(cards).collect(Collectors.toSet());
+    } finally {
+      ALL_LATENCY.recordSince(start);
+    }
   }
   
   /**
@@ -81,8 +134,16 @@ public abstract class Play {
    */
   public static Play one(Collection<? extends Card> cards) throws IllegalPlayException {
     checkNotNull(cards, "We aren't expecting nulls here.");
-    Optional<Play> maybeValid = newValidPlayStream(cards).findFirst();
-    return maybeValid.isPresent() ? maybeValid.get() : null;
+    long start = System.nanoTime();
+    try {
+      if (!PackedCards.canPack(cards)) {
+        return null;
+      }
+      Optional<Play> maybeValid = newValidPlayStream(cards).findFirst();
+      return maybeValid.isPresent() ? maybeValid.get() : null;
+    } finally {
+      ONE_LATENCY.recordSince(start);
+    }
   }
   
   /**
@@ -92,6 +153,20 @@ public abstract class Play {
     return Single.of(checkNotNull(card)); 
   }
   
+  /**
+   * Get the play of the given kind which the cards make, or null if they don't
+   * make one. This picks out one interpretation when cards could be several.
+   */
+  public static Play one(Kind kind, Collection<? extends Card> cards) {
+    checkNotNull(kind);
+    for (Play play : all(cards)) {
+      if (play.getKind() == kind) {
+        return play;
+      }
+    }
+    return null;
+  }
+
   /**
    * Get the 'pass' play. There's only one of these.
    */
@@ -106,18 +181,40 @@ public abstract class Play {
    * Get the number of points involved in this Play.
    */
   public final int countNumPoints() {
-    return getCards().stream()
-      .mapToInt(Card::getNumPoints)
-      .sum();
+    return numPoints;
   }
   
   /**
-   * Get the cards involved in this Play.
+   * Get the cards involved in this Play, in display order.
    */
   public final ImmutableSortedMultiset<Card> getCards() {
-    return playedCards;
+    ImmutableSortedMultiset<Card> cards = displayCards;
+    if (cards == null) {
+      ImmutableMultiset<Card> unsorted = PackedCards.unpack(packedCards, 0);
+      cards = ImmutableSortedMultiset.orderedBy(displayOrder(unsorted)).addAll(unsorted).build();
+      displayCards = cards;
+    }
+    return cards;
+  }
+
+  /**
+   * Get the number of cards in this Play.
+   */
+  public final int numCards() {
+    return numCards;
   }
   
+  /**
+   * Returns true if the hand holds all of this Play's cards, duplicates included,
+   * and false otherwise. This doesn't need the cards in display order.
+   */
+  public final boolean isHeldIn(Hand hand) {
+    return hand.containsAll(packedCards, 0);
+  }
+
+  /** Get which kind of Play this is. */
+  public abstract Kind getKind();
+
   /** Returns true if this Play is a pass, and false otherwise. */
   public boolean isPass() {
     return false;
@@ -127,6 +224,14 @@ public abstract class Play {
    * Returns true if this Play is legal given the last one, and false if not.
    */
   public abstract boolean isLegalGiven(Play lastPlay);
+
+  /**
+   * Returns true if this Play is the same shape as the other (so it would be
+   * legal if it were higher), and false if not.
+   */
+  public boolean isSameShapeAs(Play other) {
+    return getClass() == other.getClass() && numCards == other.numCards;
+  }
   
   // ------------------------------------------------------------------------
   // Boring object implementation
@@ -138,15 +243,18 @@ public abstract class Play {
    */
   @Override
   public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
     if (o instanceof Play) {
-      return playedCards.equals(((Play) o).playedCards);
+      return Arrays.equals(packedCards, ((Play) o).packedCards);
     }
     return false;
   }
   
   @Override
   public int hashCode() {
-    return playedCards.hashCode();
+    return Arrays.hashCode(packedCards);
   }
   
   // --------------------------------------------------------------------------
@@ -155,11 +263,28 @@ public abstract class Play {
   /**
    * Get the lowest rank in this Play.
    */
-  final Rank lowestRank() {
-    return playedCards.stream()
-      .min(Card::compareByRank)
-      .get()
-      .getRank();
+  public final Rank lowestRank() {
+    return PackedCards.rankOf(PackedCards.lowestKind(packedCards, 0));
+  }
+
+  /**
+   * Get the lowest card in this Play (by rank, then suit).
+   */
+  final Card lowestCard() {
+    return PackedCards.cardOf(PackedCards.lowestKind(packedCards, 0));
+  }
+
+  /** Returns true if this Play's cards are exactly the given packed ones. */
+  final boolean hasPackedCards(long[] packed) {
+    return Arrays.equals(packedCards, packed);
+  }
+
+  /**
+   * Get the order the given cards (this Play's) should be shown in. By default
+   * that's by rank, then suit; subclasses can override this.
+   */
+  Comparator<Card> displayOrder(Collection<Card> cards) {
+    return Card::compareByRankThenSuit;
   }
   
   /** Get a stream of all the Plays which are valid interpretations of these cards. */
@@ -0,0 +1,232 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+import me.soupbringer.hotsoup.metrics.LatencyHistogram;
+import me.soupbringer.hotsoup.metrics.Metrics;
+
+/**
+ * Classifies lots of candidate sets of cards at once, without making any Plays.
+ *
+ * Whether cards make a Play, and how it compares with others, only depends on
+ * their ranks. So each set comes in as a rank histogram in one long: four bits per
+ * Rank, by ordinal, counting the cards of that rank. Every rule is then a few
+ * shifts, masks and bit counts over the whole long, using the usual tricks for
+ * working on each four-bit count in parallel: there are no loops over cards or
+ * ranks, and nothing is allocated. For each set, classify() fills in:
+ *  - the kind of Play the cards make (the one Play.one() would pick, if they'd
+ *    make more than one), or -1 if they don't make one;
+ *  - the number of cards;
+ *  - a strength key, where one play can follow another if canFollow() says so.
+ *
+ * Histograms can't tell suits apart, so they're assumed to come from real cards,
+ * with no more than PackedCards.MAX_COPIES of any one card.
+ */
+public final class PlayClassifier {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** Bit 3 of every four-bit count. */
+  private static final long HIGH_BITS = 0x8888888888888888L;
+  private static final long LOW_BITS = 0x7777777777777777L;
+  private static final long ONES = 0x1111111111111111L;
+
+  /** The counts of the ranks that can't be in runs: twos and jokers. */
+  private static final long NON_CONSECUTIVES =
+    0xfL << (Rank.TWO.ordinal() * 4)
+    | 0xfL << (Rank.LITTLE_JOKER.ordinal() * 4)
+    | 0xfL << (Rank.BIG_JOKER.ordinal() * 4);
+
+  /** The counts of the jokers. */
+  private static final long JOKERS =
+    0xfL << (Rank.LITTLE_JOKER.ordinal() * 4)
+    | 0xfL << (Rank.BIG_JOKER.ordinal() * 4);
+
+  private static final int TWO_SHIFT = Rank.TWO.ordinal() * 4;
+
+  /** The jokers' PackedCards kinds, which don't follow the suited ones' pattern. */
+  private static final int LITTLE_JOKER_KIND =
+    PackedCards.kindOf(Card.of(Rank.LITTLE_JOKER, Suit.UNNECESSARY));
+  private static final int BIG_JOKER_KIND =
+    PackedCards.kindOf(Card.of(Rank.BIG_JOKER, Suit.UNNECESSARY));
+
+  private static final int PASS = Play.Kind.PASS.ordinal();
+  private static final int SINGLE = Play.Kind.SINGLE.ordinal();
+  private static final int PAIRS = Play.Kind.PAIRS.ordinal();
+  private static final int TRIPLES = Play.Kind.TRIPLES.ordinal();
+  private static final int STRAIGHT = Play.Kind.STRAIGHT.ordinal();
+  private static final int FULL_HOUSES = Play.Kind.FULL_HOUSES.ordinal();
+
+  /** How long it takes to classify a batch. */
+  private static final LatencyHistogram CLASSIFY_LATENCY = Metrics.histogram(
+    "hotsoup_play_classify_seconds", "Time spent classifying a batch of card sets.");
+
+  /**
+   * No need to instantiate utils classes.
+   */
+  private PlayClassifier() { }
+
+  // ------------------------------------------------------------------------
+  // Public API
+
+  /**
+   * Classify the first count histograms, writing the i'th set's kind ordinal (or
+   * -1), number of cards and strength key (or -1) to kinds[i], lengths[i] and
+   * keys[i].
+   */
+  public static void classify(
+    long[] histograms,
+    int count,
+    byte[] kinds,
+    byte[] lengths,
+    int[] keys)
+  {
+    checkArgument(count >= 0 && count <= histograms.length, "Bad count: %s", count);
+    checkArgument(
+      kinds.length >= count && lengths.length >= count && keys.length >= count,
+      "The outputs need room for %s sets.", count);
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      long histogram = histograms[i];
+      int numCards = size(histogram);
+      int kind = kindOf(histogram, numCards);
+      kinds[i] = (byte) kind;
+      lengths[i] = (byte) numCards;
+      keys[i] = kind < 0 ? -1 : key(kind, numCards, histogram);
+    }
+    CLASSIFY_LATENCY.recordSince(start);
+  }
+
+  /**
+   * Returns true if a play with the given strength key could go on top of one with
+   * the other key, and false otherwise. Passes can't go on anything.
+   */
+  public static boolean canFollow(int key, int topKey) {
+    return key >= 0 && topKey >= 0
+      && key >>> 16 != PASS
+      && key >>> 8 == topKey >>> 8
+      && key > topKey;
+  }
+
+  /** Get the rank histogram of the cards. */
+  public static long histogram(Iterable<? extends Card> cards) {
+    long histogram = 0;
+    for (Card card : cards) {
+      histogram += 1L << (card.getRank().ordinal() * 4);
+    }
+    return histogram;
+  }
+
+  /**
+   * Get the rank histogram of the multiset stored at packed[offset] (see
+   * PackedCards), without unpacking it.
+   */
+  public static long histogram(long[] packed, int offset) {
+    long histogram = 0;
+    int rank = 0;
+    for (int word = 0; word < PackedCards.NUM_WORDS; word++) {
+      long bits = packed[offset + word];
+      // Add up the four 2-bit counts in each byte, which is a rank's four suits.
+      bits = (bits & 0x3333333333333333L) + ((bits >>> 2) & 0x3333333333333333L);
+      bits = (bits & 0x0f0f0f0f0f0f0f0fL) + ((bits >>> 4) & 0x0f0f0f0f0f0f0f0fL);
+      for (int i = 0; i < 8 && rank < Rank.LITTLE_JOKER.ordinal(); i++, rank++) {
+        histogram |= ((bits >>> (i * 8)) & 0xf) << (rank * 4);
+      }
+    }
+    int little = PackedCards.count(packed, offset, LITTLE_JOKER_KIND);
+    int big = PackedCards.count(packed, offset, BIG_JOKER_KIND);
+    return histogram
+      | (long) little << (Rank.LITTLE_JOKER.ordinal() * 4)
+      | (long) big << (Rank.BIG_JOKER.ordinal() * 4);
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /**
+   * Work out the kind of Play, in the same order Play tries them, so we match
+   * Play.one(). The rules are the same as Pairs, Triples, FullHouses and
+   * Straight's.
+   */
+  private static int kindOf(long histogram, int numCards) {
+    if (numCards == 0) {
+      return PASS;
+    }
+    if (numCards == 1) {
+      return SINGLE;
+    }
+    long held = HIGH_BITS & ~equal(histogram, 0);
+    if (isSameRankOrdinary(histogram, held, numCards, 2)) {
+      return PAIRS;
+    }
+    if (isSameRankOrdinary(histogram, held, numCards, 3)) {
+      return TRIPLES;
+    }
+    long triples = equal(histogram, 3);
+    if (triples != 0
+      && isContiguous(triples)
+      && Long.bitCount(equal(histogram, 2)) == Long.bitCount(triples)
+      && numCards % 5 == 0)
+    {
+      return FULL_HOUSES;
+    }
+    if ((histogram & NON_CONSECUTIVES) == 0
+      && equal(histogram, 1) == held
+      && isContiguous(held))
+    {
+      return STRAIGHT;
+    }
+    return -1;
+  }
+
+  /** See PlayUtils.isLegalSameRankOrdinaryPlay(). */
+  private static boolean isSameRankOrdinary(
+    long histogram,
+    long held,
+    int numCards,
+    int numRequired)
+  {
+    if (numCards == numRequired) {
+      if ((histogram & ~JOKERS) == 0 || histogram == (long) numRequired << TWO_SHIFT) {
+        return true;
+      }
+    }
+    return (histogram & NON_CONSECUTIVES) == 0
+      && equal(histogram, numRequired) == held
+      && isContiguous(held);
+  }
+
+  /**
+   * Get the strength key: the kind, then the number of cards (except for
+   * straights, which can follow each other whatever their length), then the
+   * lowest rank, a byte each.
+   */
+  private static int key(int kind, int numCards, long histogram) {
+    int lowest = histogram == 0 ? 0 : Long.numberOfTrailingZeros(histogram) >>> 2;
+    return kind << 16 | (kind == STRAIGHT ? 0 : numCards) << 8 | lowest;
+  }
+
+  /** Add up all the four-bit counts. */
+  private static int size(long histogram) {
+    long bytes = (histogram & 0x0f0f0f0f0f0f0f0fL) + ((histogram >>> 4) & 0x0f0f0f0f0f0f0f0fL);
+    return (int) ((bytes * 0x0101010101010101L) >>> 56);
+  }
+
+  /** Get a mask with bit 3 set in each four-bit count that equals value, and nothing else. */
+  private static long equal(long histogram, int value) {
+    long x = histogram ^ (ONES * value);
+    return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+  }
+
+  /** Returns true if the set bits (one per count) are all next to each other. */
+  private static boolean isContiguous(long mask) {
+    int lowest = Long.numberOfTrailingZeros(mask) >>> 2;
+    int highest = (63 - Long.numberOfLeadingZeros(mask)) >>> 2;
+    return highest - lowest + 1 == Long.bitCount(mask);
+  }
+}
@@ -0,0 +1,138 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+import java.util.Collection;
+import java.util.List;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Rank;
+
+/**
+ * Generates the Plays someone could make from a set of cards.
+ *
+ * Suits never matter when comparing Plays, so we only generate one Play per
+ * combination of ranks: the first cards we find of each rank stand in for the rest.
+ * Full houses always take the lowest pairs available.
+ */
+public final class PlayGenerator {
+
+  /** All the ranks, in order. */
+  private static final Rank[] RANKS = Rank.values();
+
+  /**
+   * No need to instantiate utils classes.
+   */
+  private PlayGenerator() { }
+
+  /**
+   * Get every (non-pass) Play which can be made from the given cards, and which is
+   * legal after the given top play. If top is null, this is a lead, and anything goes.
+   */
+  public static List<Play> legalPlays(Multiset<Card> cards, Play top) {
+    checkNotNull(cards, "We aren't expecting nulls here.");
+    List<List<Card>> byRank = groupByRank(cards);
+    List<Play> plays = Lists.newArrayList();
+
+    // Singles
+    for (Rank rank : RANKS) {
+      if (!byRank.get(rank.ordinal()).isEmpty()) {
+        addIfLegal(plays, Single.of(byRank.get(rank.ordinal()).get(0)), top);
+      }
+    }
+
+    // Runs of pairs and triples, plus the twos and jokers which can only go alone.
+    for (int width = 2; width <= 3; width++) {
+      for (List<Card> run : runs(byRank, width, 1)) {
+        addIfLegal(plays, width == 2 ? Pairs.tryPairs(run) : Triples.tryTriples(run), top);
+      }
+      List<Card> twos = byRank.get(Rank.TWO.ordinal());
+      if (twos.size() >= width) {
+        List<Card> set = twos.subList(0, width);
+        addIfLegal(plays, width == 2 ? Pairs.tryPairs(set) : Triples.tryTriples(set), top);
+      }
+      List<Card> jokers = Lists.newArrayList(byRank.get(Rank.LITTLE_JOKER.ordinal()));
+      jokers.addAll(byRank.get(Rank.BIG_JOKER.ordinal()));
+      if (jokers.size() >= width) {
+        List<Card> set = jokers.subList(0, width);
+        addIfLegal(plays, width == 2 ? Pairs.tryPairs(set) : Triples.tryTriples(set), top);
+      }
+    }
+
+    // Full houses: a run of triples, plus that many of the lowest other pairs.
+    List<List<Card>> tripleRuns = runs(byRank, 3, 1);
+    if (byRank.get(Rank.TWO.ordinal()).size() >= 3) {
+      tripleRuns.add(byRank.get(Rank.TWO.ordinal()).subList(0, 3));
+    }
+    for (List<Card> triples : tripleRuns) {
+      int numPairs = triples.size() / 3;
+      List<Card> fullHouse = Lists.newArrayList(triples);
+      for (Rank rank : RANKS) {
+        List<Card> ofRank = byRank.get(rank.ordinal());
+        if (numPairs > 0 && ofRank.size() >= 2 && !triples.contains(ofRank.get(0))) {
+          fullHouse.addAll(ofRank.subList(0, 2));
+          numPairs--;
+        }
+      }
+      if (numPairs == 0) {
+        addIfLegal(plays, FullHouses.tryFullHouses(fullHouse), top);
+      }
+    }
+
+    // Straights of two or more cards.
+    for (List<Card> run : runs(byRank, 1, 2)) {
+      addIfLegal(plays, Straight.tryStraight(run), top);
+    }
+    return plays;
+  }
+
+  // --------------------------------------------------------------------------
+  // Helper methods
+
+  /** Sort the cards into one list per rank, indexed by ordinal. */
+  private static List<List<Card>> groupByRank(Multiset<Card> cards) {
+    List<List<Card>> byRank = Lists.newArrayListWithCapacity(RANKS.length);
+    for (int i = 0; i < RANKS.length; i++) {
+      byRank.add(Lists.<Card>newArrayList());
+    }
+    for (Multiset.Entry<Card> entry : cards.entrySet()) {
+      List<Card> ofRank = byRank.get(entry.getElement().getRank().ordinal());
+      for (int i = 0; i < entry.getCount(); i++) {
+        ofRank.add(entry.getElement());
+      }
+    }
+    return byRank;
+  }
+
+  /**
+   * Get every run of consecutive (ordinary) ranks with at least 'width' cards in
+   * each rank and at least 'minLength' ranks, taking 'width' cards from each rank.
+   */
+  private static List<List<Card>> runs(List<List<Card>> byRank, int width, int minLength) {
+    List<List<Card>> runs = Lists.newArrayList();
+    for (Rank start : RANKS) {
+      List<Card> run = Lists.newArrayList();
+      for (int i = start.ordinal(); i < RANKS.length && RANKS[i].canBeConsecutive(); i++) {
+        List<Card> ofRank = byRank.get(i);
+        if (ofRank.size() < width) {
+          break;
+        }
+        run.addAll(ofRank.subList(0, width));
+        if (i - start.ordinal() + 1 >= minLength) {
+          runs.add(Lists.newArrayList(run));
+        }
+      }
+    }
+    return runs;
+  }
+
+  /** Add the play to the list if it isn't null, and can follow the top play. */
+  private static void addIfLegal(Collection<Play> plays, Play play, Play top) {
+    if (play != null && (top == null || play.isLegalGiven(top))) {
+      plays.add(play);
+    }
+  }
+}
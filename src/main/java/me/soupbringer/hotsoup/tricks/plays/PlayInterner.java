@@ -0,0 +1,74 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+
+/**
+ * A bounded, lock-free table of Plays, so that the same cards played the same way
+ * give back the same Play instance.
+ *
+ * The table is direct-mapped: each Play has exactly one slot (picked by its hash),
+ * and a new Play simply replaces whatever was there. So it never grows, never
+ * locks, and the most recently seen Plays are the ones kept. A miss just means we
+ * make a new Play, so losing a race between threads is harmless.
+ */
+final class PlayInterner {
+
+  // ------------------------------------------------------------------------
+  // Class constants
+
+  /** The number of slots. Must be a power of two. */
+  private static final int NUM_SLOTS = 1 << 12;
+
+  /** The interner shared by every Play shape. */
+  static final PlayInterner INSTANCE = new PlayInterner();
+
+  // ------------------------------------------------------------------------
+  // Member variables
+
+  private final AtomicReferenceArray<Play> slots;
+
+  // ------------------------------------------------------------------------
+  // Construction
+
+  /** Use the shared INSTANCE. */
+  private PlayInterner() {
+    this.slots = new AtomicReferenceArray<>(NUM_SLOTS);
+  }
+
+  // ------------------------------------------------------------------------
+  // API
+
+  /**
+   * Get the Play of the given type for the cards, making it with the factory
+   * (from the packed cards) if it isn't in the table.
+   */
+  <P extends Play> P intern(
+    Class<P> type,
+    Collection<? extends Card> cards,
+    Function<long[], P> factory)
+  {
+    long[] packed = PackedCards.pack(cards);
+    int slot = spread(Arrays.hashCode(packed)) & (NUM_SLOTS - 1);
+    Play existing = slots.get(slot);
+    if (existing != null && existing.getClass() == type && existing.hasPackedCards(packed)) {
+      return type.cast(existing);
+    }
+    P play = factory.apply(packed);
+    slots.set(slot, play);
+    return play;
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Mix the high bits of the hash into the low ones, which pick the slot. */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -3,29 +3,40 @@ package me.soupbringer.hotsoup.tricks.plays;
 import java.util.Collection;
 
 import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
 
-import com.google.common.collect.ImmutableSortedMultiset;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Play representing a single card.
  */
 class Single extends Play {
 
+  /**
+   * There are only 54 different Singles, so we make them all up front, indexed
+   * by PackedCards kind.
+   */
+  private static final Single[] INSTANCES = allSingles();
+
   /** Make a Single from the given card. */
   private Single(Card card) {
-    super(new ImmutableSortedMultiset.Builder<Card>(Ordering.arbitrary()).add(card).build());
+    super(PackedCards.pack(ImmutableList.of(card)));
   }
   
   
   /** Try to parse the given Cards into a Single, and return null if that's not possible. */
   static Single trySingle(Collection<? extends Card> cards) {
-    return cards.size() == 1 ? new Single(cards.iterator().next()) : null;
+    return cards.size() == 1 ? of(cards.iterator().next()) : null;
   }
   
   /** Get a Single play for the given card. */
   static Single of(Card card) {
-    return new Single(card);
+    return INSTANCES[PackedCards.kindOf(card)];
+  }
+
+  @Override
+  public Kind getKind() {
+    return Kind.SINGLE;
   }
 
   @Override
@@ -38,11 +49,20 @@ class Single extends Play {
    * Get the lone card involved in this Play.
    */
   private Card getCard() {
-    return getCards().firstEntry().getElement();
+    return lowestCard();
   }
   
   @Override
   public String toString() {
     return getCard().toString();
   }
+
+  /** Make every Single. */
+  private static Single[] allSingles() {
+    Single[] singles = new Single[PackedCards.NUM_KINDS];
+    for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+      singles[kind] = new Single(PackedCards.cardOf(kind));
+    }
+    return singles;
+  }
 }
@@ -1,6 +1,5 @@
 package me.soupbringer.hotsoup.tricks.plays;
 
-import com.google.common.collect.ImmutableSortedMultiset;
 import com.google.common.collect.Sets;
 
 import java.util.Collection;
@@ -27,24 +26,37 @@ final class Straight extends Play {
   /**
    * Make a Straight from the given cards
    */
-  Straight(Collection<? extends Card> playedCards) {
-    super(ImmutableSortedMultiset.orderedBy(Card::compareByRank).addAll(playedCards).build());
+  Straight(long[] packedCards) {
+    super(packedCards);
   }
   
   /** Create a new Straight, and return null if we can't. */
   public static Straight tryStraight(Collection<? extends Card> cards) {
-    return isLegalStraight(cards) ? new Straight(cards) : null;
+    return isLegalStraight(cards)
+      ? PlayInterner.INSTANCE.intern(Straight.class, cards, Straight::new)
+      : null;
   }
 
   // ------------------------------------------------------------------------
   // Implementation
 
+  @Override
+  public Kind getKind() {
+    return Kind.STRAIGHT;
+  }
+
   @Override
   public boolean isLegalGiven(Play lastPlay) {
       return lastPlay instanceof Straight &&
              this.lowestRank().compareTo(((Straight) lastPlay).lowestRank()) > 0;
   }
 
+  /** Straights of any length can follow each other. */
+  @Override
+  public boolean isSameShapeAs(Play other) {
+    return other instanceof Straight;
+  }
+
   // -------------------------------------------------------------------------
   // Helper methods
 
@@ -4,7 +4,6 @@ import java.util.Collection;
 
 import me.soupbringer.hotsoup.deck.Card;
 
-import com.google.common.collect.ImmutableSortedMultiset;
 
 /**
  * A Play for consecutive three-of-a-kinds
@@ -14,13 +13,20 @@ public class Triples extends Play {
   /**
    * Make a Triples from the given cards.
    */
-  private Triples(Collection<? extends Card> playedCards) {
-    super(ImmutableSortedMultiset.orderedBy(Card::compareByRank).addAll(playedCards).build());
+  private Triples(long[] packedCards) {
+    super(packedCards);
   }
   
   /** Try to parse the given Collection into a Triples, and return null if we can't. */
   public static Triples tryTriples(Collection<? extends Card> cards) {
-    return PlayUtils.isLegalSameRankOrdinaryPlay(cards, 3) ? new Triples(cards) : null;
+    return PlayUtils.isLegalSameRankOrdinaryPlay(cards, 3)
+      ? PlayInterner.INSTANCE.intern(Triples.class, cards, Triples::new)
+      : null;
+  }
+
+  @Override
+  public Kind getKind() {
+    return Kind.TRIPLES;
   }
 
   @Override
@@ -33,13 +39,4 @@ public class Triples extends Play {
     return false;
   }
 
-  // ------------------------------------------------------------------------
-  // Queries
-
-  /**
-   * Get the number of cards in this Pairs.
-   */
-  private int numCards() {
-    return getCards().size();
-  }
 }
@@ -0,0 +1,129 @@
+package me.soupbringer.hotsoup.archive;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the GameIndex class
+ */
+public class GameIndex_Test {
+
+  /** Searches find exactly the games a brute-force scan does. */
+  @Test
+  public void testSearch() {
+    GameIndex index = new GameIndex();
+    List<GameRecord> records = Lists.newArrayList();
+    for (int i = 0; i < 200; i++) {
+      GameRecord record = play(i);
+      records.add(record);
+      String south = i % 3 == 0 ? "alice" : "bob";
+      index.add(record, ImmutableMap.of(Position.SOUTH, south, Position.NORTH, "carol"));
+    }
+    assertEquals(200, index.getNumGames());
+
+    List<Long> pairs = Lists.newArrayList();
+    List<Long> lowNS = Lists.newArrayList();
+    List<Long> aliceSouthNoTriples = Lists.newArrayList();
+    for (GameRecord record : records) {
+      boolean hasPairs = false;
+      boolean hasTriples = false;
+      for (int i = 0; i < record.getNumEvents(); i++) {
+        Play play = record.getPlay(i);
+        hasPairs |= play.getKind() == Play.Kind.PAIRS && play.numCards() == 4;
+        hasTriples |= play.getKind() == Play.Kind.TRIPLES;
+      }
+      if (hasPairs) {
+        pairs.add(record.getId());
+      }
+      if (record.getScoreNS() >= 20 && record.getScoreNS() <= 60) {
+        lowNS.add(record.getId());
+      }
+      if (record.getId() % 3 == 0 && !hasTriples) {
+        aliceSouthNoTriples.add(record.getId());
+      }
+    }
+
+    assertIds(pairs, index.search(GameIndex.Query.played(Play.Kind.PAIRS, 4)));
+    assertIds(lowNS, index.search(GameIndex.Query.scoreNS(20, 60)));
+    assertIds(aliceSouthNoTriples, index.search(
+      GameIndex.Query.seated("alice", Position.SOUTH)
+        .andNot(GameIndex.Query.played(Play.Kind.TRIPLES))));
+    assertEquals(0, index.count(GameIndex.Query.seated("alice", Position.NORTH)));
+    assertEquals(200, index.count(GameIndex.Query.or(
+      GameIndex.Query.player("alice"), GameIndex.Query.player("bob"))));
+    assertEquals(200 - pairs.size(), index.count(
+      GameIndex.Query.not(GameIndex.Query.played(Play.Kind.PAIRS, 4))));
+  }
+
+  /** Bitmaps agree with BitSets, through sparse and dense chunks. */
+  @Test
+  public void testBitmap() {
+    Random random = new Random(3);
+    for (int round = 0; round < 20; round++) {
+      BitSet a = new BitSet();
+      BitSet b = new BitSet();
+      CompressedBitmap x = new CompressedBitmap();
+      CompressedBitmap y = new CompressedBitmap();
+      int range = 1 << (12 + random.nextInt(8));
+      int n = random.nextInt(20000);
+      for (int i = 0; i < n; i++) {
+        int value = random.nextInt(range);
+        a.set(value);
+        x.add(value);
+        value = random.nextInt(range);
+        b.set(value);
+        y.add(value);
+      }
+      assertEquals(a.cardinality(), x.cardinality());
+
+      BitSet and = (BitSet) a.clone();
+      and.and(b);
+      assertBits(and, CompressedBitmap.and(x, y));
+      BitSet or = (BitSet) a.clone();
+      or.or(b);
+      assertBits(or, CompressedBitmap.or(x, y));
+      BitSet andNot = (BitSet) a.clone();
+      andNot.andNot(b);
+      assertBits(andNot, CompressedBitmap.andNot(x, y));
+    }
+  }
+
+  private static void assertIds(List<Long> expected, long[] actual) {
+    assertEquals(expected.size(), actual.length);
+    for (int i = 0; i < actual.length; i++) {
+      assertEquals(expected.get(i).longValue(), actual[i]);
+    }
+  }
+
+  private static void assertBits(BitSet expected, CompressedBitmap actual) {
+    BitSet seen = new BitSet();
+    actual.forEach(seen::set);
+    assertEquals(expected, seen);
+    assertEquals(expected.cardinality(), actual.cardinality());
+  }
+
+  /** Play out a greedy game, and record it. */
+  private static GameRecord play(long id) {
+    Round round = Round.deal(new Random(id), Position.values()[(int) (id % 4)]);
+    GameRecord.Builder builder = GameRecord.builder(id, round);
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      round.play(play);
+      builder.add(play);
+    }
+    return builder.build(round.scoreNS(), round.scoreEW());
+  }
+}
@@ -0,0 +1,114 @@
+package me.soupbringer.hotsoup.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the GameLog class
+ */
+public class GameLog_Test {
+
+  /** Records come back out the way they went in. */
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<GameRecord> records = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      records.add(play(i));
+    }
+    assertEquals(records, readAll(write(records)));
+  }
+
+  /** A log cut off between records is reported, not taken as complete. */
+  @Test
+  public void testTruncatedBetweenRecords() throws IOException {
+    byte[] log = write(Arrays.asList(play(0), play(1)));
+    // Drop the end marker.
+    byte[] truncated = Arrays.copyOf(log, log.length - 1);
+    try (GameLog.Reader reader = GameLog.reader(new ByteArrayInputStream(truncated))) {
+      assertEquals(0, reader.next().getId());
+      assertEquals(1, reader.next().getId());
+      try {
+        reader.hasNext();
+        fail("The log was truncated.");
+      } catch (UncheckedIOException e) {
+        assertTrue(e.getCause() instanceof EOFException);
+      }
+    }
+  }
+
+  /** A log cut off in the middle of a record is reported too. */
+  @Test(expected = UncheckedIOException.class)
+  public void testTruncatedInRecord() throws IOException {
+    byte[] log = write(Arrays.asList(play(0)));
+    readAll(Arrays.copyOf(log, log.length - 20));
+  }
+
+  /** A record claiming far too many events is reported as corrupt, not allocated. */
+  @Test
+  public void testCorruptEventCount() throws IOException {
+    byte[] log = write(Arrays.asList(play(0)));
+    // Magic, version, marker, id, leader and the hands come before the count.
+    int offset = 4 + 4 + 1 + 8 + 1 + Position.values().length * 16;
+    for (int count : new int[] {Integer.MAX_VALUE, 417, -1}) {
+      byte[] corrupt = log.clone();
+      ByteBuffer.wrap(corrupt).putInt(offset, count);
+      try {
+        readAll(corrupt);
+        fail("The count was " + count + ".");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().startsWith("Corrupt game log"));
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Write the records to a complete log. */
+  private static byte[] write(List<GameRecord> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GameLog.Writer writer = GameLog.writer(out)) {
+      for (GameRecord record : records) {
+        writer.write(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /** Read every record in the log. */
+  private static List<GameRecord> readAll(byte[] log) throws IOException {
+    try (GameLog.Reader reader = GameLog.reader(new ByteArrayInputStream(log))) {
+      return Lists.newArrayList(reader);
+    }
+  }
+
+  /** Play out a greedy game, and record it. */
+  private static GameRecord play(long id) {
+    Round round = Round.deal(new Random(id), Position.NORTH);
+    GameRecord.Builder builder = GameRecord.builder(id, round);
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      round.play(play);
+      builder.add(play);
+    }
+    return builder.build(round.scoreNS(), round.scoreEW());
+  }
+}
@@ -0,0 +1,216 @@
+package me.soupbringer.hotsoup.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the HandArchive class
+ */
+public class HandArchive_Test {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Scans see what was written, across blocks, and only the columns they ask for. */
+  @Test
+  public void testScan() throws Exception {
+    Path path = new File(folder.getRoot(), "hands.bin").toPath();
+    List<GameRecord> records = Lists.newArrayList();
+    try (HandArchive.Writer writer = HandArchive.writer(path, 16)) {
+      for (int i = 0; i < 100; i++) {
+        GameRecord record = play(i);
+        records.add(record);
+        writer.add(record);
+      }
+    }
+
+    int expectedPoints = 0;
+    for (GameRecord record : records) {
+      for (int i = 0; i < record.getNumEvents(); i++) {
+        expectedPoints += record.getPlay(i).countNumPoints();
+      }
+    }
+
+    try (HandArchive archive = HandArchive.open(path)) {
+      assertEquals(100, archive.getNumHands());
+
+      List<Long> seeds = Lists.newArrayList();
+      int[] totals = new int[2];
+      archive.scan(
+        EnumSet.of(HandArchive.Column.SEED, HandArchive.Column.POINTS,
+          HandArchive.Column.TRICK_END, HandArchive.Column.KIND),
+        cursor -> {
+          GameRecord record = records.get(seeds.size());
+          seeds.add(cursor.getSeed());
+          assertEquals(record.getNumEvents(), cursor.getNumPlays());
+          for (int i = 0; i < cursor.getNumPlays(); i++) {
+            assertEquals(record.getPlay(i).getKind(), cursor.getKind(i));
+            totals[0] += cursor.getPoints(i);
+            totals[1] += cursor.endsTrick(i) ? 1 : 0;
+          }
+          assertTrue(cursor.endsTrick(cursor.getNumPlays() - 1));
+          try {
+            cursor.getScoreNS();
+            fail();
+          } catch (IllegalStateException expected) {
+          }
+        });
+      assertEquals(100, seeds.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i, seeds.get(i).longValue());
+      }
+      assertEquals(expectedPoints, totals[0]);
+      assertTrue(totals[1] >= 100);
+
+      int[] index = new int[1];
+      archive.scan(
+        EnumSet.of(HandArchive.Column.SCORE_NS, HandArchive.Column.SCORE_EW,
+          HandArchive.Column.LEADER),
+        cursor -> {
+          GameRecord record = records.get(index[0]++);
+          assertEquals(record.getLeader(), cursor.getLeader());
+          assertEquals(record.getScoreNS(), cursor.getScoreNS());
+          assertEquals(record.getScoreEW(), cursor.getScoreEW());
+        });
+      assertEquals(100, index[0]);
+    }
+  }
+
+  /** Each play's seat, length and lowest rank match the game. */
+  @Test
+  public void testPlays() throws Exception {
+    Path path = new File(folder.getRoot(), "hands.bin").toPath();
+    GameRecord record = play(7);
+    try (HandArchive.Writer writer = HandArchive.writer(path)) {
+      writer.add(record);
+    }
+
+    Round round = Round.deal(new Random(7), record.getLeader());
+    List<Position> seats = Lists.newArrayList();
+    while (!round.isOver()) {
+      seats.add(round.getTurn());
+      round.play(GreedyStrategy.INSTANCE.choose(round));
+    }
+
+    try (HandArchive archive = HandArchive.open(path)) {
+      archive.scan(EnumSet.allOf(HandArchive.Column.class), cursor -> {
+        for (int i = 0; i < cursor.getNumPlays(); i++) {
+          Play play = record.getPlay(i);
+          assertEquals(seats.get(i), cursor.getSeat(i));
+          assertEquals(play.numCards(), cursor.getLength(i));
+          assertEquals(play.isPass() ? null : play.lowestRank(), cursor.getLowestRank(i));
+        }
+      });
+    }
+  }
+
+  /** Records that don't check out are turned away without leaving anything behind. */
+  @Test
+  public void testRejectedRecords() throws Exception {
+    Path path = new File(folder.getRoot(), "hands.bin").toPath();
+    List<GameRecord> good = Lists.newArrayList(play(1), play(2));
+    GameRecord real = play(3);
+    int numEvents = real.getNumEvents() - 1;
+    GameRecord unfinished = new GameRecord(
+      3, real.getLeader(), real.packedHands(),
+      Arrays.copyOf(real.kinds(), numEvents),
+      Arrays.copyOf(real.packedCards(), numEvents * PackedCards.NUM_WORDS),
+      real.getScoreNS(), real.getScoreEW());
+    GameRecord wrongScore = new GameRecord(
+      4, real.getLeader(), real.packedHands(), real.kinds(), real.packedCards(),
+      real.getScoreNS() + 5, real.getScoreEW());
+
+    try (HandArchive.Writer writer = HandArchive.writer(path)) {
+      writer.add(good.get(0));
+      for (GameRecord bad : new GameRecord[] {unfinished, wrongScore}) {
+        try {
+          writer.add(bad);
+          fail("Game " + bad.getId() + " should have been turned away.");
+        } catch (IllegalArgumentException expected) {
+        }
+      }
+      writer.add(good.get(1));
+    }
+
+    try (HandArchive archive = HandArchive.open(path)) {
+      assertEquals(2, archive.getNumHands());
+      int[] index = new int[1];
+      archive.scan(EnumSet.allOf(HandArchive.Column.class), cursor -> {
+        GameRecord record = good.get(index[0]++);
+        assertEquals(record.getId(), cursor.getSeed());
+        assertEquals(record.getNumEvents(), cursor.getNumPlays());
+        for (int i = 0; i < cursor.getNumPlays(); i++) {
+          assertEquals(record.getPlay(i).getKind(), cursor.getKind(i));
+        }
+        assertEquals(record.getScoreNS(), cursor.getScoreNS());
+      });
+      assertEquals(2, index[0]);
+    }
+  }
+
+  /** A column cut short fails the scan, rather than spinning forever. */
+  @Test(timeout = 10000)
+  public void testTruncatedColumn() throws Exception {
+    Path path = new File(folder.getRoot(), "hands.bin").toPath();
+    try (HandArchive.Writer writer = HandArchive.writer(path, 16)) {
+      for (int i = 0; i < 10; i++) {
+        writer.add(play(i));
+      }
+    }
+
+    // Halve the first block's SEED length in the footer: past the version, the
+    // number of blocks, the block's counts and the column's offset.
+    try (FileChannel channel = FileChannel.open(
+        path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer tail = ByteBuffer.allocate(8);
+      channel.read(tail, channel.size() - 12);
+      long position = tail.getLong(0) + 4 + 4 + 4 + 4 + 8;
+      ByteBuffer length = ByteBuffer.allocate(4);
+      channel.read(length, position);
+      length.putInt(0, length.getInt(0) / 2);
+      length.rewind();
+      channel.write(length, position);
+    }
+
+    try (HandArchive archive = HandArchive.open(path)) {
+      archive.scan(EnumSet.of(HandArchive.Column.SEED), cursor -> { });
+      fail("The column was truncated.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("SEED"));
+    }
+  }
+
+  /** Play out a greedy game, and record it. */
+  private static GameRecord play(long id) {
+    Round round = Round.deal(new Random(id), Position.values()[(int) (id % 4)]);
+    GameRecord.Builder builder = GameRecord.builder(id, round);
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      round.play(play);
+      builder.add(play);
+    }
+    return builder.build(round.scoreNS(), round.scoreEW());
+  }
+}
@@ -0,0 +1,99 @@
+package me.soupbringer.hotsoup.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.PlayResult;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the ReplayVerifier class
+ */
+public class ReplayVerifier_Test {
+
+  /** Real games check out, and doctored ones are caught where they go wrong. */
+  @Test
+  public void testVerify() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GameLog.Writer writer = GameLog.writer(out)) {
+      for (int i = 0; i < 50; i++) {
+        writer.write(play(i, false));
+      }
+      // A pass on the lead.
+      writer.write(play(50, true));
+      GameRecord real = play(51, false);
+      writer.write(new GameRecord(
+        51, real.getLeader(), real.packedHands(), real.kinds(), real.packedCards(),
+        real.getScoreNS() + 5, real.getScoreEW()));
+    }
+
+    Map<Long, ReplayVerifier.Verdict> verdicts = new ConcurrentHashMap<>();
+    ReplayVerifier verifier = ReplayVerifier.builder()
+      .threads(4)
+      .batchSize(16)
+      .listener(verdict -> verdicts.put(verdict.getGameId(), verdict))
+      .build();
+    ReplayVerifier.Report report;
+    try (GameLog.Reader reader = GameLog.reader(new ByteArrayInputStream(out.toByteArray()))) {
+      report = verifier.verify(reader);
+    }
+
+    assertEquals(52, report.getNumGames());
+    assertEquals(2, report.getNumFailed());
+    assertEquals(52, verdicts.size());
+    for (long i = 0; i < 50; i++) {
+      assertTrue(verdicts.get(i).toString(), verdicts.get(i).isValid());
+    }
+    ReplayVerifier.Verdict pass = verdicts.get(50L);
+    assertEquals(ReplayVerifier.Divergence.ILLEGAL_PLAY, pass.getDivergence());
+    assertEquals(0, pass.getEventIndex());
+    assertEquals(PlayResult.WRONG_SHAPE, pass.getResult());
+    ReplayVerifier.Verdict score = verdicts.get(51L);
+    assertEquals(ReplayVerifier.Divergence.WRONG_SCORE, score.getDivergence());
+  }
+
+  /** Hands which are each fine, but deal some card more often than the deck has it. */
+  @Test
+  public void testDealtTooManyCopies() {
+    GameRecord real = play(0, false);
+    long[] hands = real.packedHands().clone();
+    // East gets North's hand too, and North is bound to have a pair of something.
+    System.arraycopy(
+      hands, Position.NORTH.ordinal() * PackedCards.NUM_WORDS,
+      hands, Position.EAST.ordinal() * PackedCards.NUM_WORDS,
+      PackedCards.NUM_WORDS);
+    GameRecord doctored = new GameRecord(
+      0, real.getLeader(), hands, real.kinds(), real.packedCards(),
+      real.getScoreNS(), real.getScoreEW());
+
+    ReplayVerifier.Verdict verdict = ReplayVerifier.verify(doctored);
+    assertEquals(ReplayVerifier.Divergence.BAD_DEAL, verdict.getDivergence());
+    assertEquals(Position.EAST, verdict.getPosition());
+  }
+
+  /** Play out a greedy game, and record it, optionally passing on the first lead. */
+  private static GameRecord play(long id, boolean passFirst) {
+    Round round = Round.deal(new Random(id), Position.values()[(int) (id % 4)]);
+    GameRecord.Builder builder = GameRecord.builder(id, round);
+    if (passFirst) {
+      builder.add(Play.pass());
+    }
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      round.play(play);
+      builder.add(play);
+    }
+    return builder.build(round.scoreNS(), round.scoreEW());
+  }
+}
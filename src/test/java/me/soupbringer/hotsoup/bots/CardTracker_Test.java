@@ -0,0 +1,99 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the CardTracker class
+ */
+public class CardTracker_Test {
+
+  private static final Card NINE = Card.of(Rank.NINE, Suit.SPADES);
+  private static final Card KING = Card.of(Rank.KING, Suit.HEARTS);
+  private static final Card ACE = Card.of(Rank.ACE, Suit.CLUBS);
+
+  /** Passing on a single means nothing higher, but only if we're inferring that. */
+  @Test
+  public void testVoidsFromPasses() {
+    for (boolean infer : new boolean[] {true, false}) {
+      CardTracker tracker = newTracker(infer);
+      tracker.observe(Position.NORTH, Play.one(NINE));
+      tracker.observePass(Position.EAST);
+
+      assertEquals(infer, tracker.lacks(Position.EAST, ACE));
+      assertEquals(infer, tracker.lacks(Position.EAST, Card.of(Rank.BIG_JOKER, Suit.UNNECESSARY)));
+      assertFalse(tracker.lacks(Position.EAST, NINE));
+      assertFalse(tracker.lacks(Position.WEST, ACE));
+      assertEquals(infer ? 0 : 2, tracker.maxCopies(Position.EAST, KING));
+      assertEquals(infer, tracker.expectedCopies(Position.EAST, KING) == 0);
+    }
+  }
+
+  /** Plays are seen, hands shrink, and the marginals follow. */
+  @Test
+  public void testMarginals() {
+    CardTracker tracker = newTracker(true);
+    assertEquals(2, tracker.numHidden(NINE));
+    tracker.observe(Position.EAST, Play.one(NINE));
+
+    assertEquals(1, tracker.numHidden(NINE));
+    assertEquals(25, tracker.handSize(Position.EAST));
+    // 81 hidden cards: 77 in hands, and 4 undealt which could be anything.
+    assertEquals(26.0 / 81, tracker.expectedCopies(Position.WEST, NINE), 1e-9);
+    assertEquals(26.0 / 81, tracker.probabilityHolds(Position.WEST, NINE), 1e-9);
+    assertEquals(1, tracker.maxCopies(Position.NORTH, NINE));
+    double total = 0;
+    for (Position position : new Position[] {Position.NORTH, Position.EAST, Position.WEST}) {
+      total += tracker.expectedCopies(position, KING);
+    }
+    assertEquals(2.0 * 77 / 81, total, 1e-9);
+  }
+
+  /** Playing a card we thought they lacked drops that void, and only that one. */
+  @Test
+  public void testContradiction() {
+    CardTracker tracker = newTracker(true);
+    tracker.observe(Position.NORTH, Play.one(NINE));
+    tracker.observePass(Position.EAST);
+    tracker.observePass(Position.SOUTH);
+    tracker.observePass(Position.WEST);
+    assertTrue(tracker.lacks(Position.EAST, ACE));
+
+    tracker.observe(Position.EAST, Play.one(ACE));
+    assertFalse(tracker.lacks(Position.EAST, ACE));
+    assertTrue(tracker.lacks(Position.EAST, KING));
+    assertTrue(tracker.lacks(Position.EAST, Card.of(Rank.ACE, Suit.HEARTS)));
+  }
+
+  /**
+   * Make a tracker for south, holding 26 cards with no nines, kings or aces of
+   * the suits we play, with everyone on 26 cards.
+   */
+  private static CardTracker newTracker(boolean inferVoids) {
+    List<Card> own = ImmutableList.copyOf(Deck.shuffled(new Random(1)).stream()
+      .filter(card -> !card.equals(NINE) && !card.equals(KING) && !card.equals(ACE))
+      .limit(Hand.NEW_HAND_SIZE)
+      .iterator());
+    Map<Position, Integer> handSizes = new EnumMap<>(Position.class);
+    for (Position position : Position.values()) {
+      handSizes.put(position, Hand.NEW_HAND_SIZE);
+    }
+    return new CardTracker(Position.SOUTH, own, handSizes, ImmutableList.<Card>of(), inferVoids);
+  }
+}
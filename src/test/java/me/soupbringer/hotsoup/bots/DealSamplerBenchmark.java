@@ -0,0 +1,38 @@
+package me.soupbringer.hotsoup.bots;
+
+import java.util.SplittableRandom;
+
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.table.Position;
+
+/**
+ * Measures how many deals per second the DealSampler can produce for a typical
+ * mid-hand position. Run by hand; this isn't part of the test suite.
+ */
+public final class DealSamplerBenchmark {
+
+  private static final int BATCH_SIZE = 4096;
+
+  public static void main(String[] args) {
+    long start = System.nanoTime();
+    DealSampler sampler = DealSampler.builder()
+      .holder(Position.EAST, 19)
+      .holder(Position.SOUTH, 22)
+      .holder(Position.WEST, 24)
+      .lacksAbove(Position.EAST, Rank.KING)
+      .build();
+    System.out.printf("build: %.1f us%n", (System.nanoTime() - start) / 1e3);
+
+    SplittableRandom random = new SplittableRandom(42);
+    long[] buffer = new long[BATCH_SIZE * sampler.stride()];
+    for (int round = 0; round < 5; round++) {
+      int batches = 200;
+      start = System.nanoTime();
+      for (int i = 0; i < batches; i++) {
+        sampler.sampleAll(buffer, BATCH_SIZE, random);
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("round %d: %.0f samples/sec%n", round, batches * BATCH_SIZE / seconds);
+    }
+  }
+}
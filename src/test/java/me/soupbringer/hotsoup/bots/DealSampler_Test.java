@@ -0,0 +1,110 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+import me.soupbringer.hotsoup.table.Position;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+
+/**
+ * Test cases for the DealSampler class
+ */
+public class DealSampler_Test {
+
+  private static final Card THREE = Card.of(Rank.THREE, Suit.HEARTS);
+  private static final Card FOUR = Card.of(Rank.FOUR, Suit.HEARTS);
+
+  /** Make sure every sample matches the hand sizes, and respects the two-deck limit. */
+  @Test
+  public void testHandSizes() {
+    DealSampler sampler = DealSampler.builder()
+      .holder(Position.EAST, 20)
+      .holder(Position.SOUTH, 26)
+      .holder(Position.WEST, 7)
+      .build();
+    SplittableRandom random = new SplittableRandom(1);
+    long[] buffer = new long[100 * sampler.stride()];
+    sampler.sampleAll(buffer, 100, random);
+
+    for (int i = 0; i < 100; i++) {
+      int offset = i * sampler.stride();
+      assertEquals(20, PackedCards.size(buffer, offset));
+      assertEquals(26, PackedCards.size(buffer, offset + PackedCards.NUM_WORDS));
+      assertEquals(7, PackedCards.size(buffer, offset + 2 * PackedCards.NUM_WORDS));
+      for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+        int total = 0;
+        for (int holder = 0; holder < 3; holder++) {
+          total += PackedCards.count(buffer, offset + holder * PackedCards.NUM_WORDS, kind);
+        }
+        assertTrue(total <= 2);
+      }
+    }
+  }
+
+  /** Make sure a player who lacks high cards never gets dealt one. */
+  @Test
+  public void testVoids() {
+    DealSampler sampler = DealSampler.builder()
+      .holder(Position.EAST, 26)
+      .holder(Position.WEST, 26)
+      .lacksAbove(Position.EAST, Rank.NINE)
+      .build();
+    SplittableRandom random = new SplittableRandom(2);
+    for (int i = 0; i < 100; i++) {
+      for (Card card : sampler.sample(random).get(Position.EAST)) {
+        assertTrue(card.getRank().compareTo(Rank.NINE) <= 0);
+      }
+    }
+  }
+
+  /**
+   * With two threes and a four hidden, and east holding one card, east has one of
+   * three real cards: the four should come up a third of the time.
+   */
+  @Test
+  public void testUniformity() {
+    DealSampler.Builder builder = DealSampler.builder()
+      .holder(Position.EAST, 1)
+      .holder(Position.WEST, 2);
+    int[] hidden = new int[PackedCards.NUM_KINDS];
+    hidden[PackedCards.kindOf(THREE)] = 2;
+    hidden[PackedCards.kindOf(FOUR)] = 1;
+    DealSampler sampler = builder.hiddenCopies(hidden).build();
+    assertEquals(3.0, sampler.countDeals(), 0.0);
+
+    SplittableRandom random = new SplittableRandom(3);
+    int eastGotFour = 0;
+    for (int i = 0; i < 10000; i++) {
+      Map<Position, ImmutableMultiset<Card>> deal = sampler.sample(random);
+      Multiset<Card> east = deal.get(Position.EAST);
+      if (east.contains(FOUR)) {
+        eastGotFour++;
+        assertEquals(2, deal.get(Position.WEST).count(THREE));
+      }
+    }
+    assertTrue(eastGotFour > 3100 && eastGotFour < 3570);
+  }
+
+  /** Constraints that can't be met should be caught up front. */
+  @Test(expected = DealSampler.InconsistentConstraintsException.class)
+  public void testInconsistentFail() {
+    int[] hidden = new int[PackedCards.NUM_KINDS];
+    hidden[PackedCards.kindOf(FOUR)] = 2;
+    DealSampler.builder()
+      .holder(Position.EAST, 1)
+      .holder(Position.WEST, 1)
+      .lacks(Position.EAST, FOUR)
+      .hiddenCopies(hidden)
+      .build();
+  }
+}
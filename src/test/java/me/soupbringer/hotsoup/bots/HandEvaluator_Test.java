@@ -0,0 +1,73 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+
+/**
+ * Test cases for the HandEvaluator class
+ */
+public class HandEvaluator_Test {
+
+  /** Runs, controls and points come out of the histogram. */
+  @Test
+  public void testFeatures() {
+    HandEvaluator.Evaluation straight = evaluate(
+      Rank.THREE, Rank.FOUR, Rank.FIVE, Rank.SIX, Rank.SEVEN);
+    assertEquals(5, straight.getLongestStraight());
+    assertEquals(0, straight.getLongestPairRun());
+    assertEquals(1, straight.getNumPlays());
+    assertEquals(5, straight.getNumPoints());
+
+    HandEvaluator.Evaluation pairs = evaluate(
+      Rank.TEN, Rank.TEN, Rank.JACK, Rank.JACK, Rank.QUEEN, Rank.QUEEN,
+      Rank.TWO, Rank.BIG_JOKER);
+    assertEquals(3, pairs.getLongestPairRun());
+    assertEquals(0, pairs.getLongestTripleRun());
+    assertEquals(4, pairs.getNumControls());
+    assertEquals(20, pairs.getNumPoints());
+    // The pairs, the two, and the joker.
+    assertEquals(3, pairs.getNumPlays());
+
+    HandEvaluator.Evaluation triples = evaluate(
+      Rank.FOUR, Rank.FOUR, Rank.FOUR, Rank.FIVE, Rank.FIVE, Rank.FIVE, Rank.SIX);
+    assertEquals(2, triples.getLongestTripleRun());
+    assertEquals(3, triples.getLongestStraight());
+    assertEquals(2, triples.getNumPlays());
+    assertTrue(pairs.getScore() > triples.getScore());
+  }
+
+  /** Real hands take at least one play, and never more than one per card. */
+  @Test
+  public void testDeals() {
+    Random random = new Random(4);
+    for (int i = 0; i < 100; i++) {
+      List<Card> deck = Deck.shuffled(random);
+      Hand hand = Hand.builder().addAll(deck.subList(0, Hand.NEW_HAND_SIZE)).build();
+      HandEvaluator.Evaluation evaluation = HandEvaluator.evaluate(hand);
+      assertTrue(evaluation.toString(), evaluation.getNumPlays() >= 1);
+      assertTrue(evaluation.toString(), evaluation.getNumPlays() <= Hand.NEW_HAND_SIZE);
+      assertTrue(evaluation.getLongestStraight() >= evaluation.getLongestPairRun());
+      assertTrue(evaluation.getLongestPairRun() >= evaluation.getLongestTripleRun());
+    }
+  }
+
+  private static HandEvaluator.Evaluation evaluate(Rank... ranks) {
+    List<Card> cards = Lists.newArrayList();
+    for (Rank rank : ranks) {
+      cards.add(Card.of(rank, Suit.SPADES));
+    }
+    return HandEvaluator.evaluate(HandEvaluator.histogram(cards));
+  }
+}
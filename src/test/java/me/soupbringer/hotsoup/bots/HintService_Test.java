@@ -0,0 +1,132 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * Test cases for the HintService class
+ */
+public class HintService_Test {
+
+  /** Every look at the test clocks moves them on by this much. */
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** The budget is checked before every rollout, so a search can't overrun it. */
+  @Test
+  public void testBudget() {
+    HintService service = new HintService(10, 20, TimeUnit.MILLISECONDS, ticking());
+    Situation situation = freshLead();
+    List<Hint> hints = service.hint(situation, 1000);
+
+    // One tick for the start, and one per rollout after that.
+    int numRollouts = 0;
+    for (Hint hint : hints) {
+      numRollouts += hint.getNumSamples();
+    }
+    assertTrue(numRollouts > 0 && numRollouts < 20);
+    // Fresh hands have more candidates than that, and the untried ones go last.
+    assertEquals(PlayGenerator.legalPlays(situation.getOwnCards(), null).size(), hints.size());
+    boolean untried = false;
+    for (Hint hint : hints) {
+      untried |= hint.getNumSamples() == 0;
+      assertTrue(!untried || hint.getNumSamples() == 0);
+    }
+    assertTrue(untried);
+  }
+
+  /** Results come back best first, and k only picks how many. */
+  @Test
+  public void testTopK() {
+    HintService service = new HintService(10, 300, TimeUnit.MILLISECONDS, ticking());
+    Situation situation = midRound();
+    List<Hint> all = service.hint(situation, 1000);
+    List<Hint> top = service.hint(situation, 3);
+
+    assertEquals(3, top.size());
+    assertEquals(all.subList(0, 3), top);
+    for (int i = 1; i < all.size(); i++) {
+      assertTrue(all.get(i).getNumSamples() > 0);
+      assertTrue(all.get(i - 1).getValue() >= all.get(i).getValue());
+    }
+  }
+
+  /** Asking again is answered from the cache. */
+  @Test
+  public void testCache() {
+    HintService service = new HintService(10, 50, TimeUnit.MILLISECONDS, ticking());
+    List<Hint> first = service.hint(midRound(), 3);
+    List<Hint> second = service.hint(midRound(), 5);
+    assertEquals(1, service.getNumSearches());
+    assertEquals(first, second.subList(0, 3));
+  }
+
+  /** Two requests for the same situation at once share one search. */
+  @Test
+  public void testSharedSearch() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    LongSupplier ticking = ticking();
+    HintService service = new HintService(10, 50, TimeUnit.MILLISECONDS, () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return ticking.getAsLong();
+    });
+
+    AtomicReference<List<Hint>> first = new AtomicReference<>();
+    AtomicReference<List<Hint>> second = new AtomicReference<>();
+    Thread a = new Thread(() -> first.set(service.hint(midRound(), 3)));
+    Thread b = new Thread(() -> second.set(service.hint(midRound(), 3)));
+    a.start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    b.start();
+    // Give the second request time to find the first one's search running.
+    Thread.sleep(50);
+    release.countDown();
+    a.join();
+    b.join();
+
+    assertEquals(1, service.getNumSearches());
+    assertNotNull(first.get());
+    assertEquals(first.get(), second.get());
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** Get a clock which moves on by a tick every time it's looked at. */
+  private static LongSupplier ticking() {
+    AtomicLong now = new AtomicLong();
+    return () -> now.getAndAdd(TICK_NANOS);
+  }
+
+  /** North's first lead, with a whole hand. */
+  private static Situation freshLead() {
+    return Situation.of(Round.deal(new Random(1), Position.NORTH), Position.NORTH);
+  }
+
+  /** Whoever's lead it is, a few tricks in. */
+  private static Situation midRound() {
+    Round round = Round.deal(new Random(2), Position.NORTH);
+    do {
+      round.play(GreedyStrategy.INSTANCE.choose(round));
+    } while (round.getNumTurns() < 12 || !round.isLead());
+    return Situation.of(round, round.getTurn());
+  }
+}
@@ -0,0 +1,85 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.Round;
+import me.soupbringer.hotsoup.tricks.PlayResult;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the LeadBook class
+ */
+public class LeadBook_Test {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The book knows the hands it was generated from, and leads legally from them. */
+  @Test
+  public void testGenerateAndLookUp() throws Exception {
+    Path path = folder.newFile("leads.book").toPath();
+    LeadBook.generator().seed(7).deals(24).threads(3).minDeals(1).generate(path);
+
+    try (LeadBook book = LeadBook.open(path)) {
+      for (int deal = 0; deal < 24; deal++) {
+        Position leader = Position.values()[deal % Position.values().length];
+        Round round = Round.deal(new Random(7 * 31 + deal), leader);
+        int signature = LeadBook.signature(round.getHand(leader));
+        assertTrue(book.getNumDeals(signature) > 0);
+
+        LeadBook.Lead best = book.getLead(signature, 0);
+        assertNotNull(best);
+        for (int i = 1; i < LeadBook.LEADS_PER_SLOT; i++) {
+          LeadBook.Lead lead = book.getLead(signature, i);
+          if (lead != null) {
+            assertTrue(lead.getMeanDifferential() <= best.getMeanDifferential());
+          }
+        }
+
+        Play play = book.choose(round);
+        assertNotNull(play);
+        assertFalse(play.isPass());
+        assertEquals(PlayResult.LEGAL, round.check(play));
+
+        // Once the hand isn't fresh, the book has nothing to say.
+        round.play(play);
+        while (!round.isOver() && !(round.isLead()
+          && round.getHand(round.getTurn()).numCardsLeft() < Hand.NEW_HAND_SIZE))
+        {
+          round.play(GreedyStrategy.INSTANCE.choose(round));
+        }
+        if (!round.isOver()) {
+          assertNull(book.choose(round));
+        }
+      }
+    }
+  }
+
+  /** Anything else is refused. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotABook() throws Exception {
+    Path path = folder.newFile("junk.book").toPath();
+    Files.write(path, new byte[] {1, 2, 3, 4});
+    LeadBook.open(path);
+  }
+
+  /** A closed book can't be looked up. */
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() throws Exception {
+    Path path = folder.newFile("leads.book").toPath();
+    LeadBook.generator().seed(7).deals(4).threads(1).minDeals(1).generate(path);
+    LeadBook book = LeadBook.open(path);
+    book.close();
+    book.getNumDeals(0);
+  }
+}
@@ -0,0 +1,71 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the Tournament class
+ */
+public class Tournament_Test {
+
+  /** A strategy against itself should come out exactly even on duplicate deals. */
+  @Test
+  public void testMirrorMatch() throws InterruptedException {
+    AtomicInteger numGames = new AtomicInteger();
+    Tournament.Report report = Tournament
+      .builder(() -> GreedyStrategy.INSTANCE, () -> GreedyStrategy.INSTANCE)
+      .minDeals(5)
+      .maxDeals(10)
+      .threads(2)
+      .listener(result -> numGames.incrementAndGet())
+      .build()
+      .run();
+    assertEquals(10, report.getNumDeals());
+    assertEquals(20, numGames.get());
+    assertEquals(0.0, report.getMeanDifferential(), 0.0);
+    assertFalse(report.isSignificant());
+  }
+
+  /** A strategy that never beats anything should lose, and we should notice early. */
+  @Test
+  public void testEarlyStop() throws InterruptedException {
+    Strategy passive =
+      round -> round.isLead() ? GreedyStrategy.INSTANCE.choose(round) : Play.pass();
+    Tournament.Report report = Tournament.builder(() -> GreedyStrategy.INSTANCE, () -> passive)
+      .minDeals(10)
+      .maxDeals(1000)
+      .threads(2)
+      .build()
+      .run();
+    assertTrue(report.isSignificant());
+    assertTrue(report.getNumDeals() < 1000);
+    assertTrue(report.getMeanDifferential() > 0);
+  }
+
+  /**
+   * When there's nothing to find, checking after every deal mustn't make us find
+   * it more than alpha of the time.
+   */
+  @Test
+  public void testNoOptionalStopping() {
+    Random random = new Random(3);
+    int numRuns = 400;
+    int numStopped = 0;
+    for (int run = 0; run < numRuns; run++) {
+      Tournament.Stats stats = new Tournament.Stats(20, 0.05);
+      for (int deal = 0; deal < 2000; deal++) {
+        if (stats.addDifferential(random.nextGaussian() * 10)) {
+          numStopped++;
+          break;
+        }
+      }
+    }
+    assertTrue("Stopped " + numStopped + " times", numStopped < numRuns * 0.05 * 1.5);
+  }
+}
@@ -0,0 +1,154 @@
+package me.soupbringer.hotsoup.bots;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayClassifier;
+
+/**
+ * Test cases for the TrainingExporter class
+ */
+public class TrainingExporter_Test {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Every record reads back, and every chunk holds whole games. */
+  @Test
+  public void testExport() throws Exception {
+    TrainingExporter.Report report = TrainingExporter.builder(
+        () -> GreedyStrategy.INSTANCE, folder.getRoot().toPath())
+      .deals(40)
+      .threads(4)
+      .writers(2)
+      .queueCapacity(2)
+      .recordsPerChunk(500)
+      .build()
+      .run();
+    assertEquals(40, report.getNumDeals());
+
+    File[] chunks = folder.getRoot().listFiles();
+    assertEquals(report.getNumChunks(), chunks.length);
+    assertTrue(chunks.length > 2);
+    long numRecords = 0;
+    boolean[] dealt = new boolean[40];
+    for (File chunk : chunks) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new GZIPInputStream(Files.newInputStream(chunk.toPath()))))) {
+        assertEquals(TrainingExporter.MAGIC, in.readInt());
+        assertEquals(TrainingExporter.VERSION, in.readInt());
+        while (true) {
+          long deal;
+          try {
+            deal = in.readLong();
+          } catch (EOFException e) {
+            break;
+          }
+          int turn = in.readShort();
+          in.readByte();
+          boolean lead = in.readByte() == 1;
+          long[] hand = {in.readLong(), in.readLong()};
+          if (turn == 0) {
+            assertTrue(lead);
+            assertEquals(Hand.NEW_HAND_SIZE, PackedCards.size(hand, 0));
+            assertFalse(dealt[(int) deal]);
+            dealt[(int) deal] = true;
+          }
+          assertEquals(lead, in.readByte() == -1);
+          in.readByte();
+          in.readByte();
+          in.readLong();
+          in.readLong();
+          int numMoves = in.readShort();
+          assertTrue(numMoves > 0);
+          for (int i = 0; i < numMoves; i++) {
+            long[] move = {in.readLong(), in.readLong()};
+            // Every move comes out of the hand.
+            for (int kind = 0; kind < PackedCards.NUM_KINDS; kind++) {
+              assertTrue(PackedCards.count(move, 0, kind) <= PackedCards.count(hand, 0, kind));
+            }
+          }
+          int chosen = in.readShort();
+          assertTrue(chosen >= 0 && chosen < numMoves);
+          in.readInt();
+          numRecords++;
+        }
+      }
+    }
+    assertEquals(report.getNumRecords(), numRecords);
+    for (boolean seen : dealt) {
+      assertTrue(seen);
+    }
+  }
+
+  /** A choice in other suits than the generator's is recorded as the generator's move. */
+  @Test
+  public void testOtherSuitsAreNotDuplicated() throws Exception {
+    int[] numSwapped = new int[1];
+    Strategy otherSuits = round -> {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      if (play.getKind() != Play.Kind.SINGLE) {
+        return play;
+      }
+      Card card = play.getCards().iterator().next();
+      for (Card other : round.getHand(round.getTurn()).getCards()) {
+        if (other.getRank() == card.getRank() && !other.equals(card)) {
+          synchronized (numSwapped) {
+            numSwapped[0]++;
+          }
+          return Play.one(other);
+        }
+      }
+      return play;
+    };
+    TrainingExporter.builder(() -> otherSuits, folder.getRoot().toPath())
+      .deals(20)
+      .threads(2)
+      .build()
+      .run();
+    assertTrue(numSwapped[0] > 0);
+
+    File[] chunks = folder.getRoot().listFiles();
+    assertEquals(1, chunks.length);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(Files.newInputStream(chunks[0].toPath()))))) {
+      in.readInt();
+      in.readInt();
+      while (true) {
+        try {
+          in.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        // Turn, position, lead, hand, top play and cards seen.
+        in.skipBytes(2 + 1 + 1 + 16 + 3 + 16);
+        int numMoves = in.readShort();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < numMoves; i++) {
+          long[] move = {in.readLong(), in.readLong()};
+          long key = PlayClassifier.histogram(move, 0) * 31 + PackedCards.size(move, 0);
+          assertTrue(seen.add(key));
+        }
+        int chosen = in.readShort();
+        assertTrue(chosen >= 0 && chosen < numMoves);
+        in.readInt();
+      }
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package me.soupbringer.hotsoup.conf;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.table.SessionRegistry;
+
+/**
+ * Test cases for the HotSoupModule class
+ */
+public class HotSoupModule_Test {
+
+  /** There's one session registry, and it's swept on the module's scheduler. */
+  @Test
+  public void testSessionsAreSwept() {
+    Injector injector = Guice.createInjector(new HotSoupModule());
+    SessionRegistry registry = injector.getInstance(SessionRegistry.class);
+    assertSame(registry, injector.getInstance(SessionRegistry.class));
+
+    ScheduledThreadPoolExecutor scheduler =
+      (ScheduledThreadPoolExecutor) injector.getInstance(ScheduledExecutorService.class);
+    try {
+      assertEquals(1, scheduler.getQueue().size());
+      registry.close();
+      scheduler.purge();
+      assertEquals(0, scheduler.getQueue().size());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package me.soupbringer.hotsoup.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the Metrics and LatencyHistogram classes
+ */
+public class Metrics_Test {
+
+  /** Percentiles should be within one bucket (12.5%) of the truth. */
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(100000, snapshot.getCount());
+    assertEquals(100000L * 100001 / 2 * 1000, snapshot.getSumNanos());
+    for (double fraction : new double[] {0.01, 0.5, 0.9, 0.99, 0.999}) {
+      double expected = fraction * 100000 * 1000;
+      double actual = snapshot.percentile(fraction);
+      assertTrue(fraction + ": " + actual, actual >= expected);
+      assertTrue(fraction + ": " + actual, actual <= expected * 1.125);
+    }
+    assertEquals(0, new LatencyHistogram().snapshot().percentile(0.5));
+  }
+
+  /** Registered metrics should come out in the text format. */
+  @Test
+  public void testWriteTo() {
+    Metrics.histogram("test_latency_seconds", "A test.").record(2000000);
+    Metrics.counter("test_failures_total", "A test.", "kind", "bad").add(3);
+    assertSame(
+      Metrics.counter("test_failures_total", "A test.", "kind", "bad"),
+      Metrics.counter("test_failures_total", "A test.", "kind", "bad"));
+
+    StringWriter out = new StringWriter();
+    Metrics.writeTo(new PrintWriter(out));
+    String text = out.toString();
+    assertTrue(text, text.contains("# TYPE test_latency_seconds summary"));
+    assertTrue(text, text.contains("test_latency_seconds_count 1"));
+    assertTrue(text, text.contains("test_latency_seconds{quantile=\"0.5\"}"));
+    assertTrue(text, text.contains("# TYPE test_failures_total counter"));
+    assertTrue(text, text.contains("test_failures_total{kind=\"bad\"} 3"));
+  }
+}
@@ -0,0 +1,98 @@
+package me.soupbringer.hotsoup.servlets;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.bots.HintService;
+import me.soupbringer.hotsoup.table.Lobby;
+import me.soupbringer.hotsoup.table.Player;
+import me.soupbringer.hotsoup.table.Position;
+import me.soupbringer.hotsoup.table.SessionRegistry;
+import me.soupbringer.hotsoup.table.Table;
+import me.soupbringer.hotsoup.table.TableFixture;
+
+/**
+ * Test cases for the HintServlet class
+ */
+public class HintServlet_Test {
+
+  /** Seated players get hints on their turn, and a conflict otherwise. */
+  @Test
+  public void testHints() throws Exception {
+    try (TableFixture tables = new TableFixture()) {
+      Table table = tables.newTable();
+      SessionRegistry sessions = new SessionRegistry(1, TimeUnit.MINUTES);
+      for (Position position : Position.values()) {
+        Player player = Player.create(position.name(), position.name());
+        table.submit(game -> game.seatPlayer(player, position));
+        sessions.register(player).setSeat(Lobby.Seat.create(table, position));
+      }
+      table.submit(game -> game.deal(new Random(1)));
+      HintServlet servlet = new HintServlet(
+        new HintService(10, 20, TimeUnit.MILLISECONDS), sessions);
+
+      Response response = get(servlet, ImmutableMap.of("player", "NORTH", "k", "2"));
+      assertEquals(0, response.error);
+      String[] lines = response.body.toString().trim().split("\n");
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].contains("\t"));
+
+      assertEquals(409, get(servlet, ImmutableMap.of("player", "EAST")).error);
+      assertEquals(404, get(servlet, ImmutableMap.of("player", "nobody")).error);
+      assertEquals(400, get(servlet, ImmutableMap.of("player", "NORTH", "k", "0")).error);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Helper methods
+
+  /** What came back from a request. */
+  private static final class Response {
+    private int error;
+    private final StringWriter body = new StringWriter();
+  }
+
+  /** Make a GET request with the given parameters. */
+  private static Response get(HintServlet servlet, Map<String, String> parameters)
+    throws Exception
+  {
+    Response result = new Response();
+    HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+      HintServlet_Test.class.getClassLoader(),
+      new Class<?>[] {HttpServletRequest.class},
+      (proxy, method, args) -> method.getName().equals("getParameter")
+        ? parameters.get(args[0])
+        : null);
+    PrintWriter writer = new PrintWriter(result.body);
+    HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+      HintServlet_Test.class.getClassLoader(),
+      new Class<?>[] {HttpServletResponse.class},
+      (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "sendError":
+            result.error = (Integer) args[0];
+            return null;
+          case "getWriter":
+            return writer;
+          default:
+            return null;
+        }
+      });
+    servlet.doGet(request, response);
+    writer.flush();
+    return result;
+  }
+}
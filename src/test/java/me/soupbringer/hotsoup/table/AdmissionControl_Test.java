@@ -0,0 +1,70 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import me.soupbringer.hotsoup.table.exceptions.CommandRejectedException;
+import me.soupbringer.hotsoup.table.exceptions.CommandRejectedException.Reason;
+
+/**
+ * Test cases for the AdmissionControl class
+ */
+public class AdmissionControl_Test {
+
+  /** Each limit turns commands away once it's reached, and says when to come back. */
+  @Test
+  public void testLimits() {
+    try (TableFixture tables = new TableFixture()) {
+      // Nothing runs until we say so, so commands stay queued.
+      List<Runnable> pending = Lists.newArrayList();
+      Table table = tables.newTable("test", pending::add);
+      AdmissionControl admission = AdmissionControl.builder()
+        .maxTableDepth(4)
+        .maxPlayerDepth(2)
+        .rate(1)
+        .burst(3)
+        .build();
+
+      admission.submit(table, "a", game -> { });
+      admission.submit(table, "a", game -> { });
+      assertEquals(Reason.PLAYER_QUEUE_FULL, rejection(admission, table, "a").getReason());
+
+      // Running the queue frees up the player's slots, but not their tokens.
+      pending.remove(0).run();
+      assertEquals(0, table.getQueueDepth());
+      admission.submit(table, "a", game -> { });
+      CommandRejectedException limited = rejection(admission, table, "a");
+      assertEquals(Reason.RATE_LIMITED, limited.getReason());
+      assertTrue(limited.getRetryAfter(TimeUnit.MILLISECONDS) > 900);
+      assertTrue(limited.getRetryAfter(TimeUnit.MILLISECONDS) <= 1000);
+
+      admission.submit(table, "b", game -> { });
+      admission.submit(table, "c", game -> { });
+      admission.submit(table, "d", game -> { });
+      assertEquals(4, table.getQueueDepth());
+      assertEquals(Reason.TABLE_QUEUE_FULL, rejection(admission, table, "e").getReason());
+
+      // Server commands always get in.
+      table.submit(game -> { });
+      assertEquals(5, table.getQueueDepth());
+    }
+  }
+
+  /** Get the exception from a submission we expect to be rejected. */
+  private static CommandRejectedException rejection(
+    AdmissionControl admission, Table table, String playerId)
+  {
+    try {
+      admission.submit(table, playerId, game -> { });
+    } catch (CommandRejectedException e) {
+      return e;
+    }
+    throw new AssertionError("The command should have been rejected.");
+  }
+}
@@ -0,0 +1,56 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+import me.soupbringer.hotsoup.tricks.PlayResult;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the HotSoup class
+ */
+public class HotSoup_Test {
+
+  /** Every play makePlay turns away is counted, by why. */
+  @Test
+  public void testIllegalPlayCounts() {
+    LongAdder malformed = HotSoup.illegalPlays("MALFORMED_PLAY");
+    LongAdder notInHand = HotSoup.illegalPlays(PlayResult.NOT_IN_HAND.name());
+    long malformedBefore = malformed.sum();
+    long notInHandBefore = notInHand.sum();
+
+    HotSoup game = HotSoup.create();
+    game.deal(new Random(1));
+    Round round = game.getRound();
+
+    assertFalse(game.makePlay(ImmutableList.of(
+      Card.of(Rank.THREE, Suit.CLUBS), Card.of(Rank.FIVE, Suit.HEARTS))));
+    assertEquals(malformedBefore + 1, malformed.sum());
+
+    Card missing = null;
+    for (Card card : round.getHand(Position.EAST).getCards()) {
+      if (round.getHand(Position.NORTH).getCards().count(card) == 0) {
+        missing = card;
+        break;
+      }
+    }
+    assertFalse(game.makePlay(ImmutableList.of(missing)));
+    assertEquals(notInHandBefore + 1, notInHand.sum());
+
+    // Legal plays aren't counted.
+    Play play = GreedyStrategy.INSTANCE.choose(round);
+    assertTrue(game.makePlay(play.getCards()));
+    assertEquals(malformedBefore + 1, malformed.sum());
+    assertEquals(notInHandBefore + 1, notInHand.sum());
+  }
+}
@@ -0,0 +1,131 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Test cases for the Lobby class
+ */
+public class Lobby_Test {
+
+  /** Players fill the fullest table with room before starting a new one. */
+  @Test
+  public void testFillPartialTablesFirst() throws Exception {
+    try (TableFixture tables = new TableFixture()) {
+      AtomicInteger nextId = new AtomicInteger();
+      Lobby lobby = new Lobby(
+        MoreExecutors.sameThreadExecutor(),
+        () -> tables.newTable("table" + nextId.getAndIncrement()));
+
+      List<Lobby.Seat> seats = Lists.newArrayList();
+      for (int i = 0; i < 6; i++) {
+        seats.add(lobby.join(Player.create("p" + i, "" + i)).get(1, TimeUnit.SECONDS));
+      }
+      Table first = seats.get(0).getTable();
+      Table second = seats.get(5).getTable();
+      assertNotSame(first, second);
+      for (int i = 0; i < 4; i++) {
+        assertSame(first, seats.get(i).getTable());
+      }
+
+      // One seat open at the first table, and two at the second.
+      lobby.leave(first, seats.get(2).getPosition());
+      Lobby.Seat seat = lobby.join(Player.create("p6", "6")).get(1, TimeUnit.SECONDS);
+      assertSame(first, seat.getTable());
+      assertEquals(seats.get(2).getPosition(), seat.getPosition());
+      assertSame(second, lobby.join(Player.create("p7", "7")).get(1, TimeUnit.SECONDS).getTable());
+    }
+  }
+
+  /** Someone sitting down behind the lobby's back just sends the player elsewhere. */
+  @Test
+  public void testSeatTakenElsewhere() throws Exception {
+    try (TableFixture tables = new TableFixture()) {
+      AtomicInteger nextId = new AtomicInteger();
+      Lobby lobby = new Lobby(
+        MoreExecutors.sameThreadExecutor(),
+        () -> tables.newTable("table" + nextId.getAndIncrement()));
+
+      Lobby.Seat seat = lobby.join(Player.create("p0", "0")).get(1, TimeUnit.SECONDS);
+      Table table = seat.getTable();
+      for (Position position : Position.values()) {
+        if (position != seat.getPosition()) {
+          table.submit(game -> game.seatPlayer(Player.create("x", "x"), position));
+        }
+      }
+      Lobby.Seat next = lobby.join(Player.create("p1", "1")).get(1, TimeUnit.SECONDS);
+      assertNotSame(table, next.getTable());
+      assertEquals(0, lobby.getNumWaiting());
+    }
+  }
+
+  /** A join that can't be seated fails on its own, and gives its seat back. */
+  @Test
+  public void testJoinTwice() throws Exception {
+    try (TableFixture tables = new TableFixture()) {
+      AtomicInteger nextId = new AtomicInteger();
+      Lobby lobby = new Lobby(
+        MoreExecutors.sameThreadExecutor(),
+        () -> tables.newTable("table" + nextId.getAndIncrement()));
+
+      Player player = Player.create("p0", "0");
+      Table table = lobby.join(player).get(1, TimeUnit.SECONDS).getTable();
+      try {
+        lobby.join(player).get(1, TimeUnit.SECONDS);
+        fail("The same player can't sit down twice.");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+
+      // The failed join's seat is still there for someone else.
+      for (int i = 1; i < 4; i++) {
+        Lobby.Seat seat = lobby.join(Player.create("p" + i, "" + i)).get(1, TimeUnit.SECONDS);
+        assertSame(table, seat.getTable());
+      }
+      assertEquals(1, nextId.get());
+    }
+  }
+
+  /** A table that can't be made, or won't take commands, fails its joins, not later ones. */
+  @Test
+  public void testFailedTables() throws Exception {
+    try (TableFixture tables = new TableFixture()) {
+      AtomicInteger nextId = new AtomicInteger();
+      Lobby lobby = new Lobby(MoreExecutors.sameThreadExecutor(), () -> {
+        int id = nextId.getAndIncrement();
+        if (id == 0) {
+          throw new IllegalStateException("No tables today.");
+        } else if (id == 1) {
+          return tables.newTable("table1", command -> {
+            throw new RejectedExecutionException();
+          });
+        }
+        return tables.newTable("table" + id);
+      });
+
+      try {
+        lobby.join(Player.create("p0", "0")).get(1, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+      try {
+        lobby.join(Player.create("p1", "1")).get(1, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+      assertEquals(0, lobby.getNumWaiting());
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.metrics.Metrics;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the PlayAnalytics class
+ */
+public class PlayAnalytics_Test {
+
+  /** A whole round, plus a rejected play, adds up once it's merged. */
+  @Test
+  public void testRound() {
+    try (TableFixture tables = new TableFixture();
+        PlayAnalytics analytics = PlayAnalytics.builder().build()) {
+      Table table = tables.newTable();
+      analytics.attach(table);
+
+      int[] counts = new int[2];
+      HotSoup[] played = new HotSoup[1];
+      table.submit(game -> {
+        game.deal(new Random(5));
+        played[0] = game;
+        // Nobody is dealt three copies of a card.
+        Card card = game.getRound().getHand(game.getRound().getTurn()).getCards().iterator().next();
+        assertFalse(game.makePlay(ImmutableList.of(card, card, card)));
+        while (!game.getRound().isOver()) {
+          Play play = GreedyStrategy.INSTANCE.choose(game.getRound());
+          if (play.isPass()) {
+            game.pass();
+            counts[1]++;
+          } else {
+            assertTrue(game.makePlay(play.getCards()));
+            counts[0]++;
+          }
+        }
+      });
+      assertEquals(0, analytics.getPlaysPerSecond(1, TimeUnit.MINUTES), 0);
+
+      assertTrue(analytics.merge() > 0);
+      long minute = 60;
+      assertEquals(counts[0] / 60.0, analytics.getPlaysPerSecond(minute, TimeUnit.SECONDS), 1e-9);
+      assertEquals(counts[1] / 60.0, analytics.getPassesPerSecond(minute, TimeUnit.SECONDS), 1e-9);
+      assertEquals(1.0 / (counts[0] + 1), analytics.getRejectionRate(1, TimeUnit.MINUTES), 1e-9);
+      assertEquals(1, analytics.getNumRoundsFinished(1, TimeUnit.MINUTES));
+      Round round = played[0].getRound();
+      assertEquals(round.scoreNS(), analytics.getPointsNS(1, TimeUnit.HOURS));
+      assertEquals(round.scoreEW(), analytics.getPointsEW(1, TimeUnit.HOURS));
+      assertTrue(analytics.getAverageTrickLength(1, TimeUnit.MINUTES) >= 1);
+
+      long total = 0;
+      Map<Play.Kind, Long> kinds = analytics.getKindCounts(1, TimeUnit.MINUTES);
+      for (long count : kinds.values()) {
+        total += count;
+      }
+      assertEquals(counts[0], total);
+      assertTrue(kinds.get(Play.Kind.SINGLE) > 0);
+    }
+  }
+
+  /** Rates are per second of the window we keep, when asked about a longer one. */
+  @Test
+  public void testRateOverLongWindow() {
+    try (TableFixture tables = new TableFixture();
+        PlayAnalytics analytics = PlayAnalytics.builder()
+          .maxWindow(10, TimeUnit.SECONDS)
+          .build()) {
+      Table table = tables.newTable();
+      analytics.attach(table);
+      table.submit(game -> {
+        game.deal(new Random(5));
+        assertTrue(game.makePlay(GreedyStrategy.INSTANCE.choose(game.getRound()).getCards()));
+        game.pass();
+      });
+      assertEquals(2, analytics.merge());
+      assertEquals(0.1, analytics.getPlaysPerSecond(1, TimeUnit.HOURS), 1e-9);
+      assertEquals(0.1, analytics.getPassesPerSecond(1, TimeUnit.HOURS), 1e-9);
+    }
+  }
+
+  /** A closed table's last events are counted, then nothing more is heard from it. */
+  @Test
+  public void testDetachOnClose() {
+    try (TableFixture tables = new TableFixture();
+        PlayAnalytics analytics = PlayAnalytics.builder().build()) {
+      Table table = tables.newTable();
+      analytics.attach(table);
+      table.submit(game -> {
+        game.deal(new Random(5));
+        assertTrue(game.makePlay(GreedyStrategy.INSTANCE.choose(game.getRound()).getCards()));
+      });
+      table.close();
+
+      assertEquals(1, analytics.merge());
+      table.submit(game -> game.pass());
+      assertEquals(0, analytics.merge());
+      assertEquals(0, analytics.getPassesPerSecond(1, TimeUnit.MINUTES), 0);
+
+      // It can be attached again, and detached by hand.
+      analytics.attach(table);
+      table.submit(game -> game.pass());
+      analytics.detach(table);
+      table.submit(game -> game.pass());
+      assertEquals(1, analytics.merge());
+      assertEquals(0, analytics.merge());
+    }
+  }
+
+  /** Closing the analytics stops every table publishing into rings nobody drains. */
+  @Test
+  public void testCloseDetaches() {
+    LongAdder dropped = Metrics.counter(
+      "hotsoup_analytics_dropped_total", "Game events analytics had no room for.",
+      "reason", "ring_full");
+    try (TableFixture tables = new TableFixture()) {
+      Table table = tables.newTable();
+      PlayAnalytics analytics = PlayAnalytics.builder().ringCapacity(2).build();
+      analytics.attach(table);
+      analytics.close();
+
+      long before = dropped.sum();
+      table.submit(game -> {
+        game.deal(new Random(5));
+        for (int i = 0; i < 10 && !game.getRound().isOver(); i++) {
+          Play play = GreedyStrategy.INSTANCE.choose(game.getRound());
+          if (play.isPass()) {
+            game.pass();
+          } else {
+            assertTrue(game.makePlay(play.getCards()));
+          }
+        }
+      });
+      assertEquals(before, dropped.sum());
+      assertEquals(0, analytics.merge());
+    }
+  }
+}
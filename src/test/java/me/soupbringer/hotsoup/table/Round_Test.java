@@ -0,0 +1,114 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.tricks.IllegalPlayException;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the Round class
+ */
+public class Round_Test {
+
+  /** Make sure a whole round can be played out, and ends with one team out. */
+  @Test
+  public void testPlayOut() {
+    Round round = Round.deal(new Random(1), Position.NORTH);
+    int numCards = 0;
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      numCards += play.getCards().size();
+      round.play(play);
+    }
+    assertEquals(numCards, round.getPlayed().size());
+    assertTrue(round.scoreNS() + round.scoreEW() <= 200);
+    boolean nsOut = round.getHand(Position.NORTH).isOut() && round.getHand(Position.SOUTH).isOut();
+    boolean ewOut = round.getHand(Position.EAST).isOut() && round.getHand(Position.WEST).isOut();
+    assertTrue(nsOut || ewOut);
+  }
+
+  /** Make sure the turn moves clockwise, and the trick winner leads the next one. */
+  @Test
+  public void testTurnOrder() {
+    Round round = Round.deal(new Random(2), Position.EAST);
+    round.play(GreedyStrategy.INSTANCE.choose(round));
+    assertEquals(Position.SOUTH, round.getTurn());
+    round.pass();
+    round.pass();
+    round.pass();
+    assertTrue(round.isLead());
+    assertEquals(Position.EAST, round.getTurn());
+  }
+
+  /** You can't pass on the lead. */
+  @Test(expected = IllegalStateException.class)
+  public void testPassOnLeadFail() {
+    Round.deal(new Random(3), Position.NORTH).pass();
+  }
+
+  /** A card that isn't in the hand can't be played, and nothing changes. */
+  @Test
+  public void testMissingCardFail() {
+    Round round = Round.deal(new Random(4), Position.NORTH);
+    Hand west = round.getHand(Position.WEST);
+    Card missing = null;
+    for (Card card : west.getCards()) {
+      if (!round.getHand(Position.NORTH).getCards().contains(card)) {
+        missing = card;
+      }
+    }
+    try {
+      round.play(Play.one(missing));
+      fail();
+    } catch (Hand.CardDoesNotExistInHandException expected) {
+      assertTrue(round.isLead());
+      assertEquals(Position.NORTH, round.getTurn());
+    }
+  }
+
+  /** Beating the top play is required. */
+  @Test(expected = IllegalPlayException.class)
+  public void testTooLowFail() {
+    Round round = Round.deal(new Random(5), Position.NORTH);
+    Play lead = GreedyStrategy.INSTANCE.choose(round);
+    round.play(lead);
+    round.play(lead);
+  }
+
+  /** A round read back from its encoding picks up exactly where it left off. */
+  @Test
+  public void testWriteAndRead() {
+    Round round = Round.deal(new Random(5), Position.SOUTH);
+    for (int i = 0; i < 30; i++) {
+      round.play(GreedyStrategy.INSTANCE.choose(round));
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    round.writeTo(buffer);
+    buffer.flip();
+    Round copy = Round.readFrom(buffer);
+    assertFalse(buffer.hasRemaining());
+
+    assertEquals(round.getTurn(), copy.getTurn());
+    assertEquals(round.isLead(), copy.isLead());
+    assertEquals(round.getNumTurns(), copy.getNumTurns());
+    assertEquals(round.getPlayed(), copy.getPlayed());
+    for (Position position : Position.values()) {
+      assertEquals(round.getHand(position).getCards(), copy.getHand(position).getCards());
+    }
+    while (!round.isOver()) {
+      Play play = GreedyStrategy.INSTANCE.choose(round);
+      round.play(play);
+      copy.play(play);
+    }
+    assertEquals(round.scoreNS(), copy.scoreNS());
+    assertEquals(round.scoreEW(), copy.scoreEW());
+  }
+}
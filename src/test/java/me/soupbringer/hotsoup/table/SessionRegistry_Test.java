@@ -0,0 +1,79 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Test cases for the SessionRegistry class
+ */
+public class SessionRegistry_Test {
+
+  /** Players who aren't seen for the time-to-live lose their session and their seat. */
+  @Test
+  public void testEviction() {
+    try (TableFixture tables = new TableFixture()) {
+      Table table = tables.newTable();
+      AtomicLong now = new AtomicLong();
+      SessionRegistry registry = new SessionRegistry(50, TimeUnit.MILLISECONDS, now::get);
+      Player stays = Player.create("stays", "1");
+      Player goes = Player.create("goes", "2");
+      table.submit(game -> game.seatPlayer(stays, Position.NORTH));
+      table.submit(game -> game.seatPlayer(goes, Position.EAST));
+      registry.register(stays).setSeat(Lobby.Seat.create(table, Position.NORTH));
+      registry.register(goes).setSeat(Lobby.Seat.create(table, Position.EAST));
+      SessionRegistry.Session session = registry.get("2");
+      assertSame(goes, session.getPlayer());
+
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+      assertNotNull(registry.get("1"));
+      assertEquals(0, registry.evictExpired());
+      // One nanosecond short of the time-to-live, nobody goes.
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20) - 1);
+      assertEquals(0, registry.evictExpired());
+      now.incrementAndGet();
+      assertEquals(1, registry.evictExpired());
+
+      assertNull(registry.get("2"));
+      assertFalse(session.isLive());
+      assertNotNull(registry.get("1"));
+      AtomicReference<Position> seen = new AtomicReference<>();
+      table.submit(game -> seen.set(game.locationOf(goes)));
+      assertNull(seen.get());
+      table.submit(game -> seen.set(game.locationOf(stays)));
+      assertEquals(Position.NORTH, seen.get());
+
+      // Coming back starts a new session.
+      assertNotSame(session, registry.register(goes));
+      assertEquals(2, registry.size());
+    }
+  }
+
+  /** A seat that can't be given up doesn't stop the sweep, or leave the session live. */
+  @Test
+  public void testUnseatFails() {
+    try (TableFixture tables = new TableFixture()) {
+      // The lobby never heard of this table, so leaving it throws.
+      Table table = tables.newTable();
+      Lobby lobby = new Lobby(MoreExecutors.sameThreadExecutor(), tables::newTable);
+      AtomicLong now = new AtomicLong();
+      SessionRegistry registry =
+        new SessionRegistry(50, TimeUnit.MILLISECONDS, lobby::leave, now::get);
+      registry.register(Player.create("a", "1")).setSeat(Lobby.Seat.create(table, Position.NORTH));
+      registry.register(Player.create("b", "2")).setSeat(Lobby.Seat.create(table, Position.EAST));
+      registry.register(Player.create("c", "3")).setSeat(Lobby.Seat.create(table, Position.SOUTH));
+
+      registry.remove("3");
+      assertNull(registry.get("3"));
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+      assertEquals(2, registry.evictExpired());
+      assertEquals(0, registry.size());
+    }
+  }
+}
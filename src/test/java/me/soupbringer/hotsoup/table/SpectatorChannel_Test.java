@@ -0,0 +1,58 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import me.soupbringer.hotsoup.bots.GreedyStrategy;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the SpectatorChannel class
+ */
+public class SpectatorChannel_Test {
+
+  /** Everyone gets the same frames, and anyone who falls behind gets a snapshot. */
+  @Test
+  public void testFanOut() {
+    try (TableFixture tables = new TableFixture()) {
+      Table table = tables.newTable();
+      SpectatorChannel channel = table.getSpectators();
+      List<SpectatorChannel.Frame> fast = Lists.newArrayList();
+      SpectatorChannel.Subscription[] keeper = new SpectatorChannel.Subscription[1];
+      keeper[0] = channel.subscribe(4, () -> fast.add(keeper[0].poll()));
+      SpectatorChannel.Subscription slow = channel.subscribe(4, () -> { });
+
+      table.submit(game -> game.deal(new Random(1)));
+      for (int i = 0; i < 20; i++) {
+        table.submit(game -> {
+          Play play = GreedyStrategy.INSTANCE.choose(game.getRound());
+          if (play.isPass()) {
+            game.pass();
+          } else {
+            game.makePlay(play.getCards());
+          }
+        });
+      }
+
+      assertEquals(SpectatorChannel.DEALT, fast.get(0).getType());
+      for (int i = 0; i < fast.size(); i++) {
+        assertEquals(i + 1, fast.get(i).getData().getLong(1));
+      }
+      SpectatorChannel.Frame first = slow.poll();
+      assertEquals(SpectatorChannel.SNAPSHOT, first.getType());
+      int covered = (int) first.getData().getLong(1);
+      assertTrue(covered > fast.size() - 4);
+      // Everything after the snapshot is the very same frames the fast one got.
+      for (int i = covered; i < fast.size(); i++) {
+        assertSame(fast.get(i), slow.poll());
+      }
+      assertNull(slow.poll());
+    }
+  }
+}
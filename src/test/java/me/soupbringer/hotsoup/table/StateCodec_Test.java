@@ -0,0 +1,45 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.google.common.collect.HashMultiset;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+import me.soupbringer.hotsoup.tricks.plays.Play;
+import me.soupbringer.hotsoup.tricks.plays.PlayGenerator;
+
+/**
+ * Test cases for the StateCodec class
+ */
+public class StateCodec_Test {
+
+  /** Plays come back as the same kind of Play, not just the same cards. */
+  @Test
+  public void testPlayRoundTrip() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    for (int deal = 0; deal < 10; deal++) {
+      HashMultiset<Card> hand = HashMultiset.create(Deck.shuffled(new Random(deal)).subList(0, 26));
+      for (Play play : PlayGenerator.legalPlays(hand, null)) {
+        buffer.clear();
+        StateCodec.writePlay(buffer, play);
+        buffer.flip();
+        Play read = StateCodec.readPlay(buffer);
+        assertEquals(play, read);
+        assertEquals(play.getKind(), read.getKind());
+        assertFalse(buffer.hasRemaining());
+      }
+    }
+
+    buffer.clear();
+    StateCodec.writePlay(buffer, Play.pass());
+    buffer.flip();
+    assertTrue(StateCodec.readPlay(buffer).isPass());
+    assertFalse(buffer.hasRemaining());
+  }
+}
@@ -0,0 +1,43 @@
+package me.soupbringer.hotsoup.table;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Tables for tests, all on one turn clock which is shut down on close().
+ *
+ * Unless told otherwise, a table runs commands on whichever thread submits them,
+ * so they've run by the time submit() returns, and gives each turn a minute, so
+ * nothing times out in the middle of a test.
+ */
+public final class TableFixture implements AutoCloseable {
+
+  private final TurnClock clock = new TurnClock(1, TimeUnit.MILLISECONDS, 64);
+
+  /** Get the clock the tables are timed with. */
+  public TurnClock getClock() {
+    return clock;
+  }
+
+  /** Make a table called "test". */
+  public Table newTable() {
+    return newTable("test");
+  }
+
+  /** Make a table with the given id. */
+  public Table newTable(String id) {
+    return newTable(id, MoreExecutors.sameThreadExecutor());
+  }
+
+  /** Make a table with the given id, which runs its commands on the executor. */
+  public Table newTable(String id, Executor executor) {
+    return new Table(id, executor, clock, 1, TimeUnit.MINUTES);
+  }
+
+  @Override
+  public void close() {
+    clock.close();
+  }
+}
@@ -0,0 +1,84 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import me.soupbringer.hotsoup.tricks.plays.Play;
+
+/**
+ * Test cases for the Table class
+ */
+public class Table_Test {
+
+  /** A turn on the clock doesn't stop an idle table hibernating, and its timeout wakes it. */
+  @Test
+  public void testHibernateWithTurnPending() throws InterruptedException {
+    try (TableFixture tables = new TableFixture()) {
+      Table table = new Table("test", MoreExecutors.sameThreadExecutor(), tables.getClock(),
+        1000, 20, TimeUnit.MILLISECONDS);
+      CountDownLatch played = new CountDownLatch(1);
+      AtomicReference<SpectatorChannel.Frame> playedFrame = new AtomicReference<>();
+      SpectatorChannel.Subscription[] keeper = new SpectatorChannel.Subscription[1];
+      keeper[0] = table.getSpectators().subscribe(16, () -> {
+        SpectatorChannel.Frame frame = keeper[0].poll();
+        if (frame != null && frame.getType() == SpectatorChannel.PLAYED) {
+          playedFrame.compareAndSet(null, frame);
+          played.countDown();
+        }
+      });
+
+      table.submit(game -> game.deal(new Random(1)));
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(900);
+      while (!table.isHibernated() && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertTrue(table.isHibernated());
+      assertEquals(1, played.getCount());
+
+      // Nobody moves, so the turn times out, and the leader's lowest card goes down.
+      assertTrue(played.await(10, TimeUnit.SECONDS));
+      // Type, sequence number and seat, then the play's kind.
+      assertEquals(Play.Kind.SINGLE.ordinal(), playedFrame.get().getData().get(10));
+    }
+  }
+
+  /** A table whose clock has stopped still runs every command it's given. */
+  @Test
+  public void testClockClosedWhileLive() {
+    try (TableFixture tables = new TableFixture()) {
+      Table table = tables.newTable();
+      table.submit(game -> game.deal(new Random(1)));
+      tables.getClock().close();
+
+      // Each of these moves the turn on, so the table tries to time the next one.
+      AtomicInteger ran = new AtomicInteger();
+      for (int i = 0; i < 3; i++) {
+        table.submit(game -> {
+          ran.incrementAndGet();
+          Round round = game.getRound();
+          if (round.isLead()) {
+            game.makePlay(ImmutableList.of(
+              round.getHand(round.getTurn()).getCards().iterator().next()));
+          } else {
+            game.pass();
+          }
+        });
+      }
+      int[] turns = new int[1];
+      table.submit(game -> turns[0] = game.getRound().getNumTurns());
+      assertEquals(3, ran.get());
+      assertEquals(3, turns[0]);
+      assertEquals(0, table.getQueueDepth());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package me.soupbringer.hotsoup.table;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Test cases for the TurnClock class
+ */
+public class TurnClock_Test {
+
+  /** Deadlines should fire (and only once), unless they're cancelled first. */
+  @Test
+  public void testFireAndCancel() throws InterruptedException {
+    try (TurnClock clock = new TurnClock(1, TimeUnit.MILLISECONDS, 64)) {
+      Table table = new Table(
+        "test", MoreExecutors.sameThreadExecutor(), clock, 1, TimeUnit.MINUTES);
+      AtomicInteger fired = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(500);
+      List<TurnClock.Timeout> timeouts = Lists.newArrayList();
+      for (int i = 0; i < 1000; i++) {
+        // Some of these go more than once around the wheel.
+        timeouts.add(clock.schedule(table, game -> {
+          fired.incrementAndGet();
+          done.countDown();
+        }, 200 + i % 100, TimeUnit.MILLISECONDS));
+      }
+      for (int i = 0; i < 1000; i += 2) {
+        assertTrue(timeouts.get(i).cancel());
+      }
+
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      Thread.sleep(50);
+      assertEquals(500, fired.get());
+      assertEquals(500, clock.getNumExpired());
+      assertEquals(0, clock.getNumPending());
+      assertFalse(timeouts.get(1).cancel());
+      assertTrue(clock.getMaxLatenessNanos() < TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  /** A table that can't take its timeout doesn't stop the others' firing. */
+  @Test
+  public void testRejectedTimeout() throws InterruptedException {
+    try (TurnClock clock = new TurnClock(1, TimeUnit.MILLISECONDS, 64)) {
+      Table broken = new Table("broken", command -> {
+        throw new RejectedExecutionException();
+      }, clock, 1, TimeUnit.MINUTES);
+      Table table = new Table(
+        "test", MoreExecutors.sameThreadExecutor(), clock, 1, TimeUnit.MINUTES);
+      CountDownLatch done = new CountDownLatch(2);
+      clock.schedule(broken, game -> { }, 10, TimeUnit.MILLISECONDS);
+      clock.schedule(table, game -> done.countDown(), 10, TimeUnit.MILLISECONDS);
+      clock.schedule(broken, game -> { }, 20, TimeUnit.MILLISECONDS);
+      clock.schedule(table, game -> done.countDown(), 30, TimeUnit.MILLISECONDS);
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -13,7 +13,9 @@ import me.soupbringer.hotsoup.tricks.plays.Play;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 
 /**
  * Test cases for the Trick class
@@ -48,6 +50,18 @@ public class Trick_Test {
       .end();
   }
   
+  /** Make sure a pass doesn't stop the next player from beating the top play. */
+  @Test
+  public void testPlayAfterPass() {
+    Trick.builder(Card.of(Rank.THREE, Suit.HEARTS))
+      .pass()
+      .play(Card.of(Rank.FOUR, Suit.HEARTS))
+      .pass()
+      .pass()
+      .pass()
+      .end();
+  }
+  
   /** Make sure we can count the points properly. */
   @Test
   public void testPointCounting() {
@@ -87,6 +101,40 @@ public class Trick_Test {
     assertEquals(50, walked.countNumPoints());
   }
   
+  /** Points should add up as plays are made, and carry over into the Trick. */
+  @Test
+  public void testRunningPoints() {
+    Trick.Builder builder = Trick.builder(Card.of(Rank.FIVE, Suit.HEARTS));
+    assertEquals(5, builder.getNumPoints());
+    builder.play(Card.of(Rank.TEN, Suit.HEARTS)).pass();
+    assertEquals(15, builder.getNumPoints());
+    builder.play(Card.of(Rank.KING, Suit.SPADES)).pass().pass().pass();
+    assertEquals(25, builder.end().countNumPoints());
+  }
+  
+  /** Tricks with the same plays should be equal, and hash like a List of them. */
+  @Test
+  public void testEquality() {
+    Trick first = Trick.builder(Card.of(Rank.THREE, Suit.HEARTS))
+      .play(Card.of(Rank.FOUR, Suit.HEARTS)).pass().pass().pass().end();
+    Trick second = Trick.builder(Card.of(Rank.THREE, Suit.HEARTS))
+      .play(Card.of(Rank.FOUR, Suit.HEARTS)).pass().pass().pass().end();
+    assertEquals(first, second);
+    assertEquals(ImmutableList.copyOf(first).hashCode(), second.hashCode());
+    assertEquals(5, first.getNumPlays());
+  }
+  
+  /** The same cards played the same way should give back the same Play. */
+  @Test
+  public void testInterning() {
+    assertSame(
+      Play.one(Card.of(Rank.ACE, Suit.SPADES)),
+      Play.one(ImmutableSet.of(Card.of(Rank.ACE, Suit.SPADES))));
+    Set<Card> pair = ImmutableSet.of(
+      Card.of(Rank.NINE, Suit.HEARTS), Card.of(Rank.NINE, Suit.SPADES));
+    assertSame(Play.one(pair), Play.one(pair));
+  }
+  
   // --------------------------------------------------------------------------
   // Failures
 
@@ -111,4 +159,43 @@ public class Trick_Test {
     Trick.builder(Card.of(Rank.FIVE, Suit.HEARTS))
       .play(Card.of(Rank.THREE, Suit.HEARTS));
   }
+
+  /** Illegal plays should come back as result codes, and change nothing. */
+  @Test
+  public void testCheckResults() {
+    Trick.Builder builder = Trick.builder(Card.of(Rank.FIVE, Suit.HEARTS));
+    Play three = Play.one(Card.of(Rank.THREE, Suit.HEARTS));
+    Play pair = Play.one(ImmutableSet.of(
+      Card.of(Rank.NINE, Suit.HEARTS), Card.of(Rank.NINE, Suit.SPADES)));
+    assertEquals(PlayResult.TOO_LOW, builder.tryPlay(three));
+    assertEquals(PlayResult.WRONG_SHAPE, builder.tryPlay(pair));
+    assertEquals(PlayResult.LEGAL, builder.tryPlay(Play.one(Card.of(Rank.SIX, Suit.HEARTS))));
+    assertEquals(PlayResult.TOO_LOW, builder.check(Play.one(Card.of(Rank.SIX, Suit.CLUBS))));
+    builder.pass().pass().pass();
+    assertEquals(PlayResult.EXTRA_PLAY, builder.tryPlay(Play.pass()));
+    assertEquals(5, Iterables.size(builder.end()));
+  }
+
+  /** Restored tricks and resumed builders pick up exactly where the plays left off. */
+  @Test
+  public void testRestoreAndResume() {
+    Trick built = Trick.builder(Card.of(Rank.FIVE, Suit.HEARTS))
+      .play(Card.of(Rank.KING, Suit.CLUBS))
+      .pass()
+      .pass()
+      .pass()
+      .end();
+    Play[] plays = Iterables.toArray(built, Play.class);
+    Trick restored = Trick.restore(plays);
+    assertEquals(built, restored);
+    assertEquals(built.countNumPoints(), restored.countNumPoints());
+
+    Trick.Builder resumed = Trick.resume(new Play[] {
+      Play.one(Card.of(Rank.FIVE, Suit.HEARTS)), Play.pass()});
+    assertEquals(5, resumed.getNumPoints());
+    assertEquals(PlayResult.TOO_LOW, resumed.check(Play.one(Card.of(Rank.FOUR, Suit.CLUBS))));
+    Trick finished = resumed.play(Card.of(Rank.KING, Suit.CLUBS)).pass().pass().pass().end();
+    assertEquals(6, finished.getNumPlays());
+    assertEquals(15, finished.countNumPoints());
+  }
 }
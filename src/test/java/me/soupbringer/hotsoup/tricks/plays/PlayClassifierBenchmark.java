@@ -0,0 +1,61 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Random;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+
+/**
+ * Compares classifying candidate sets one Play.all() call at a time with doing
+ * them in a batch. Run by hand; this isn't part of the test suite.
+ */
+public final class PlayClassifierBenchmark {
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    List<List<Card>> sets = Lists.newArrayList();
+    while (sets.size() < 4096) {
+      List<Card> deck = Deck.shuffled(random);
+      for (Play play : PlayGenerator.legalPlays(HashMultiset.create(deck.subList(0, 26)), null)) {
+        sets.add(play.getCards().asList());
+      }
+      for (int i = 0; i < 50; i++) {
+        int start = random.nextInt(deck.size() - 8);
+        sets.add(deck.subList(start, start + 1 + random.nextInt(8)));
+      }
+    }
+    int count = sets.size();
+    long[] histograms = new long[count];
+    for (int i = 0; i < count; i++) {
+      histograms[i] = PlayClassifier.histogram(sets.get(i));
+    }
+    byte[] kinds = new byte[count];
+    byte[] lengths = new byte[count];
+    int[] keys = new int[count];
+
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      int found = 0;
+      for (int pass = 0; pass < 20; pass++) {
+        for (List<Card> cards : sets) {
+          found += Play.all(cards).size();
+        }
+      }
+      double single = 20.0 * count / ((System.nanoTime() - start) / 1e9);
+
+      start = System.nanoTime();
+      for (int pass = 0; pass < 2000; pass++) {
+        PlayClassifier.classify(histograms, count, kinds, lengths, keys);
+        found += kinds[pass % count];
+      }
+      double batch = 2000.0 * count / ((System.nanoTime() - start) / 1e9);
+      System.out.printf(
+        "round %d: Play.all %.0f sets/sec, batch %.0f sets/sec (%.0fx) [%d]%n",
+        round, single, batch, batch / single, found);
+    }
+  }
+}
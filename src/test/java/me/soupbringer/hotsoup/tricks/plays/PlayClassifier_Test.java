@@ -0,0 +1,90 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Deck;
+import me.soupbringer.hotsoup.deck.PackedCards;
+
+/**
+ * Test cases for the PlayClassifier class
+ */
+public class PlayClassifier_Test {
+
+  /** Every set gets the same kind, length and lowest rank that Play.one() finds. */
+  @Test
+  public void testMatchesPlay() {
+    Random random = new Random(11);
+    List<List<Card>> sets = Lists.newArrayList();
+    sets.add(ImmutableList.<Card>of());
+    for (int deal = 0; deal < 20; deal++) {
+      List<Card> deck = Deck.shuffled(random);
+      // Random handfuls are mostly nonsense, and hands' plays are all real.
+      for (int i = 0; i < 200; i++) {
+        int start = random.nextInt(deck.size() - 10);
+        sets.add(deck.subList(start, start + 1 + random.nextInt(10)));
+      }
+      for (Play play : PlayGenerator.legalPlays(HashMultiset.create(deck.subList(0, 26)), null)) {
+        sets.add(play.getCards().asList());
+      }
+    }
+
+    long[] histograms = new long[sets.size()];
+    for (int i = 0; i < sets.size(); i++) {
+      histograms[i] = PlayClassifier.histogram(sets.get(i));
+      assertEquals(histograms[i], PlayClassifier.histogram(PackedCards.pack(sets.get(i)), 0));
+    }
+    byte[] kinds = new byte[sets.size()];
+    byte[] lengths = new byte[sets.size()];
+    int[] keys = new int[sets.size()];
+    PlayClassifier.classify(histograms, sets.size(), kinds, lengths, keys);
+
+    int numValid = 0;
+    for (int i = 0; i < sets.size(); i++) {
+      List<Card> cards = sets.get(i);
+      Play play = Play.one(cards);
+      assertEquals(cards.toString(), play == null ? -1 : play.getKind().ordinal(), kinds[i]);
+      assertEquals(cards.size(), lengths[i]);
+      if (play != null && !play.isPass()) {
+        assertEquals(play.lowestRank().ordinal(), keys[i] & 0xff);
+        numValid++;
+      }
+    }
+    assertTrue(numValid > sets.size() / 5);
+  }
+
+  /** Keys follow each other exactly when the Plays do. */
+  @Test
+  public void testCanFollow() {
+    List<Card> deck = Deck.shuffled(new Random(5));
+    List<Play> plays = Lists.newArrayList();
+    plays.addAll(PlayGenerator.legalPlays(HashMultiset.create(deck.subList(0, 26)), null));
+    plays.addAll(PlayGenerator.legalPlays(HashMultiset.create(deck.subList(26, 52)), null));
+
+    long[] histograms = new long[plays.size()];
+    for (int i = 0; i < plays.size(); i++) {
+      histograms[i] = PlayClassifier.histogram(plays.get(i).getCards());
+    }
+    int[] keys = new int[plays.size()];
+    PlayClassifier.classify(
+      histograms, plays.size(), new byte[plays.size()], new byte[plays.size()], keys);
+
+    for (int i = 0; i < plays.size(); i++) {
+      for (int j = 0; j < plays.size(); j++) {
+        assertEquals(
+          plays.get(i) + " on " + plays.get(j),
+          plays.get(i).isLegalGiven(plays.get(j)),
+          PlayClassifier.canFollow(keys[i], keys[j]));
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package me.soupbringer.hotsoup.tricks.plays;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import me.soupbringer.hotsoup.deck.Card;
+import me.soupbringer.hotsoup.deck.Hand;
+import me.soupbringer.hotsoup.deck.PackedCards;
+import me.soupbringer.hotsoup.deck.Rank;
+import me.soupbringer.hotsoup.deck.Suit;
+
+/**
+ * Test cases for the Play class's packed representation
+ */
+public class Play_Test {
+
+  /** The same cards make equal Plays, whatever order they came in. */
+  @Test
+  public void testEqualityIgnoresOrder() {
+    List<Card> cards = ImmutableList.of(
+      Card.of(Rank.SIX, Suit.SPADES),
+      Card.of(Rank.FOUR, Suit.HEARTS),
+      Card.of(Rank.SEVEN, Suit.CLUBS),
+      Card.of(Rank.THREE, Suit.DIAMONDS),
+      Card.of(Rank.FIVE, Suit.CLUBS));
+    Play play = Play.one(cards);
+    Play reversed = Play.one(Lists.reverse(cards));
+    assertEquals(Play.Kind.STRAIGHT, play.getKind());
+    assertEquals(play, reversed);
+    assertEquals(play.hashCode(), reversed.hashCode());
+
+    // Pairs of doubled cards aren't mixed up with a card and its other suit.
+    Play pair = Play.one(ImmutableList.of(
+      Card.of(Rank.NINE, Suit.HEARTS), Card.of(Rank.NINE, Suit.HEARTS)));
+    Play otherPair = Play.one(ImmutableList.of(
+      Card.of(Rank.NINE, Suit.HEARTS), Card.of(Rank.NINE, Suit.SPADES)));
+    assertNotEquals(pair, otherPair);
+    assertEquals(2, pair.numCards());
+    assertEquals(Rank.NINE, pair.lowestRank());
+  }
+
+  /** Full houses show their triples first, even when the pair is lower. */
+  @Test
+  public void testFullHousesDisplayOrder() {
+    List<Card> cards = ImmutableList.of(
+      Card.of(Rank.FOUR, Suit.CLUBS),
+      Card.of(Rank.KING, Suit.HEARTS),
+      Card.of(Rank.FOUR, Suit.SPADES),
+      Card.of(Rank.KING, Suit.CLUBS),
+      Card.of(Rank.KING, Suit.SPADES));
+    Play play = Play.one(cards);
+    assertEquals(Play.Kind.FULL_HOUSES, play.getKind());
+    assertEquals(
+      ImmutableList.of(
+        Card.of(Rank.KING, Suit.CLUBS),
+        Card.of(Rank.KING, Suit.HEARTS),
+        Card.of(Rank.KING, Suit.SPADES),
+        Card.of(Rank.FOUR, Suit.CLUBS),
+        Card.of(Rank.FOUR, Suit.SPADES)),
+      play.getCards().asList());
+  }
+
+  /** Validating, comparing and hashing never sort the cards for display. */
+  @Test
+  public void testDisplayCardsAreLazy() {
+    List<Card> cards = ImmutableList.of(
+      Card.of(Rank.JACK, Suit.DIAMONDS), Card.of(Rank.JACK, Suit.CLUBS));
+    AtomicInteger numSorts = new AtomicInteger();
+    Play play = new Play(PackedCards.pack(cards)) {
+      @Override
+      public Kind getKind() {
+        return Kind.PAIRS;
+      }
+
+      @Override
+      public boolean isLegalGiven(Play lastPlay) {
+        return false;
+      }
+
+      @Override
+      Comparator<Card> displayOrder(Collection<Card> cards) {
+        numSorts.incrementAndGet();
+        return super.displayOrder(cards);
+      }
+    };
+
+    assertEquals(Play.one(cards), play);
+    assertEquals(Play.one(cards).hashCode(), play.hashCode());
+    assertEquals(2, play.numCards());
+    assertEquals(Rank.JACK, play.lowestRank());
+    assertEquals(0, numSorts.get());
+
+    assertEquals(
+      ImmutableList.of(Card.of(Rank.JACK, Suit.CLUBS), Card.of(Rank.JACK, Suit.DIAMONDS)),
+      play.getCards().asList());
+    assertSame(play.getCards(), play.getCards());
+    assertEquals(1, numSorts.get());
+  }
+
+  /** A hand holds a play only if it has every copy the play needs. */
+  @Test
+  public void testIsHeldIn() {
+    Card nine = Card.of(Rank.NINE, Suit.HEARTS);
+    Card joker = Card.of(Rank.BIG_JOKER, Suit.UNNECESSARY);
+    Hand hand = Hand.builder()
+      .addAll(nine, Card.of(Rank.NINE, Suit.SPADES), joker, joker)
+      .buildInProgress();
+    assertTrue(Play.one(ImmutableList.of(nine, Card.of(Rank.NINE, Suit.SPADES))).isHeldIn(hand));
+    assertTrue(Play.one(ImmutableList.of(joker, joker)).isHeldIn(hand));
+    assertFalse(Play.one(ImmutableList.of(nine, nine)).isHeldIn(hand));
+    assertFalse(Play.one(Card.of(Rank.NINE, Suit.CLUBS)).isHeldIn(hand));
+  }
+}